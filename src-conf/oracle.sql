@@ -3436,3 +3436,10 @@ create table cluster_server_action(
 	time_out_seconds number(13) not null,
 	PRIMARY KEY (server_action_id)
 );
+
+create table publish_expire_claim(
+	identifier varchar2(36) NOT NULL,
+	server_id varchar2(64),
+	claimed_on TIMESTAMP NOT NULL,
+	PRIMARY KEY (identifier)
+);
@@ -3330,3 +3330,10 @@ create table cluster_server_action(
 	time_out_seconds bigint not null,
 	PRIMARY KEY (server_action_id)
 );
+
+create table publish_expire_claim(
+	identifier varchar(36) NOT NULL,
+	server_id varchar(64),
+	claimed_on TIMESTAMP NOT NULL,
+	PRIMARY KEY (identifier)
+);
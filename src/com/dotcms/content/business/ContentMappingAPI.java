@@ -15,8 +15,14 @@ public interface ContentMappingAPI {
 
 	public Object toMappedObj(Contentlet con) throws DotMappingException;
 
-	/*public Contentlet toContentlet(String string) throws DotMappingException;
-	public Contentlet toContentlet(Map<String, Object> map) throws DotMappingException;*/
+	//public Contentlet toContentlet(String string) throws DotMappingException;
+
+	/**
+	 * Builds a contentlet from the index document produced for it by
+	 * {@link #toMappedObj(Contentlet)}, without going to the database for
+	 * the properties the document keeps as they are.
+	 */
+	public Contentlet toContentlet(Map<String, Object> map) throws DotMappingException;
 
     public List<String> dependenciesLeftToReindex(Contentlet con)
             throws DotStateException, DotDataException, DotSecurityException;
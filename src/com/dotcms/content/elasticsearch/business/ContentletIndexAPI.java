@@ -3,6 +3,7 @@ package com.dotcms.content.elasticsearch.business;
 import java.io.IOException;
 import java.sql.Connection;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
 import java.util.List;
 
 import com.dotcms.repackage.org.elasticsearch.action.bulk.BulkRequestBuilder;
@@ -62,6 +63,24 @@ public interface ContentletIndexAPI {
 	public void addContentToIndex(final Contentlet content, final boolean deps, boolean indexBeforeCommit, final boolean reindexOnly,
 			final BulkRequestBuilder bulk) throws DotHibernateException;
 
+	/**
+	 * Same as {@link #addContentToIndex(Contentlet, boolean, boolean, boolean, BulkRequestBuilder)}, the
+	 * document is built with what the batch already loaded for it.
+	 *
+	 * @param batch Built with {@link #prepareBatch(Collection)} for all the contentlets going to the same bulk request
+	 */
+	public void addContentToIndex(final Contentlet content, final boolean deps, boolean indexBeforeCommit, final boolean reindexOnly,
+			final BulkRequestBuilder bulk, final IndexDocumentBatch batch) throws DotHibernateException;
+
+	/**
+	 * Loads, with set-based queries, what the index documents of the given contentlets need
+	 *
+	 * @param contentlets
+	 * @return
+	 * @throws DotDataException
+	 */
+	public IndexDocumentBatch prepareBatch(Collection<Contentlet> contentlets) throws DotDataException;
+
 	public void removeContentFromIndex(final Contentlet content) throws DotHibernateException;
 
 	public void removeContentFromIndex(final Contentlet content, final boolean onlyLive) throws DotHibernateException;
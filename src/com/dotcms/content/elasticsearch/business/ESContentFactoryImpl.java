@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
 
 import com.dotcms.repackage.org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder;
 import com.dotcms.repackage.org.elasticsearch.index.query.functionscore.random.RandomScoreFunctionBuilder;
@@ -1199,12 +1200,24 @@ public class ESContentFactoryImpl extends ContentletFactory {
         else
             indexToHit=info.working;
 
-        Client client=new ESClient().getClient();
-        QueryStringQueryBuilder qb = QueryBuilders.queryString(qq);
-        CountRequestBuilder crb = client.prepareCount();
-        crb.setQuery(qb);
-        crb.setIndices(indexToHit);
-        return crb.execute().actionGet().getCount();
+        final String countQuery=qq;
+        final String countIndex=indexToHit;
+        try {
+            return CacheLocator.getIndexQueryCache().get("count", indexToHit, qq, null, 0, 0, new Callable<Long>() {
+                public Long call() {
+                    Client client=new ESClient().getClient();
+                    QueryStringQueryBuilder qb = QueryBuilders.queryString(countQuery);
+                    CountRequestBuilder crb = client.prepareCount();
+                    crb.setQuery(qb);
+                    crb.setIndices(countIndex);
+                    return crb.execute().actionGet().getCount();
+                }
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
 	}
 
     /**
@@ -1245,7 +1258,17 @@ public class ESContentFactoryImpl extends ContentletFactory {
 
 	@Override
 	protected SearchHits indexSearch(String query, int limit, int offset, String sortBy) {
-	    String qq=findAndReplaceQueryDates(translateQuery(query, sortBy).getQuery());
+	    return indexSearch(query, limit, offset, sortBy, false);
+	}
+
+	/**
+	 * Same as {@link #indexSearch(String, int, int, String)}, optionally
+	 * returning the whole index document of every hit as well.
+	 *
+	 * @param fetchSource true to include the source document of the hits
+	 */
+	protected SearchHits indexSearch(String query, final int limit, final int offset, final String sortBy, final boolean fetchSource) {
+	    final String qq=findAndReplaceQueryDates(translateQuery(query, sortBy).getQuery());
 
 	    // we check the query to figure out wich indexes to hit
 	    String indexToHit;
@@ -1262,6 +1285,29 @@ public class ESContentFactoryImpl extends ContentletFactory {
 	    else
 	        indexToHit=info.working;
 
+	    if("random".equals(sortBy)) {
+	        return indexSearch(qq, indexToHit, limit, offset, sortBy, fetchSource);
+	    }
+
+	    final String searchIndex=indexToHit;
+	    try {
+	        return CacheLocator.getIndexQueryCache().get(fetchSource ? "source" : "search", indexToHit, qq, sortBy, limit, offset,
+	                new Callable<SearchHits>() {
+	            public SearchHits call() {
+	                return indexSearch(qq, searchIndex, limit, offset, sortBy, fetchSource);
+	            }
+	        });
+	    } catch (RuntimeException e) {
+	        throw e;
+	    } catch (Exception e) {
+	        throw new RuntimeException(e);
+	    }
+	}
+
+	/**
+	 * Runs the translated query against the given index
+	 */
+	private SearchHits indexSearch(String qq, String indexToHit, int limit, int offset, String sortBy, boolean fetchSource) {
 	    Client client=new ESClient().getClient();
 	    SearchResponse resp = null;
         try {
@@ -1270,6 +1316,8 @@ public class ESContentFactoryImpl extends ContentletFactory {
 
         	srb.setIndices(indexToHit);
         	srb.addFields("inode","identifier");
+        	if(fetchSource)
+        	    srb.setFetchSource(true);
 
             if(limit>0)
                 srb.setSize(limit);
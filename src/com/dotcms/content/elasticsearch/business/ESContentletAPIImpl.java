@@ -28,6 +28,7 @@ import java.util.regex.Pattern;
 import org.springframework.beans.BeanUtils;
 
 import com.dotcms.content.business.DotMappingException;
+import com.dotcms.csspreproc.CSSPreProcessService;
 import com.dotcms.enterprise.cmis.QueryResult;
 import com.dotcms.notifications.bean.NotificationLevel;
 import com.dotcms.publisher.business.DotPublisherException;
@@ -87,6 +88,7 @@ import com.dotmarketing.portlets.contentlet.business.DotContentletValidationExce
 import com.dotmarketing.portlets.contentlet.business.DotLockException;
 import com.dotmarketing.portlets.contentlet.business.DotReindexStateException;
 import com.dotmarketing.portlets.contentlet.business.HostAPI;
+import com.dotmarketing.portlets.contentlet.business.PublishExpireScheduler;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.contentlet.model.ContentletAndBinary;
 import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
@@ -393,6 +395,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
                     if(contentlet.getStructure().getStructureType()==Structure.STRUCTURE_TYPE_FILEASSET) {
                         Identifier ident = APILocator.getIdentifierAPI().find(contentlet);
                         CacheLocator.getCSSCache().remove(ident.getHostId(), ident.getPath(), true);
+                        CSSPreProcessService.getInstance().recompileDependents(ident.getHostId(), ident.getPath());
                         IFileAsset fileAsset = APILocator.getFileAssetAPI().fromContentlet(contentlet);
 
                         if(fileAsset.isShowOnMenu()){
@@ -530,6 +533,9 @@ public class ESContentletAPIImpl implements ContentletAPI {
     }
 
     public List<Contentlet> search(String luceneQuery, int limit, int offset, String sortBy, User user, boolean respectFrontendRoles, int requiredPermission) throws DotDataException,DotSecurityException {
+        if(Config.getBooleanProperty("CONTENT_SEARCH_HYDRATE_FROM_INDEX", false)) {
+            return searchHydrated(luceneQuery, limit, offset, sortBy, user, respectFrontendRoles);
+        }
         PaginatedArrayList<Contentlet> contents = new PaginatedArrayList<Contentlet>();
         ArrayList<String> inodes = new ArrayList<String>();
 
@@ -555,6 +561,52 @@ public class ESContentletAPIImpl implements ContentletAPI {
 
     }
 
+    /**
+     * Builds the contentlets straight from the index documents of the hits,
+     * see {@link ESMappingAPIImpl#toContentlet(Map)}, instead of loading them
+     * from the cache or the database. Enabled by CONTENT_SEARCH_HYDRATE_FROM_INDEX.
+     * The hits that can't be hydrated, and the properties the index does not
+     * keep, are loaded for the whole page at once.
+     */
+    private List<Contentlet> searchHydrated(String luceneQuery, int limit, int offset, String sortBy, User user, boolean respectFrontendRoles) throws DotDataException,DotSecurityException {
+        PaginatedArrayList<Contentlet> contents = new PaginatedArrayList<Contentlet>();
+        SearchHits hits = searchHits(luceneQuery, limit, offset, sortBy, user, respectFrontendRoles, true);
+        contents.setTotalResults(hits.getTotalHits());
+
+        ESMappingAPIImpl mappingAPI = new ESMappingAPIImpl();
+        IndexedContentletPage page = new IndexedContentletPage();
+        List<String> inodes = new ArrayList<String>();
+        List<String> notHydrated = new ArrayList<String>();
+        Map<String, Contentlet> map = new HashMap<String, Contentlet>();
+        for (SearchHit sh : hits.hits()) {
+            String inode = sh.field("inode").getValue().toString();
+            inodes.add(inode);
+            Contentlet contentlet = null;
+            if(sh.getSource() != null) {
+                try {
+                    contentlet = mappingAPI.toContentlet(sh.getSource(), page);
+                } catch (DotMappingException e) {
+                    Logger.warn(this, "Unable to hydrate contentlet " + inode + " from the index: " + e.getMessage());
+                }
+            }
+            if(contentlet == null) {
+                notHydrated.add(inode);
+            } else {
+                map.put(inode, contentlet);
+            }
+        }
+        if(!notHydrated.isEmpty()) {
+            for (Contentlet contentlet : conFac.findContentlets(notHydrated)) {
+                map.put(contentlet.getInode(), contentlet);
+            }
+        }
+        for (String inode : inodes) {
+            if(map.get(inode) != null)
+                contents.add(map.get(inode));
+        }
+        return contents;
+    }
+
     public List<Contentlet> searchByIdentifier(String luceneQuery, int limit, int offset,String sortBy, User user, boolean respectFrontendRoles) throws DotDataException, DotSecurityException {
         return searchByIdentifier(luceneQuery, limit, offset, sortBy, user, respectFrontendRoles, PermissionAPI.PERMISSION_READ);
     }
@@ -637,6 +689,28 @@ public class ESContentletAPIImpl implements ContentletAPI {
     }
 
     public List <ContentletSearch> searchIndex(String luceneQuery, int limit, int offset, String sortBy, User user, boolean respectFrontendRoles)throws DotSecurityException, DotDataException {
+        SearchHits lc = searchHits(luceneQuery, limit, offset, sortBy, user, respectFrontendRoles, false);
+        PaginatedArrayList <ContentletSearch> list=new PaginatedArrayList<ContentletSearch>();
+        list.setTotalResults(lc.getTotalHits());
+
+        for (SearchHit sh : lc.hits()) {
+            try{
+                Map<String, Object> hm = new HashMap<String, Object>();
+                ContentletSearch conwrapper= new ContentletSearch();
+                conwrapper.setIdentifier(sh.field("identifier").getValue().toString());
+                conwrapper.setInode(sh.field("inode").getValue().toString());
+
+                list.add(conwrapper);
+            }
+            catch(Exception e){
+                Logger.error(this,e.getMessage(),e);
+            }
+
+        }
+        return list;
+    }
+
+    private SearchHits searchHits(String luceneQuery, int limit, int offset, String sortBy, User user, boolean respectFrontendRoles, boolean fetchSource)throws DotSecurityException, DotDataException {
         boolean isAdmin = false;
         List<Role> roles = new ArrayList<Role>();
         if(user == null && !respectFrontendRoles){
@@ -662,25 +736,7 @@ public class ESContentletAPIImpl implements ContentletAPI {
         if(limit>MAX_LIMIT || limit <=0){
             limit = MAX_LIMIT;
         }
-        SearchHits lc = conFac.indexSearch(buffy.toString(), limit, offset, sortBy);
-        PaginatedArrayList <ContentletSearch> list=new PaginatedArrayList<ContentletSearch>();
-        list.setTotalResults(lc.getTotalHits());
-
-        for (SearchHit sh : lc.hits()) {
-            try{
-                Map<String, Object> hm = new HashMap<String, Object>();
-                ContentletSearch conwrapper= new ContentletSearch();
-                conwrapper.setIdentifier(sh.field("identifier").getValue().toString());
-                conwrapper.setInode(sh.field("inode").getValue().toString());
-
-                list.add(conwrapper);
-            }
-            catch(Exception e){
-                Logger.error(this,e.getMessage(),e);
-            }
-
-        }
-        return list;
+        return conFac.indexSearch(buffy.toString(), limit, offset, sortBy, fetchSource);
     }
 
     public void publishRelatedHtmlPages(Contentlet contentlet) throws DotStateException, DotDataException{
@@ -2889,6 +2945,16 @@ public class ESContentletAPIImpl implements ContentletAPI {
     			            // publish/expire dates changed
     			            APILocator.getIdentifierAPI().save(ident);
 
+    			            final PublishExpireScheduler scheduler = PublishExpireScheduler.getInstance();
+    			            if(scheduler != null) {
+    			                final Identifier scheduled = ident;
+    			                HibernateUtil.addCommitListener(new Runnable() {
+    			                    public void run() {
+    			                        scheduler.schedule(scheduled);
+    			                    }
+    			                });
+    			            }
+
     			            // we take all inodes associated with that identifier
     			            // remove them from cache and then reindex them
     			            HibernateUtil hu=new HibernateUtil(ContentletVersionInfo.class);
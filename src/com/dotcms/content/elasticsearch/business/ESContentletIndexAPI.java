@@ -6,16 +6,18 @@ import java.net.URL;
 import java.sql.Connection;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.dotcms.content.business.DotMappingException;
 import com.dotcms.content.elasticsearch.business.IndiciesAPI.IndiciesInfo;
 import com.dotcms.content.elasticsearch.util.ESClient;
-import com.dotcms.repackage.com.google.gson.Gson;
 import com.dotcms.repackage.org.elasticsearch.ElasticsearchException;
 import com.dotcms.repackage.org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import com.dotcms.repackage.org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
@@ -24,6 +26,7 @@ import com.dotcms.repackage.org.elasticsearch.action.bulk.BulkRequestBuilder;
 import com.dotcms.repackage.org.elasticsearch.action.index.IndexRequest;
 import com.dotcms.repackage.org.elasticsearch.client.Client;
 import com.dotcms.repackage.org.elasticsearch.client.IndicesAdminClient;
+import com.dotcms.repackage.org.elasticsearch.common.xcontent.XContentBuilder;
 import com.dotcms.repackage.org.elasticsearch.index.query.QueryBuilders;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.CacheLocator;
@@ -37,6 +40,7 @@ import com.dotmarketing.exception.DotSecurityException;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.structure.factories.RelationshipFactory;
 import com.dotmarketing.portlets.structure.model.Relationship;
+import com.dotmarketing.portlets.structure.model.Structure;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
 
@@ -278,6 +282,14 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
 	}
 
 	public void addContentToIndex(final Contentlet content, final boolean deps, boolean indexBeforeCommit, final boolean reindexOnly, final BulkRequestBuilder bulk) throws DotHibernateException {
+	    addContentToIndex(content,deps,indexBeforeCommit,reindexOnly,bulk,null);
+	}
+
+	public IndexDocumentBatch prepareBatch(Collection<Contentlet> contentlets) throws DotDataException {
+	    return IndexDocumentBatch.load(contentlets);
+	}
+
+	public void addContentToIndex(final Contentlet content, final boolean deps, boolean indexBeforeCommit, final boolean reindexOnly, final BulkRequestBuilder bulk, final IndexDocumentBatch batch) throws DotHibernateException {
 
 	    if(content==null || !UtilMethods.isSet(content.getIdentifier())) return;
 
@@ -294,10 +306,14 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
                     if(deps)
                         contentToIndex.addAll(loadDeps(content));
                     
-                    indexContentletList(req, contentToIndex,reindexOnly);
+                    indexContentletList(req, contentToIndex,reindexOnly,batch);
                                         
-                    if(bulk==null && req.numberOfActions()>0)
+                    if(bulk==null && req.numberOfActions()>0) {
                         req.execute().actionGet();
+                        CacheLocator.getIndexQueryCache().invalidate();
+                    }
+
+                    clearURLMapResolutions(contentToIndex);
 
                 } catch (Exception e) {
 					throw new RuntimeException(e);
@@ -316,15 +332,23 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
 	}
 
 	private void indexContentletList(BulkRequestBuilder req, List<Contentlet> contentToIndex, boolean reindexOnly) throws DotStateException, DotDataException, DotSecurityException, DotMappingException {
+		indexContentletList(req, contentToIndex, reindexOnly, null);
+	}
+
+	private void indexContentletList(BulkRequestBuilder req, List<Contentlet> contentToIndex, boolean reindexOnly, IndexDocumentBatch batch) throws DotStateException, DotDataException, DotSecurityException, DotMappingException {
+
+		if(batch==null && contentToIndex.size()>1) {
+		    // the lookups of several documents are cheaper done together
+		    batch=IndexDocumentBatch.load(contentToIndex);
+		}
 
+		IndiciesInfo info=APILocator.getIndiciesAPI().loadIndicies();
 		for(Contentlet con : contentToIndex) {
             String id=con.getIdentifier()+"_"+con.getLanguageId();
-            IndiciesInfo info=APILocator.getIndiciesAPI().loadIndicies();
-            Gson gson=new Gson();
-            String mapping=null;
+            XContentBuilder mapping=null;
             try {
                 if(con.isWorking()) {
-                    mapping=gson.toJson(mappingAPI.toMap(con));
+                    mapping=mappingAPI.toXContent(con, batch);
                     
                     if(!reindexOnly)
                         req.add(new IndexRequest(info.working, "content", id)
@@ -336,7 +360,7 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
     
                 if(con.isLive()) {
                     if(mapping==null)
-                        mapping=gson.toJson(mappingAPI.toMap(con));
+                        mapping=mappingAPI.toXContent(con, batch);
                     
                     if(!reindexOnly)
                         req.add(new IndexRequest(info.live, "content", id)
@@ -429,6 +453,8 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
 
 	                    bulk.execute().actionGet();
 
+	                    CacheLocator.getIndexQueryCache().invalidate();
+	                    clearURLMapResolutions(Collections.singletonList(content));
 	        	    }
 	        	    catch(Exception ex) {
 	        	        throw new ElasticsearchException(ex.getMessage(),ex);
@@ -454,7 +480,8 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
     }
 
 	public void removeContentFromIndexByStructureInode(String structureInode) throws DotDataException {
-	    String structureName=CacheLocator.getContentTypeCache().getStructureByInode(structureInode).getVelocityVarName();
+	    Structure structure=CacheLocator.getContentTypeCache().getStructureByInode(structureInode);
+	    String structureName=structure.getVelocityVarName();
 	    IndiciesInfo info=APILocator.getIndiciesAPI().loadIndicies();
 
 	    // collecting indexes
@@ -473,6 +500,25 @@ public class ESContentletIndexAPI implements ContentletIndexAPI{
               .setIndices(idxsArr)
               .setQuery(QueryBuilders.queryString("+structurename:"+structureName))
               .execute().actionGet();
+
+	    CacheLocator.getIndexQueryCache().invalidate();
+	    if(UtilMethods.isSet(structure.getUrlMapPattern()))
+	        CacheLocator.getContentTypeCache().clearURLMapResolutions(structure.getInode());
+	}
+
+	/**
+	 * The URL Map URLs are resolved with the index, forget the ones resolved so
+	 * far to contentlets of the structures with a URL Map of the given
+	 * contentlets: any of their URLs may resolve to another one now.
+	 */
+	private void clearURLMapResolutions(List<Contentlet> contents) {
+	    Set<String> cleared=new HashSet<String>();
+	    for(Contentlet con : contents) {
+	        Structure structure=con.getStructure();
+	        if(structure!=null && UtilMethods.isSet(structure.getUrlMapPattern()) && cleared.add(structure.getInode())) {
+	            CacheLocator.getContentTypeCache().clearURLMapResolutions(structure.getInode());
+	        }
+	    }
 	}
 
     public void fullReindexAbort() {
@@ -6,6 +6,7 @@ import static com.dotmarketing.business.PermissionAPI.PERMISSION_WRITE;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
@@ -29,6 +30,9 @@ import com.dotcms.repackage.org.elasticsearch.ElasticsearchException;
 import com.dotcms.repackage.org.elasticsearch.action.ListenableActionFuture;
 import com.dotcms.repackage.org.elasticsearch.action.admin.cluster.state.ClusterStateRequest;
 import com.dotcms.repackage.org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
+import com.dotcms.repackage.org.elasticsearch.common.xcontent.XContentBuilder;
+import com.dotcms.repackage.org.elasticsearch.common.xcontent.XContentFactory;
+import com.dotmarketing.beans.Host;
 import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.beans.Permission;
 import com.dotmarketing.business.APILocator;
@@ -45,6 +49,7 @@ import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
 import com.dotmarketing.portlets.fileassets.business.FileAssetAPI;
+import com.dotmarketing.portlets.folders.business.FolderAPI;
 import com.dotmarketing.portlets.folders.model.Folder;
 import com.dotmarketing.portlets.structure.business.FieldAPI;
 import com.dotmarketing.portlets.structure.factories.RelationshipFactory;
@@ -254,20 +259,94 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 	 * Jun 7, 2013 - 3:47:26 PM
 	 */
 	public Map<String,Object> toMap(Contentlet con) throws DotMappingException {
+		return toMap(con, null);
+	}
+
+	/**
+	 * Same as {@link #toMap(Contentlet)}, taking what the document needs from
+	 * the given batch when it has it.
+	 *
+	 * @param con
+	 * @param batch What was loaded for all the contentlets being indexed, can be null
+	 * @return
+	 * @throws DotMappingException
+	 */
+	public Map<String,Object> toMap(Contentlet con, IndexDocumentBatch batch) throws DotMappingException {
 		try {
+			final Map<String,Object> mlowered=new HashMap<String,Object>();
+			writeDocument(con, batch, new DocumentWriter() {
+				public void field(String key, String value) {
+					if(!mlowered.containsKey(key))
+						mlowered.put(key, value);
+				}
+			});
+			return mlowered;
+		} catch (Exception e) {
+			//Logger.error(this.getClass(), e.getMessage(), e);
+			throw new DotMappingException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Builds the same document as {@link #toMap(Contentlet, IndexDocumentBatch)}
+	 * straight into JSON, ready to be the source of an index request, without
+	 * the intermediate map.
+	 *
+	 * @param con
+	 * @param batch What was loaded for all the contentlets being indexed, can be null
+	 * @return
+	 * @throws DotMappingException
+	 */
+	public XContentBuilder toXContent(Contentlet con, IndexDocumentBatch batch) throws DotMappingException {
+		try {
+			final XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+			final Set<String> written = new HashSet<String>();
+			writeDocument(con, batch, new DocumentWriter() {
+				public void field(String key, String value) throws IOException {
+					// null values are left out, as they were when the map was serialized
+					if(written.add(key) && value != null)
+						builder.field(key, value);
+				}
+			});
+			return builder.endObject();
+		} catch (Exception e) {
+			throw new DotMappingException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Receives the fields of an index document. The first value written for a
+	 * key is the one that counts.
+	 */
+	private interface DocumentWriter {
+		void field(String key, String value) throws IOException;
+	}
+
+	private void writeDocument(Contentlet con, IndexDocumentBatch batch, DocumentWriter out) throws Exception {
 
 			Map<String,String> m = new HashMap<String,String>();
-			Map<String,Object> mlowered=new HashMap<String,Object>();
-			loadCategories(con, m);
+			loadCategories(con, m, batch);
 			loadFields(con, m);
-			loadPermissions(con, m);
-			loadRelationshipFields(con, m);
-
-			Identifier ident = APILocator.getIdentifierAPI().find(con);
-			ContentletVersionInfo cvi = APILocator.getVersionableAPI().getContentletVersionInfo(ident.getId(), con.getLanguageId());
+			loadPermissions(con, m, batch);
+			loadRelationshipFields(con, m, batch);
+
+			Identifier ident = (batch != null) ? batch.getIdentifier(con) : null;
+			if(ident == null)
+				ident = APILocator.getIdentifierAPI().find(con);
+			ContentletVersionInfo cvi = (batch != null) ? batch.getVersionInfo(con) : null;
+			if(cvi == null)
+				cvi = APILocator.getVersionableAPI().getContentletVersionInfo(ident.getId(), con.getLanguageId());
 			Structure st=CacheLocator.getContentTypeCache().getStructureByInode(con.getStructureInode());
 
-			Folder conFolder=APILocator.getFolderAPI().findFolderByPath(ident.getParentPath(), ident.getHostId(), APILocator.getUserAPI().getSystemUser(), false);
+			String conFolderInode;
+			if(batch != null && batch.hasFolderInode(ident.getHostId(), ident.getParentPath())) {
+				conFolderInode = batch.getFolderInode(ident.getHostId(), ident.getParentPath());
+			} else {
+				Folder conFolder=APILocator.getFolderAPI().findFolderByPath(ident.getParentPath(), ident.getHostId(), APILocator.getUserAPI().getSystemUser(), false);
+				conFolderInode = conFolder!=null && InodeUtils.isSet(conFolder.getInode()) ? conFolder.getInode() : null;
+				if(batch != null)
+					batch.addFolderInode(ident.getHostId(), ident.getParentPath(), conFolderInode);
+			}
 
 			m.put("title", con.getTitle());
 			m.put("structureName", st.getVelocityVarName()); // marked for DEPRECATION
@@ -286,12 +365,13 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
             m.put("languageId", Long.toString(con.getLanguageId()));
             m.put("identifier", ident.getId());
             m.put("conHost", ident.getHostId());
-            m.put("conFolder", conFolder!=null && InodeUtils.isSet(conFolder.getInode()) ? conFolder.getInode() : con.getFolder());
+            m.put("conFolder", conFolderInode!=null ? conFolderInode : con.getFolder());
             m.put("parentPath", ident.getParentPath());
             m.put("path", ident.getPath());
             
             try{
-            	WorkflowTask task = APILocator.getWorkflowAPI().findTaskByContentlet(con);
+            	WorkflowTask task = (batch != null && batch.hasWorkflowTask(con)) ? batch.getWorkflowTask(con)
+            			: APILocator.getWorkflowAPI().findTaskByContentlet(con);
             	if(task!=null && task.getId()!=null){
             		m.put("wfcreatedBy", task.getCreatedBy());
                     m.put("wfassign", task.getAssignedTo());
@@ -330,12 +410,7 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
             	throw new DotRuntimeException(urlMap, e);
             }
 
-            for(Entry<String,String> entry : m.entrySet()){
-                final String lcasek=entry.getKey().toLowerCase();
-				final String lcasev = UtilMethods.isSet(entry.getValue()) ? entry.getValue().toLowerCase() : null;
-                mlowered.put(lcasek, lcasev);
-                mlowered.put(lcasek + "_dotraw", lcasev);
-            }
+            // these take precedence over the fields with the same name, so they go first
 
             if(con.getStructure().getStructureType()==Structure.STRUCTURE_TYPE_FILEASSET) {
                 // see if we have content metadata
@@ -346,21 +421,22 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 
                     String lvar=con.getStructure().getVelocityVarName().toLowerCase();
 
-                    mlowered.put(lvar+".metadata.content", contentData);
+                    out.field(lvar+".metadata.content", contentData);
                 }
             }
 
 			//The url is now stored under the identifier for html pages, so we need to index that also.
 			if(con.getStructure().getStructureType() == Structure.STRUCTURE_TYPE_HTMLPAGE){
-				mlowered.put(con.getStructure().getVelocityVarName().toLowerCase() + ".url", ident.getAssetName());
-				mlowered.put(con.getStructure().getVelocityVarName().toLowerCase() + ".url_dotraw", ident.getAssetName());
+				out.field(con.getStructure().getVelocityVarName().toLowerCase() + ".url", ident.getAssetName());
+				out.field(con.getStructure().getVelocityVarName().toLowerCase() + ".url_dotraw", ident.getAssetName());
 			}
 
-            return mlowered;
-		} catch (Exception e) {
-			//Logger.error(this.getClass(), e.getMessage(), e);
-			throw new DotMappingException(e.getMessage(), e);
-		}
+            for(Entry<String,String> entry : m.entrySet()){
+                final String lcasek=entry.getKey().toLowerCase();
+				final String lcasev = UtilMethods.isSet(entry.getValue()) ? entry.getValue().toLowerCase() : null;
+                out.field(lcasek, lcasev);
+                out.field(lcasek + "_dotraw", lcasev);
+            }
 	}
 
 
@@ -368,8 +444,88 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 		return toJson(con);
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Builds a read only contentlet from its index document. The document lower
+	 * cases every value, so only the properties it keeps without loss are
+	 * hydrated: inode, identifier, language, structure, host, folder and the
+	 * boolean and numeric fields. Any other property is lazily loaded from the
+	 * cache or the database the first time it is read, see
+	 * {@link IndexedContentletMap}.
+	 */
+	public Contentlet toContentlet(Map<String, Object> map) throws DotMappingException {
+		return toContentlet(map, null);
+	}
+
+	/**
+	 * Same as {@link #toContentlet(Map)}, the properties the index does not
+	 * keep are loaded along with the rest of the page
+	 */
+	Contentlet toContentlet(Map<String, Object> map, IndexedContentletPage page) throws DotMappingException {
+		try {
+			String inode = (String) map.get("inode");
+			if(!UtilMethods.isSet(inode)) {
+				throw new DotMappingException("The index document has no inode");
+			}
+
+			IndexedContentletMap properties = new IndexedContentletMap(inode, page);
+			Contentlet con = new Contentlet(properties);
+			properties.putHydrated(Contentlet.INODE_KEY, inode);
+			properties.putHydrated(Contentlet.IDENTIFIER_KEY, map.get("identifier"));
+			if(map.get("languageid") != null) {
+				properties.putHydrated(Contentlet.LANGUAGEID_KEY, Long.parseLong(map.get("languageid").toString()));
+			}
+
+			String conHost = (String) map.get("conhost");
+			properties.putHydrated(Contentlet.HOST_KEY, Host.SYSTEM_HOST.equalsIgnoreCase(conHost) ? Host.SYSTEM_HOST : conHost);
+			String conFolder = (String) map.get("confolder");
+			properties.putHydrated(Contentlet.FOLDER_KEY, FolderAPI.SYSTEM_FOLDER.equalsIgnoreCase(conFolder) ? FolderAPI.SYSTEM_FOLDER : conFolder);
+
+			// the index only keeps the lower cased var name, the structure cache
+			// holds it too and is invalidated when the structure is removed
+			String varName = (String) map.get("contenttype");
+			String structureInode = null;
+			if(varName != null) {
+				Structure st = CacheLocator.getContentTypeCache().getStructureByVelocityVarName(varName);
+				if(st != null && InodeUtils.isSet(st.getInode())) {
+					structureInode = st.getInode();
+				}
+			}
+			if(structureInode == null) {
+				// nothing else can be mapped without the structure
+				return con;
+			}
+			properties.putHydrated(Contentlet.STRUCTURE_INODE_KEY, structureInode);
+
+			for (Field f : FieldsCache.getFieldsByStructureInode(structureInode)) {
+				if(!f.isIndexed() || f.getFieldContentlet() == null) {
+					continue;
+				}
+				Object value = map.get((varName + "." + f.getVelocityVarName()).toLowerCase());
+				if(!UtilMethods.isSet(value)) {
+					continue;
+				}
+				if (f.getFieldContentlet().startsWith("bool")) {
+					properties.putHydrated(f.getVelocityVarName(), Boolean.valueOf(value.toString()));
+				} else if (f.getFieldContentlet().startsWith("integer")) {
+					properties.putHydrated(f.getVelocityVarName(), new BigDecimal(value.toString()).longValue());
+				} else if (f.getFieldContentlet().startsWith("float")) {
+					properties.putHydrated(f.getVelocityVarName(), new BigDecimal(value.toString()).floatValue());
+				}
+			}
+			return con;
+		} catch (DotMappingException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new DotMappingException(e.getMessage(), e);
+		}
+	}
+
 	protected void loadCategories(Contentlet con, Map<String,String> m) throws DotDataException, DotSecurityException {
+		loadCategories(con, m, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadCategories(Contentlet con, Map<String,String> m, IndexDocumentBatch batch) throws DotDataException, DotSecurityException {
 	    // first we check if there is a category field in the structure. We don't hit db if not needed
 	    boolean thereiscategory=false;
 	    Structure st=CacheLocator.getContentTypeCache().getStructureByInode(con.getStructureInode());
@@ -381,16 +537,19 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 	    String categoriesString="";
 
 	    if(thereiscategory) {
-    	    String categoriesSQL = "select category.category_velocity_var_name as cat_velocity_var "+
-                    " from  category join tree on (tree.parent = category.inode) join contentlet c on (c.inode = tree.child) " +
-                    " where c.inode = ?";
-    	    DotConnect db = new DotConnect();
-            db.setSQL(categoriesSQL);
-            db.addParam(con.getInode());
-            ArrayList<String> categories=new ArrayList<String>();
-    	    List<HashMap<String, String>> categoriesResults = db.loadResults();
-    	    for (HashMap<String, String> crow : categoriesResults)
-    	        categories.add(crow.get("cat_velocity_var"));
+            List<String> categories = (batch != null) ? batch.getCategories(con) : null;
+            if(categories == null) {
+        	    String categoriesSQL = "select category.category_velocity_var_name as cat_velocity_var "+
+                        " from  category join tree on (tree.parent = category.inode) join contentlet c on (c.inode = tree.child) " +
+                        " where c.inode = ?";
+        	    DotConnect db = new DotConnect();
+                db.setSQL(categoriesSQL);
+                db.addParam(con.getInode());
+                categories=new ArrayList<String>();
+        	    List<HashMap<String, String>> categoriesResults = db.loadResults();
+        	    for (HashMap<String, String> crow : categoriesResults)
+        	        categories.add(crow.get("cat_velocity_var"));
+            }
 
     	    categoriesString=UtilMethods.join(categories, " ").trim();
 
@@ -425,10 +584,16 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
         m.put("categories", categoriesString);
 	}
 
-	@SuppressWarnings("unchecked")
 	protected void loadPermissions(Contentlet con, Map<String,String> m) throws DotDataException {
-        PermissionAPI permissionAPI = APILocator.getPermissionAPI();
-        List<Permission> permissions = permissionAPI.getPermissions(con, false, false, false);
+		loadPermissions(con, m, null);
+	}
+
+	private void loadPermissions(Contentlet con, Map<String,String> m, IndexDocumentBatch batch) throws DotDataException {
+        List<Permission> permissions = (batch != null) ? batch.getPermissions(con) : null;
+        if(permissions == null) {
+            PermissionAPI permissionAPI = APILocator.getPermissionAPI();
+            permissions = permissionAPI.getPermissions(con, false, false, false);
+        }
         StringBuilder permissionsSt = new StringBuilder();
         boolean ownerCanRead = false;
         boolean ownerCanWrite = false;
@@ -657,12 +822,21 @@ public class ESMappingAPIImpl implements ContentMappingAPI {
 	}
 
 	protected void loadRelationshipFields(Contentlet con, Map<String,String> m) throws DotStateException, DotDataException {
-	    DotConnect db = new DotConnect();
-        db.setSQL("select * from tree where parent = ? or child = ? order by tree_order asc");
-        db.addParam(con.getIdentifier());
-        db.addParam(con.getIdentifier());
+		loadRelationshipFields(con, m, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadRelationshipFields(Contentlet con, Map<String,String> m, IndexDocumentBatch batch) throws DotStateException, DotDataException {
+	    List<Map<String, Object>> relatedEntries = (batch != null) ? batch.getRelationships(con) : null;
+	    if(relatedEntries == null) {
+    	    DotConnect db = new DotConnect();
+            db.setSQL("select * from tree where parent = ? or child = ? order by tree_order asc");
+            db.addParam(con.getIdentifier());
+            db.addParam(con.getIdentifier());
+            relatedEntries = db.loadObjectResults();
+	    }
 
-        for(Map<String, Object> relatedEntry : db.loadObjectResults()) {
+        for(Map<String, Object> relatedEntry : relatedEntries) {
 
             String childId = relatedEntry.get("child").toString();
             String parentId = relatedEntry.get("parent").toString();
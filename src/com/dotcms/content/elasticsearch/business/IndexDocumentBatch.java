@@ -0,0 +1,276 @@
+package com.dotcms.content.elasticsearch.business;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.dotmarketing.beans.Identifier;
+import com.dotmarketing.beans.Permission;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.business.Permissionable;
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.db.HibernateUtil;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.exception.DotSecurityException;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
+import com.dotmarketing.portlets.workflows.model.WorkflowTask;
+import com.dotmarketing.util.Logger;
+
+/**
+ * What the index documents of a batch of contentlets need from the database,
+ * loaded for the whole batch with set-based queries instead of one lookup per
+ * contentlet: identifiers, version info, workflow tasks, categories,
+ * relationships and permissions. Folders are looked up once per path.
+ * <p>
+ * Used by {@link ESMappingAPIImpl} when building the documents of a bulk
+ * request. Anything the batch does not know about is looked up the usual
+ * way, so a batch may cover only part of the contentlets.
+ * </p>
+ */
+public class IndexDocumentBatch {
+
+	// Oracle does not take more than 1000 items in an IN clause
+	private static final int QUERY_BATCH_SIZE = 500;
+
+	private final Set<String> inodes = new HashSet<String>();
+	private final Set<String> identifiers = new HashSet<String>();
+
+	private final Map<String, Identifier> identifiersById = new HashMap<String, Identifier>();
+	private final Map<String, ContentletVersionInfo> versionInfos = new HashMap<String, ContentletVersionInfo>();
+	private final Map<String, WorkflowTask> workflowTasks = new HashMap<String, WorkflowTask>();
+	private final Map<String, List<String>> categories = new HashMap<String, List<String>>();
+	private final Map<String, List<Map<String, Object>>> relationships = new HashMap<String, List<Map<String, Object>>>();
+	private final Map<String, List<Permission>> permissions = new HashMap<String, List<Permission>>();
+	private final Map<String, String> folderInodes = new HashMap<String, String>();
+
+	private IndexDocumentBatch() {
+	}
+
+	/**
+	 * Loads everything the index documents of the given contentlets need.
+	 *
+	 * @param contentlets
+	 * @return
+	 * @throws DotDataException
+	 */
+	public static IndexDocumentBatch load(Collection<Contentlet> contentlets) throws DotDataException {
+		IndexDocumentBatch batch = new IndexDocumentBatch();
+		List<Permissionable> permissionables = new ArrayList<Permissionable>();
+		for (Contentlet con : contentlets) {
+			if (con == null) {
+				continue;
+			}
+			batch.inodes.add(con.getInode());
+			batch.identifiers.add(con.getIdentifier());
+			permissionables.add(con);
+		}
+		if (batch.inodes.isEmpty()) {
+			return batch;
+		}
+
+		List<String> ids = new ArrayList<String>(batch.identifiers);
+		List<String> inodes = new ArrayList<String>(batch.inodes);
+		for (int from = 0; from < ids.size(); from += QUERY_BATCH_SIZE) {
+			List<String> chunk = ids.subList(from, Math.min(from + QUERY_BATCH_SIZE, ids.size()));
+			batch.loadIdentifiers(chunk);
+			batch.loadVersionInfos(chunk);
+			batch.loadWorkflowTasks(chunk);
+			batch.loadRelationships(chunk);
+		}
+		for (int from = 0; from < inodes.size(); from += QUERY_BATCH_SIZE) {
+			batch.loadCategories(inodes.subList(from, Math.min(from + QUERY_BATCH_SIZE, inodes.size())));
+		}
+		batch.loadPermissions(permissionables);
+		return batch;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadIdentifiers(List<String> ids) throws DotDataException {
+		HibernateUtil hu = new HibernateUtil(Identifier.class);
+		hu.setQuery("from identifier in class com.dotmarketing.beans.Identifier where id in (" + placeholders(ids.size()) + ")");
+		for (String id : ids) {
+			hu.setParam(id);
+		}
+		for (Identifier ident : (List<Identifier>) hu.list()) {
+			identifiersById.put(ident.getId(), ident);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadVersionInfos(List<String> ids) throws DotDataException {
+		HibernateUtil hu = new HibernateUtil(ContentletVersionInfo.class);
+		hu.setQuery("from " + ContentletVersionInfo.class.getName() + " where identifier in (" + placeholders(ids.size()) + ")");
+		for (String id : ids) {
+			hu.setParam(id);
+		}
+		for (ContentletVersionInfo cvi : (List<ContentletVersionInfo>) hu.list()) {
+			versionInfos.put(cvi.getIdentifier() + "_" + cvi.getLang(), cvi);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadWorkflowTasks(List<String> ids) throws DotDataException {
+		HibernateUtil hu = new HibernateUtil(WorkflowTask.class);
+		hu.setQuery("from workflow_task in class com.dotmarketing.portlets.workflows.model.WorkflowTask where webasset in ("
+				+ placeholders(ids.size()) + ")");
+		for (String id : ids) {
+			hu.setParam(id);
+		}
+		for (WorkflowTask task : (List<WorkflowTask>) hu.list()) {
+			// same as findTaskByContentlet, the first task of the identifier
+			if (!workflowTasks.containsKey(task.getWebasset())) {
+				workflowTasks.put(task.getWebasset(), task);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadRelationships(List<String> ids) throws DotDataException {
+		String in = placeholders(ids.size());
+		DotConnect db = new DotConnect();
+		db.setSQL("select * from tree where parent in (" + in + ") or child in (" + in + ") order by tree_order asc");
+		for (String id : ids) {
+			db.addParam(id);
+		}
+		for (String id : ids) {
+			db.addParam(id);
+		}
+		Set<String> chunk = new HashSet<String>(ids);
+		for (Map<String, Object> row : (List<Map<String, Object>>) db.loadObjectResults()) {
+			String parent = row.get("parent").toString();
+			String child = row.get("child").toString();
+			if (chunk.contains(parent)) {
+				addTo(relationships, parent, row);
+			}
+			if (chunk.contains(child) && !child.equals(parent)) {
+				addTo(relationships, child, row);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void loadCategories(List<String> inodes) throws DotDataException {
+		DotConnect db = new DotConnect();
+		db.setSQL("select tree.child as con_inode, category.category_velocity_var_name as cat_velocity_var "
+				+ " from category join tree on (tree.parent = category.inode) where tree.child in (" + placeholders(inodes.size()) + ")");
+		for (String inode : inodes) {
+			db.addParam(inode);
+		}
+		for (Map<String, String> row : (List<Map<String, String>>) db.loadResults()) {
+			addTo(categories, row.get("con_inode"), row.get("cat_velocity_var"));
+		}
+	}
+
+	private void loadPermissions(List<Permissionable> permissionables) throws DotDataException {
+		try {
+			Map<Permissionable, List<Permission>> loaded = APILocator.getPermissionAPI().getPermissions(permissionables, false);
+			for (Map.Entry<Permissionable, List<Permission>> entry : loaded.entrySet()) {
+				permissions.put(((Contentlet) entry.getKey()).getInode(), entry.getValue());
+			}
+		} catch (DotSecurityException e) {
+			// each contentlet will load its own
+			Logger.debug(IndexDocumentBatch.class, "Unable to load the permissions of the batch: " + e.getMessage(), e);
+		}
+	}
+
+	private static <T> void addTo(Map<String, List<T>> map, String key, T value) {
+		List<T> list = map.get(key);
+		if (list == null) {
+			list = new ArrayList<T>();
+			map.put(key, list);
+		}
+		list.add(value);
+	}
+
+	private static String placeholders(int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append('?');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return The identifier of the contentlet, null if the batch does not
+	 *         have it
+	 */
+	Identifier getIdentifier(Contentlet con) {
+		return identifiersById.get(con.getIdentifier());
+	}
+
+	/**
+	 * @return The version info of the contentlet, null if the batch does not
+	 *         have it
+	 */
+	ContentletVersionInfo getVersionInfo(Contentlet con) {
+		return versionInfos.get(con.getIdentifier() + "_" + con.getLanguageId());
+	}
+
+	/**
+	 * @return true if the workflow task of the contentlet, if any, was loaded
+	 *         by the batch
+	 */
+	boolean hasWorkflowTask(Contentlet con) {
+		return identifiers.contains(con.getIdentifier());
+	}
+
+	WorkflowTask getWorkflowTask(Contentlet con) {
+		return workflowTasks.get(con.getIdentifier());
+	}
+
+	/**
+	 * @return The velocity var names of the categories of the contentlet, null
+	 *         if the batch does not cover it
+	 */
+	List<String> getCategories(Contentlet con) {
+		if (!inodes.contains(con.getInode())) {
+			return null;
+		}
+		List<String> list = categories.get(con.getInode());
+		return list != null ? list : new ArrayList<String>();
+	}
+
+	/**
+	 * @return The tree rows where the contentlet is parent or child, ordered by
+	 *         tree_order, null if the batch does not cover it
+	 */
+	List<Map<String, Object>> getRelationships(Contentlet con) {
+		if (!identifiers.contains(con.getIdentifier())) {
+			return null;
+		}
+		List<Map<String, Object>> list = relationships.get(con.getIdentifier());
+		return list != null ? list : new ArrayList<Map<String, Object>>();
+	}
+
+	/**
+	 * @return The permissions of the contentlet, null if the batch does not
+	 *         have them
+	 */
+	List<Permission> getPermissions(Contentlet con) {
+		return permissions.get(con.getInode());
+	}
+
+	/**
+	 * The folders of a batch are few, each one is looked up once.
+	 */
+	boolean hasFolderInode(String hostId, String path) {
+		return folderInodes.containsKey(hostId + ":" + path);
+	}
+
+	String getFolderInode(String hostId, String path) {
+		return folderInodes.get(hostId + ":" + path);
+	}
+
+	void addFolderInode(String hostId, String path, String folderInode) {
+		folderInodes.put(hostId + ":" + path, folderInode);
+	}
+
+}
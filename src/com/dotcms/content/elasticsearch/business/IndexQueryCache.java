@@ -0,0 +1,57 @@
+package com.dotcms.content.elasticsearch.business;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.dotmarketing.business.Cachable;
+
+/**
+ * Keeps the results of the queries sent to the content index, so the same
+ * listing rendered over and over is only searched once.
+ * <p>
+ * Every write to the index bumps the index generation with
+ * {@link #invalidate()}, results loaded before that are no longer returned
+ * (or, within the configured stale window, returned while being reloaded in
+ * the background).
+ * </p>
+ */
+public abstract class IndexQueryCache implements Cachable {
+
+	/**
+	 * Returns the result of the query, running the given loader if it is not
+	 * cached for the current index generation. The permissions of the user
+	 * must already be part of the query.
+	 *
+	 * @param type
+	 *            What the loader returns, i.e. "search" or "count"
+	 * @param index
+	 *            Name of the index searched
+	 * @param query
+	 *            The translated query
+	 * @param sortBy
+	 * @param limit
+	 * @param offset
+	 * @param loader
+	 *            Runs the query against the index, it may be called later from
+	 *            another thread to refresh a stale result
+	 * @return
+	 * @throws Exception
+	 *             The exception thrown by the loader
+	 */
+	public abstract <T> T get(String type, String index, String query, String sortBy, int limit, int offset,
+			Callable<T> loader) throws Exception;
+
+	/**
+	 * Bumps the index generation, on all the nodes of the cluster. To be
+	 * called once the changes are sent to the index.
+	 */
+	public abstract void invalidate();
+
+	/**
+	 * Returns the hit, miss and saved time counters of this cache.
+	 *
+	 * @return
+	 */
+	public abstract Map<String, Object> getStats();
+
+}
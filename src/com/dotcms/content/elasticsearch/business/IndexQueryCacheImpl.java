@@ -0,0 +1,243 @@
+package com.dotcms.content.elasticsearch.business;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dotcms.repackage.com.google.common.cache.Cache;
+import com.dotcms.repackage.com.google.common.cache.CacheBuilder;
+import com.dotmarketing.business.CacheLocator;
+import com.dotmarketing.business.DotCacheAdministrator;
+import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.SingleFlight;
+import com.dotmarketing.util.UUIDGenerator;
+
+/**
+ * Keeps the query results in a local in-memory cache. The current index
+ * generation is a token kept in the {@link DotCacheAdministrator}: removing it
+ * invalidates the results on every node of the cluster, the next lookup
+ * starts a new generation.
+ * <p>
+ * A result loaded less than {@code INDEX_QUERY_CACHE_REFRESH_WINDOW} millis
+ * after the generation started is not cached, as the index may not have been
+ * refreshed with the last changes yet. Results of a previous generation are
+ * still returned up to {@code INDEX_QUERY_CACHE_STALE_MILLIS} after the new
+ * generation started while they are reloaded in the background (disabled by
+ * default).
+ * </p>
+ */
+public class IndexQueryCacheImpl extends IndexQueryCache {
+
+	private static final String GENERATION_KEY = "generation";
+
+	private static String primaryCacheGroup = "IndexQueryCache";
+
+	private final DotCacheAdministrator cache;
+	private final boolean enabled;
+	private final long refreshWindow;
+	private final long staleMillis;
+
+	private final Cache<String, CachedResult> results;
+	private final SingleFlight<String, Object> loads;
+	private final ConcurrentHashMap<String, Boolean> revalidating = new ConcurrentHashMap<String, Boolean>();
+	private final ThreadPoolExecutor revalidator;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong revalidations = new AtomicLong();
+	private final AtomicLong savedNanos = new AtomicLong();
+
+	public IndexQueryCacheImpl() {
+		this.cache = CacheLocator.getCacheAdministrator();
+		this.enabled = Config.getBooleanProperty("INDEX_QUERY_CACHE_ENABLED", true);
+		this.refreshWindow = Config.getIntProperty("INDEX_QUERY_CACHE_REFRESH_WINDOW", 1000);
+		this.staleMillis = Config.getIntProperty("INDEX_QUERY_CACHE_STALE_MILLIS", 0);
+		this.results = CacheBuilder.newBuilder()
+				.maximumSize(Config.getIntProperty("INDEX_QUERY_CACHE_SIZE", 5000))
+				.expireAfterWrite(Config.getIntProperty("INDEX_QUERY_CACHE_TTL", 300), TimeUnit.SECONDS)
+				.concurrencyLevel(Config.getIntProperty("cache.concurrencylevel", 32))
+				.build();
+		this.loads = new SingleFlight<String, Object>(Config.getIntProperty("INDEX_QUERY_CACHE_LOAD_WAIT", 10000));
+		this.revalidator = new ThreadPoolExecutor(1, Config.getIntProperty("INDEX_QUERY_CACHE_REVALIDATE_THREADS", 2),
+				60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(1000), new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "IndexQueryCacheRevalidator");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	@Override
+	public String getPrimaryGroup() {
+		return primaryCacheGroup;
+	}
+
+	@Override
+	public String[] getGroups() {
+		String[] groupNames = { primaryCacheGroup };
+		return groupNames;
+	}
+
+	@Override
+	public void clearCache() {
+		results.invalidateAll();
+		cache.flushGroup(primaryCacheGroup);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(String type, String index, String query, String sortBy, int limit, int offset,
+			final Callable<T> loader) throws Exception {
+		if (!enabled) {
+			return loader.call();
+		}
+
+		final String key = type + "|" + index + "|" + sortBy + "|" + limit + "|" + offset + "|" + query;
+		final Generation generation = currentGeneration();
+
+		CachedResult cached = results.getIfPresent(key);
+		if (cached != null) {
+			if (cached.generation.equals(generation.token)) {
+				hits.incrementAndGet();
+				savedNanos.addAndGet(cached.loadNanos);
+				return (T) cached.value;
+			}
+			if (staleMillis > 0 && System.currentTimeMillis() - generation.since <= staleMillis) {
+				staleHits.incrementAndGet();
+				savedNanos.addAndGet(cached.loadNanos);
+				revalidate(key, generation, loader);
+				return (T) cached.value;
+			}
+		}
+
+		misses.incrementAndGet();
+		return (T) loads.execute(key, new Callable<Object>() {
+			public Object call() throws Exception {
+				return load(key, generation, loader);
+			}
+		});
+	}
+
+	@Override
+	public void invalidate() {
+		if (!enabled) {
+			return;
+		}
+		// the generation is started locally on each node, so the other nodes
+		// may hold one even if this one does not: the removal always goes out
+		cache.remove(GENERATION_KEY, primaryCacheGroup);
+	}
+
+	@Override
+	public Map<String, Object> getStats() {
+		long hitCount = hits.get() + staleHits.get();
+		long total = hitCount + misses.get();
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("enabled", enabled);
+		stats.put("entries", results.size());
+		stats.put("hits", hits.get());
+		stats.put("staleHits", staleHits.get());
+		stats.put("misses", misses.get());
+		stats.put("hitRatio", total > 0 ? (double) hitCount / total : 0d);
+		stats.put("revalidations", revalidations.get());
+		stats.put("coalescedLoads", loads.getCoalesced());
+		stats.put("savedMillis", TimeUnit.NANOSECONDS.toMillis(savedNanos.get()));
+		return stats;
+	}
+
+	private <T> T load(String key, Generation generation, Callable<T> loader) throws Exception {
+		long start = System.nanoTime();
+		T value = loader.call();
+		long elapsed = System.nanoTime() - start;
+		if (value != null && System.currentTimeMillis() - generation.since >= refreshWindow) {
+			results.put(key, new CachedResult(value, generation.token, elapsed));
+		}
+		return value;
+	}
+
+	private <T> void revalidate(final String key, final Generation generation, final Callable<T> loader) {
+		if (revalidating.putIfAbsent(key, Boolean.TRUE) != null) {
+			return;
+		}
+		try {
+			revalidator.execute(new Runnable() {
+				public void run() {
+					try {
+						revalidations.incrementAndGet();
+						load(key, generation, loader);
+					} catch (Exception e) {
+						Logger.debug(IndexQueryCacheImpl.class, "Unable to revalidate index query " + key, e);
+					} finally {
+						revalidating.remove(key);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			revalidating.remove(key);
+		}
+	}
+
+	/**
+	 * Returns the current generation, starting a new one if it was bumped
+	 */
+	private Generation currentGeneration() {
+		Object token = getToken();
+		if (token == null) {
+			synchronized (this) {
+				token = getToken();
+				if (token == null) {
+					token = System.currentTimeMillis() + ":" + UUIDGenerator.generateUuid();
+					cache.put(GENERATION_KEY, token, primaryCacheGroup);
+				}
+			}
+		}
+		return new Generation(token.toString());
+	}
+
+	private Object getToken() {
+		try {
+			return cache.get(GENERATION_KEY, primaryCacheGroup);
+		} catch (DotCacheException e) {
+			Logger.debug(this, "Unable to read the index query cache generation", e);
+			return null;
+		}
+	}
+
+	private static class Generation {
+
+		private final String token;
+		private final long since;
+
+		Generation(String token) {
+			this.token = token;
+			this.since = Long.parseLong(token.substring(0, token.indexOf(':')));
+		}
+
+	}
+
+	private static class CachedResult {
+
+		private final Object value;
+		private final String generation;
+		private final long loadNanos;
+
+		CachedResult(Object value, String generation, long loadNanos) {
+			this.value = value;
+			this.generation = generation;
+			this.loadNanos = loadNanos;
+		}
+
+	}
+
+}
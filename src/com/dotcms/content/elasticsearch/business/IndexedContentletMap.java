@@ -0,0 +1,203 @@
+package com.dotcms.content.elasticsearch.business;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Property map of a {@link Contentlet} built from its index document by
+ * {@link ESMappingAPIImpl#toContentlet(Map)}. It starts with the properties the
+ * index keeps without loss and loads the whole contentlet, from the cache or
+ * the database, the first time any other property is needed. The contentlets
+ * of a page of search results are loaded together, see
+ * {@link IndexedContentletPage}.
+ * <p>
+ * Contentlets hydrated this way are meant to be read. Any write, or any call
+ * that needs to see every property (keySet, entrySet, size...), loads the
+ * full contentlet first, so a partially hydrated contentlet is never saved.
+ * </p>
+ */
+class IndexedContentletMap extends AbstractMap<String, Object> implements Serializable {
+
+	private static final long serialVersionUID = -2617370425813306466L;
+
+	private final String inode;
+	private final Map<String, Object> properties = new ConcurrentHashMap<String, Object>();
+	private volatile boolean loaded = false;
+	private final transient IndexedContentletPage page;
+
+	IndexedContentletMap ( String inode ) {
+		this(inode, null);
+	}
+
+	IndexedContentletMap ( String inode, IndexedContentletPage page ) {
+		this.inode = inode;
+		this.page = page;
+		if ( page != null ) {
+			page.add(this);
+		}
+	}
+
+	String getInode () {
+		return inode;
+	}
+
+	/**
+	 * Sets a property taken from the index document, without loading the full
+	 * contentlet.
+	 */
+	void putHydrated ( String key, Object value ) {
+		if ( value != null ) {
+			properties.put(key, value);
+		}
+	}
+
+	/**
+	 * @return true if the full contentlet was already loaded
+	 */
+	boolean isLoaded () {
+		return loaded;
+	}
+
+	/**
+	 * Sets the properties of the full contentlet, once loaded by the page
+	 *
+	 * @param full The contentlet, null if it was not found
+	 */
+	synchronized void loaded ( Contentlet full ) {
+		if ( loaded ) {
+			return;
+		}
+		loaded = true;
+		if ( full != null ) {
+			properties.putAll(full.getMap());
+		}
+	}
+
+	private void load () {
+		if ( loaded ) {
+			return;
+		}
+		if ( page != null ) {
+			// not holding the lock of this map, the page takes them all
+			page.load();
+			if ( loaded ) {
+				return;
+			}
+		}
+		synchronized ( this ) {
+			if ( loaded ) {
+				return;
+			}
+			loaded = true;
+			try {
+				Contentlet full = APILocator.getContentletAPI().find(inode, APILocator.getUserAPI().getSystemUser(), false);
+				if ( full != null ) {
+					properties.putAll(full.getMap());
+				}
+			} catch ( Exception e ) {
+				Logger.error(IndexedContentletMap.class, "Unable to load contentlet " + inode + " hydrated from the index: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	@Override
+	public Object get ( Object key ) {
+		if ( key == null ) {
+			return null;
+		}
+		Object value = properties.get(key);
+		if ( value == null && !loaded ) {
+			load();
+			value = properties.get(key);
+		}
+		return value;
+	}
+
+	@Override
+	public boolean containsKey ( Object key ) {
+		if ( key == null ) {
+			return false;
+		}
+		if ( properties.containsKey(key) ) {
+			return true;
+		}
+		load();
+		return properties.containsKey(key);
+	}
+
+	@Override
+	public Object put ( String key, Object value ) {
+		load();
+		if ( value == null ) {
+			// same as the default contentlet map, null means remove
+			return properties.remove(key);
+		}
+		return properties.put(key, value);
+	}
+
+	@Override
+	public Object remove ( Object key ) {
+		load();
+		return properties.remove(key);
+	}
+
+	@Override
+	public void clear () {
+		load();
+		properties.clear();
+	}
+
+	@Override
+	public boolean containsValue ( Object value ) {
+		load();
+		return properties.containsValue(value);
+	}
+
+	@Override
+	public int size () {
+		load();
+		return properties.size();
+	}
+
+	@Override
+	public boolean isEmpty () {
+		load();
+		return properties.isEmpty();
+	}
+
+	@Override
+	public Set<String> keySet () {
+		load();
+		return properties.keySet();
+	}
+
+	@Override
+	public Collection<Object> values () {
+		load();
+		return properties.values();
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet () {
+		load();
+		return properties.entrySet();
+	}
+
+	/**
+	 * Serializes the full contentlet as a plain map, never the partial one.
+	 */
+	private Object writeReplace () throws ObjectStreamException {
+		load();
+		return new ConcurrentHashMap<String, Object>(properties);
+	}
+
+}
@@ -0,0 +1,62 @@
+package com.dotcms.content.elasticsearch.business;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.exception.DotSecurityException;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.util.Logger;
+
+/**
+ * The contentlets of a page of search results hydrated from the index. The
+ * first of them that needs a property the index does not keep loads the full
+ * contentlets of the whole page at once, with a single
+ * {@link #findContentlets(List)}, so reading a page of N results costs one
+ * batched load instead of N.
+ */
+class IndexedContentletPage {
+
+	private final List<IndexedContentletMap> maps = new ArrayList<IndexedContentletMap>();
+
+	synchronized void add ( IndexedContentletMap map ) {
+		maps.add(map);
+	}
+
+	/**
+	 * Loads the full contentlets of the page not loaded yet. The ones that
+	 * could not be loaded for an error are left to load one by one.
+	 */
+	synchronized void load () {
+		List<String> inodes = new ArrayList<String>();
+		for ( IndexedContentletMap map : maps ) {
+			if ( !map.isLoaded() ) {
+				inodes.add(map.getInode());
+			}
+		}
+		if ( inodes.isEmpty() ) {
+			return;
+		}
+
+		Map<String, Contentlet> found = new HashMap<String, Contentlet>();
+		try {
+			for ( Contentlet con : findContentlets(inodes) ) {
+				found.put(con.getInode(), con);
+			}
+		} catch ( Exception e ) {
+			Logger.error(IndexedContentletPage.class, "Unable to load " + inodes.size() + " contentlets hydrated from the index: " + e.getMessage(), e);
+			return;
+		}
+		for ( IndexedContentletMap map : maps ) {
+			map.loaded(found.get(map.getInode()));
+		}
+	}
+
+	protected List<Contentlet> findContentlets ( List<String> inodes ) throws DotDataException, DotSecurityException {
+		return APILocator.getContentletAPI().findContentlets(inodes);
+	}
+
+}
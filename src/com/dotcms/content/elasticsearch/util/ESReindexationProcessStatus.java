@@ -2,13 +2,17 @@ package com.dotcms.content.elasticsearch.util;
 
 import java.io.Serializable;
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 
 import com.dotcms.content.elasticsearch.business.ESContentletIndexAPI;
 import com.dotcms.content.elasticsearch.business.IndiciesAPI.IndiciesInfo;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.common.reindex.ReindexThread;
+import com.dotmarketing.common.reindex.ReindexWorkerStats;
 import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
@@ -69,6 +73,15 @@ public class ESReindexationProcessStatus implements Serializable {
 	            theMap.put("lastIndexationProgress", getLastIndexationProgress());
 	            theMap.put("currentIndexPath", currentIndexPath());
 	            theMap.put("newIndexPath", getNewIndexPath());
+	            List<String> workers = new ArrayList<String>();
+	            // reading the status never starts the reindex thread
+	            ReindexThread thread = ReindexThread.getRunningInstance();
+	            if (thread != null) {
+	                for (ReindexWorkerStats stats : thread.getWorkerStats()) {
+	                    workers.add(stats.toString());
+	                }
+	            }
+	            theMap.put("reindexWorkers", workers);
             }
             return theMap;
         }
@@ -1,5 +1,7 @@
 package com.dotcms.csspreproc;
 
+import java.util.Set;
+
 import com.dotmarketing.business.Cachable;
 import com.liferay.portal.model.User;
 
@@ -10,4 +12,11 @@ public abstract class CSSCache implements Cachable {
     public abstract void remove(String hostId, String uri, boolean live); 
     
     protected abstract void add(CachedCSS cachedCSS);
+    
+    /**
+     * Returns the compiled stylesheets importing the file, as hostId:uri
+     */
+    protected abstract Set<String> getDependents(String hostId, String uri, boolean live);
+    
+    protected abstract void addDependent(String hostId, String uri, boolean live, String dependent);
 }
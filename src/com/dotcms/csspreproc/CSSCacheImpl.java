@@ -1,5 +1,9 @@
 package com.dotcms.csspreproc;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import com.dotcms.csspreproc.CachedCSS.ImportedAsset;
 import com.dotmarketing.beans.Host;
 import com.dotmarketing.business.APILocator;
@@ -37,6 +41,10 @@ public class CSSCacheImpl extends CSSCache {
         return group+":"+hostId+":"+uri+":"+(live?"live":"working");
     }
     
+    protected String buildDependentsKey(String hostId, String uri, boolean live) {
+        return group+":dependents:"+hostId+":"+uri+":"+(live?"live":"working");
+    }
+    
     protected boolean isValid(CachedCSS cssObj, User user) {
         for(ImportedAsset asset : cssObj.imported) {
             CachedCSS importedCache = get(cssObj.hostId, asset.uri, cssObj.live, user);
@@ -91,4 +99,35 @@ public class CSSCacheImpl extends CSSCache {
         cache.put(buildKey(cc.hostId,cc.uri,cc.live), cc, group);
     }
     
+    /*
+     * The import graph lives in the cache region along with the compiled output, so it goes
+     * wherever the region is kept (disk, shared providers). It is not removed with the entries:
+     * it is still needed once the imported file changes.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Set<String> getDependents(String hostId, String uri, boolean live) {
+        try {
+            Set<String> dependents = (Set<String>)cache.get(buildDependentsKey(hostId,uri,live), group);
+            if(dependents!=null) {
+                return new HashSet<String>(dependents);
+            }
+        }
+        catch(Exception ex) {
+            Logger.debug(this, "no dependents for "+hostId+":"+uri, ex);
+        }
+        return Collections.emptySet();
+    }
+    
+    @Override
+    protected synchronized void addDependent(String hostId, String uri, boolean live, String dependent) {
+        Set<String> dependents = getDependents(hostId, uri, live);
+        if(dependents.contains(dependent)) {
+            return;
+        }
+        dependents = new HashSet<String>(dependents);
+        dependents.add(dependent);
+        cache.put(buildDependentsKey(hostId,uri,live), dependents, group);
+    }
+    
 }
@@ -0,0 +1,237 @@
+package com.dotcms.csspreproc;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dotcms.csspreproc.CachedCSS.ImportedAsset;
+import com.dotcms.enterprise.csspreproc.CSSCompiler;
+import com.dotcms.enterprise.csspreproc.LessCompiler;
+import com.dotcms.enterprise.csspreproc.SassCompiler;
+import com.dotmarketing.beans.Host;
+import com.dotmarketing.beans.Identifier;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.business.CacheLocator;
+import com.dotmarketing.db.HibernateUtil;
+import com.dotmarketing.exception.DotHibernateException;
+import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.InodeUtils;
+import com.dotmarketing.util.Logger;
+import com.liferay.portal.model.User;
+
+/**
+ * Compiles the SASS/LESS stylesheets into the {@link CSSCache}, and keeps track of the files each
+ * of them imports. When one of those files is published the stylesheets importing it are compiled
+ * again in the background (<code>CSS_PREPROC_THREADS</code> threads), so the first request for them
+ * finds them compiled. The stylesheets are compiled once at a time: a request for a stylesheet
+ * being compiled waits for it.
+ */
+public class CSSPreProcessService {
+
+    private static final CSSPreProcessService instance = new CSSPreProcessService();
+
+    private final ThreadPoolExecutor compilers;
+
+    // hostId:uri of the stylesheets waiting to be compiled
+    private final ConcurrentMap<String, Boolean> pending = new ConcurrentHashMap<String, Boolean>();
+
+    private CSSPreProcessService() {
+        int threads = Math.max(1, Config.getIntProperty("CSS_PREPROC_THREADS", 2));
+        compilers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(Math.max(1, Config.getIntProperty("CSS_PREPROC_QUEUE_SIZE", 500))),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "CSSPreProcess-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    public static CSSPreProcessService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the compiler for the stylesheet, by its extension. Null if it is not one
+     */
+    public static Class<? extends CSSCompiler> getCompilerClass(String uri) {
+        String ext = uri.substring(uri.lastIndexOf('.') + 1).toLowerCase();
+        if(ext.equals("scss") || ext.equals("sass")) {
+            return SassCompiler.class;
+        }
+        if(ext.equals("less")) {
+            return LessCompiler.class;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the compiled stylesheet, compiling it if it is not in cache
+     *
+     * @param host Host of the stylesheet
+     * @param uri Requested uri, with the .css extension
+     * @param live
+     * @param user
+     * @param compilerClass
+     * @return The cached entry, null if the stylesheet does not exist
+     */
+    public CachedCSS compile(Host host, String uri, boolean live, User user, Class<? extends CSSCompiler> compilerClass) throws Exception {
+        CSSCompiler compiler = compilerClass.getConstructor(Host.class,String.class,boolean.class).newInstance(host,uri,live);
+        String actualUri =  uri.substring(0, uri.lastIndexOf('.')) + "." + compiler.getDefaultExtension();
+        Identifier ident = APILocator.getIdentifierAPI().find(host, actualUri);
+        if(ident==null || !InodeUtils.isSet(ident.getId())) {
+            return null;
+        }
+        long defLang=APILocator.getLanguageAPI().getDefaultLanguage().getId();
+
+        synchronized(ident.getId().intern()) {
+            CachedCSS cache = CacheLocator.getCSSCache().get(host.getIdentifier(), actualUri, live, user);
+            if(cache!=null && cache.data!=null) {
+                return cache;
+            }
+            Logger.debug(this, "compiling css data for "+host.getHostname()+":"+uri);
+
+            try {
+                compiler.compile();
+            }
+            catch(Throwable ex) {
+                Logger.error(this, "Error compiling "+host.getHostname()+":"+uri, ex);
+                throw new Exception(ex);
+            }
+
+            // build cache object
+            ContentletVersionInfo vinfo = APILocator.getVersionableAPI().getContentletVersionInfo(ident.getId(), defLang);
+            CachedCSS newcache = new CachedCSS();
+            newcache.data = compiler.getOutput();
+            newcache.hostId = host.getIdentifier();
+            newcache.uri = actualUri;
+            newcache.live = live;
+            newcache.modDate = vinfo.getVersionTs();
+            newcache.imported = new ArrayList<ImportedAsset>();
+
+            // the stylesheet is compiled again when published, as when any of its imports is
+            String dependent = host.getIdentifier() + ":" + actualUri;
+            CacheLocator.getCSSCache().addDependent(ident.getHostId(), ident.getPath(), live, dependent);
+
+            for(String importUri : compiler.getAllImportedURI()) {
+                // newcache entry for the imported asset
+                ImportedAsset asset = new ImportedAsset();
+                asset.uri = importUri;
+                Identifier ii;
+                if(importUri.startsWith("//")) {
+                    importUri=importUri.substring(2);
+                    String hn=importUri.substring(0, importUri.indexOf('/'));
+                    String uu=importUri.substring(importUri.indexOf('/'));
+                    ii = APILocator.getIdentifierAPI().find(APILocator.getHostAPI().findByName(hn, user, live),uu);
+                }
+                else {
+                    ii = APILocator.getIdentifierAPI().find(host, importUri);
+                }
+                ContentletVersionInfo impInfo = APILocator.getVersionableAPI().getContentletVersionInfo(ii.getId(), defLang);
+                asset.modDate = impInfo.getVersionTs();
+                newcache.imported.add(asset);
+                CacheLocator.getCSSCache().addDependent(ii.getHostId(), ii.getPath(), live, dependent);
+                Logger.debug(this, host.getHostname()+":"+actualUri+" imports-> "+importUri);
+
+                // actual cache entry for the imported asset. If needed
+                synchronized(ii.getId().intern()) {
+                    if(CacheLocator.getCSSCache().get(ii.getHostId(), importUri, live, user)==null) {
+                        CachedCSS entry = new CachedCSS();
+                        entry.data = null;
+                        entry.hostId = ii.getHostId();
+                        entry.imported = new ArrayList<ImportedAsset>();
+                        entry.live = live;
+                        entry.modDate = impInfo.getVersionTs();
+                        entry.uri = importUri;
+                        CacheLocator.getCSSCache().add(entry);
+                    }
+                }
+            }
+            CacheLocator.getCSSCache().add(newcache);
+            return newcache;
+        }
+    }
+
+    /**
+     * Compiles again, once the transaction commits, the live stylesheets that import the file
+     * (or are the file)
+     *
+     * @param hostId Host of the published file
+     * @param uri Path of the published file
+     */
+    public void recompileDependents(final String hostId, final String uri) {
+        try {
+            HibernateUtil.addCommitListener(new Runnable() {
+                public void run() {
+                    for(String dependent : CacheLocator.getCSSCache().getDependents(hostId, uri, true)) {
+                        submit(dependent);
+                    }
+                }
+            });
+        }
+        catch(DotHibernateException ex) {
+            Logger.warn(this, "Unable to schedule the stylesheets importing "+uri+": "+ex.getMessage(), ex);
+        }
+    }
+
+    private void submit(final String dependent) {
+        if(pending.putIfAbsent(dependent, Boolean.TRUE)!=null) {
+            return;
+        }
+        try {
+            compilers.execute(new Runnable() {
+                public void run() {
+                    pending.remove(dependent);
+                    prewarm(dependent);
+                }
+            });
+        }
+        catch(RejectedExecutionException ex) {
+            // compiled on the first request instead
+            pending.remove(dependent);
+            Logger.debug(this, "too many stylesheets to compile, leaving "+dependent+" for its first request");
+        }
+    }
+
+    private void prewarm(String dependent) {
+        String hostId = dependent.substring(0, dependent.indexOf(':'));
+        String actualUri = dependent.substring(dependent.indexOf(':') + 1);
+        try {
+            Class<? extends CSSCompiler> compilerClass = getCompilerClass(actualUri);
+            if(compilerClass==null) {
+                return;
+            }
+            User user = APILocator.getUserAPI().getSystemUser();
+            Host host = APILocator.getHostAPI().find(hostId, user, false);
+            if(host==null || !InodeUtils.isSet(host.getInode())) {
+                return;
+            }
+            String uri = actualUri.substring(0, actualUri.lastIndexOf('.')) + ".css";
+            long start = System.currentTimeMillis();
+            if(compile(host, uri, true, user, compilerClass)!=null) {
+                Logger.info(this, "compiled "+host.getHostname()+":"+actualUri+" in "+(System.currentTimeMillis()-start)+"ms");
+            }
+        }
+        catch(Exception ex) {
+            Logger.warn(this, "Unable to compile "+dependent+": "+ex.getMessage(), ex);
+        }
+        finally {
+            try {
+                HibernateUtil.closeSession();
+            } catch (DotHibernateException e) {
+                Logger.warn(this, "Exception while hibernate session close",e);
+            }
+        }
+    }
+
+}
@@ -16,7 +16,6 @@ import com.dotmarketing.cache.WorkingCache;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotHibernateException;
 import com.dotmarketing.exception.DotSecurityException;
-import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
 import com.dotmarketing.portlets.fileassets.business.FileAsset;
 import com.dotmarketing.util.InodeUtils;
 import com.dotmarketing.util.Logger;
@@ -29,7 +28,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.ArrayList;
 import java.util.Date;
 
 public class CSSPreProcessServlet extends HttpServlet {
@@ -124,89 +122,24 @@ public class CSSPreProcessServlet extends HttpServlet {
             
             CachedCSS cache = CacheLocator.getCSSCache().get(host.getIdentifier(), actualUri, live, user);
             
-            byte[] responseData=null;
-            Date cacheMaxDate=null;
-            CachedCSS cacheObject=null;
-            
             if(cache==null || cache.data==null) {
                 // do compile!
-                synchronized(ident.getId().intern()) {
-                    cache = CacheLocator.getCSSCache().get(host.getIdentifier(), actualUri, live, user);
-                    if(cache==null || cache.data==null) {
-                        Logger.debug(this, "compiling css data for "+host.getHostname()+":"+uri);
-                        
-                        try {
-                            compiler.compile();
-                        }
-                        catch(Throwable ex) {
-                            Logger.error(this, "Error compiling "+host.getHostname()+":"+uri, ex);
-                            throw new Exception(ex);
-                        }
-                        
-                        // build cache object
-                        ContentletVersionInfo vinfo = APILocator.getVersionableAPI().getContentletVersionInfo(ident.getId(), defLang);
-                        CachedCSS newcache = new CachedCSS();
-                        newcache.data = compiler.getOutput();
-                        newcache.hostId = host.getIdentifier();
-                        newcache.uri = actualUri;
-                        newcache.live = live;
-                        newcache.modDate = vinfo.getVersionTs();
-                        newcache.imported = new ArrayList<ImportedAsset>();
-                        for(String importUri : compiler.getAllImportedURI()) {
-                            // newcache entry for the imported asset
-                            ImportedAsset asset = new ImportedAsset();
-                            asset.uri = importUri;
-                            Identifier ii;
-                            if(importUri.startsWith("//")) {
-                                importUri=importUri.substring(2);
-                                String hn=importUri.substring(0, importUri.indexOf('/'));
-                                String uu=importUri.substring(importUri.indexOf('/'));
-                                ii = APILocator.getIdentifierAPI().find(APILocator.getHostAPI().findByName(hn, user, live),uu);
-                            }
-                            else {
-                                ii = APILocator.getIdentifierAPI().find(host, importUri);
-                            }
-                            ContentletVersionInfo impInfo = APILocator.getVersionableAPI().getContentletVersionInfo(ii.getId(), defLang);
-                            asset.modDate = impInfo.getVersionTs();
-                            newcache.imported.add(asset);
-                            Logger.debug(this, host.getHostname()+":"+actualUri+" imports-> "+importUri);
-                            
-                            // actual cache entry for the imported asset. If needed
-                            synchronized(ii.getId().intern()) {
-                                if(CacheLocator.getCSSCache().get(ii.getHostId(), importUri, live, user)==null) {
-                                    CachedCSS entry = new CachedCSS();
-                                    entry.data = null;
-                                    entry.hostId = ii.getHostId();
-                                    entry.imported = new ArrayList<ImportedAsset>();
-                                    entry.live = live;
-                                    entry.modDate = impInfo.getVersionTs();
-                                    entry.uri = importUri;
-                                    CacheLocator.getCSSCache().add(entry);
-                                }
-                            }
-                        }
-                        CacheLocator.getCSSCache().add(newcache);
-                        cacheMaxDate = newcache.getMaxDate();
-                        cacheObject = newcache;
-                        responseData = compiler.getOutput();
-                    }
-                }
+                cache = CSSPreProcessService.getInstance().compile(host, uri, live, user, compilerClass);
+            }
+            else {
+                Logger.debug(this, "using cached css data for "+host.getHostname()+":"+uri);
             }
             
-            if(responseData==null) {
-                if(cache!=null && cache.data!=null) {
-                    // if css is cached an valid is used as response
-                    responseData = cache.data;
-                    cacheMaxDate = cache.getMaxDate();
-                    cacheObject = cache;
-                    Logger.debug(this, "using cached css data for "+host.getHostname()+":"+uri);
-                }
-                else {
-                    resp.sendError(500, "no data!");
-                    return;
-                }
+            if(cache==null || cache.data==null) {
+                resp.sendError(500, "no data!");
+                return;
             }
             
+            // if css is cached an valid is used as response
+            byte[] responseData = cache.data;
+            Date cacheMaxDate = cache.getMaxDate();
+            CachedCSS cacheObject = cache;
+            
             
             boolean doDownload = true;
             
@@ -385,6 +385,12 @@ public class ESDistributedJournalFactoryImpl<T> extends DistributedJournalFactor
     @Override
     protected List<IndexJournal<T>> findContentReindexEntriesToReindex(boolean includeFailedRecords)
             throws DotDataException {
+        return findContentReindexEntriesToReindex(includeFailedRecords, Config.getIntProperty("REINDEX_RECORDS_TO_FETCH", 50));
+    }
+
+    @Override
+    protected List<IndexJournal<T>> findContentReindexEntriesToReindex(boolean includeFailedRecords, int recordsToFetch)
+            throws DotDataException {
         DotConnect dc = new DotConnect();
         List<IndexJournal<T>> x = new ArrayList<IndexJournal<T>>();
         List<Map<String, Object>> results;
@@ -393,8 +399,6 @@ public class ESDistributedJournalFactoryImpl<T> extends DistributedJournalFactor
 
         try {
 
-            //Get the number of records to fetch
-            int recordsToFetch = Config.getIntProperty("REINDEX_RECORDS_TO_FETCH", 50);
             int priorityLevel = REINDEX_JOURNAL_PRIORITY_NEWINDEX;
             if (includeFailedRecords) {
             	priorityLevel = REINDEX_JOURNAL_PRIORITY_FAILED_FIRST_ATTEMPT + (RETRY_FAILED_INDEX_TIMES);
@@ -622,7 +626,7 @@ public class ESDistributedJournalFactoryImpl<T> extends DistributedJournalFactor
         return journalList;
     }
 
-    public class ClusterMutex {
+    public static class ClusterMutex {
         private String myLock = "lock table dist_lock write";
         private String myCommit = "unlock tables";
 
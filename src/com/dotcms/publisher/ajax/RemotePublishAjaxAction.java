@@ -540,7 +540,6 @@ public class RemotePublishAjaxAction extends AjaxAction {
         //BUNDLERS
 
         List<Class<IBundler>> bundlers = new ArrayList<Class<IBundler>>();
-        List<IBundler> confBundlers = new ArrayList<IBundler>();
 
         Publisher publisher = new PushPublisher();
         publisher.init( pconf );
@@ -558,15 +557,7 @@ public class RemotePublishAjaxAction extends AjaxAction {
 
         // Run bundlers
         BundlerUtil.writeBundleXML( pconf );
-        for ( Class<IBundler> c : bundlers ) {
-
-            IBundler bundler = c.newInstance();
-            confBundlers.add( bundler );
-            bundler.setConfig( pconf );
-            BundlerStatus bundlerStatus = new BundlerStatus( bundler.getClass().getName() );
-            //Generate the bundler
-            bundler.generate( bundleRoot, bundlerStatus );
-        }
+        List<IBundler> confBundlers = BundlerExecutor.generate( bundlers, pconf, bundleRoot, new PublishStatus() );
 
         pconf.setBundlers( confBundlers );
 
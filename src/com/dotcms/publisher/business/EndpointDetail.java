@@ -4,6 +4,9 @@ public class EndpointDetail {
 	private int status;
 	private String info;
 	private String stackTrace;
+	private long bytesSent;
+	private long transferMillis;
+	private int retries;
 	
 	public int getStatus() {
 		return status;
@@ -23,4 +26,28 @@ public class EndpointDetail {
 	public void setStackTrace(String stackTrace) {
 		this.stackTrace = stackTrace;
 	}
+	public long getBytesSent() {
+		return bytesSent;
+	}
+	public void setBytesSent(long bytesSent) {
+		this.bytesSent = bytesSent;
+	}
+	public long getTransferMillis() {
+		return transferMillis;
+	}
+	public void setTransferMillis(long transferMillis) {
+		this.transferMillis = transferMillis;
+	}
+	public int getRetries() {
+		return retries;
+	}
+	public void setRetries(int retries) {
+		this.retries = retries;
+	}
+	/**
+	 * @return bytes per second sent to the endpoint, 0 if nothing was sent
+	 */
+	public long getTransferRate() {
+		return transferMillis > 0 ? bytesSent * 1000 / transferMillis : 0;
+	}
 }
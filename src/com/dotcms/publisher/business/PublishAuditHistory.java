@@ -111,8 +111,26 @@ public class PublishAuditHistory implements Serializable {
 			EndpointDetail temp = groupMap.get(endpointId);
 			temp.setInfo(detail.getInfo());
 			temp.setStatus(detail.getStatus());
+			updateTransfer(temp, detail);
 		}
 	}
+
+	/**
+	 * Records how the bundle was sent to the endpoint (bytes, time and
+	 * retries) without changing its status
+	 */
+	public void updateEndpointTransfer(String groupId, String endpointId, EndpointDetail detail) {
+		Map<String, EndpointDetail> groupMap = endpointsMap.get(groupId);
+		if(groupMap != null && groupMap.get(endpointId) != null) {
+			updateTransfer(groupMap.get(endpointId), detail);
+		}
+	}
+
+	private void updateTransfer(EndpointDetail temp, EndpointDetail detail) {
+		temp.setBytesSent(detail.getBytesSent());
+		temp.setTransferMillis(detail.getTransferMillis());
+		temp.setRetries(detail.getRetries());
+	}
 	
 	public String getSerialized() {
 		XStream xstream=new XStream(new DomDriver());
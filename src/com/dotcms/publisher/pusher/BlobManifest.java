@@ -0,0 +1,149 @@
+package com.dotcms.publisher.pusher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.dotmarketing.util.Config;
+
+/**
+ * Lists the files of a bundle of at least <code>PUSH_PUBLISHING_BLOB_MIN_SIZE_KB</code>, by
+ * their path in the bundle, along with their MD5. These files (blobs) are sent once to each
+ * endpoint: the receiver keeps them by their MD5 and the sender leaves out of the bundle the ones
+ * the endpoint already has. The manifest travels in the bundle as {@link #FILE_NAME}, so the
+ * receiver knows which files to keep and which ones to put back.
+ */
+public class BlobManifest {
+
+	public static final String FILE_NAME = "bundle.blobs";
+
+	// path in the bundle -> MD5
+	private final Map<String, String> blobs;
+
+	private BlobManifest(Map<String, String> blobs) {
+		this.blobs = Collections.unmodifiableMap(blobs);
+	}
+
+	/**
+	 * Lists the blobs of the bundle, computing their MD5
+	 *
+	 * @param bundleRoot
+	 * @return
+	 * @throws IOException
+	 */
+	public static BlobManifest build(File bundleRoot) throws IOException {
+		long minSize = Config.getIntProperty("PUSH_PUBLISHING_BLOB_MIN_SIZE_KB", 64) * 1024L;
+		Map<String, String> blobs = new TreeMap<String, String>();
+		collect(bundleRoot, "", minSize, blobs);
+		return new BlobManifest(blobs);
+	}
+
+	/**
+	 * Manifest of no blobs, for bundles sent in full
+	 */
+	public static BlobManifest empty() {
+		return new BlobManifest(new TreeMap<String, String>());
+	}
+
+	/**
+	 * Reads the manifest of an extracted bundle
+	 *
+	 * @param bundleFolder
+	 * @return The manifest or null if the bundle has none
+	 * @throws IOException
+	 */
+	public static BlobManifest read(File bundleFolder) throws IOException {
+		File file = new File(bundleFolder, FILE_NAME);
+		if (!file.exists()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		Map<String, String> blobs = new TreeMap<String, String>();
+		for (String path : properties.stringPropertyNames()) {
+			blobs.put(path, properties.getProperty(path));
+		}
+		return new BlobManifest(blobs);
+	}
+
+	/**
+	 * Writes the manifest in the root of the bundle
+	 *
+	 * @param bundleRoot
+	 * @throws IOException
+	 */
+	public void write(File bundleRoot) throws IOException {
+		Properties properties = new Properties();
+		properties.putAll(blobs);
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(bundleRoot, FILE_NAME)));
+		try {
+			properties.store(out, null);
+		} finally {
+			out.close();
+		}
+	}
+
+	public boolean isEmpty() {
+		return blobs.isEmpty();
+	}
+
+	/**
+	 * @return The MD5 of each path in the bundle
+	 */
+	public Map<String, String> getBlobs() {
+		return blobs;
+	}
+
+	public Set<String> getDigests() {
+		return new HashSet<String>(blobs.values());
+	}
+
+	/**
+	 * @return The files of the bundle with any of the given MD5s
+	 */
+	public Set<File> getFiles(File bundleRoot, Collection<String> digests) {
+		Set<File> files = new HashSet<File>();
+		for (Map.Entry<String, String> blob : blobs.entrySet()) {
+			if (digests.contains(blob.getValue())) {
+				files.add(new File(bundleRoot, blob.getKey()));
+			}
+		}
+		return files;
+	}
+
+	private static void collect(File dir, String prefix, long minSize, Map<String, String> blobs) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (file.isHidden()) {
+				continue;
+			}
+			String path = prefix + file.getName();
+			if (file.isDirectory()) {
+				collect(file, path + "/", minSize, blobs);
+			} else if (file.length() >= minSize && !path.equals(FILE_NAME)) {
+				blobs.put(path, PushUtils.digest(file));
+			}
+		}
+	}
+
+}
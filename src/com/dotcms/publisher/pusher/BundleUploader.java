@@ -0,0 +1,225 @@
+package com.dotcms.publisher.pusher;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.dotcms.publisher.business.EndpointDetail;
+import com.dotcms.publisher.endpoint.bean.PublishingEndPoint;
+import com.dotcms.repackage.com.sun.jersey.api.client.Client;
+import com.dotcms.repackage.com.sun.jersey.api.client.ClientHandlerException;
+import com.dotcms.repackage.com.sun.jersey.api.client.ClientResponse;
+import com.dotcms.repackage.com.sun.jersey.multipart.FormDataMultiPart;
+import com.dotcms.repackage.com.sun.jersey.multipart.file.FileDataBodyPart;
+import com.dotcms.repackage.com.sun.jersey.multipart.file.StreamDataBodyPart;
+import com.dotcms.repackage.javax.ws.rs.core.MediaType;
+import com.dotcms.repackage.org.apache.commons.httpclient.HttpStatus;
+import com.dotcms.repackage.org.apache.commons.io.input.BoundedInputStream;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UUIDGenerator;
+
+/**
+ * Sends a bundle to an endpoint in chunks of
+ * <code>PUSH_PUBLISHING_CHUNK_SIZE_KB</code>. The receiver appends each chunk
+ * to a partial file named after the MD5 of the bundle and answers with the
+ * offset it has, so a failed chunk is sent again from that offset instead of
+ * sending the whole bundle again. Once the last chunk is received the
+ * receiver checks the MD5 and starts publishing the bundle.
+ * <p>
+ * Every chunk carries the id of the upload, so a chunk sent again once the
+ * bundle is complete (its response was lost) is answered with the length of
+ * the bundle instead of being taken as the start of a new upload.
+ * </p>
+ * <p>
+ * Endpoints without the chunked upload get the whole bundle in one request,
+ * the way it was always sent.
+ * </p>
+ * <p>
+ * One uploader is shared by the threads pushing the bundle to each endpoint.
+ * </p>
+ */
+public class BundleUploader {
+
+	public static final String UPLOAD_PATH = "/api/bundlePublisher/upload";
+	public static final String PUBLISH_PATH = "/api/bundlePublisher/publish";
+
+	/**
+	 * Header with the length of the partial bundle on the receiver
+	 */
+	public static final String OFFSET_HEADER = "X-Bundle-Offset";
+
+	private final Client client;
+	private final File bundle;
+	private final String bundleName;
+	private final long size;
+	private final String digest;
+	private final int chunkSize;
+	private final int maxRetries;
+	private final long retryWait;
+
+	public BundleUploader(Client client, File bundle, String bundleName) throws IOException {
+		this.client = client;
+		this.bundle = bundle;
+		this.bundleName = bundleName;
+		this.size = bundle.length();
+		this.digest = PushUtils.digest(bundle);
+		this.chunkSize = Config.getIntProperty("PUSH_PUBLISHING_CHUNK_SIZE_KB", 4096) * 1024;
+		this.maxRetries = Config.getIntProperty("PUSH_PUBLISHING_UPLOAD_RETRIES", 5);
+		this.retryWait = Config.getIntProperty("PUSH_PUBLISHING_UPLOAD_RETRY_WAIT", 1000);
+	}
+
+	/**
+	 * Sends the bundle to the endpoint, recording the bytes sent, the time it
+	 * took and the retries in the given detail.
+	 *
+	 * @param endpoint
+	 * @param authToken
+	 *            Encrypted token of the endpoint
+	 * @param detail
+	 * @return The HTTP status of the last response of the endpoint
+	 * @throws Exception
+	 *             If the bundle could not be sent after all the retries
+	 */
+	public int upload(PublishingEndPoint endpoint, String authToken, String groupId, EndpointDetail detail)
+			throws Exception {
+		long start = System.currentTimeMillis();
+		String uploadId = UUIDGenerator.generateUuid();
+		long offset = 0;
+		long sent = 0;
+		int retries = 0;
+		int status = HttpStatus.SC_OK;
+		boolean complete = false;
+		try {
+			do {
+				long length = Math.min(chunkSize, size - offset);
+				ClientResponse response = null;
+				try {
+					response = postChunk(endpoint, authToken, groupId, uploadId, offset, length);
+					status = response.getStatus();
+				} catch (ClientHandlerException e) {
+					if (++retries > maxRetries) {
+						throw e;
+					}
+					Logger.warn(this, "Unable to send bundle chunk to endpoint " + endpoint.getId() + " at offset "
+							+ offset + ", retrying: " + e.getMessage());
+					sleep(retries);
+					continue;
+				}
+
+				try {
+					if (status == HttpStatus.SC_NOT_FOUND && offset == 0) {
+						// the endpoint does not support chunks
+						response.close();
+						response = null;
+						status = postWhole(endpoint, authToken, groupId);
+						if (status == HttpStatus.SC_OK) {
+							sent += size;
+						}
+						return status;
+					}
+
+					if (status == HttpStatus.SC_OK) {
+						sent += length;
+						offset = getOffset(response, offset + length);
+						complete = offset >= size;
+					} else if (status == HttpStatus.SC_CONFLICT) {
+						// resume from what the endpoint has
+						offset = getOffset(response, 0);
+						if (++retries > maxRetries) {
+							return status;
+						}
+					} else if (status == HttpStatus.SC_UNAUTHORIZED) {
+						return status;
+					} else {
+						if (++retries > maxRetries) {
+							return status;
+						}
+						Logger.warn(this, "Endpoint " + endpoint.getId() + " returned " + status
+								+ " for bundle chunk at offset " + offset + ", retrying");
+						// the endpoint answers with a conflict if it does not have this offset
+						sleep(retries);
+					}
+				} finally {
+					if (response != null) {
+						response.close();
+					}
+				}
+			} while (!complete);
+			return status;
+		} finally {
+			detail.setBytesSent(sent);
+			detail.setTransferMillis(System.currentTimeMillis() - start);
+			detail.setRetries(retries);
+		}
+	}
+
+	private ClientResponse postChunk(PublishingEndPoint endpoint, String authToken, String groupId, String uploadId,
+			long offset, long length) throws IOException {
+		InputStream in = new FileInputStream(bundle);
+		try {
+			long skipped = 0;
+			while (skipped < offset) {
+				long n = in.skip(offset - skipped);
+				if (n <= 0) {
+					throw new IOException("Unable to seek bundle " + bundle.getName() + " to " + offset);
+				}
+				skipped += n;
+			}
+			FormDataMultiPart form = form(authToken, groupId, endpoint);
+			form.field("FILE_NAME", bundle.getName());
+			form.field("UPLOAD_ID", uploadId);
+			form.field("OFFSET", String.valueOf(offset));
+			form.field("BUNDLE_SIZE", String.valueOf(size));
+			form.field("BUNDLE_DIGEST", digest);
+			form.bodyPart(new StreamDataBodyPart("chunk", new BoundedInputStream(in, length), bundle.getName(),
+					MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+			return client.resource(endpoint.toURL() + UPLOAD_PATH).type(MediaType.MULTIPART_FORM_DATA)
+					.post(ClientResponse.class, form);
+		} finally {
+			in.close();
+		}
+	}
+
+	private int postWhole(PublishingEndPoint endpoint, String authToken, String groupId) {
+		FormDataMultiPart form = form(authToken, groupId, endpoint);
+		form.bodyPart(new FileDataBodyPart("bundle", bundle, MediaType.MULTIPART_FORM_DATA_TYPE));
+
+		ClientResponse response = client.resource(endpoint.toURL() + PUBLISH_PATH)
+				.type(MediaType.MULTIPART_FORM_DATA).post(ClientResponse.class, form);
+		try {
+			return response.getStatus();
+		} finally {
+			response.close();
+		}
+	}
+
+	private FormDataMultiPart form(String authToken, String groupId, PublishingEndPoint endpoint) {
+		FormDataMultiPart form = new FormDataMultiPart();
+		form.field("AUTH_TOKEN", authToken);
+		form.field("GROUP_ID", groupId);
+		form.field("BUNDLE_NAME", bundleName);
+		form.field("ENDPOINT_ID", endpoint.getId());
+		return form;
+	}
+
+	private long getOffset(ClientResponse response, long defaultOffset) {
+		String offset = response.getHeaders().getFirst(OFFSET_HEADER);
+		try {
+			return (offset != null) ? Long.parseLong(offset) : defaultOffset;
+		} catch (NumberFormatException e) {
+			return defaultOffset;
+		}
+	}
+
+	private void sleep(int retry) {
+		try {
+			Thread.sleep(retryWait * retry);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.dotcms.publisher.pusher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dotcms.publisher.endpoint.bean.PublishingEndPoint;
+import com.dotcms.repackage.com.sun.jersey.api.client.Client;
+import com.dotcms.repackage.com.sun.jersey.api.client.ClientHandlerException;
+import com.dotcms.repackage.com.sun.jersey.api.client.ClientResponse;
+import com.dotcms.repackage.com.sun.jersey.multipart.FormDataMultiPart;
+import com.dotcms.repackage.javax.ws.rs.core.MediaType;
+import com.dotcms.repackage.org.apache.commons.httpclient.HttpStatus;
+import com.dotcms.repackage.org.apache.commons.io.FileUtils;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Gives each endpoint the bundle without the blobs it already has (see {@link BlobManifest}).
+ * The endpoint is asked which of the blobs of the bundle it holds and a bundle leaving those out
+ * is compressed, once for all the endpoints holding the same blobs. Endpoints holding none of
+ * them, or not able to tell, get the full bundle.
+ * <p>
+ * Used by the threads pushing the bundle to each endpoint at the same time.
+ * </p>
+ */
+public class DeltaBundles {
+
+	public static final String BLOBS_PATH = "/api/bundlePublisher/blobs";
+
+	private final Client client;
+	private final File bundleRoot;
+	private final File bundle;
+	private final String bundleName;
+	private final BlobManifest manifest;
+	private final File deltaRoot;
+
+	// blobs left out -> uploader of the bundle without them
+	private final ConcurrentMap<Set<String>, FutureTask<BundleUploader>> uploaders = new ConcurrentHashMap<Set<String>, FutureTask<BundleUploader>>();
+
+	private final AtomicInteger variants = new AtomicInteger();
+
+	/**
+	 * @param client
+	 * @param bundleRoot Folder the bundlers wrote the bundle to
+	 * @param bundle The full bundle file
+	 * @param bundleName
+	 * @param manifest Blobs of the bundle, empty to always send the full bundle
+	 */
+	public DeltaBundles(Client client, File bundleRoot, File bundle, String bundleName, BlobManifest manifest) {
+		this.client = client;
+		this.bundleRoot = bundleRoot;
+		this.bundle = bundle;
+		this.bundleName = bundleName;
+		this.manifest = manifest;
+		this.deltaRoot = new File(bundle.getParentFile(), bundleRoot.getName() + ".delta");
+	}
+
+	/**
+	 * Returns the uploader of the bundle to send to the endpoint, compressing it if no other
+	 * endpoint needed the same one
+	 *
+	 * @param endpoint
+	 * @param authToken Encrypted token of the endpoint
+	 * @return
+	 * @throws Exception
+	 */
+	public BundleUploader getUploader(PublishingEndPoint endpoint, String authToken) throws Exception {
+		final Set<String> held = manifest.isEmpty() ? Collections.<String>emptySet() : negotiate(endpoint, authToken);
+
+		FutureTask<BundleUploader> task = uploaders.get(held);
+		if (task == null) {
+			FutureTask<BundleUploader> created = new FutureTask<BundleUploader>(new Callable<BundleUploader>() {
+				public BundleUploader call() throws Exception {
+					return build(held);
+				}
+			});
+			task = uploaders.putIfAbsent(held, created);
+			if (task == null) {
+				task = created;
+				created.run();
+			}
+		}
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * Deletes the bundles compressed for the endpoints, the full bundle is kept
+	 */
+	public void cleanup() {
+		FileUtils.deleteQuietly(deltaRoot);
+	}
+
+	private BundleUploader build(Set<String> held) throws IOException {
+		if (held.isEmpty()) {
+			return new BundleUploader(client, bundle, bundleName);
+		}
+
+		File dir = new File(deltaRoot, String.valueOf(variants.incrementAndGet()));
+		dir.mkdirs();
+		File delta = new File(dir, bundle.getName());
+
+		Set<File> excluded = manifest.getFiles(bundleRoot, held);
+		List<File> list = new ArrayList<File>(1);
+		list.add(bundleRoot);
+		PushUtils.compressFiles(list, delta, bundleRoot.getAbsolutePath(), excluded);
+
+		Logger.info(this, "Bundle " + bundle.getName() + " without " + excluded.size() + " blobs the endpoint has: "
+				+ delta.length() + " bytes instead of " + bundle.length());
+		return new BundleUploader(client, delta, bundleName);
+	}
+
+	/**
+	 * Asks the endpoint which blobs of the bundle it has
+	 *
+	 * @return The MD5 of the blobs, empty if the endpoint does not keep blobs
+	 */
+	private Set<String> negotiate(PublishingEndPoint endpoint, String authToken) {
+		Set<String> digests = manifest.getDigests();
+		StringBuilder list = new StringBuilder(digests.size() * 33);
+		for (String digest : digests) {
+			list.append(digest).append('\n');
+		}
+
+		FormDataMultiPart form = new FormDataMultiPart();
+		form.field("AUTH_TOKEN", authToken);
+		form.field("DIGESTS", list.toString());
+
+		Set<String> held = new HashSet<String>();
+		try {
+			ClientResponse response = client.resource(endpoint.toURL() + BLOBS_PATH)
+					.type(MediaType.MULTIPART_FORM_DATA).post(ClientResponse.class, form);
+			try {
+				if (response.getStatus() != HttpStatus.SC_OK) {
+					Logger.debug(this, "Endpoint " + endpoint.getId() + " returned " + response.getStatus()
+							+ " when asked for blobs, sending the full bundle");
+					return held;
+				}
+				for (String digest : response.getEntity(String.class).split("\n")) {
+					digest = digest.trim();
+					if (digests.contains(digest)) {
+						held.add(digest);
+					}
+				}
+			} finally {
+				response.close();
+			}
+		} catch (ClientHandlerException e) {
+			Logger.warn(this, "Unable to ask endpoint " + endpoint.getId() + " for blobs, sending the full bundle: "
+					+ e.getMessage());
+		}
+		return held;
+	}
+
+}
@@ -0,0 +1,214 @@
+package com.dotcms.publisher.pusher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.dotmarketing.util.Config;
+
+/**
+ * GZIP output stream that deflates blocks of <code>PUSH_PUBLISHING_GZIP_BLOCK_KB</code> on
+ * <code>PUSH_PUBLISHING_GZIP_THREADS</code> threads at the same time, the way pigz does. Each
+ * block is primed with the last 32KB of the previous one and ends on a byte boundary, so the
+ * blocks are simply written one after the other and the result is a regular single member gzip
+ * file any {@link java.util.zip.GZIPInputStream} reads.
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private static final int THREADS = Math.max(1,
+			Config.getIntProperty("PUSH_PUBLISHING_GZIP_THREADS", Runtime.getRuntime().availableProcessors()));
+
+	private static final ExecutorService compressors = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ParallelGZIP-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final int blockSize;
+	private final int level;
+
+	private final CRC32 crc = new CRC32();
+	private long length;
+
+	private byte[] block;
+	private int count;
+	private byte[] dictionary;
+
+	// blocks being deflated, in the order they are written
+	private final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+	private boolean finished;
+	private boolean closed;
+
+	public ParallelGZIPOutputStream(OutputStream out) throws IOException {
+		this(out, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	public ParallelGZIPOutputStream(OutputStream out, int level) throws IOException {
+		super(out);
+		this.level = level;
+		this.blockSize = Math.max(DICTIONARY_SIZE, Config.getIntProperty("PUSH_PUBLISHING_GZIP_BLOCK_KB", 128) * 1024);
+		this.block = new byte[blockSize];
+		out.write(HEADER);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (finished) {
+			throw new IOException("write beyond end of stream");
+		}
+		crc.update(b, off, len);
+		length += len;
+		while (len > 0) {
+			int n = Math.min(len, blockSize - count);
+			System.arraycopy(b, off, block, count, n);
+			count += n;
+			off += n;
+			len -= n;
+			if (count == blockSize) {
+				submit(false);
+			}
+		}
+	}
+
+	/**
+	 * Writes the remaining data and the gzip trailer without closing the underlying stream
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		submit(true);
+		while (!pending.isEmpty()) {
+			writeNext();
+		}
+		writeInt((int) crc.getValue());
+		writeInt((int) length);
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			finish();
+		} finally {
+			for (Future<byte[]> future : pending) {
+				future.cancel(true);
+			}
+			out.close();
+		}
+	}
+
+	private void submit(boolean last) throws IOException {
+		byte[] input = block;
+		int inputLength = count;
+		pending.add(compressors.submit(new Block(input, inputLength, dictionary, last, level)));
+		if (!last) {
+			dictionary = Arrays.copyOfRange(input, inputLength - DICTIONARY_SIZE, inputLength);
+			block = new byte[blockSize];
+			count = 0;
+		}
+		// bounds the memory used by the blocks waiting to be written
+		while (pending.size() > THREADS * 2) {
+			writeNext();
+		}
+	}
+
+	private void writeNext() throws IOException {
+		Future<byte[]> future = pending.poll();
+		try {
+			out.write(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private void writeInt(int i) throws IOException {
+		out.write(i & 0xff);
+		out.write((i >> 8) & 0xff);
+		out.write((i >> 16) & 0xff);
+		out.write((i >> 24) & 0xff);
+	}
+
+	private static class Block implements Callable<byte[]> {
+
+		private final byte[] input;
+		private final int length;
+		private final byte[] dictionary;
+		private final boolean last;
+		private final int level;
+
+		Block(byte[] input, int length, byte[] dictionary, boolean last, int level) {
+			this.input = input;
+			this.length = length;
+			this.dictionary = dictionary;
+			this.last = last;
+			this.level = level;
+		}
+
+		public byte[] call() {
+			Deflater deflater = new Deflater(level, true);
+			try {
+				if (dictionary != null) {
+					deflater.setDictionary(dictionary);
+				}
+				deflater.setInput(input, 0, length);
+				ByteArrayOutputStream deflated = new ByteArrayOutputStream(length / 2 + 64);
+				byte[] buffer = new byte[64 * 1024];
+				if (last) {
+					deflater.finish();
+					while (!deflater.finished()) {
+						int n = deflater.deflate(buffer);
+						deflated.write(buffer, 0, n);
+					}
+				} else {
+					// a sync flush ends the block on a byte boundary
+					int n;
+					do {
+						n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+						deflated.write(buffer, 0, n);
+					} while (n == buffer.length);
+				}
+				return deflated.toByteArray();
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+
+}
@@ -7,6 +7,11 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import com.dotcms.enterprise.LicenseUtil;
 import com.dotcms.enterprise.publishing.remote.bundler.*;
@@ -27,14 +32,9 @@ import com.dotcms.publishing.PublishStatus;
 import com.dotcms.publishing.Publisher;
 import com.dotcms.publishing.PublisherConfig;
 import com.dotcms.repackage.com.sun.jersey.api.client.Client;
-import com.dotcms.repackage.com.sun.jersey.api.client.ClientResponse;
-import com.dotcms.repackage.com.sun.jersey.api.client.WebResource;
 import com.dotcms.repackage.com.sun.jersey.api.client.config.ClientConfig;
 import com.dotcms.repackage.com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.dotcms.repackage.com.sun.jersey.client.urlconnection.HTTPSProperties;
-import com.dotcms.repackage.com.sun.jersey.multipart.FormDataMultiPart;
-import com.dotcms.repackage.com.sun.jersey.multipart.file.FileDataBodyPart;
-import com.dotcms.repackage.javax.ws.rs.core.MediaType;
 import com.dotcms.repackage.org.apache.commons.httpclient.HttpStatus;
 import com.dotcms.repackage.org.apache.commons.io.FileUtils;
 import com.dotmarketing.business.APILocator;
@@ -84,6 +84,13 @@ public class PushPublisher extends Publisher {
 			ArrayList<File> list = new ArrayList<File>(1);
 			list.add(bundleRoot);
 			File bundle = new File(bundleRoot+File.separator+".."+File.separator+config.getId()+".tar.gz");
+
+			// blobs the endpoints already have are left out of the bundle they get
+			BlobManifest blobs = BlobManifest.empty();
+			if(Config.getBooleanProperty("PUSH_PUBLISHING_DELTA_BUNDLES", true)) {
+				blobs = BlobManifest.build(bundleRoot);
+				blobs.write(bundleRoot);
+			}
 			PushUtils.compressFiles(list, bundle, bundleRoot.getAbsolutePath());
 
 			List<Environment> environments = APILocator.getEnvironmentAPI().findEnvironmentsByBundleId(config.getId());
@@ -106,9 +113,14 @@ public class PushPublisher extends Publisher {
 			currentStatusHistory.addNumTries();
 
 
-//	        boolean hasError = false;
 	        int errorCounter = 0;
 
+			Bundle b = APILocator.getBundleAPI().getBundleById(config.getId());
+			final DeltaBundles bundles = new DeltaBundles(client, bundleRoot, bundle, b.getName(), blobs);
+
+			// endpoints of each environment, pushed at the same time
+			List<List<PublishingEndPoint>> environmentEndpoints = new ArrayList<List<PublishingEndPoint>>();
+			int totalEndpoints = 0;
 			for (Environment environment : environments) {
 				List<PublishingEndPoint> allEndpoints = APILocator.getPublisherEndPointAPI().findSendingEndPointsByEnvironment(environment.getId());
 				List<PublishingEndPoint> endpoints = new ArrayList<PublishingEndPoint>();
@@ -120,80 +132,77 @@ public class PushPublisher extends Publisher {
 					}
 				}
 
-				boolean failedEnvironment = false;
-
 				if(!environment.getPushToAll()) {
 					Collections.shuffle(endpoints);
 					if(!endpoints.isEmpty())
 						endpoints = endpoints.subList(0, 1);
 				}
+				environmentEndpoints.add(endpoints);
+				totalEndpoints += endpoints.size();
+			}
 
-				for (PublishingEndPoint endpoint : endpoints) {
-					EndpointDetail detail = new EndpointDetail();
-	        		try {
-	        			FormDataMultiPart form = new FormDataMultiPart();
-	        			form.field("AUTH_TOKEN",
-	        					retriveKeyString(
-	        							PublicEncryptionFactory.decryptString(endpoint.getAuthKey().toString())));
-
-	        			form.field("GROUP_ID", UtilMethods.isSet(endpoint.getGroupId()) ? endpoint.getGroupId() : endpoint.getId());
-	        			Bundle b=APILocator.getBundleAPI().getBundleById(config.getId());
-	        			form.field("BUNDLE_NAME", b.getName());
-	        			form.field("ENDPOINT_ID", endpoint.getId());
-	        			form.bodyPart(new FileDataBodyPart("bundle", bundle, MediaType.MULTIPART_FORM_DATA_TYPE));
-
-
-	        			//Sending bundle to endpoint
-	        			WebResource resource = client.resource(endpoint.toURL()+"/api/bundlePublisher/publish");
-
-	        			ClientResponse response =
-	        					resource.type(MediaType.MULTIPART_FORM_DATA).post(ClientResponse.class, form);
-
-
-	        			if(response.getClientResponseStatus().getStatusCode() == HttpStatus.SC_OK)
-	        			{
-	        				detail.setStatus(PublishAuditStatus.Status.BUNDLE_SENT_SUCCESSFULLY.getCode());
-	        				detail.setInfo("Everything ok");
-	        			} else {
-
-	        				if(currentStatusHistory.getNumTries()==PublisherQueueJob.MAX_NUM_TRIES) {
-		        				APILocator.getPushedAssetsAPI().deletePushedAssets(config.getId(), environment.getId());
-		        			}
-	        				detail.setStatus(PublishAuditStatus.Status.FAILED_TO_SENT.getCode());
-	        				detail.setInfo(
-	        						"Returned "+response.getClientResponseStatus().getStatusCode()+ " status code " +
-	        								"for the endpoint "+endpoint.getId()+ "with address "+endpoint.getAddress());
-	        				failedEnvironment |= true;
-
-	        			}
-	        		} catch(Exception e) {
-
-	        			// if the bundle can't be sent after the total num of tries, delete the pushed assets for this bundle
-	        			if(currentStatusHistory.getNumTries()==PublisherQueueJob.MAX_NUM_TRIES) {
-	        				APILocator.getPushedAssetsAPI().deletePushedAssets(config.getId(), environment.getId());
-	        			}
-//	        			hasError = true;
-	        			detail.setStatus(PublishAuditStatus.Status.FAILED_TO_SENT.getCode());
+			ExecutorService pushers = Executors.newFixedThreadPool(
+					Math.max(1, Math.min(totalEndpoints, Config.getIntProperty("PUSH_PUBLISHING_ENDPOINT_THREADS", 4))),
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "PushPublisher-" + config.getId());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			try {
+				List<List<Future<EndpointDetail>>> environmentResults = new ArrayList<List<Future<EndpointDetail>>>();
+				for (List<PublishingEndPoint> endpoints : environmentEndpoints) {
+					List<Future<EndpointDetail>> results = new ArrayList<Future<EndpointDetail>>();
+					for (final PublishingEndPoint endpoint : endpoints) {
+						// the key is read from the database, the pushing threads have no connection
+						String token = null;
+						try {
+							token = retriveKeyString(PublicEncryptionFactory.decryptString(endpoint.getAuthKey().toString()));
+						} catch (Exception e) {
+							Logger.error(this.getClass(), "Unable to read the auth key of the endpoint " + endpoint.getId() + ": " + e.getMessage());
+						}
+						final String authToken = token;
+						results.add(pushers.submit(new Callable<EndpointDetail>() {
+							public EndpointDetail call() {
+								return push(bundles, endpoint, authToken);
+							}
+						}));
+					}
+					environmentResults.add(results);
+				}
 
-	        			String error = 	"An error occured for the endpoint "+ endpoint.getId() + " with address "+ endpoint.getAddress() + ".  Error: " + e.getMessage();
+				// the audit history is only updated from this thread
+				for (int i = 0; i < environments.size(); i++) {
+					Environment environment = environments.get(i);
+					List<PublishingEndPoint> endpoints = environmentEndpoints.get(i);
+					List<Future<EndpointDetail>> results = environmentResults.get(i);
 
+					boolean failedEnvironment = false;
 
-	        			detail.setInfo(error);
-	        			failedEnvironment |= true;
+					for (int j = 0; j < endpoints.size(); j++) {
+						PublishingEndPoint endpoint = endpoints.get(j);
+						EndpointDetail detail = results.get(j).get();
+						failedEnvironment |= detail.getStatus() == PublishAuditStatus.Status.FAILED_TO_SENT.getCode();
 
-	        			Logger.error(this.getClass(), error);
-	        		}
-	        		if (isHistoryEmpty || failedEnvironment) {
-	        			currentStatusHistory.addOrUpdateEndpoint(environment.getId(), endpoint.getId(), detail);
-	        		}
-				}
+						if (isHistoryEmpty || failedEnvironment) {
+							currentStatusHistory.addOrUpdateEndpoint(environment.getId(), endpoint.getId(), detail);
+						} else {
+							currentStatusHistory.updateEndpointTransfer(environment.getId(), endpoint.getId(), detail);
+						}
+					}
 
-				if(failedEnvironment) {
-//					hasError = true;
-					errorCounter++;
+					if(failedEnvironment) {
+						// if the bundle can't be sent after the total num of tries, delete the pushed assets for this bundle
+						if(currentStatusHistory.getNumTries()==PublisherQueueJob.MAX_NUM_TRIES) {
+							APILocator.getPushedAssetsAPI().deletePushedAssets(config.getId(), environment.getId());
+						}
+						errorCounter++;
+					}
 				}
-
-
+			} finally {
+				pushers.shutdownNow();
+				bundles.cleanup();
 			}
 
 			if(errorCounter==0) {
@@ -230,6 +239,47 @@ public class PushPublisher extends Publisher {
 		}
 	}
 
+	/**
+	 * Sends the bundle to the endpoint, called from the pushing threads so it
+	 * must not touch the database
+	 *
+	 * @param authToken Encrypted token of the endpoint, null if it could not be read
+	 * @return The status of the endpoint along with the transfer stats
+	 */
+	private EndpointDetail push(DeltaBundles bundles, PublishingEndPoint endpoint, String authToken) {
+		EndpointDetail detail = new EndpointDetail();
+		try {
+			if(authToken == null) {
+				throw new DotPublishingException("Unable to read the auth key");
+			}
+			String groupId = UtilMethods.isSet(endpoint.getGroupId()) ? endpoint.getGroupId() : endpoint.getId();
+
+			//Sending bundle to endpoint, without the blobs it already has
+			BundleUploader uploader = bundles.getUploader(endpoint, authToken);
+			int status = uploader.upload(endpoint, authToken, groupId, detail);
+
+			if(status == HttpStatus.SC_OK)
+			{
+				detail.setStatus(PublishAuditStatus.Status.BUNDLE_SENT_SUCCESSFULLY.getCode());
+				detail.setInfo("Everything ok");
+			} else {
+				detail.setStatus(PublishAuditStatus.Status.FAILED_TO_SENT.getCode());
+				detail.setInfo(
+						"Returned "+status+ " status code " +
+								"for the endpoint "+endpoint.getId()+ "with address "+endpoint.getAddress());
+			}
+		} catch(Exception e) {
+			detail.setStatus(PublishAuditStatus.Status.FAILED_TO_SENT.getCode());
+
+			String error = 	"An error occured for the endpoint "+ endpoint.getId() + " with address "+ endpoint.getAddress() + ".  Error: " + e.getMessage();
+
+			detail.setInfo(error);
+
+			Logger.error(this.getClass(), error);
+		}
+		return detail;
+	}
+
 	public static String retriveKeyString(String token) throws IOException {
 		String key = null;
 		if(token.contains(File.separator)) {
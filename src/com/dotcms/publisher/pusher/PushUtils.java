@@ -6,8 +6,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
-import java.util.zip.GZIPOutputStream;
+import java.util.Collections;
+import java.util.Set;
 
 import com.dotcms.repackage.org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import com.dotcms.repackage.org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
@@ -29,20 +34,36 @@ public class PushUtils {
 	 */
 	public static File compressFiles(Collection<File> files, File output, String bundleRoot)
 		throws IOException
+	{
+		return compressFiles(files, output, bundleRoot, Collections.<File>emptySet());
+	}
+
+	/**
+	 * Compress (tar.gz) the input files to the output file, leaving out the excluded ones.
+	 * The gzip compression runs on several threads, see {@link ParallelGZIPOutputStream}
+	 *
+	 * @param files The files to compress
+	 * @param output The resulting output file (should end in .tar.gz)
+	 * @param bundleRoot
+	 * @param excluded Files not to be added
+	 * @throws IOException
+	 */
+	public static File compressFiles(Collection<File> files, File output, String bundleRoot, Set<File> excluded)
+		throws IOException
 	{
 		Logger.info(PushUtils.class, "Compressing "+files.size() + " to "+output.getAbsoluteFile());
 	               // Create the output stream for the output file
 		FileOutputStream fos = new FileOutputStream(output);
 	               // Wrap the output file stream in streams that will tar and gzip everything
 		TarArchiveOutputStream taos = new TarArchiveOutputStream(
-			new GZIPOutputStream(new BufferedOutputStream(fos)));
+			new ParallelGZIPOutputStream(new BufferedOutputStream(fos)));
 
 	               // TAR originally didn't support long file names, so enable the support for it
 		taos.setLongFileMode(TarArchiveOutputStream.LONGFILE_GNU);
 
 	               // Get to putting all the files in the compressed output file
 		for (File f : files) {
-			addFilesToCompression(taos, f, ".", bundleRoot);
+			addFilesToCompression(taos, f, ".", bundleRoot, excluded);
 		}
 
 	               // Close everything up
@@ -53,6 +74,36 @@ public class PushUtils {
 	
 	
 
+	/**
+	 * Returns the MD5 of the file, as an hex string
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static String digest(File file) throws IOException {
+		MessageDigest md5;
+		try {
+			md5 = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		InputStream in = new DigestInputStream(new BufferedInputStream(new FileInputStream(file)), md5);
+		try {
+			byte[] buffer = new byte[8192];
+			while (in.read(buffer) != -1) {
+				// reading updates the digest
+			}
+		} finally {
+			in.close();
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : md5.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
 	/**
 	 * Does the work of compression and going recursive for nested directories
 	 * <p/>
@@ -63,10 +114,10 @@ public class PushUtils {
 	        * @param dir The directory that should serve as the parent directory in the archivew
 	 * @throws IOException
 	 */
-	private static void addFilesToCompression(TarArchiveOutputStream taos, File file, String dir, String bundleRoot)
+	private static void addFilesToCompression(TarArchiveOutputStream taos, File file, String dir, String bundleRoot, Set<File> excluded)
 		throws IOException
 	{
-	    	if(!file.isHidden()) {
+	    	if(!file.isHidden() && !excluded.contains(file)) {
 	    		// Create an entry for the file
 	    		if(!dir.equals("."))
 	    			if(File.separator.equals("\\")){
@@ -76,7 +127,7 @@ public class PushUtils {
 				if (file.isFile()) {
 			        // Add the file to the archive
 					BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file));
-					IOUtils.copy(new FileInputStream(file), taos);
+					IOUtils.copy(bis, taos);
 					taos.closeArchiveEntry();
 					bis.close();
 				} else if (file.isDirectory()) {
@@ -86,7 +137,7 @@ public class PushUtils {
 						taos.closeArchiveEntry();
 			         // go through all the files in the directory and using recursion, add them to the archive
 					for (File childFile : file.listFiles()) {
-						addFilesToCompression(taos, childFile, file.getPath().substring(bundleRoot.length()), bundleRoot);
+						addFilesToCompression(taos, childFile, file.getPath().substring(bundleRoot.length()), bundleRoot, excluded);
 					}
 				}
 	    	}
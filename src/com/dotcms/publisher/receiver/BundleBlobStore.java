@@ -0,0 +1,167 @@
+package com.dotcms.publisher.receiver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.dotcms.publisher.pusher.BlobManifest;
+import com.dotcms.publisher.pusher.PushUtils;
+import com.dotcms.repackage.org.apache.commons.io.FileUtils;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.ConfigUtils;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Keeps the blobs of the received bundles (see {@link BlobManifest}) by their MD5, so senders can
+ * leave them out of the next bundles. The store lives in the <code>blobs</code> folder of the
+ * bundles path and is kept under <code>PUSH_PUBLISHING_BLOB_STORE_SIZE_MB</code>, removing the
+ * blobs used least recently first.
+ */
+public class BundleBlobStore {
+
+	private static final BundleBlobStore instance = new BundleBlobStore();
+
+	private final long maxSize;
+
+	private BundleBlobStore() {
+		this.maxSize = Config.getIntProperty("PUSH_PUBLISHING_BLOB_STORE_SIZE_MB", 4096) * 1024L * 1024L;
+	}
+
+	public static BundleBlobStore getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns which of the given blobs are in the store. They are marked as used, so they are not
+	 * removed before the bundle leaving them out arrives
+	 *
+	 * @param digests
+	 * @return
+	 */
+	public Set<String> contains(Collection<String> digests) {
+		Set<String> held = new HashSet<String>();
+		long now = System.currentTimeMillis();
+		for (String digest : digests) {
+			digest = digest.trim();
+			if (isDigest(digest)) {
+				File blob = getFile(digest);
+				if (blob.exists() && blob.setLastModified(now)) {
+					held.add(digest);
+				}
+			}
+		}
+		return held;
+	}
+
+	/**
+	 * Copies the blob to the given file
+	 *
+	 * @param digest
+	 * @param target
+	 * @return false if the blob is not in the store
+	 * @throws IOException
+	 */
+	public boolean restore(String digest, File target) throws IOException {
+		if (!isDigest(digest)) {
+			return false;
+		}
+		File blob = getFile(digest);
+		if (!blob.exists()) {
+			return false;
+		}
+		FileUtils.copyFile(blob, target);
+		blob.setLastModified(System.currentTimeMillis());
+		return true;
+	}
+
+	/**
+	 * Adds the file to the store, unless its MD5 is not the given one
+	 *
+	 * @param digest
+	 * @param source
+	 * @throws IOException
+	 */
+	public void store(String digest, File source) throws IOException {
+		if (!isDigest(digest)) {
+			return;
+		}
+		File blob = getFile(digest);
+		if (blob.exists()) {
+			blob.setLastModified(System.currentTimeMillis());
+			return;
+		}
+		if (!digest.equals(PushUtils.digest(source))) {
+			Logger.warn(this, "File " + source.getName() + " does not match its digest " + digest + ", not keeping it");
+			return;
+		}
+		File temp = new File(blob.getParentFile(), digest + "." + Thread.currentThread().getId() + ".tmp");
+		FileUtils.copyFile(source, temp);
+		if (!temp.renameTo(blob)) {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Removes the blobs used least recently until the store fits in its size
+	 */
+	public synchronized void prune() {
+		List<File> blobs = new ArrayList<File>();
+		long size = 0;
+		File[] dirs = getRoot().listFiles();
+		if (dirs == null) {
+			return;
+		}
+		for (File dir : dirs) {
+			File[] files = dir.listFiles();
+			if (files == null) {
+				continue;
+			}
+			for (File blob : files) {
+				blobs.add(blob);
+				size += blob.length();
+			}
+		}
+		if (size <= maxSize) {
+			return;
+		}
+
+		Collections.sort(blobs, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				long m1 = f1.lastModified();
+				long m2 = f2.lastModified();
+				return (m1 < m2) ? -1 : ((m1 == m2) ? 0 : 1);
+			}
+		});
+		int removed = 0;
+		for (File blob : blobs) {
+			if (size <= maxSize) {
+				break;
+			}
+			long length = blob.length();
+			if (blob.delete()) {
+				size -= length;
+				removed++;
+			}
+		}
+		Logger.info(this, "Removed " + removed + " blobs from the bundle blob store");
+	}
+
+	private File getRoot() {
+		return new File(ConfigUtils.getBundlePath() + File.separator + "blobs");
+	}
+
+	private File getFile(String digest) {
+		return new File(getRoot(), digest.substring(0, 2) + File.separator + digest);
+	}
+
+	private static boolean isDigest(String digest) {
+		return digest != null && digest.matches("[0-9a-f]{32}");
+	}
+
+}
@@ -4,6 +4,7 @@ import com.dotcms.enterprise.LicenseUtil;
 import com.dotcms.enterprise.publishing.remote.handler.*;
 import com.dotcms.publisher.business.*;
 import com.dotcms.publisher.business.PublisherAPIImpl;
+import com.dotcms.publisher.pusher.BlobManifest;
 import com.dotcms.publisher.pusher.PushPublisherConfig;
 import com.dotcms.publisher.receiver.handler.IHandler;
 import com.dotcms.publishing.*;
@@ -132,6 +133,13 @@ public class BundlePublisher extends Publisher {
             throw new DotPublishingException( "Cannot extract the selected archive", e );
         }
 
+        // Put back the blobs the sender left out and keep the ones sent
+        try {
+            restoreBlobs( folderOut );
+        } catch ( IOException e ) {
+            throw new DotPublishingException( "Cannot restore the blobs of the bundle", e );
+        }
+
         Map<String, String> assetsDetails = null;
 
         try {
@@ -221,6 +229,35 @@ public class BundlePublisher extends Publisher {
         return list;
     }
 
+    /**
+     * Copies into the extracted bundle the blobs listed in its {@link BlobManifest} that were left out because this<br/>
+     * end point already had them, and adds the ones that came in the bundle to the {@link BundleBlobStore}.
+     *
+     * @param folderOut Folder the bundle was extracted to
+     * @throws IOException If a blob left out is not in the store anymore
+     */
+    private void restoreBlobs ( File folderOut ) throws IOException {
+        BlobManifest manifest = BlobManifest.read( folderOut );
+        if ( manifest == null ) {
+            return;
+        }
+
+        BundleBlobStore store = BundleBlobStore.getInstance();
+        String rootPath = folderOut.getCanonicalPath() + File.separator;
+        for ( Map.Entry<String, String> blob : manifest.getBlobs().entrySet() ) {
+            File file = new File( folderOut, blob.getKey() );
+            if ( !file.getCanonicalPath().startsWith( rootPath ) ) {
+                throw new IOException( "Invalid blob path " + blob.getKey() );
+            }
+            if ( file.exists() ) {
+                store.store( blob.getValue(), file );
+            } else if ( !store.restore( blob.getValue(), file ) ) {
+                throw new IOException( "Blob " + blob.getKey() + " was left out of the bundle but is not in the blob store" );
+            }
+        }
+        store.prune();
+    }
+
     /**
      * Untars a given tar bundle file in order process the content on it.
      *
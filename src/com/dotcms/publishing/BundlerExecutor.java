@@ -0,0 +1,306 @@
+package com.dotcms.publishing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.db.HibernateUtil;
+import com.dotmarketing.exception.DotHibernateException;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.PushPublishLogger;
+
+/**
+ * Generates the bundlers of a bundle, <code>PUBLISHER_BUNDLER_THREADS</code> at a time, each after
+ * the bundlers it depends on (see {@link IDependentBundler}). Bundlers can also split their assets
+ * in shards of <code>PUBLISHER_SHARD_SIZE</code> processed on a pool of
+ * <code>PUBLISHER_SHARD_THREADS</code> threads shared by all the bundles, see
+ * {@link #shard(List, Shard)}.
+ */
+public class BundlerExecutor {
+
+    private static final int shardSize = Math.max( 1, Config.getIntProperty( "PUBLISHER_SHARD_SIZE", 500 ) );
+
+    private static final ThreadPoolExecutor shards;
+
+    static {
+        int threads = Math.max( 1, Config.getIntProperty( "PUBLISHER_SHARD_THREADS", Runtime.getRuntime().availableProcessors() ) );
+        shards = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new DaemonThreadFactory( "BundlerShard" ) );
+        shards.allowCoreThreadTimeOut( true );
+    }
+
+    /**
+     * Processes part of the assets of a bundler
+     */
+    public interface Shard<T> {
+
+        public void process ( List<T> assets ) throws DotBundleException;
+
+    }
+
+    private BundlerExecutor () {
+    }
+
+    /**
+     * Creates and generates the bundlers
+     *
+     * @param bundlers   Classes of the bundlers, in the order they were declared by the publishers
+     * @param config     Configuration of the bundle
+     * @param bundleRoot Where the bundle is created
+     * @param status     Status the bundlers report to
+     * @return The bundlers, in the order they were given
+     * @throws DotPublishingException If a bundler fails or the dependencies make a cycle
+     */
+    public static List<IBundler> generate ( List<? extends Class> bundlers, PublisherConfig config, File bundleRoot, PublishStatus status ) throws DotPublishingException {
+
+        Map<Class, IBundler> instances = new LinkedHashMap<Class, IBundler>();
+        Map<Class, BundlerStatus> statuses = new HashMap<Class, BundlerStatus>();
+        boolean declared = false;
+        try {
+            for ( Class c : bundlers ) {
+                IBundler bundler = (IBundler) c.newInstance();
+                bundler.setConfig( config );
+                instances.put( c, bundler );
+                BundlerStatus bs = new BundlerStatus( bundler.getClass().getName() );
+                statuses.put( c, bs );
+                status.addToBs( bs );
+                declared |= bundler instanceof IDependentBundler;
+            }
+        } catch ( InstantiationException e ) {
+            throw new DotPublishingException( e.getMessage(), e );
+        } catch ( IllegalAccessException e ) {
+            throw new DotPublishingException( e.getMessage(), e );
+        }
+
+        Map<Class, List<Class>> dependencies = getDependencies( instances );
+        List<Class> order = sort( dependencies );
+        int threads = Math.min( order.size(), Math.max( 1, Config.getIntProperty( "PUBLISHER_BUNDLER_THREADS", 4 ) ) );
+
+        if ( !declared || threads <= 1 ) {
+            // one after the other, from this thread
+            for ( Class c : order ) {
+                try {
+                    run( instances.get( c ), bundleRoot, statuses.get( c ), config );
+                } catch ( DotBundleException e ) {
+                    throw new DotPublishingException( e.getMessage(), e );
+                }
+            }
+        } else {
+            generateConcurrently( order, dependencies, instances, statuses, threads, bundleRoot, config );
+        }
+
+        return new ArrayList<IBundler>( instances.values() );
+    }
+
+    /**
+     * Splits the assets in shards processed at the same time, and waits for all of them. The shards
+     * run on their own Hibernate sessions
+     *
+     * @param assets Assets of the bundler
+     * @param shard  Processes each shard
+     * @throws DotBundleException If a shard fails, once the others are cancelled
+     */
+    public static <T> void shard ( List<T> assets, final Shard<T> shard ) throws DotBundleException {
+
+        if ( assets.size() <= shardSize ) {
+            shard.process( assets );
+            return;
+        }
+
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for ( int i = 0; i < assets.size(); i += shardSize ) {
+            final List<T> part = assets.subList( i, Math.min( i + shardSize, assets.size() ) );
+            futures.add( shards.submit( new Callable<Void>() {
+                public Void call () throws Exception {
+                    try {
+                        shard.process( part );
+                        return null;
+                    } finally {
+                        closeSession();
+                    }
+                }
+            } ) );
+        }
+
+        try {
+            for ( Future<Void> future : futures ) {
+                future.get();
+            }
+        } catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof DotBundleException ) {
+                throw (DotBundleException) e.getCause();
+            }
+            throw new DotBundleException( e.getCause().getMessage(), toException( e.getCause() ) );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new DotBundleException( "Interrupted processing the shards", e );
+        } finally {
+            for ( Future<Void> future : futures ) {
+                future.cancel( true );
+            }
+        }
+    }
+
+    private static void run ( IBundler bundler, File bundleRoot, BundlerStatus bs, PublisherConfig config ) throws DotBundleException {
+
+        bs.start();
+        try {
+            bundler.generate( bundleRoot, bs );
+        } finally {
+            bs.finish();
+            PushPublishLogger.log( BundlerExecutor.class, bundler.getName() + " generated " + bs.getCount() + " assets in "
+                    + bs.getDuration() + "ms", config.getId() );
+        }
+    }
+
+    /**
+     * Runs each bundler on the pool once the ones it depends on are done. The bundlers are given to
+     * the pool in dependency order, so a bundler waiting for others only waits for ones already
+     * running
+     */
+    private static void generateConcurrently ( List<Class> order, Map<Class, List<Class>> dependencies, Map<Class, IBundler> instances,
+                                               Map<Class, BundlerStatus> statuses, int threads, final File bundleRoot, final PublisherConfig config ) throws DotPublishingException {
+
+        ExecutorService pool = Executors.newFixedThreadPool( threads, new DaemonThreadFactory( "Bundler-" + config.getId() ) );
+        // read by the bundlers waiting for their dependencies
+        final Map<Class, Future<Void>> futures = new ConcurrentHashMap<Class, Future<Void>>();
+        try {
+            for ( Class c : order ) {
+                final List<Class> needed = dependencies.get( c );
+                final IBundler bundler = instances.get( c );
+                final BundlerStatus bs = statuses.get( c );
+                futures.put( c, pool.submit( new Callable<Void>() {
+                    public Void call () throws Exception {
+                        try {
+                            for ( Class dependency : needed ) {
+                                futures.get( dependency ).get();
+                            }
+                            run( bundler, bundleRoot, bs, config );
+                            return null;
+                        } finally {
+                            closeSession();
+                        }
+                    }
+                } ) );
+            }
+
+            for ( Class c : order ) {
+                try {
+                    futures.get( c ).get();
+                } catch ( ExecutionException e ) {
+                    Throwable cause = e.getCause();
+                    // a bundler whose dependency failed fails the same way
+                    while ( cause instanceof ExecutionException ) {
+                        cause = cause.getCause();
+                    }
+                    throw new DotPublishingException( "Unable to generate " + c.getName() + ": " + cause.getMessage(), toException( cause ) );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new DotPublishingException( "Interrupted generating " + c.getName(), e );
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the bundlers each bundler depends on: the ones it declares, or all the ones before it
+     */
+    private static Map<Class, List<Class>> getDependencies ( Map<Class, IBundler> instances ) {
+
+        Map<Class, List<Class>> dependencies = new LinkedHashMap<Class, List<Class>>();
+        List<Class> before = new ArrayList<Class>();
+        for ( Map.Entry<Class, IBundler> entry : instances.entrySet() ) {
+            List<Class> needed = new ArrayList<Class>();
+            if ( entry.getValue() instanceof IDependentBundler ) {
+                List<Class> declared = ((IDependentBundler) entry.getValue()).getDependencies();
+                if ( declared != null ) {
+                    for ( Class dependency : declared ) {
+                        // bundlers not in this bundle are not waited for
+                        if ( instances.containsKey( dependency ) && !dependency.equals( entry.getKey() ) ) {
+                            needed.add( dependency );
+                        }
+                    }
+                }
+            } else {
+                needed.addAll( before );
+            }
+            dependencies.put( entry.getKey(), needed );
+            before.add( entry.getKey() );
+        }
+        return dependencies;
+    }
+
+    /**
+     * Orders the bundlers so each one comes after its dependencies, keeping the given order
+     * otherwise
+     */
+    private static List<Class> sort ( Map<Class, List<Class>> dependencies ) throws DotPublishingException {
+
+        List<Class> order = new ArrayList<Class>();
+        List<Class> left = new ArrayList<Class>( dependencies.keySet() );
+        while ( !left.isEmpty() ) {
+            Class next = null;
+            for ( Class c : left ) {
+                if ( order.containsAll( dependencies.get( c ) ) ) {
+                    next = c;
+                    break;
+                }
+            }
+            if ( next == null ) {
+                throw new DotPublishingException( "The dependencies of the bundlers " + left + " make a cycle" );
+            }
+            order.add( next );
+            left.remove( next );
+        }
+        return order;
+    }
+
+    private static Exception toException ( Throwable t ) {
+        return t instanceof Exception ? (Exception) t : new Exception( t );
+    }
+
+    private static void closeSession () {
+        try {
+            HibernateUtil.closeSession();
+        } catch ( DotHibernateException e ) {
+            Logger.warn( BundlerExecutor.class, e.getMessage(), e );
+        } finally {
+            DbConnectionFactory.closeConnection();
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory ( String name ) {
+            this.name = name;
+        }
+
+        public Thread newThread ( Runnable r ) {
+            Thread thread = new Thread( r, name + "-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
+}
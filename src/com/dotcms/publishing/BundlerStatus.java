@@ -1,9 +1,17 @@
 package com.dotcms.publishing;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a bundler. The counts can be updated from the threads processing the shards of the
+ * bundler, see {@link BundlerExecutor#shard(java.util.List, BundlerExecutor.Shard)}
+ */
 public class BundlerStatus {
-	private long total = 0;
-	private long count = 0;
-	private long failures = 0;
+	private volatile long total = 0;
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private volatile long startTime = 0;
+	private volatile long endTime = 0;
 	private String bundlerClass;
 	public String getBundlerClass() {
 		return bundlerClass;
@@ -20,7 +28,7 @@ public class BundlerStatus {
 	 * @return the count
 	 */
 	public long getCount() {
-		return count;
+		return count.get();
 	}
 
 	/**
@@ -44,20 +52,20 @@ public class BundlerStatus {
 	 *            the count to set
 	 */
 	public void addCount() {
-		count = count + 1;
+		count.incrementAndGet();
 	}
 	/**
 	 * @param count
 	 *            the count to set
 	 */
 	public void addCount(int x) {
-		count = count + x;
+		count.addAndGet(x);
 	}
 	/**
 	 * @return the failuers
 	 */
 	public long getFailures() {
-		return failures;
+		return failures.get();
 	}
 
 	/**
@@ -65,7 +73,46 @@ public class BundlerStatus {
 	 *            the failuers to set
 	 */
 	public void addFailure() {
-		failures = failures + 1;
+		failures.incrementAndGet();
+	}
+
+	/**
+	 * marks the start of the bundle generation
+	 */
+	public void start() {
+		startTime = System.currentTimeMillis();
+		endTime = 0;
+	}
+
+	/**
+	 * marks the end of the bundle generation
+	 */
+	public void finish() {
+		endTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return when the generation started, 0 if it did not yet
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return when the generation ended, 0 if it did not yet
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * @return the millis the generation took, or has taken so far
+	 */
+	public long getDuration() {
+		if (startTime == 0) {
+			return 0;
+		}
+		return (endTime != 0 ? endTime : System.currentTimeMillis()) - startTime;
 	}
 
 }
@@ -27,10 +27,17 @@ import com.dotcms.enterprise.LicenseUtil;
 import com.dotcms.enterprise.publishing.bundlers.FileAssetBundler;
 import com.dotcms.repackage.com.thoughtworks.xstream.XStream;
 import com.dotcms.repackage.com.thoughtworks.xstream.io.HierarchicalStreamWriter;
-import com.dotcms.repackage.com.thoughtworks.xstream.io.xml.DomDriver;
+import com.dotcms.repackage.com.thoughtworks.xstream.io.xml.StaxDriver;
 
 public class BundlerUtil {
 
+	/*
+	 * Configured once and shared: XStream is thread safe once set up, and keeps what it learns of
+	 * each class (reflection, converters) from one object to the next. The bundles are read as a
+	 * stream instead of being loaded in a DOM first.
+	 */
+	private static final XStream xstream = new XStream(new StaxDriver());
+
 	/**
 	 * does bundle exist
 	 * @param config
@@ -118,17 +125,18 @@ public class BundlerUtil {
         if ( removeFirst && f.exists() )
             f.delete();
 
-        XStream xstream = new XStream( new DomDriver("UTF-8") );
-
         try {
             if ( !f.exists() ){
             	f.createNewFile();
             }	
             
-            OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream( f ), "UTF-8");
-            HierarchicalStreamWriter xmlWriter = new DotPrettyPrintWriter(writer);
-            xstream.marshal(obj, xmlWriter);
-            writer.close();
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream( f ), "UTF-8"));
+            try {
+                HierarchicalStreamWriter xmlWriter = new DotPrettyPrintWriter(writer);
+                xstream.marshal(obj, xmlWriter);
+            } finally {
+                writer.close();
+            }
 
         } catch ( FileNotFoundException e ) {
             Logger.error( PublisherUtil.class, e.getMessage(), e );
@@ -145,8 +153,6 @@ public class BundlerUtil {
      * @return A deserialized object
      */
     public static Object xmlToObject(File f){
-    	XStream xstream = new XStream(new DomDriver("UTF-8"));
-
     	BufferedInputStream input = null;
 		try {
 			input = new BufferedInputStream(new FileInputStream(f));
@@ -0,0 +1,19 @@
+package com.dotcms.publishing;
+
+import java.util.List;
+
+/**
+ * A bundler declaring the bundlers whose output it needs. It is generated as soon as those are
+ * done, at the same time as the bundlers it does not depend on. Bundlers not declaring their
+ * dependencies are generated after all the ones listed before them, as they always were.
+ *
+ * @see BundlerExecutor
+ */
+public interface IDependentBundler extends IBundler {
+
+    /**
+     * @return The classes of the bundlers to generate before this one, empty if there are none
+     */
+    public List<Class> getDependencies ();
+
+}
@@ -26,7 +26,6 @@ public class PublisherAPIImpl implements PublisherAPI {
 
             List<Publisher> pubs = new ArrayList<Publisher>();
             List<Class> bundlers = new ArrayList<Class>();
-            List<IBundler> confBundlers = new ArrayList<IBundler>();
 
             // init publishers
             for ( Class<Publisher> c : config.getPublishers() ) {
@@ -62,16 +61,8 @@ public class PublisherAPIImpl implements PublisherAPI {
             File bundleRoot = BundlerUtil.getBundleRoot( config );
 
             BundlerUtil.writeBundleXML( config );
-            for ( Class<IBundler> c : bundlers ) {
-
-                IBundler bundler = c.newInstance();
-                confBundlers.add( bundler );
-                bundler.setConfig( config );
-                BundlerStatus bs = new BundlerStatus( bundler.getClass().getName() );
-                status.addToBs( bs );
-                //Generate the bundler
-                bundler.generate( bundleRoot, bs );
-            }
+            //Generate the bundlers, each after the ones it depends on
+            List<IBundler> confBundlers = BundlerExecutor.generate( bundlers, config, bundleRoot, status );
 
             config.setBundlers( confBundlers );
 
@@ -1,22 +1,35 @@
 package com.dotcms.rest;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 import com.dotcms.repackage.javax.ws.rs.Consumes;
 import com.dotcms.repackage.javax.ws.rs.POST;
 import com.dotcms.repackage.javax.ws.rs.Path;
+import com.dotcms.repackage.javax.ws.rs.Produces;
 import com.dotcms.repackage.javax.ws.rs.core.Context;
 import com.dotcms.repackage.javax.ws.rs.core.MediaType;
 import com.dotcms.repackage.javax.ws.rs.core.Response;
 
+import com.dotcms.repackage.com.google.common.cache.Cache;
+import com.dotcms.repackage.com.google.common.cache.CacheBuilder;
 import com.dotcms.repackage.org.apache.commons.httpclient.HttpStatus;
 import com.dotcms.repackage.org.apache.commons.io.FileUtils;
+import com.dotcms.repackage.org.apache.commons.io.IOUtils;
 
 import com.dotcms.publisher.bundle.bean.Bundle;
 import com.dotcms.publisher.business.PublishAuditAPI;
@@ -25,10 +38,14 @@ import com.dotcms.publisher.business.PublishAuditStatus.Status;
 import com.dotcms.publisher.business.PublisherQueueJob;
 import com.dotcms.publisher.endpoint.bean.PublishingEndPoint;
 import com.dotcms.publisher.endpoint.business.PublishingEndPointAPI;
+import com.dotcms.publisher.pusher.BundleUploader;
+import com.dotcms.publisher.pusher.PushUtils;
+import com.dotcms.publisher.receiver.BundleBlobStore;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.cms.factories.PublicEncryptionFactory;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotHibernateException;
+import com.dotmarketing.util.Config;
 import com.dotmarketing.util.ConfigUtils;
 import com.dotmarketing.util.FileUtil;
 import com.dotmarketing.util.Logger;
@@ -42,6 +59,15 @@ public class BundlePublisherResource extends WebResource {
 	public static String MY_TEMP = "";
 	private PublishingEndPointAPI endpointAPI = APILocator.getPublisherEndPointAPI();
 
+	// id of the upload that completed each bundle (file name and digest), to answer the chunks sent again
+	private static final Cache<String, String> completedUploads = CacheBuilder.newBuilder()
+			.maximumSize(1000).expireAfterWrite(1, TimeUnit.DAYS).build();
+	// bundles being published, a bundle received again meanwhile is not published twice
+	private static final Set<String> publishing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	// partial bundles not written to for this long are abandoned uploads, looked for once an hour at most
+	private static final long partialMaxAge = Config.getIntProperty("PUSH_PUBLISHING_PARTIAL_BUNDLE_MAX_AGE_HOURS", 24) * 3600 * 1000L;
+	private static final AtomicLong lastPartialCleanup = new AtomicLong();
+
     /**
      * Method that receives from a server a bundle with the intention of publish it.<br/>
      * When a Bundle file is received on this end point is required to validate if the sending server is an allowed<br/>
@@ -95,30 +121,13 @@ public class BundlePublisherResource extends WebResource {
 
 			String bundlePath = ConfigUtils.getBundlePath()+File.separator+MY_TEMP;
 			String fileName=fileDetail.getFileName();
-			String bundleFolder = fileName.substring(0, fileName.indexOf(".tar.gz"));
-
-            PublishAuditStatus status = PublishAuditAPI.getInstance().updateAuditTable( mySelf.getId(), mySelf.getId(), bundleFolder, true );
-
-            if(bundleName.trim().length()>0) {
-			    // save bundle if it doesn't exists
-                Bundle foundBundle = APILocator.getBundleAPI().getBundleById( bundleFolder );
-                if ( foundBundle == null || foundBundle.getId() == null ) {
-                    Bundle b = new Bundle();
-                    b.setId(bundleFolder);
-                    b.setName(bundleName);
-                    b.setPublishDate(Calendar.getInstance().getTime());
-                    b.setOwner(APILocator.getUserAPI().getSystemUser().getUserId());
-                    APILocator.getBundleAPI().saveBundle(b);
-			    }
-			}
+
+            PublishAuditStatus status = registerBundle( mySelf, fileName, bundleName );
 
 			//Write file on FS
 			FileUtil.writeToFile(bundle, bundlePath+fileName);
 
-			//Start thread
-			if(!status.getStatus().equals(Status.PUBLISHING_BUNDLE)) {
-				new Thread(new PublishThread(fileName, groupId, endpointId, status)).start();
-			}
+			startPublishing( status, fileName, groupId, endpointId );
 
 			HibernateUtil.commitTransaction();
 
@@ -150,6 +159,279 @@ public class BundlePublisherResource extends WebResource {
 		return Response.status(HttpStatus.SC_INTERNAL_SERVER_ERROR).build();
 	}
 
+    /**
+     * Receives a chunk of a bundle sent by {@link BundleUploader}. The chunks are appended to a partial file named after the<br/>
+     * MD5 of the bundle, a chunk that does not start where the partial file ends is refused with a 409 status code and the<br/>
+     * length of the partial file, so the sender resumes from there. Once the bundle is complete its MD5 is checked and it is<br/>
+     * added to the {@link PublishThread Publish Thread} right away. A chunk of an upload that already completed (the sender<br/>
+     * did not get the last response) is answered with the length of the bundle, the bundle is not published again.
+     *
+     * @param chunk          Chunk stream
+     * @param auth_token_enc Authentication token
+     * @param groupId        Group who sent the Bundle
+     * @param endpointId     End-point who sent the Bundle
+     * @param bundleName     Name of the Bundle
+     * @param fileName       Name of the bundle file
+     * @param uploadId       Id the sender gave to this upload of the bundle
+     * @param offset         Position of the chunk in the bundle file
+     * @param bundleSize     Length of the bundle file
+     * @param digest         MD5 of the bundle file
+     * @param req            HttpRequest
+     * @return Returns a {@link Response} object with a 200 status code and the length received so far in the<br/>
+     * {@link BundleUploader#OFFSET_HEADER} header, a 409 if the chunk is not the expected one or a 500 error code if anything fails
+     */
+    @POST
+    @Path ("/upload")
+    @Consumes (MediaType.MULTIPART_FORM_DATA)
+	public Response upload(
+			@FormDataParam("chunk") InputStream chunk,
+			@FormDataParam("AUTH_TOKEN") String auth_token_enc,
+			@FormDataParam("GROUP_ID") String groupId,
+			@FormDataParam("ENDPOINT_ID") String endpointId,
+			@FormDataParam("BUNDLE_NAME") String bundleName,
+			@FormDataParam("FILE_NAME") String fileName,
+			@FormDataParam("UPLOAD_ID") String uploadId,
+			@FormDataParam("OFFSET") String offset,
+			@FormDataParam("BUNDLE_SIZE") String bundleSize,
+			@FormDataParam("BUNDLE_DIGEST") String digest,
+			@Context HttpServletRequest req) {
+
+		String remoteIP = "";
+		try {
+			String auth_token = PublicEncryptionFactory.decryptString(auth_token_enc);
+			remoteIP = req.getRemoteHost();
+			if(!UtilMethods.isSet(remoteIP))
+				remoteIP = req.getRemoteAddr();
+
+			PublishingEndPoint mySelf = endpointAPI.findEnabledSendingEndPointByAddress(remoteIP);
+
+			if(!isValidToken(auth_token, remoteIP, mySelf)) {
+				chunk.close();
+				return Response.status(HttpStatus.SC_UNAUTHORIZED).build();
+			}
+
+			if(!UtilMethods.isSet(fileName) || !fileName.matches("[\\w\\-]+\\.tar\\.gz")
+					|| !UtilMethods.isSet(digest) || !digest.matches("[0-9a-f]{32}")) {
+				chunk.close();
+				return Response.status(HttpStatus.SC_BAD_REQUEST).build();
+			}
+
+			String bundlePath = ConfigUtils.getBundlePath()+File.separator+MY_TEMP;
+			File partial = new File(bundlePath+fileName+"."+digest+".part");
+			long position = Long.parseLong(offset);
+			long size = Long.parseLong(bundleSize);
+
+			String uploadKey = fileName+"."+digest;
+
+			if(position == 0) {
+				removeAbandonedUploads(new File(bundlePath));
+			}
+
+			synchronized (partial.getAbsolutePath().intern()) {
+				if(UtilMethods.isSet(uploadId) && uploadId.equals(completedUploads.getIfPresent(uploadKey))) {
+					chunk.close();
+					return Response.status(HttpStatus.SC_OK).header(BundleUploader.OFFSET_HEADER, size).build();
+				}
+
+				long received = partial.exists() ? partial.length() : 0;
+				if(received > size) {
+					partial.delete();
+					received = 0;
+				}
+				if(position != received) {
+					chunk.close();
+					return Response.status(HttpStatus.SC_CONFLICT).header(BundleUploader.OFFSET_HEADER, received).build();
+				}
+
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(partial, true));
+				try {
+					IOUtils.copyLarge(chunk, out);
+				} finally {
+					out.close();
+					chunk.close();
+				}
+
+				received = partial.length();
+				if(received < size) {
+					return Response.status(HttpStatus.SC_OK).header(BundleUploader.OFFSET_HEADER, received).build();
+				}
+				if(received > size || !digest.equals(PushUtils.digest(partial))) {
+					Logger.warn(this, "Bundle " + fileName + " received from " + remoteIP + " does not match its digest, discarding it");
+					partial.delete();
+					return Response.status(HttpStatus.SC_CONFLICT).header(BundleUploader.OFFSET_HEADER, 0).build();
+				}
+
+				File bundle = new File(bundlePath+fileName);
+				if(bundle.exists()) {
+					bundle.delete();
+				}
+				if(!partial.renameTo(bundle)) {
+					FileUtils.copyFile(partial, bundle);
+					partial.delete();
+				}
+
+				HibernateUtil.startTransaction();
+
+				PublishAuditStatus status = registerBundle( mySelf, fileName, bundleName );
+
+				startPublishing( status, fileName, groupId, endpointId );
+
+				HibernateUtil.commitTransaction();
+
+				// before releasing the lock, a chunk sent again meanwhile must find the upload completed
+				if(UtilMethods.isSet(uploadId)) {
+					completedUploads.put(uploadKey, uploadId);
+				}
+			}
+
+			return Response.status(HttpStatus.SC_OK).header(BundleUploader.OFFSET_HEADER, bundleSize).build();
+		} catch (Exception e) {
+		    try {
+                HibernateUtil.rollbackTransaction();
+            } catch (DotHibernateException e1) {
+                Logger.error(this, "error rollback",e1);
+            }
+			Logger.error(PublisherQueueJob.class, "Error caused by remote call of: "+remoteIP);
+			Logger.error(PublisherQueueJob.class,e.getMessage(),e);
+		}
+		finally {
+		    try {
+                HibernateUtil.closeSession();
+            } catch (DotHibernateException e) {
+                Logger.error(this, "error close session",e);
+            }
+		}
+
+		return Response.status(HttpStatus.SC_INTERNAL_SERVER_ERROR).build();
+	}
+
+    /**
+     * Removes the partial bundles not written to in <code>PUSH_PUBLISHING_PARTIAL_BUNDLE_MAX_AGE_HOURS</code>, left by
+     * uploads the sender gave up on. Looks for them once an hour at most.
+     *
+     * @param bundleDir Folder the bundles are received in
+     */
+    private static void removeAbandonedUploads(File bundleDir) {
+        long now = System.currentTimeMillis();
+        long last = lastPartialCleanup.get();
+        if(now - last < 3600 * 1000L || !lastPartialCleanup.compareAndSet(last, now)) {
+            return;
+        }
+        File[] partials = bundleDir.listFiles();
+        if(partials == null) {
+            return;
+        }
+        for(File partial : partials) {
+            if(partial.getName().endsWith(".part") && now - partial.lastModified() > partialMaxAge) {
+                synchronized (partial.getAbsolutePath().intern()) {
+                    if(now - partial.lastModified() > partialMaxAge && partial.delete()) {
+                        Logger.info(BundlePublisherResource.class, "Removed the abandoned partial bundle " + partial.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells a sender which of the blobs of a bundle this end point already has in its {@link BundleBlobStore}, so they<br/>
+     * are left out of the bundle it sends.
+     *
+     * @param auth_token_enc Authentication token
+     * @param digests        MD5 of the blobs, one per line
+     * @param req            HttpRequest
+     * @return Returns a {@link Response} object with a 200 status code and the MD5 of the blobs this end point has, one per line
+     */
+    @POST
+    @Path ("/blobs")
+    @Consumes (MediaType.MULTIPART_FORM_DATA)
+    @Produces (MediaType.TEXT_PLAIN)
+	public Response blobs(
+			@FormDataParam("AUTH_TOKEN") String auth_token_enc,
+			@FormDataParam("DIGESTS") String digests,
+			@Context HttpServletRequest req) {
+
+		String remoteIP = "";
+		try {
+			String auth_token = PublicEncryptionFactory.decryptString(auth_token_enc);
+			remoteIP = req.getRemoteHost();
+			if(!UtilMethods.isSet(remoteIP))
+				remoteIP = req.getRemoteAddr();
+
+			PublishingEndPoint mySelf = endpointAPI.findEnabledSendingEndPointByAddress(remoteIP);
+
+			if(!isValidToken(auth_token, remoteIP, mySelf)) {
+				return Response.status(HttpStatus.SC_UNAUTHORIZED).build();
+			}
+
+			StringBuilder held = new StringBuilder();
+			if(UtilMethods.isSet(digests)) {
+				for(String digest : BundleBlobStore.getInstance().contains(Arrays.asList(digests.split("\n")))) {
+					held.append(digest).append('\n');
+				}
+			}
+			return Response.ok(held.toString()).build();
+		} catch (Exception e) {
+			Logger.error(PublisherQueueJob.class, "Error caused by remote call of: "+remoteIP);
+			Logger.error(PublisherQueueJob.class,e.getMessage(),e);
+		}
+
+		return Response.status(HttpStatus.SC_INTERNAL_SERVER_ERROR).build();
+	}
+
+    /**
+     * Updates the audit table for the received bundle and saves the bundle if it doesn't exist
+     *
+     * @param mySelf     Current end point
+     * @param fileName   Name of the bundle file
+     * @param bundleName Name of the Bundle
+     * @return The audit status of the bundle
+     * @throws Exception
+     */
+    private PublishAuditStatus registerBundle ( PublishingEndPoint mySelf, String fileName, String bundleName ) throws Exception {
+
+        String bundleFolder = fileName.substring(0, fileName.indexOf(".tar.gz"));
+
+        PublishAuditStatus status = PublishAuditAPI.getInstance().updateAuditTable( mySelf.getId(), mySelf.getId(), bundleFolder, true );
+
+        if(bundleName.trim().length()>0) {
+            // save bundle if it doesn't exists
+            Bundle foundBundle = APILocator.getBundleAPI().getBundleById( bundleFolder );
+            if ( foundBundle == null || foundBundle.getId() == null ) {
+                Bundle b = new Bundle();
+                b.setId(bundleFolder);
+                b.setName(bundleName);
+                b.setPublishDate(Calendar.getInstance().getTime());
+                b.setOwner(APILocator.getUserAPI().getSystemUser().getUserId());
+                APILocator.getBundleAPI().saveBundle(b);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Starts the publish thread for the bundle, unless it is already being published
+     */
+    private void startPublishing ( PublishAuditStatus status, String fileName, String groupId, String endpointId ) {
+        if(status.getStatus().equals(Status.PUBLISHING_BUNDLE)) {
+            return;
+        }
+        final String bundleId = fileName.substring(0, fileName.indexOf(".tar.gz"));
+        if(!publishing.add(bundleId)) {
+            Logger.info(this, "Bundle " + bundleId + " is already being published, not publishing it again");
+            return;
+        }
+        final PublishThread publishThread = new PublishThread(fileName, groupId, endpointId, status);
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    publishThread.run();
+                } finally {
+                    publishing.remove(bundleId);
+                }
+            }
+        }).start();
+    }
+
     /**
      * Validates a received token
      *
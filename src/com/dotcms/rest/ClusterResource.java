@@ -28,6 +28,7 @@ import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.DotStateException;
 import com.dotmarketing.business.cache.transport.CacheTransport;
 import com.dotmarketing.business.jgroups.JGroupsCacheTransport;
+import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotHibernateException;
@@ -90,6 +91,7 @@ public class ClusterResource extends WebResource {
         	jsonClusterStatusObject.put( "receivedMessages", channel.getReceivedMessages());
         	jsonClusterStatusObject.put( "sentBytes", channel.getSentBytes());
         	jsonClusterStatusObject.put( "sentMessages", channel.getSentMessages());
+        	jsonClusterStatusObject.put( "invalidationBatches", new JSONObject(((JGroupsCacheTransport) cacheTransport).getInvalidationStats().toMap()));
         }
 
 
@@ -97,6 +99,98 @@ public class ClusterResource extends WebResource {
 
     }
 
+    /**
+     * Returns the acquisition, hold and leak counters of the database connections of this node
+     *
+     * @param request
+     * @param params
+     * @return
+     * @throws DotStateException
+     * @throws DotDataException
+     * @throws DotSecurityException
+     * @throws JSONException
+     */
+    @GET
+    @Path ("/getDbConnectionStats/{params:.*}")
+    @Produces ("application/json")
+    public Response getDbConnectionStats ( @Context HttpServletRequest request, @PathParam ("params") String params ) throws DotStateException, DotDataException, DotSecurityException, JSONException {
+
+        InitDataObject initData = init( params, true, request, false, "9" );
+        ResourceResponse responseResource = new ResourceResponse( initData.getParamsMap() );
+
+        JSONObject jsonStats = new JSONObject( DbConnectionFactory.getConnectionStats().toMap() );
+        return responseResource.response( jsonStats.toString() );
+    }
+
+    /**
+     * Returns the hit ratio and saved time of the index query cache of this node
+     *
+     * @param request
+     * @param params
+     * @return
+     * @throws DotStateException
+     * @throws DotDataException
+     * @throws DotSecurityException
+     * @throws JSONException
+     */
+    @GET
+    @Path ("/getIndexQueryCacheStats/{params:.*}")
+    @Produces ("application/json")
+    public Response getIndexQueryCacheStats ( @Context HttpServletRequest request, @PathParam ("params") String params ) throws DotStateException, DotDataException, DotSecurityException, JSONException {
+
+        InitDataObject initData = init( params, true, request, false, "9" );
+        ResourceResponse responseResource = new ResourceResponse( initData.getParamsMap() );
+
+        JSONObject jsonStats = new JSONObject( CacheLocator.getIndexQueryCache().getStats() );
+        return responseResource.response( jsonStats.toString() );
+    }
+
+    /**
+     * Returns the hit ratio of the CMS route cache of this node, 404s included
+     *
+     * @param request
+     * @param params
+     * @return
+     * @throws DotStateException
+     * @throws DotDataException
+     * @throws DotSecurityException
+     * @throws JSONException
+     */
+    @GET
+    @Path ("/getCMSRouteCacheStats/{params:.*}")
+    @Produces ("application/json")
+    public Response getCMSRouteCacheStats ( @Context HttpServletRequest request, @PathParam ("params") String params ) throws DotStateException, DotDataException, DotSecurityException, JSONException {
+
+        InitDataObject initData = init( params, true, request, false, "9" );
+        ResourceResponse responseResource = new ResourceResponse( initData.getParamsMap() );
+
+        JSONObject jsonStats = new JSONObject( CacheLocator.getCMSRouteCache().getStats() );
+        return responseResource.response( jsonStats.toString() );
+    }
+
+    /**
+     * Returns the hit ratio and evictions of the parsed VTL cache of this node
+     *
+     * @param request
+     * @param params
+     * @return
+     * @throws DotStateException
+     * @throws DotDataException
+     * @throws DotSecurityException
+     * @throws JSONException
+     */
+    @GET
+    @Path ("/getVelocityASTCacheStats/{params:.*}")
+    @Produces ("application/json")
+    public Response getVelocityASTCacheStats ( @Context HttpServletRequest request, @PathParam ("params") String params ) throws DotStateException, DotDataException, DotSecurityException, JSONException {
+
+        InitDataObject initData = init( params, true, request, false, "9" );
+        ResourceResponse responseResource = new ResourceResponse( initData.getParamsMap() );
+
+        JSONObject jsonStats = new JSONObject( CacheLocator.getVelocityASTCache().getStats() );
+        return responseResource.response( jsonStats.toString() );
+    }
+
     /**
      * Returns a Map of the Cache Cluster Nodes Status
      *
@@ -1,5 +1,8 @@
 package com.dotmarketing.business;
 
+import java.util.Map;
+import java.util.concurrent.Callable;
+
 import com.dotcms.repackage.org.apache.commons.lang.StringUtils;
 import com.dotmarketing.portlets.htmlpageasset.model.IHTMLPage;
 
@@ -105,11 +108,30 @@ public abstract class BlockPageCache implements Cachable {
 			PageCacheParameters pageChacheParams);
 
 	/**
-	 * Removes a page from the cache, along with all of its versions.
+	 * Retrieves a page from the cache or, when it is not there, renders it
+	 * with the given renderer and adds the result to the cache. Concurrent
+	 * requests for the same version of a page that is not cached wait for
+	 * a single render instead of rendering it at once.
 	 * 
 	 * @param page
 	 *            - The {@link IHTMLPage} object.
+	 * @param pageChacheParams
+	 *            - Values used to retrieve a specific page from the cache.
+	 * @param renderer
+	 *            - Renders the page when it is not in the cache.
+	 * @return The String representation of the page.
+	 * @throws Exception
+	 *             The page could not be rendered.
+	 */
+	abstract public String getOrRender(IHTMLPage page,
+			PageCacheParameters pageChacheParams, Callable<String> renderer)
+			throws Exception;
+
+	/**
+	 * Returns the hit, miss and coalesced render counters of this cache.
+	 * 
+	 * @return The cache statistics.
 	 */
-	abstract public void remove(IHTMLPage page);
+	abstract public Map<String, Object> getStats();
 
 }
@@ -1,38 +1,44 @@
 package com.dotmarketing.business;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.dotcms.enterprise.LicenseUtil;
+import com.dotcms.repackage.com.google.common.cache.Cache;
+import com.dotcms.repackage.com.google.common.cache.CacheBuilder;
+import com.dotcms.repackage.com.google.common.cache.Weigher;
 import com.dotmarketing.portlets.htmlpageasset.model.IHTMLPage;
+import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.SingleFlight;
+import com.dotmarketing.util.UUIDGenerator;
 
 /**
- * Provides the caching implementation for HTML pages. This approach uses a main
- * key to retrieve a cached page, and a subkey to retrieve the different
- * versions of it. With this structure, during the removal of a page, all the 
- * different versions of it will also be deleted easily. So, basically:
+ * Provides the caching implementation for HTML pages. Every version of a page
+ * is stored in its own entry of a concurrent, segmented in-memory cache, so
+ * lookups never take a global lock. The key of an entry is composed of:
  * <ul>
- * 	<li>
- * 		The main key is composed of:
- * 		<ul>
- * 		<li>The page Inode.</li>
- * 		<li>The page modification date in milliseconds.</li>
- * 		</ul>
- *  </li>
- *  <li>
- * 		The subkey is composed of:
- * 		<ul>
- * 		<li>The current user ID.</li>
- * 		<li>The currently selected language ID.</li>
- * 		<li>The URL map.</li>
- * 		<li>The query String in the URL.</li>
- * 		</ul>
- *  </li>
+ * 	<li>The page Inode.</li>
+ * 	<li>The page modification date in milliseconds.</li>
+ * 	<li>The subkey given by {@link PageCacheParameters#getKey()}: the current
+ * 	user ID, the selected language ID, the URL map and the query String.</li>
  * </ul>
- * 
+ * <p>
+ * Entries expire once the Cache TTL of their page has passed. The cache is
+ * bounded by the total size of the cached pages
+ * ({@code BLOCK_PAGE_CACHE_MAX_MEMORY_MB}), least recently used entries are
+ * evicted first.
+ * </p>
+ * <p>
+ * The pages are not kept in the {@link DotCacheAdministrator}, but a
+ * generation token is. Flushing the {@link #getPrimaryGroup()} group, locally
+ * or from another node of the cluster, removes the token and makes this cache
+ * drop all of its entries on the next lookup.
+ * </p>
+ *
  * @author Jose Castro
  * @version 1.0
  * @since 10-17-2014
@@ -40,16 +46,44 @@ import com.dotmarketing.util.Logger;
  */
 public class BlockPageCacheImpl extends BlockPageCache {
 
+	private static final String GENERATION_KEY = "generation";
+
 	private boolean canCache = false;
 	private DotCacheAdministrator cache = null;
 	private static String primaryCacheGroup = "BlockDirectiveHTMLPageCache";
 
+	private final Cache<PageCacheKey, BlockDirectiveCacheObject> pages;
+	private final SingleFlight<PageCacheKey, String> renders;
+	private volatile String generation = null;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
 	/**
 	 * Default constructor. Initializes the internal caching structures.
 	 */
 	public BlockPageCacheImpl() {
 		this.cache = CacheLocator.getCacheAdministrator();
 		this.canCache = LicenseUtil.getLevel() > 99;
+
+		long maxMemory = Config.getIntProperty("BLOCK_PAGE_CACHE_MAX_MEMORY_MB", 64) * 1024L * 1024L;
+		this.pages = CacheBuilder.newBuilder()
+				.maximumWeight(maxMemory)
+				.weigher(new Weigher<PageCacheKey, BlockDirectiveCacheObject>() {
+					public int weigh(PageCacheKey key, BlockDirectiveCacheObject value) {
+						// Strings take 2 bytes per char, plus some room for the objects themselves
+						int chars = key.subkey.length() + key.inode.length()
+								+ (value.getValue() != null ? value.getValue().length() : 0);
+						return 2 * chars + 128;
+					}
+				})
+				.expireAfterWrite(Config.getIntProperty("BLOCK_PAGE_CACHE_MAX_TTL", 86400), TimeUnit.SECONDS)
+				.concurrencyLevel(Config.getIntProperty("cache.concurrencylevel", 32))
+				.recordStats()
+				.build();
+		this.renders = new SingleFlight<PageCacheKey, String>(
+				Config.getIntProperty("BLOCK_PAGE_CACHE_RENDER_WAIT", 10000));
 	}
 
 	@Override
@@ -65,109 +99,146 @@ public class BlockPageCacheImpl extends BlockPageCache {
 
 	@Override
 	public void clearCache() {
+		pages.invalidateAll();
 		cache.flushGroup(primaryCacheGroup);
 	}
 
 	@Override
 	public void add(IHTMLPage page, String value,
 			PageCacheParameters pageChacheParams) {
-		if (page == null || pageChacheParams == null
-				|| pageChacheParams == null) {
+		if (page == null || pageChacheParams == null || value == null) {
 			return;
 		}
-		StringBuilder key = new StringBuilder();
-		key.append(page.getInode());
-		key.append("_" + page.getModDate().getTime());
-		String subkey = pageChacheParams.getKey();
+		checkGeneration();
 		BlockDirectiveCacheObject cto = new BlockDirectiveCacheObject(value,
 				(int) page.getCacheTTL());
-		synchronized (cache) {
-			try {
-				// Lookup the cached versions of a page
-				List<Map<String, Object>> cachedPages = (List<Map<String, Object>>) this.cache
-						.get(key.toString(), primaryCacheGroup);
-				if (cachedPages != null) {
-					boolean updatedEntry = false;
-					// Update version of page based on userid, language and
-					// urlmap
-					for (Map<String, Object> pageInfo : cachedPages) {
-						if (pageInfo.containsKey(subkey)) {
-							pageInfo.put(subkey, cto);
-							updatedEntry = true;
-							break;
-						}
-					}
-					// Or add a new one
-					if (!updatedEntry) {
-						Map<String, Object> pageInfo = new HashMap<String, Object>();
-						pageInfo.put(subkey, cto);
-						cachedPages.add(pageInfo);
-					}
-				}
-			} catch (DotCacheException e) {
-				// Key does not exist in cache, then add it
-			}
-			List<Map<String, Object>> versions = new ArrayList<Map<String, Object>>();
-			Map<String, Object> pageInfo = new HashMap<String, Object>();
-			pageInfo.put(subkey, cto);
-			versions.add(pageInfo);
-			this.cache.put(key.toString(), versions, primaryCacheGroup);
-		}
+		pages.put(new PageCacheKey(page, pageChacheParams), cto);
 	}
 
 	@Override
 	public String get(IHTMLPage page, PageCacheParameters pageChacheParams) {
-		if (!canCache || page == null || pageChacheParams == null
-				|| pageChacheParams == null) {
+		if (!canCache || page == null || pageChacheParams == null) {
 			return null;
 		}
-		StringBuilder key = new StringBuilder();
-		key.append(page.getInode());
-		key.append("_" + page.getModDate().getTime());
-		String subkey = pageChacheParams.getKey();
-		synchronized (cache) {
-			// Lookup the cached versions of the page based on inode and moddate
-			try {
-				List<Map<String, Object>> cachedPages = (List<Map<String, Object>>) this.cache
-						.get(key.toString(), primaryCacheGroup);
-				BlockDirectiveCacheObject cto = null;
-				if (cachedPages != null) {
-					for (Map<String, Object> pageInfo : cachedPages) {
-						// Lookup specific page with userid, language and urlmap
-						if (pageInfo.containsKey(subkey)) {
-							cto = (BlockDirectiveCacheObject) pageInfo
-									.get(subkey);
-							break;
-						}
-					}
-					if (cto != null
-							&& cto.getCreated()
-									+ ((int) page.getCacheTTL() * 1000) > System
-										.currentTimeMillis()) {
-						return cto.getValue();
-					} else {
-						// Remove page from cache if expired and get new version
-						remove(page);
-					}
-				}
-			} catch (DotCacheException e) {
-				Logger.error(this.getClass(), "cache entry :" + key.toString()
-						+ " not found");
+		checkGeneration();
+		PageCacheKey key = new PageCacheKey(page, pageChacheParams);
+		BlockDirectiveCacheObject cto = pages.getIfPresent(key);
+		if (cto != null) {
+			if (cto.getCreated() + ((int) page.getCacheTTL() * 1000) > System.currentTimeMillis()) {
+				hits.incrementAndGet();
+				return cto.getValue();
 			}
+			// Remove this version of the page from cache if expired and get a new one
+			expirations.incrementAndGet();
+			pages.asMap().remove(key, cto);
 		}
+		misses.incrementAndGet();
 		return null;
 	}
 
 	@Override
-	public void remove(IHTMLPage page) {
+	public String getOrRender(final IHTMLPage page,
+			final PageCacheParameters pageChacheParams,
+			final Callable<String> renderer) throws Exception {
+		String value = get(page, pageChacheParams);
+		if (value != null) {
+			return value;
+		}
+		if (!canCache || page == null || pageChacheParams == null) {
+			return renderer.call();
+		}
+		return renders.execute(new PageCacheKey(page, pageChacheParams), new Callable<String>() {
+			public String call() throws Exception {
+				String rendered = renderer.call();
+				add(page, rendered, pageChacheParams);
+				return rendered;
+			}
+		});
+	}
+
+	@Override
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("entries", pages.size());
+		stats.put("hits", hits.get());
+		stats.put("misses", misses.get());
+		stats.put("expirations", expirations.get());
+		stats.put("evictions", pages.stats().evictionCount());
+		stats.put("renders", renders.getExecuted());
+		stats.put("coalescedRenders", renders.getCoalesced());
+		stats.put("rendersInFlight", renders.getInFlight());
+		return stats;
+	}
+
+	/**
+	 * Drops all the local entries if the generation token kept in the
+	 * {@link DotCacheAdministrator} is gone, which means the group was flushed.
+	 */
+	private void checkGeneration() {
+		Object token = getGeneration();
+		if (token == null || !token.equals(generation)) {
+			synchronized (this) {
+				token = getGeneration();
+				if (token == null || !token.equals(generation)) {
+					pages.invalidateAll();
+					generation = UUIDGenerator.generateUuid();
+					cache.put(GENERATION_KEY, generation, primaryCacheGroup);
+				}
+			}
+		}
+	}
+
+	private Object getGeneration() {
 		try {
-			StringBuilder key = new StringBuilder();
-			key.append(page.getInode());
-			key.append("_" + page.getModDate().getTime());
-			this.cache.remove(key.toString(), primaryCacheGroup);
-		} catch (Exception e) {
-			Logger.debug(this, "Cache not able to be removed", e);
+			return cache.get(GENERATION_KEY, primaryCacheGroup);
+		} catch (DotCacheException e) {
+			Logger.debug(this, "Unable to read the page cache generation", e);
+			return null;
 		}
 	}
 
+	/**
+	 * Identifies a specific version of a page in the cache.
+	 */
+	private static class PageCacheKey {
+
+		private final String inode;
+		private final long modDate;
+		private final String subkey;
+		private final int hash;
+
+		PageCacheKey(IHTMLPage page, PageCacheParameters pageChacheParams) {
+			this.inode = page.getInode();
+			this.modDate = page.getModDate().getTime();
+			this.subkey = pageChacheParams.getKey();
+			int h = inode.hashCode();
+			h = 31 * h + (int) (modDate ^ (modDate >>> 32));
+			h = 31 * h + subkey.hashCode();
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof PageCacheKey)) {
+				return false;
+			}
+			PageCacheKey other = (PageCacheKey) obj;
+			return modDate == other.modDate && inode.equals(other.inode) && subkey.equals(other.subkey);
+		}
+
+		@Override
+		public String toString() {
+			return inode + "_" + modDate + "_" + subkey;
+		}
+
+	}
+
 }
@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.dotcms.content.elasticsearch.business.IndexQueryCache;
+import com.dotcms.content.elasticsearch.business.IndexQueryCacheImpl;
 import com.dotcms.content.elasticsearch.business.IndiciesCache;
 import com.dotcms.content.elasticsearch.business.IndiciesCacheImpl;
 import com.dotcms.csspreproc.CSSCache;
@@ -23,6 +25,8 @@ import com.dotmarketing.cache.ContentTypeCacheImpl;
 import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotRuntimeException;
+import com.dotmarketing.filters.CMSRouteCache;
+import com.dotmarketing.filters.CMSRouteCacheImpl;
 import com.dotmarketing.logConsole.model.LogMapperCache;
 import com.dotmarketing.logConsole.model.LogMapperCacheImpl;
 import com.dotmarketing.plugin.business.PluginCache;
@@ -58,6 +62,8 @@ import com.dotmarketing.portlets.workflows.business.WorkflowCacheImpl;
 import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.velocity.DotResourceCache;
+import com.dotmarketing.velocity.VelocityASTCache;
+import com.dotmarketing.velocity.VelocityASTCacheImpl;
 import com.dotmarketing.viewtools.navigation.NavToolCache;
 import com.dotmarketing.viewtools.navigation.NavToolCacheImpl;
 
@@ -275,6 +281,18 @@ public class CacheLocator extends Locator<CacheIndex>{
         return (ContentTypeCache) getInstance(CacheIndex.ContentTypeCache);
     }
 
+    public static IndexQueryCache getIndexQueryCache() {
+        return (IndexQueryCache) getInstance(CacheIndex.IndexQuery);
+    }
+
+    public static CMSRouteCache getCMSRouteCache() {
+        return (CMSRouteCache) getInstance(CacheIndex.CMSRoute);
+    }
+
+    public static VelocityASTCache getVelocityASTCache() {
+        return (VelocityASTCache) getInstance(CacheIndex.VelocityAST);
+    }
+
 
 	/**
 	 * The legacy cache administrator will invalidate cache entries within a cluster
@@ -361,7 +379,10 @@ enum CacheIndex
 	PushedAssets("PushedAssets Cache"),
 	CSSCache("Processed CSS Cache"),
 	NewNotification("NewNotification Cache"), 
-	ContentTypeCache("Content Type Cache");
+	ContentTypeCache("Content Type Cache"),
+	IndexQuery("Index Query Cache"),
+	CMSRoute("CMS Route Cache"),
+	VelocityAST("Velocity AST Cache");
 
 	Cachable create() {
 		switch(this) {
@@ -400,6 +421,9 @@ enum CacheIndex
       	case CSSCache: return new CSSCacheImpl();
       	case NewNotification: return new NewNotificationCacheImpl();
       	case ContentTypeCache: return new ContentTypeCacheImpl();
+      	case IndexQuery: return new IndexQueryCacheImpl();
+      	case CMSRoute: return new CMSRouteCacheImpl();
+      	case VelocityAST: return new VelocityASTCacheImpl();
 		}
 		throw new AssertionError("Unknown Cache index: " + this);
 	}
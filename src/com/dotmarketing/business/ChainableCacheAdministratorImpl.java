@@ -10,6 +10,7 @@ import com.dotcms.enterprise.cluster.ClusterFactory;
 import com.dotcms.repackage.com.google.common.cache.RemovalListener;
 import com.dotcms.repackage.com.google.common.cache.RemovalNotification;
 import com.dotcms.enterprise.cache.provider.CacheProviderAPI;
+import com.dotmarketing.business.cache.transport.CacheInvalidationBuffer;
 import com.dotmarketing.business.cache.transport.CacheTransport;
 import com.dotmarketing.business.cache.transport.CacheTransportException;
 import com.dotmarketing.common.business.journal.DistributedJournalAPI;
@@ -37,6 +38,10 @@ public class ChainableCacheAdministratorImpl implements DotCacheAdministrator {
 	private DistributedJournalAPI journalAPI;
 	private CacheProviderAPI cacheProviderAPI;
 	private boolean useTransportChannel = false;
+	private final boolean batchInvalidations = Config.getBooleanProperty("CACHE_INVALIDATION_BATCHING", true);
+	private final CacheInvalidationBuffer invalidationBuffer = new CacheInvalidationBuffer(this);
+
+	private static final String FLUSH_INVALIDATIONS_TAG = "cache-invalidation-flush";
 
 	public static final String TEST_MESSAGE = "HELLO CLUSTER!";
 	public static final String TEST_MESSAGE_NODE = "TESTNODE";
@@ -228,7 +233,11 @@ public class ChainableCacheAdministratorImpl implements DotCacheAdministrator {
 
 				if ( getTransport() != null ) {
 					try {
-						getTransport().send("0:" + ROOT_GOUP);
+						if ( batchInvalidations ) {
+							invalidationBuffer.addFlushAll();
+						} else {
+							getTransport().send("0:" + ROOT_GOUP);
+						}
 					} catch ( Exception e ) {
 						Logger.error(ChainableCacheAdministratorImpl.class, "Unable to send invalidation to cluster : " + e.getMessage(), e);
 					}
@@ -265,7 +274,12 @@ public class ChainableCacheAdministratorImpl implements DotCacheAdministrator {
 			} else if ( useTransportChannel ) {
 
 				try {
-					cacheTransport.send("0:" + group);
+					if ( batchInvalidations ) {
+						invalidationBuffer.addGroupFlush(group);
+						flushInvalidationsOnCommit();
+					} else {
+						cacheTransport.send("0:" + group);
+					}
 				} catch (Exception e) {
 					Logger.error(ChainableCacheAdministratorImpl.class, "Unable to send invalidation to cluster : " + e.getMessage(), e);
 				}
@@ -353,7 +367,11 @@ public class ChainableCacheAdministratorImpl implements DotCacheAdministrator {
 
 						if ( getTransport() != null ) {
 							try {
-								getTransport().send(k + ":" + g);
+								if ( batchInvalidations ) {
+									invalidationBuffer.addKey(k, g);
+								} else {
+									getTransport().send(k + ":" + g);
+								}
 							} catch ( Exception e ) {
 								Logger.error(ChainableCacheAdministratorImpl.class, "Unable to send invalidation to cluster : " + e.getMessage(), e);
 							}
@@ -377,6 +395,29 @@ public class ChainableCacheAdministratorImpl implements DotCacheAdministrator {
 		}
 
 		cacheRemoveRunnable.run();
+		if ( batchInvalidations && useTransportChannel ) {
+			flushInvalidationsOnCommit();
+		}
+	}
+
+	/**
+	 * When running inside a transaction the buffered invalidations are sent
+	 * as soon as it commits instead of waiting for the buffer delay. Removals
+	 * re-run by commit listeners registered after this one are shipped by the
+	 * buffer delay as usual.
+	 */
+	private void flushInvalidationsOnCommit () {
+		try {
+			if ( DbConnectionFactory.inTransaction() ) {
+				HibernateUtil.addCommitListener(FLUSH_INVALIDATIONS_TAG, new Runnable() {
+					public void run () {
+						invalidationBuffer.flush();
+					}
+				});
+			}
+		} catch ( Exception e ) {
+			Logger.error(ChainableCacheAdministratorImpl.class, e.getMessage(), e);
+		}
 	}
 
 	public void removeLocalOnly ( final String key, final String group ) {
@@ -411,6 +452,7 @@ public class ChainableCacheAdministratorImpl implements DotCacheAdministrator {
 	public void shutdownChannel () {
 
 		if ( getTransport() != null ) {
+			invalidationBuffer.shutdown();
 			getTransport().shutdown();
 			useTransportChannel = false;
 		} else {
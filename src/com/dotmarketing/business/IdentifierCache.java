@@ -45,6 +45,12 @@ public abstract class IdentifierCache implements Cachable {
 
 	abstract public void clearCache();
 
+	/**
+	 * Removes the identifiers, found by id or by URI, keeping the versions. Used when many of them
+	 * change their path at once
+	 */
+	abstract public void clearIdentifiers();
+
 	public String[] getGroups() {
 		String[] groups = { getPrimaryGroup(), getVersionInfoGroup(),getVersionGroup(),get404Group() };
 		return groups;
@@ -7,10 +7,14 @@
 package com.dotmarketing.business;
 
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 import com.dotmarketing.beans.Host;
 import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.beans.VersionInfo;
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
 import com.dotmarketing.util.InodeUtils;
 import com.dotmarketing.util.Logger;
@@ -24,6 +28,10 @@ public class IdentifierCacheImpl extends IdentifierCache {
 
 	DotCacheAdministrator cache = null;
 
+	// asset name of the content without a URL, see IdentifierFactoryImpl
+	private static final Pattern CONTENT_ASSET_NAME = Pattern.compile(
+			"content\\.([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}|[0-9]+)");
+
 	protected IdentifierCacheImpl() {
 
 		cache = CacheLocator.getCacheAdministrator();
@@ -156,6 +164,12 @@ public class IdentifierCacheImpl extends IdentifierCache {
 	protected void removeFromCacheByIdentifier(Identifier id) {
 		if(id==null) return;
 		
+		// without a host the identifier is not saved yet, so no route resolved
+		// to it; the 404s cached for its URI go with removeFromCacheByURI
+		if(UtilMethods.isSet(id.getHostId()) && hasRoute(id)) {
+		    CacheLocator.getCMSRouteCache().invalidate(id.getHostId());
+		}
+		
 		if(InodeUtils.isSet(id.getId())) {
 		    final String key = getPrimaryGroup() + id.getId();
             cache.remove(key,  getPrimaryGroup());
@@ -181,12 +195,25 @@ public class IdentifierCacheImpl extends IdentifierCache {
 		}
 	}
 	
+	/**
+	 * Tells whether the identifier can be what a route of the {@link com.dotmarketing.filters.CMSRouteCache}
+	 * resolved to: pages, files, folders and links. Content without a URL is
+	 * named after its inode (<code>content.&lt;inode&gt;</code>), saving it
+	 * leaves the routes of its host alone. An identifier of unknown type is
+	 * taken as having a route.
+	 */
+	private boolean hasRoute(Identifier id) {
+		return !("contentlet".equals(id.getAssetType()) && id.getAssetName() != null
+				&& CONTENT_ASSET_NAME.matcher(id.getAssetName()).matches());
+	}
+
 	public void removeFromCacheByIdentifier(String ident) {
 		
 		Identifier id = getIdentifier(ident);
 		if(id==null){
 			id=new Identifier();
 			id.setId(ident);
+			id.setHostId(findHostId(ident));
 		}
 		
 		removeFromCacheByIdentifier(id);
@@ -195,12 +222,32 @@ public class IdentifierCacheImpl extends IdentifierCache {
 	
 
 
+	/**
+	 * Returns the host of an identifier not in cache, null if it is not saved
+	 */
+	private String findHostId(String ident) {
+		if(!InodeUtils.isSet(ident)) {
+			return null;
+		}
+		try {
+			DotConnect dc = new DotConnect();
+			dc.setSQL("select host_inode from identifier where id = ?");
+			dc.addParam(ident);
+			List<Map<String, Object>> rows = dc.loadObjectResults();
+			return rows.isEmpty() ? null : (String) rows.get(0).get("host_inode");
+		} catch (DotDataException e) {
+			Logger.debug(this, "Unable to find the host of identifier " + ident, e);
+			return null;
+		}
+	}
+
 	protected void removeFromCacheByURI(String hostId,String URI) {
 		Identifier id = getIdentifier(hostId,URI);
 		if(id==null) {
     		String key = getPrimaryGroup() + hostId + "-" + URI;
     		cache.remove(key, getPrimaryGroup());
     		cache.remove(key, get404Group());
+    		CacheLocator.getCMSRouteCache().invalidate(hostId);
 		}
 		else {
 		    removeFromCacheByIdentifier(id);
@@ -226,6 +273,12 @@ public class IdentifierCacheImpl extends IdentifierCache {
 	    }
 	}
 
+	public void clearIdentifiers() {
+	    cache.flushGroup(getPrimaryGroup());
+	    cache.flushGroup(get404Group());
+	    CacheLocator.getCMSRouteCache().invalidateAll();
+	}
+
     @Override
     protected void addContentletVersionInfoToCache(ContentletVersionInfo contV) {
         String key=contV.getIdentifier()+"-lang:"+contV.getLang();
@@ -255,6 +255,18 @@ public interface PermissionAPI {
 	 */
 	List<Permission> getPermissions(Permissionable permissionable, boolean bitPermissions, boolean onlyIndividualPermissions, boolean forceLoadFromDB) throws DotDataException;
 
+	/**
+	 * Same as {@link #getPermissions(Permissionable, boolean)} for many permissionables at once, the
+	 * permissions not found in cache are loaded with set-based queries
+	 *
+	 * @param permissionables
+	 * @param bitPermissions if true returns the new compressed bit permissions format
+	 * @return The permissions of each permissionable
+	 * @throws DotDataException
+	 * @throws DotSecurityException
+	 */
+	Map<Permissionable, List<Permission>> getPermissions(List<Permissionable> permissionables, boolean bitPermissions) throws DotDataException, DotSecurityException;
+
     /**
      * For new Permissionables adds its permissions to cache.
      *
@@ -580,6 +580,11 @@ public class PermissionBitAPIImpl implements PermissionAPI {
 		return permissionFactory.getPermissions(permissionable, bitPermissions, onlyIndividualPermissions, forceLoadFromDB);
 	}
 
+	public Map<Permissionable, List<Permission>> getPermissions(List<Permissionable> permissionables, boolean bitPermissions)
+			throws DotDataException, DotSecurityException {
+		return permissionFactory.getPermissions(permissionables, bitPermissions);
+	}
+
     public void addPermissionsToCache ( Permissionable permissionable ) throws DotDataException {
         permissionFactory.addPermissionsToCache( permissionable );
     }
@@ -1087,19 +1092,125 @@ public class PermissionBitAPIImpl implements PermissionAPI {
 			return permissionables;
 		}
 
-		Permissionable permissionable;
-		int i = 0;
+		if(user!=null && user.getUserId().equals(APILocator.getUserAPI().getSystemUser().getUserId())){
+			return permissionables;
+		}
+
+		// Everything that doesn't depend on the permissionable is resolved once for the whole collection
+		Role adminRole = roleAPI.loadCMSAdminRole();
+		Role anonRole = roleAPI.loadCMSAnonymousRole();
+		Role frontEndUserRole = roleAPI.loadLoggedinSiteRole();
+		Role cmsOwnerRole = roleAPI.loadCMSOwnerRole();
 
-		while (i < permissionables.size()) {
-			permissionable = permissionables.get(i);
-			if(!doesUserHavePermission(permissionable, requiredTypePermission, user, respectFrontendRoles)){
-				permissionables.remove(i);
-			} else {
-				++i;
+		Set<String> userRoleIds = new HashSet<String>();
+		boolean onlyFrontEndRoles = false;
+		if(user != null) {
+			for (Role role : roleAPI.loadRolesForUser(user.getUserId())) {
+				userRoleIds.add(role.getId());
+			}
+			if(userRoleIds.contains(adminRole.getId())) {
+				return permissionables;
+			}
+			if(!respectFrontendRoles) {
+				List<String> frontEndRoles = new ArrayList<String>(3);
+				frontEndRoles.add(anonRole.getId());
+				frontEndRoles.add(frontEndUserRole.getId());
+				frontEndRoles.add(roleAPI.loadRoleByKey("anonymous").getId());
+				onlyFrontEndRoles = frontEndRoles.containsAll(userRoleIds);
 			}
 		}
 
-		return permissionables;
+		// Permissions of the whole collection, the ones not in cache are loaded in batches
+		Map<Permissionable, List<Permission>> permissionsByPermissionable =
+				permissionFactory.getPermissions(new ArrayList<Permissionable>(permissionables), true);
+
+		List<P> filtered = new ArrayList<P>(permissionables.size());
+		for (P permissionable : permissionables) {
+			if(permissionable == null){
+				Logger.error(this, "Permissionable object is null");
+				throw new NullPointerException("Permissionable object is null");
+			}
+			if(!InodeUtils.isSet(permissionable.getPermissionId())) {
+				continue;
+			}
+
+			int permissionType = requiredTypePermission;
+			// Folders do not have PUBLISH, use EDIT instead
+			if(PermissionableType.FOLDERS.getCanonicalName().equals(permissionable.getPermissionType()) && permissionType == PERMISSION_PUBLISH){
+				permissionType=PERMISSION_EDIT;
+			}
+
+			// http://jira.dotmarketing.net/browse/DOTCMS-6943
+			// everybody should be able to use file structures
+			if (permissionable instanceof Structure
+					&& (permissionType==PERMISSION_WRITE || permissionType==PERMISSION_PUBLISH)
+					&& ((Structure)permissionable).getStructureType()==Structure.STRUCTURE_TYPE_FILEASSET) {
+				filtered.add(permissionable);
+				continue;
+			}
+
+			List<Permission> perms = permissionsByPermissionable.get(permissionable);
+			if(perms == null) {
+				perms = getPermissions(permissionable, true);
+			}
+
+			if(hasFrontEndOrOwnerPermission(permissionable, perms, permissionType, user, respectFrontendRoles, anonRole, frontEndUserRole, cmsOwnerRole)) {
+				filtered.add(permissionable);
+				continue;
+			}
+
+			if(user == null) {
+				continue;
+			}
+
+			// Form permissions are resolved apart, see doesUserHavePermission
+			if(permissionable.toString().contains("formId=")) {
+				if(doesUserHavePermission(permissionable, requiredTypePermission, user, respectFrontendRoles)) {
+					filtered.add(permissionable);
+				}
+				continue;
+			}
+
+			if(onlyFrontEndRoles) {
+				continue;
+			}
+
+			for (Permission p : perms) {
+				if(p.matchesPermission(permissionType) && userRoleIds.contains(p.getRoleId())) {
+					filtered.add(permissionable);
+					break;
+				}
+			}
+		}
+
+		return filtered;
+	}
+
+	/**
+	 * Same checks doesUserHavePermission does before looking at the user roles: the anonymous
+	 * and logged in site user roles, when respecting front end roles, and the owner role.
+	 */
+	private boolean hasFrontEndOrOwnerPermission(Permissionable permissionable, List<Permission> perms, int permissionType, User user,
+			boolean respectFrontendRoles, Role anonRole, Role frontEndUserRole, Role cmsOwnerRole) throws DotDataException {
+
+		for (Permission p : perms) {
+			if(!p.matchesPermission(permissionType)) {
+				continue;
+			}
+			if(respectFrontendRoles){
+				if(p.getRoleId().equals(anonRole.getId())){
+					return true;
+				}else if(user != null && p.getRoleId().equals(frontEndUserRole.getId())){
+					return true;
+				}
+			}
+			if(p.getRoleId().equals(cmsOwnerRole.getId()) && user != null &&
+					permissionable.getOwner() != null && permissionable.getOwner().equals(user.getUserId()) &&
+					checkRelatedPermissions(permissionable.permissionDependencies(permissionType), user)){
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public <P extends Permissionable> List<P> filterCollectionByDBPermissionReference(List<P> inputList, int requiredTypePermission,boolean respectFrontendRoles, User user) throws DotDataException, DotSecurityException {
@@ -2,9 +2,11 @@ package com.dotmarketing.business;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +14,7 @@ import java.util.Set;
 
 import com.dotcms.content.elasticsearch.business.ContentletIndexAPI;
 import com.dotcms.content.elasticsearch.business.ESContentletIndexAPI;
+import com.dotcms.content.elasticsearch.business.IndexDocumentBatch;
 import com.dotcms.content.elasticsearch.util.ESClient;
 import com.dotcms.repackage.org.elasticsearch.action.bulk.BulkRequestBuilder;
 import com.dotmarketing.beans.Host;
@@ -80,6 +83,8 @@ public class PermissionBitFactoryImpl extends PermissionFactory {
 	 * 2. The permisionable id
 	 */
 
+	private static final int LOAD_PERMISSIONS_BATCH_SIZE = 500;
+
 	private final String loadPermissionSQL =
 		" select {permission.*} from permission where inode_id = ? "+
         " union all "+
@@ -2176,13 +2181,136 @@ public class PermissionBitFactoryImpl extends PermissionFactory {
 
 		Map<Permissionable, List<Permission>> result = new HashMap<Permissionable, List<Permission>>();
 
+		// permissionables not in cache, by permission id
+		Map<String, List<Permissionable>> missing = new LinkedHashMap<String, List<Permissionable>>();
 		for(Permissionable p : permissionables) {
-			List<Permission> permission = getPermissions(p, bitPermission);
-			result.put(p, permission);
+			String permissionId = p.getPermissionId();
+			if(!InodeUtils.isSet(permissionId)) {
+				result.put(p, new ArrayList<Permission>());
+				continue;
+			}
+			List<Permission> bitPermissionsList = permissionCache.getPermissionsFromCache(permissionId);
+			if(bitPermissionsList != null && bitPermissionsList.size() > 0) {
+				result.put(p, toPermissionsToReturn(bitPermissionsList, permissionId, bitPermission));
+				continue;
+			}
+			List<Permissionable> samePermissionId = missing.get(permissionId);
+			if(samePermissionId == null) {
+				samePermissionId = new ArrayList<Permissionable>(1);
+				missing.put(permissionId, samePermissionId);
+			}
+			samePermissionId.add(p);
+		}
+
+		if(missing.isEmpty()) {
+			return result;
+		}
+
+		Map<String, List<Permission>> loaded = loadPermissionsInBatches(missing.keySet());
+		for(Map.Entry<String, List<Permissionable>> entry : missing.entrySet()) {
+			String permissionId = entry.getKey();
+			List<Permission> bitPermissionsList = loaded.get(permissionId);
+			for(Permissionable p : entry.getValue()) {
+				if(bitPermissionsList.size() == 0) {
+					// no permissions nor reference yet, the single load figures out who it inherits from
+					result.put(p, getPermissions(p, bitPermission));
+				} else {
+					result.put(p, toPermissionsToReturn(bitPermissionsList, permissionId, bitPermission));
+				}
+			}
+			if(bitPermissionsList.size() > 0) {
+				permissionCache.addToPermissionCache(permissionId, bitPermissionsList);
+			}
+		}
+
+		return result;
+
+	}
+
+	private List<Permission> toPermissionsToReturn(List<Permission> bitPermissionsList, String permissionId, boolean bitPermission) {
+		bitPermissionsList = filterOnlyNonInheritablePermissions(bitPermissionsList, permissionId);
+		return bitPermission ? bitPermissionsList : convertToNonBitPermissions(bitPermissionsList);
+	}
+
+	/*
+	 * Same as loadPermissions(Permissionable) for many permissionables at once, the individual permissions
+	 * and the permission references are loaded with one query per batch of ids. Permissionables that have
+	 * neither are returned with an empty list, the permission reference is not created here.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, List<Permission>> loadPermissionsInBatches(Collection<String> permissionIds) throws DotDataException {
+
+		Map<String, List<Permission>> result = new HashMap<String, List<Permission>>();
+		for(String permissionId : permissionIds) {
+			result.put(permissionId, new ArrayList<Permission>());
+		}
+
+		List<String> ids = new ArrayList<String>(permissionIds);
+		for(int from = 0; from < ids.size(); from += LOAD_PERMISSIONS_BATCH_SIZE) {
+			List<String> batch = ids.subList(from, Math.min(from + LOAD_PERMISSIONS_BATCH_SIZE, ids.size()));
+
+			// individual permissions
+			HibernateUtil persistenceService = new HibernateUtil(Permission.class);
+			persistenceService.setSQLQuery("select {permission.*} from permission where inode_id in (" + placeholders(batch.size()) + ")");
+			for(String id : batch) {
+				persistenceService.setParam(id);
+			}
+			for(Permission p : (List<Permission>) persistenceService.list()) {
+				p.setBitPermission(true);
+				List<Permission> permissions = result.get(p.getInode());
+				if(permissions != null) {
+					permissions.add(p);
+				}
+			}
+
+			// inherited permissions, through the permission references
+			DotConnect dc = new DotConnect();
+			dc.setSQL("select asset_id, reference_id, permission_type from permission_reference where asset_id in (" + placeholders(batch.size()) + ")");
+			for(String id : batch) {
+				dc.addParam(id);
+			}
+			Map<String, List<Map<String, String>>> referencesById = new HashMap<String, List<Map<String, String>>>();
+			for(Map<String, String> reference : (List<Map<String, String>>) dc.loadResults()) {
+				List<Map<String, String>> references = referencesById.get(reference.get("reference_id"));
+				if(references == null) {
+					references = new ArrayList<Map<String, String>>();
+					referencesById.put(reference.get("reference_id"), references);
+				}
+				references.add(reference);
+			}
+			if(referencesById.isEmpty()) {
+				continue;
+			}
+
+			List<String> referenceIds = new ArrayList<String>(referencesById.keySet());
+			for(int refFrom = 0; refFrom < referenceIds.size(); refFrom += LOAD_PERMISSIONS_BATCH_SIZE) {
+				List<String> refBatch = referenceIds.subList(refFrom, Math.min(refFrom + LOAD_PERMISSIONS_BATCH_SIZE, referenceIds.size()));
+				persistenceService = new HibernateUtil(Permission.class);
+				persistenceService.setSQLQuery("select {permission.*} from permission where inode_id in (" + placeholders(refBatch.size()) + ")");
+				for(String id : refBatch) {
+					persistenceService.setParam(id);
+				}
+				for(Permission p : (List<Permission>) persistenceService.list()) {
+					p.setBitPermission(true);
+					for(Map<String, String> reference : referencesById.get(p.getInode())) {
+						List<Permission> permissions = result.get(reference.get("asset_id"));
+						if(permissions != null && p.getType().equals(reference.get("permission_type"))) {
+							permissions.add(p);
+						}
+					}
+				}
+			}
 		}
 
 		return result;
+	}
 
+	private String placeholders(int count) {
+		StringBuilder sb = new StringBuilder(count * 2);
+		for(int i = 0; i < count; i++) {
+			sb.append(i > 0 ? ",?" : "?");
+		}
+		return sb.toString();
 	}
 
 	/* (non-Javadoc)
@@ -3470,10 +3598,15 @@ public class PermissionBitFactoryImpl extends PermissionFactory {
 			BulkRequestBuilder bulk=new ESClient().getClient().prepareBulk();
 			for(Contentlet cont : contentlets) {
 			    permissionCache.remove(cont.getPermissionId());
-			    indexAPI.addContentToIndex(cont, false, true, true, bulk);
 			}
-			if(bulk.numberOfActions()>0)
+			IndexDocumentBatch batch=indexAPI.prepareBatch(contentlets);
+			for(Contentlet cont : contentlets) {
+			    indexAPI.addContentToIndex(cont, false, true, true, bulk, batch);
+			}
+			if(bulk.numberOfActions()>0) {
 			    bulk.execute().actionGet();
+			    CacheLocator.getIndexQueryCache().invalidate();
+			}
 
 			offset=offset+limit;
 		} while(contentlets.size()>0);
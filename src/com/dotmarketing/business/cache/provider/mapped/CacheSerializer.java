@@ -0,0 +1,32 @@
+package com.dotmarketing.business.cache.provider.mapped;
+
+/**
+ * Turns the objects stored by the {@link MappedDiskCache} into bytes and back.
+ * <br/>
+ * The implementation to use is set with the <strong>MAPPED_CACHE_SERIALIZER</strong> property in the
+ * <strong>dotmarketing-config.properties</strong> file, it must have a public no-arguments constructor and be thread safe.
+ * By default {@link JavaCacheSerializer} is used.
+ *
+ * @see JavaCacheSerializer
+ */
+public interface CacheSerializer {
+
+    /**
+     * Serializes the given object
+     *
+     * @param object
+     * @return
+     * @throws Exception If the object can not be serialized, it will not be cached
+     */
+    byte[] serialize ( Object object ) throws Exception;
+
+    /**
+     * Builds back the object stored in the given bytes
+     *
+     * @param data
+     * @return
+     * @throws Exception If the object can not be read, it will be removed from the cache
+     */
+    Object deserialize ( byte[] data ) throws Exception;
+
+}
@@ -0,0 +1,65 @@
+package com.dotmarketing.business.cache.provider.mapped;
+
+import com.dotmarketing.util.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Default {@link CacheSerializer}, uses the Java serialization. As the H2 cache does, the bytes are compressed when
+ * <strong>USE_CACHE_COMPRESSION</strong> is true, using the fastest compression level.
+ */
+public class JavaCacheSerializer implements CacheSerializer {
+
+    private final boolean compress = Config.getBooleanProperty("USE_CACHE_COMPRESSION", false);
+
+    @Override
+    public byte[] serialize ( Object object ) throws Exception {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        Deflater deflater = null;
+        OutputStream out = bytes;
+        if ( compress ) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            out = new DeflaterOutputStream(bytes, deflater);
+        }
+
+        try ( ObjectOutputStream output = new ObjectOutputStream(out) ) {
+            output.writeObject(object);
+        } finally {
+            if ( deflater != null ) {
+                deflater.end();
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize ( byte[] data ) throws Exception {
+
+        Inflater inflater = null;
+        InputStream in = new ByteArrayInputStream(data);
+        if ( compress ) {
+            inflater = new Inflater();
+            in = new InflaterInputStream(in, inflater);
+        }
+
+        try ( ObjectInputStream input = new ObjectInputStream(in) ) {
+            return input.readObject();
+        } finally {
+            if ( inflater != null ) {
+                inflater.end();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+package com.dotmarketing.business.cache.provider.mapped;
+
+import com.dotcms.enterprise.cache.provider.CacheProviderAPI;
+import com.dotcms.repackage.com.google.common.cache.CacheStats;
+import com.dotmarketing.business.DotStateException;
+import com.dotmarketing.business.cache.provider.CacheProvider;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.ConfigUtils;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UtilMethods;
+import com.liferay.util.FileUtil;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Disk cache provider that keeps the serialized entries in memory mapped files, meant to be used as second level
+ * after the {@link com.dotmarketing.business.cache.provider.guava.GuavaCache} in place of the
+ * {@link com.dotmarketing.business.cache.provider.h2.H2CacheLoader}:
+ * <ul>
+ * <li>cache.contentletcache.chain=com.dotmarketing.business.cache.provider.guava.GuavaCache,com.dotmarketing.business.cache.provider.mapped.MappedDiskCache</li>
+ * </ul>
+ * A hit is a lookup in an in heap index plus a copy from the mapped file, there is no SQL involved. Entries are
+ * appended to fixed size segment files (<strong>MAPPED_CACHE_SEGMENT_SIZE_MB</strong>), each region can use up to
+ * <strong>cache.myregion.mapped.size</strong> megabytes (<strong>cache.default.mapped.size</strong> by default), once
+ * full the oldest segment is dropped. A background task compacts the segments left mostly with overwritten or
+ * removed entries.
+ * <p/>
+ * The index only lives in memory, the files of a previous run are deleted on startup as the invalidations sent while
+ * the server was down were never received.
+ *
+ * @see MappedRegion
+ * @see CacheSerializer
+ */
+public class MappedDiskCache extends CacheProvider {
+
+    private static final long serialVersionUID = -3290187723018592711L;
+
+    static final String DEFAULT_CACHE = CacheProviderAPI.DEFAULT_CACHE;
+    static final String LIVE_CACHE_PREFIX = CacheProviderAPI.LIVE_CACHE_PREFIX;
+    static final String WORKING_CACHE_PREFIX = CacheProviderAPI.WORKING_CACHE_PREFIX;
+
+    private static final int MB = 1024 * 1024;
+
+    private Boolean isInitialized = false;
+
+    private final ConcurrentHashMap<String, MappedRegion> regions = new ConcurrentHashMap<>();
+    private final AtomicInteger regionCount = new AtomicInteger();
+
+    private transient CacheSerializer serializer;
+    private transient ScheduledExecutorService compactor;
+    private File rootDirectory;
+    private int segmentSize;
+
+    @Override
+    public String getName () {
+        return "Memory Mapped Disk Cache";
+    }
+
+    @Override
+    public String getKey () {
+        return "LocalMappedDisk";
+    }
+
+    @Override
+    public void init () throws Exception {
+
+        rootDirectory = new File(ConfigUtils.getDynamicContentPath() + File.separator + "mappedcache");
+        if ( rootDirectory.exists() ) {
+            FileUtil.deltree(rootDirectory, false);
+        }
+        rootDirectory.mkdirs();
+
+        segmentSize = Config.getIntProperty("MAPPED_CACHE_SEGMENT_SIZE_MB", 16) * MB;
+
+        String serializerClass = Config.getStringProperty("MAPPED_CACHE_SERIALIZER", JavaCacheSerializer.class.getName());
+        serializer = (CacheSerializer) Class.forName(serializerClass).newInstance();
+        Logger.info(this.getClass(), "***\t Mapped Disk Cache using " + serializerClass + ", segment size: " + segmentSize / MB + "MB");
+
+        final double ratio = Config.getFloatProperty("MAPPED_CACHE_COMPACTION_RATIO", 0.5f);
+        int interval = Config.getIntProperty("MAPPED_CACHE_COMPACTION_INTERVAL", 60);
+        compactor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread ( Runnable r ) {
+                Thread thread = new Thread(r, "MappedDiskCacheCompactor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        compactor.scheduleWithFixedDelay(new Runnable() {
+            public void run () {
+                for ( MappedRegion region : regions.values() ) {
+                    try {
+                        region.compact(ratio);
+                    } catch ( Exception e ) {
+                        Logger.warn(MappedDiskCache.class, "Unable to compact cache region: " + e.getMessage(), e);
+                    }
+                }
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+
+        isInitialized = true;
+    }
+
+    @Override
+    public boolean isInitialized () throws Exception {
+        return isInitialized;
+    }
+
+    @Override
+    public void put ( String group, String key, Object content ) {
+
+        if ( group == null || key == null || content == null ) {
+            return;
+        }
+        //Memory only regions must not be written to disk
+        if ( group.toLowerCase().equals(ONLY_MEMORY_GROUP) ) {
+            return;
+        }
+
+        byte[] data;
+        try {
+            data = serializer.serialize(content);
+        } catch ( Throwable e ) {
+            Logger.debug(this, "Unable to serialize object for group [" + group + "] and key [" + key + "]", e);
+            remove(group, key);
+            return;
+        }
+
+        MappedRegion region = getRegion(group);
+        try {
+            if ( !region.put(key, data) ) {
+                Logger.debug(this, "Object for group [" + group + "] and key [" + key + "] is bigger than a segment, not cached");
+                region.remove(key);
+            } else if ( regions.get(group.toLowerCase()) != region ) {
+                //The group was flushed while writing
+                region.clear();
+            }
+        } catch ( Exception e ) {
+            Logger.warn(this, "Unable to write to disk cache group [" + group + "]: " + e.getMessage(), e);
+            region.remove(key);
+        }
+    }
+
+    @Override
+    public Object get ( String group, String key ) {
+
+        if ( group == null || key == null ) {
+            return null;
+        }
+
+        MappedRegion region = regions.get(group.toLowerCase());
+        if ( region == null ) {
+            return null;
+        }
+
+        byte[] data = region.get(key);
+        if ( data == null ) {
+            return null;
+        }
+
+        try {
+            return serializer.deserialize(data);
+        } catch ( Throwable e ) {
+            Logger.debug(this, "Unable to deserialize object for group [" + group + "] and key [" + key + "]", e);
+            region.remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public void remove ( String group ) {
+
+        if ( group == null ) {
+            return;
+        }
+
+        MappedRegion region = regions.remove(group.toLowerCase());
+        if ( region != null ) {
+            region.clear();
+        }
+    }
+
+    @Override
+    public void remove ( String group, String key ) {
+
+        if ( group == null ) {
+            return;
+        }
+        if ( !UtilMethods.isSet(key) ) {
+            Logger.error(this, "Empty key passed in for group " + group);
+            return;
+        }
+
+        MappedRegion region = regions.get(group.toLowerCase());
+        if ( region != null ) {
+            region.remove(key);
+        }
+    }
+
+    @Override
+    public void removeAll () {
+
+        Set<String> currentGroups = new HashSet<>();
+        currentGroups.addAll(getGroups());
+
+        for ( String group : currentGroups ) {
+            remove(group);
+        }
+    }
+
+    @Override
+    public Set<String> getKeys ( String group ) {
+
+        MappedRegion region = (group != null) ? regions.get(group.toLowerCase()) : null;
+        if ( region == null ) {
+            return new HashSet<>();
+        }
+
+        return region.getKeys();
+    }
+
+    @Override
+    public Set<String> getGroups () {
+        return new HashSet<>(regions.keySet());
+    }
+
+    @Override
+    public List<Map<String, Object>> getStats () {
+
+        List<Map<String, Object>> list = new ArrayList<>();
+
+        for ( Map.Entry<String, MappedRegion> entry : regions.entrySet() ) {
+
+            String group = entry.getKey();
+            MappedRegion region = entry.getValue();
+
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("name", getName());
+            stats.put("key", getKey());
+            stats.put("region", group);
+            stats.put("toDisk", true);
+            stats.put("isDefault", false);
+            stats.put("memory", -1);
+            stats.put("disk", region.size());
+            stats.put("diskSize", region.getDiskSize());
+            //Every hit is a load from the mapped files
+            stats.put("CacheStats", new CacheStats(region.getHits(), region.getMisses(), region.getHits(), 0,
+                    region.getReadTime(), region.getEvictions()));
+            stats.put("configuredSize", getConfiguredSize(group));
+
+            list.add(stats);
+        }
+
+        return list;
+    }
+
+    @Override
+    public void shutdown () {
+
+        Logger.info(this.getClass(), "===== Calling shutdown [" + getName() + "].");
+        if ( compactor != null ) {
+            compactor.shutdownNow();
+        }
+        removeAll();
+        isInitialized = false;
+    }
+
+    private MappedRegion getRegion ( String group ) {
+
+        if ( group == null ) {
+            throw new DotStateException("Null cache region passed in");
+        }
+
+        group = group.toLowerCase();
+        MappedRegion region = regions.get(group);
+        if ( region == null ) {
+            //Nothing is written to disk until the first put, a flushed region never shares its files with the new one
+            String directory = group.replaceAll("[^a-z0-9_\\-]", "_") + "_" + regionCount.incrementAndGet();
+            MappedRegion newRegion = new MappedRegion(group, new File(rootDirectory, directory), segmentSize,
+                    (long) getConfiguredSize(group) * MB);
+            region = regions.putIfAbsent(group, newRegion);
+            if ( region == null ) {
+                region = newRegion;
+                Logger.info(this.getClass(), "***\t Building Mapped Disk Cache : " + group + ", size:" + getConfiguredSize(group) + "MB");
+            }
+        }
+
+        return region;
+    }
+
+    /**
+     * Megabytes of disk a region can use
+     *
+     * @param group
+     * @return
+     */
+    private int getConfiguredSize ( String group ) {
+
+        int size = Config.getIntProperty("cache." + group + ".mapped.size", -1);
+        if ( size < 0 && group.startsWith(LIVE_CACHE_PREFIX) ) {
+            size = Config.getIntProperty("cache." + LIVE_CACHE_PREFIX + ".mapped.size", -1);
+        } else if ( size < 0 && group.startsWith(WORKING_CACHE_PREFIX) ) {
+            size = Config.getIntProperty("cache." + WORKING_CACHE_PREFIX + ".mapped.size", -1);
+        }
+        if ( size < 0 ) {
+            size = Config.getIntProperty("cache." + DEFAULT_CACHE + ".mapped.size", 256);
+        }
+
+        return size;
+    }
+
+}
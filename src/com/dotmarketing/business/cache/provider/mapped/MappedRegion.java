@@ -0,0 +1,404 @@
+package com.dotmarketing.business.cache.provider.mapped;
+
+import com.dotmarketing.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The entries of a cache region stored by the {@link MappedDiskCache}.
+ * <br/>
+ * Entries are appended to memory mapped segment files of a fixed size, an in heap index keeps where the last
+ * version of each key was written. Overwritten and removed entries are left in their segment until the segment is
+ * compacted or, once the region reaches its size, evicted (oldest segment first).
+ * <br/>
+ * Reads run concurrently, writes, compaction and eviction are serialized by the region lock. Dropped segments are
+ * unmapped right away (there are no reads running then), otherwise their disk space would only be given back once the
+ * buffers are collected.
+ */
+class MappedRegion {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    //Record header: key length and data length
+    private static final int HEADER_SIZE = 8;
+
+    //There is no public API to unmap a buffer: DirectBuffer.cleaner() up to Java 8, Unsafe.invokeCleaner() after
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Method cleaner = null;
+        Method clean = null;
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch ( Throwable e ) {
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch ( Throwable t ) {
+                Logger.warn(MappedRegion.class, "Unable to unmap the cache segments, their disk space is given back once they are collected: " + t.getMessage());
+            }
+        }
+        CLEANER = cleaner;
+        CLEAN = clean;
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final String name;
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+    //Oldest first, the last one is the one written to
+    private final List<Segment> segments = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int nextSegment = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong readTime = new AtomicLong();
+
+    MappedRegion ( String name, File directory, int segmentSize, long maxSize ) {
+        this.name = name;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(2, maxSize / segmentSize);
+    }
+
+    /**
+     * Returns the bytes stored for the given key, null if there are none
+     *
+     * @param key
+     * @return
+     */
+    byte[] get ( String key ) {
+
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if ( location == null ) {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            byte[] data = location.segment.read(location.offset);
+            hits.incrementAndGet();
+            readTime.addAndGet(System.nanoTime() - start);
+            return data;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the given bytes for the given key
+     *
+     * @param key
+     * @param data
+     * @return false if the entry does not fit in a segment
+     * @throws IOException If a new segment file could not be created
+     */
+    boolean put ( String key, byte[] data ) throws IOException {
+
+        byte[] keyBytes = key.getBytes(UTF8);
+        int length = HEADER_SIZE + keyBytes.length + data.length;
+        if ( length > segmentSize ) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if ( segment == null || segment.remaining() < length ) {
+                segment = addSegment();
+            }
+            Location location = new Location(segment, segment.append(keyBytes, data), length);
+            replace(key, location);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the given key
+     *
+     * @param key
+     */
+    void remove ( String key ) {
+
+        lock.writeLock().lock();
+        try {
+            Location old = index.remove(key);
+            if ( old != null ) {
+                old.segment.live -= old.length;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all the entries and deletes the segment files
+     */
+    void clear () {
+
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            for ( Segment segment : segments ) {
+                segment.release();
+            }
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the live entries of the segments that have less than the given ratio of live bytes into a new segment,
+     * as many as fit in one, and deletes them. The segment being written to is never compacted.
+     *
+     * @param ratio
+     * @throws IOException
+     */
+    void compact ( double ratio ) throws IOException {
+
+        lock.writeLock().lock();
+        try {
+            List<Segment> candidates = new ArrayList<>();
+            long liveBytes = 0;
+            for ( int i = 0; i < segments.size() - 1; i++ ) {
+                Segment segment = segments.get(i);
+                if ( segment.live < segment.position * ratio && liveBytes + segment.live <= segmentSize ) {
+                    candidates.add(segment);
+                    liveBytes += segment.live;
+                }
+            }
+            //Nothing to gain rewriting a single segment that still has live entries
+            if ( candidates.isEmpty() || (candidates.size() == 1 && candidates.get(0).live > 0) ) {
+                return;
+            }
+
+            Segment target = null;
+            if ( liveBytes > 0 ) {
+                target = newSegment();
+                for ( Map.Entry<String, Location> entry : index.entrySet() ) {
+                    Location location = entry.getValue();
+                    if ( candidates.contains(location.segment) ) {
+                        byte[] keyBytes = entry.getKey().getBytes(UTF8);
+                        byte[] data = location.segment.read(location.offset);
+                        replace(entry.getKey(), new Location(target, target.append(keyBytes, data), location.length));
+                    }
+                }
+                //Takes the place of the newest compacted segment so eviction keeps its order
+                segments.add(segments.indexOf(candidates.get(candidates.size() - 1)), target);
+            }
+
+            for ( Segment segment : candidates ) {
+                segments.remove(segment);
+                segment.release();
+            }
+            Logger.debug(this, "Compacted " + candidates.size() + " segments of region " + name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Set<String> getKeys () {
+        return new HashSet<>(index.keySet());
+    }
+
+    int size () {
+        return index.size();
+    }
+
+    long getDiskSize () {
+
+        lock.readLock().lock();
+        try {
+            return (long) segments.size() * segmentSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long getHits () {
+        return hits.get();
+    }
+
+    long getMisses () {
+        return misses.get();
+    }
+
+    long getEvictions () {
+        return evictions.get();
+    }
+
+    long getReadTime () {
+        return readTime.get();
+    }
+
+    private void replace ( String key, Location location ) {
+
+        location.segment.live += location.length;
+        Location old = index.put(key, location);
+        if ( old != null ) {
+            old.segment.live -= old.length;
+        }
+    }
+
+    private Segment addSegment () throws IOException {
+
+        if ( segments.size() >= maxSegments ) {
+            //The region is full, the oldest entries go away
+            Segment oldest = segments.remove(0);
+            long evicted = 0;
+            for ( Map.Entry<String, Location> entry : index.entrySet() ) {
+                if ( entry.getValue().segment == oldest && index.remove(entry.getKey(), entry.getValue()) ) {
+                    evicted++;
+                }
+            }
+            evictions.addAndGet(evicted);
+            oldest.release();
+        }
+
+        Segment segment = newSegment();
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * Unmaps the given buffer, it must not be used afterwards
+     *
+     * @param buffer
+     * @return false if the JVM does not allow it, the buffer is unmapped when collected then
+     */
+    static boolean unmap ( MappedByteBuffer buffer ) {
+
+        try {
+            if ( INVOKE_CLEANER != null ) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return true;
+            }
+            if ( CLEANER != null ) {
+                Object cleaner = CLEANER.invoke(buffer);
+                if ( cleaner != null ) {
+                    CLEAN.invoke(cleaner);
+                }
+                return true;
+            }
+        } catch ( Exception e ) {
+            Logger.debug(MappedRegion.class, "Unable to unmap cache segment: " + e.getMessage(), e);
+        }
+        return false;
+    }
+
+    private Segment newSegment () throws IOException {
+
+        if ( !directory.exists() ) {
+            directory.mkdirs();
+        }
+        return new Segment(new File(directory, (nextSegment++) + ".seg"), segmentSize);
+    }
+
+    private static class Location {
+
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        private Location ( Segment segment, int offset, int length ) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+    }
+
+    private static class Segment {
+
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int position = 0;
+        //Bytes of the entries the index still points to
+        private long live = 0;
+
+        private Segment ( File file, int size ) throws IOException {
+
+            this.file = file;
+            try ( RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel() ) {
+                //The mapping stays valid once the channel is closed
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        private int remaining () {
+            return buffer.capacity() - position;
+        }
+
+        private int append ( byte[] key, byte[] data ) {
+
+            int offset = position;
+            ByteBuffer out = buffer.duplicate();
+            out.position(offset);
+            out.putInt(key.length);
+            out.putInt(data.length);
+            out.put(key);
+            out.put(data);
+            position = out.position();
+            return offset;
+        }
+
+        private byte[] read ( int offset ) {
+
+            ByteBuffer in = buffer.duplicate();
+            in.position(offset);
+            int keyLength = in.getInt();
+            byte[] data = new byte[in.getInt()];
+            in.position(offset + HEADER_SIZE + keyLength);
+            in.get(data);
+            return data;
+        }
+
+        private void release () {
+
+            //The buffer must not be read once unmapped, the region lock keeps the reads out
+            unmap(buffer);
+            if ( !file.delete() ) {
+                file.deleteOnExit();
+            }
+        }
+
+    }
+
+}
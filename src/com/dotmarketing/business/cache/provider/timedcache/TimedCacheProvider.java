@@ -1,48 +1,55 @@
 package com.dotmarketing.business.cache.provider.timedcache;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 import com.dotcms.enterprise.cache.provider.CacheProviderAPI;
-import com.dotcms.repackage.com.google.common.cache.Cache;
-import com.dotcms.repackage.com.google.common.cache.CacheBuilder;
-import com.dotcms.repackage.com.google.common.cache.CacheLoader;
+import com.dotcms.repackage.com.google.common.cache.CacheStats;
 import com.dotmarketing.business.DotStateException;
 import com.dotmarketing.business.cache.provider.CacheProvider;
 import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 
 /**
+ * Cache provider where the entries of each region expire after the
+ * <strong>cache.myregion.seconds</strong> configured for it, keeping at most
+ * <strong>cache.myregion.size</strong> entries.
+ * <p>
+ * Reads and writes go straight to a concurrent map per region, there is no
+ * lock shared by the regions. Expired entries are removed by a
+ * {@link TimingWheel} advanced every second by its own thread.
+ * </p>
+ *
  * @author Jonathan Gamba Date: 9/2/15
  */
 public class TimedCacheProvider extends CacheProvider {
 
 	/**
-	 * 
+	 *
 	 */
 	private static final long serialVersionUID = 1L;
 
 	private Boolean isInitialized = false;
 
-	private final ConcurrentHashMap<String, Cache<String, Object>> groups = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, TimedRegion> groups = new ConcurrentHashMap<>();
 
 	static final String DEFAULT_CACHE = CacheProviderAPI.DEFAULT_CACHE;
 	static final String LIVE_CACHE_PREFIX = CacheProviderAPI.LIVE_CACHE_PREFIX;
 	static final String WORKING_CACHE_PREFIX = CacheProviderAPI.WORKING_CACHE_PREFIX;
 
-	private NullCallable nullCallable = new NullCallable();
-	private final HashSet<String> availableCaches = new HashSet<>();
+	private final Set<String> availableCaches = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 	private final int DEFAULT_TIMEOUT = 100;
 
+	private final transient TimingWheel wheel = new TimingWheel(1000);
+
 	@Override
 	public String getName() {
 		return "Timed Cache Provider";
@@ -55,7 +62,7 @@ public class TimedCacheProvider extends CacheProvider {
 
 	@Override
 	public void init() {
-		groups.clear();
+		clearGroups();
 		Logger.info(this.getClass(), "===== Initializing [" + getName() + "].");
 		availableCaches.add(DEFAULT_CACHE);
 		Iterator<String> it = Config.getKeys();
@@ -75,6 +82,7 @@ public class TimedCacheProvider extends CacheProvider {
 			}
 		}
 
+		wheel.start();
 		isInitialized = true;
 	}
 
@@ -88,60 +96,46 @@ public class TimedCacheProvider extends CacheProvider {
 		if (group == null || key == null || content == null) {
 			return;
 		}
-		Cache<String, Object> cache = getCache(group);
-		cache.put(key, content);
+		getCache(group).put(key, content);
 	}
 
 	@Override
-	public synchronized Object get(String group, String key) {
-		// Get the cache for the given group
-		Cache cache = getCache(group);
-		Object foundObject = null;
-		try {
-			// Get the content from the group and for a given key
-			foundObject = cache.get(key, nullCallable);
-		} catch (CacheLoader.InvalidCacheLoadException e) {
-			// Do nothing, we are expecting this error when no value for a key
-			// is found
-		} catch (Exception e) {
-			Logger.error(this.getClass(),
-					"Error getting value from cache from group [" + group
-							+ "] and key [" + key + "].", e);
+	public Object get(String group, String key) {
+		if (key == null) {
+			return null;
 		}
-		return foundObject;
+		return getCache(group).get(key);
 	}
 
 	@Override
 	public void remove(String group, String key) {
 		Logger.info(this.getClass(), "===== Calling remove for [" + getName()
 				+ "] - " + cacheKey(group, key));
-		// Get the cache for the given group
-		Cache<String, Object> cache = getCache(group);
+		if (key == null) {
+			return;
+		}
 		// Invalidates from Cache a key from a given group
-		cache.invalidate(key);
+		getCache(group).remove(key);
 	}
 
 	@Override
 	public void remove(String group) {
 		Logger.info(this.getClass(), "===== Calling remove for [" + getName()
 				+ "] - " + cacheKey(group, ""));
-		// Get the cache for the given group
-		Cache<String, Object> cache = getCache(group);
 		// Invalidates the Cache for the given group
-		cache.invalidateAll();
+		getCache(group).clear();
 		// Remove this group from the global list of cache groups
-		groups.remove(group);
+		groups.remove(group.toLowerCase());
 	}
 
 	@Override
 	public void removeAll() {
-		this.init();
+		clearGroups();
 	}
 
 	@Override
 	public Set<String> getKeys(String group) {
-		Cache<String, Object> cache = getCache(group);
-		return cache.asMap().keySet();
+		return getCache(group).getKeys();
 	}
 
 	@Override
@@ -154,43 +148,29 @@ public class TimedCacheProvider extends CacheProvider {
 		List<Map<String, Object>> list = new ArrayList<>();
 		Set<String> currentGroups = new HashSet<>();
 		currentGroups.addAll(getGroups());
-		Cache defaultCache = getCache(DEFAULT_CACHE);
+		TimedRegion defaultCache = getCache(DEFAULT_CACHE);
 		for (String group : currentGroups) {
+			TimedRegion foundCache = getCache(group);
+			boolean isDefault = (!DEFAULT_CACHE.equals(group) && foundCache
+					.equals(defaultCache));
+
 			Map<String, Object> stats = new HashMap<>();
 			stats.put("name", getName());
 			stats.put("key", getKey());
-			stats.put("cache", getCache(group));
 			stats.put("region", group);
 			stats.put("toDisk", false);
-			Cache foundCache = getCache(group);
 			stats.put("memory", foundCache.size());
-			stats.put("CacheStats", foundCache.stats());
 			stats.put("disk", -1);
-			boolean isDefault = (!DEFAULT_CACHE.equals(group) && foundCache
-					.equals(defaultCache));
 			stats.put("isDefault", isDefault);
-			int configured = isDefault ? Config.getIntProperty("cache."
-					+ DEFAULT_CACHE + ".seconds", DEFAULT_TIMEOUT)
-					: (Config.getIntProperty("cache." + group + ".seconds", -1) != -1) ? Config
-							.getIntProperty("cache." + group + ".seconds")
-							: (group.startsWith(WORKING_CACHE_PREFIX) && Config
-									.getIntProperty(
-											"cache." + WORKING_CACHE_PREFIX
-													+ ".seconds", -1) != -1) ? Config
-									.getIntProperty("cache."
-											+ WORKING_CACHE_PREFIX + ".seconds")
-									: (group.startsWith(LIVE_CACHE_PREFIX) && Config
-											.getIntProperty("cache."
-													+ LIVE_CACHE_PREFIX
-													+ ".seconds", -1) != -1) ? Config
-											.getIntProperty("cache."
-													+ LIVE_CACHE_PREFIX
-													+ ".seconds") : Config
-											.getIntProperty("cache."
-													+ DEFAULT_CACHE
-													+ ".seconds",
-													DEFAULT_TIMEOUT);
-			stats.put("configuredSize", configured);
+			stats.put("hits", foundCache.getHits());
+			stats.put("misses", foundCache.getMisses());
+			stats.put("expirations", foundCache.getExpirations());
+			stats.put("evictions", foundCache.getEvictions());
+			// same numbers a Guava cache loading nulls would report
+			stats.put("CacheStats", new CacheStats(foundCache.getHits(),
+					foundCache.getMisses(), 0, foundCache.getMisses(), 0,
+					foundCache.getExpirations() + foundCache.getEvictions()));
+			stats.put("configuredSize", foundCache.getSeconds());
 			list.add(stats);
 		}
 		return list;
@@ -199,6 +179,8 @@ public class TimedCacheProvider extends CacheProvider {
 	@Override
 	public void shutdown() {
 		Logger.info(this.getClass(), "===== Calling shutdown [" + getName()+ "].");
+		wheel.stop();
+		clearGroups();
 		isInitialized = false;
 	}
 
@@ -206,12 +188,19 @@ public class TimedCacheProvider extends CacheProvider {
 		return (group + ":" + key).toLowerCase();
 	}
 
-	private synchronized Cache<String, Object> getCache(String cacheName) {
+	private void clearGroups() {
+		for (TimedRegion region : groups.values()) {
+			region.clear();
+		}
+		groups.clear();
+	}
+
+	private TimedRegion getCache(String cacheName) {
 		if (cacheName == null) {
 			throw new DotStateException("Null cache region passed in");
 		}
 		cacheName = cacheName.toLowerCase();
-		Cache<String, Object> cache = groups.get(cacheName);
+		TimedRegion cache = groups.get(cacheName);
 		// init cache if it does not exist
 		if (cache == null) {
 			synchronized (cacheName.intern()) {
@@ -223,68 +212,11 @@ public class TimedCacheProvider extends CacheProvider {
 							|| cacheName.startsWith(LIVE_CACHE_PREFIX) || cacheName
 							.startsWith(WORKING_CACHE_PREFIX));
 					if (separateCache) {
-						int seconds;
-						int size;
-						if (cacheName.startsWith(LIVE_CACHE_PREFIX)) {
-							size = Config.getIntProperty("cache." + cacheName
-									+ ".size", -1);
-							if (size < 0) {
-								size = Config.getIntProperty("cache."
-										+ LIVE_CACHE_PREFIX + ".size", -1);
-							}
-							seconds = Config.getIntProperty("cache."
-									+ cacheName + ".seconds", -1);
-							if (seconds < 0) {
-								seconds = Config.getIntProperty("cache."
-										+ LIVE_CACHE_PREFIX + ".seconds", -1);
-							}
-						} else if (cacheName.startsWith(WORKING_CACHE_PREFIX)) {
-							size = Config.getIntProperty("cache." + cacheName
-									+ ".size", -1);
-							if (size < 0) {
-								size = Config.getIntProperty("cache."
-										+ WORKING_CACHE_PREFIX + ".size", -1);
-							}
-							seconds = Config.getIntProperty("cache."
-									+ cacheName + ".seconds", -1);
-							if (seconds < 0) {
-								seconds = Config
-										.getIntProperty("cache."
-												+ WORKING_CACHE_PREFIX
-												+ ".seconds", -1);
-							}
-						} else {
-							size = Config.getIntProperty("cache." + cacheName
-									+ ".size", -1);
-							seconds = Config.getIntProperty("cache."
-									+ cacheName + ".seconds", -1);
-						}
-						if (size == -1) {
-							size = Config.getIntProperty("cache."
-									+ DEFAULT_CACHE + ".size", 100);
-						}
-						if (seconds == -1) {
-							seconds = Config.getIntProperty("cache."
-									+ DEFAULT_CACHE + ".seconds",
-									DEFAULT_TIMEOUT);
-						}
-						Logger.info(
-								this.getClass(),
-								"***\t Building Cache : "
-										+ cacheName
-										+ ", seconds:"
-										+ seconds
-										+ ",Concurrency:"
-										+ Config.getIntProperty(
-												"cache.concurrencylevel", 32));
-						CacheBuilder<Object, Object> cb = CacheBuilder
-								.newBuilder()
-								.maximumSize(size)
-								.expireAfterWrite(seconds, TimeUnit.SECONDS)
-								.concurrencyLevel(
-										Config.getIntProperty(
-												"cache.concurrencylevel", 32));
-						cache = cb.build();
+						int seconds = getConfiguredProperty(cacheName, "seconds", DEFAULT_TIMEOUT);
+						int size = getConfiguredProperty(cacheName, "size", 100);
+						Logger.info(this.getClass(), "***\t Building Cache : "
+								+ cacheName + ", seconds:" + seconds + ", size:" + size);
+						cache = new TimedRegion(cacheName, seconds, size, wheel);
 						groups.put(cacheName, cache);
 					} else {
 						Logger.info(this.getClass(), "***\t No Cache for   : "
@@ -298,10 +230,21 @@ public class TimedCacheProvider extends CacheProvider {
 		return cache;
 	}
 
-	private class NullCallable implements Callable {
-		public Object call() throws Exception {
-			return null;
+	/**
+	 * Reads cache.[region].[property], falling back to the live or working
+	 * prefix and then to the default cache
+	 */
+	private int getConfiguredProperty(String cacheName, String property, int defaultValue) {
+		int value = Config.getIntProperty("cache." + cacheName + "." + property, -1);
+		if (value < 0 && cacheName.startsWith(LIVE_CACHE_PREFIX)) {
+			value = Config.getIntProperty("cache." + LIVE_CACHE_PREFIX + "." + property, -1);
+		} else if (value < 0 && cacheName.startsWith(WORKING_CACHE_PREFIX)) {
+			value = Config.getIntProperty("cache." + WORKING_CACHE_PREFIX + "." + property, -1);
+		}
+		if (value < 0) {
+			value = Config.getIntProperty("cache." + DEFAULT_CACHE + "." + property, defaultValue);
 		}
+		return value;
 	}
 
-}
\ No newline at end of file
+}
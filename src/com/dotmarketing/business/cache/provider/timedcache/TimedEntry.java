@@ -0,0 +1,57 @@
+package com.dotmarketing.business.cache.provider.timedcache;
+
+/**
+ * A value of a {@link TimedRegion}, also the item the {@link TimingWheel} expires. The wheel and the eviction queue
+ * may hold an entry until its tick comes, so the key and value are let go as soon as it is removed.
+ */
+class TimedEntry {
+
+	private final TimedRegion region;
+	private volatile String key;
+	private volatile Object value;
+	private final long expirationTick;
+	private volatile boolean removed = false;
+
+	TimedEntry(TimedRegion region, String key, Object value, long expirationTick) {
+		this.region = region;
+		this.key = key;
+		this.value = value;
+		this.expirationTick = expirationTick;
+	}
+
+	/**
+	 * @return The key, null once the entry was removed
+	 */
+	String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return The value, null once the entry was removed
+	 */
+	Object getValue() {
+		return value;
+	}
+
+	long getExpirationTick() {
+		return expirationTick;
+	}
+
+	boolean isRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Flags the entry as no longer in its region, the wheel and the eviction queue skip it
+	 */
+	void markRemoved() {
+		removed = true;
+		value = null;
+		key = null;
+	}
+
+	void expire() {
+		region.expire(this);
+	}
+
+}
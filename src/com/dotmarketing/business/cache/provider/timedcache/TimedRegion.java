@@ -0,0 +1,141 @@
+package com.dotmarketing.business.cache.provider.timedcache;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache region of the {@link TimedCacheProvider}. Reads are a lookup in a concurrent map, the expiration of the
+ * entries is left to the {@link TimingWheel}.
+ * <p>
+ * All the entries of a region have the same TTL, so the order they were written in is also the order they expire
+ * in: when the region goes over its size the oldest entries are evicted first.
+ * </p>
+ */
+class TimedRegion {
+
+	private final String name;
+	private final int seconds;
+	private final int maxSize;
+	private final TimingWheel wheel;
+
+	private final ConcurrentHashMap<String, TimedEntry> entries = new ConcurrentHashMap<>();
+	// write order, may still hold entries already removed from the map
+	private final ConcurrentLinkedQueue<TimedEntry> writeOrder = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	TimedRegion(String name, int seconds, int maxSize, TimingWheel wheel) {
+		this.name = name;
+		this.seconds = seconds;
+		this.maxSize = maxSize;
+		this.wheel = wheel;
+	}
+
+	Object get(String key) {
+		TimedEntry entry = entries.get(key);
+		// removed meanwhile if there is no value
+		Object value = (entry != null) ? entry.getValue() : null;
+		if (value == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return value;
+	}
+
+	void put(String key, Object value) {
+		TimedEntry entry = new TimedEntry(this, key, value, wheel.expirationTick(seconds * 1000L));
+		TimedEntry old = entries.put(key, entry);
+		if (old != null) {
+			old.markRemoved();
+		} else {
+			size.incrementAndGet();
+		}
+		writeOrder.add(entry);
+		wheel.schedule(entry);
+		trim();
+	}
+
+	void remove(String key) {
+		TimedEntry old = entries.remove(key);
+		if (old != null) {
+			old.markRemoved();
+			size.decrementAndGet();
+		}
+	}
+
+	void clear() {
+		for (String key : entries.keySet()) {
+			remove(key);
+		}
+		writeOrder.clear();
+	}
+
+	/**
+	 * Called by the wheel once the entry reached its TTL
+	 */
+	void expire(TimedEntry entry) {
+		String key = entry.getKey();
+		if (key != null && entries.remove(key, entry)) {
+			size.decrementAndGet();
+			expirations.incrementAndGet();
+		}
+		entry.markRemoved();
+	}
+
+	private void trim() {
+		TimedEntry head;
+		while (size.get() > maxSize && (head = writeOrder.poll()) != null) {
+			String key = head.getKey();
+			if (key != null && entries.remove(key, head)) {
+				size.decrementAndGet();
+				evictions.incrementAndGet();
+			}
+			head.markRemoved();
+		}
+		// the entries overwritten, removed or expired are dropped once they reach the head
+		while ((head = writeOrder.peek()) != null && head.isRemoved()) {
+			writeOrder.remove(head);
+		}
+	}
+
+	Set<String> getKeys() {
+		return entries.keySet();
+	}
+
+	String getName() {
+		return name;
+	}
+
+	int getSeconds() {
+		return seconds;
+	}
+
+	int size() {
+		return size.get();
+	}
+
+	long getHits() {
+		return hits.get();
+	}
+
+	long getMisses() {
+		return misses.get();
+	}
+
+	long getExpirations() {
+		return expirations.get();
+	}
+
+	long getEvictions() {
+		return evictions.get();
+	}
+
+}
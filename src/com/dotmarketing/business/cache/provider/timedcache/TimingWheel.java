@@ -0,0 +1,159 @@
+package com.dotmarketing.business.cache.provider.timedcache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.dotmarketing.util.Logger;
+
+/**
+ * Hierarchical timing wheel that expires the entries of the {@link TimedCacheProvider}.
+ * <p>
+ * The wheel has {@link #LEVELS} levels of {@link #SLOTS} slots, a slot of the first level lasts one tick and a slot
+ * of each next level lasts a whole turn of the previous one. An entry is placed in the lowest level its expiration
+ * fits in and moves down a level each time the wheel reaches its slot, so scheduling and expiring are constant time
+ * whatever the number of entries and their TTLs.
+ * </p>
+ * <p>
+ * Only the ticker thread touches the wheel, the threads putting entries hand them over through a concurrent queue.
+ * Removed entries are flagged and skipped when their slot comes. An entry may live up to one tick after its TTL.
+ * </p>
+ */
+class TimingWheel {
+
+	static final int SLOTS = 64;
+	static final int LEVELS = 4;
+	private static final int BITS = 6;
+	private static final long MAX_DELAY = (1L << (BITS * LEVELS)) - 1;
+
+	private final long tickMillis;
+	private final long startMillis;
+
+	@SuppressWarnings("unchecked")
+	private final List<TimedEntry>[][] wheel = new List[LEVELS][SLOTS];
+	private final ConcurrentLinkedQueue<TimedEntry> pending = new ConcurrentLinkedQueue<>();
+	private volatile long currentTick = 0;
+
+	private ScheduledExecutorService ticker;
+
+	TimingWheel(long tickMillis) {
+		this.tickMillis = tickMillis;
+		this.startMillis = System.currentTimeMillis();
+		for (int level = 0; level < LEVELS; level++) {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				wheel[level][slot] = new ArrayList<>();
+			}
+		}
+	}
+
+	/**
+	 * Starts the thread advancing the wheel
+	 */
+	synchronized void start() {
+		if (ticker != null) {
+			return;
+		}
+		ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "TimedCacheWheel");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		ticker.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				try {
+					advance(tickAt(System.currentTimeMillis()));
+				} catch (Throwable e) {
+					Logger.error(TimingWheel.class, "Error expiring timed cache entries: " + e.getMessage(), e);
+				}
+			}
+		}, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+	}
+
+	synchronized void stop() {
+		if (ticker != null) {
+			ticker.shutdownNow();
+			ticker = null;
+		}
+	}
+
+	/**
+	 * @return The tick an entry written now with the given TTL expires at
+	 */
+	long expirationTick(long ttlMillis) {
+		long ticks = (ttlMillis + tickMillis - 1) / tickMillis;
+		return tickAt(System.currentTimeMillis()) + Math.max(1, Math.min(ticks, MAX_DELAY));
+	}
+
+	/**
+	 * Hands the entry to the ticker thread, it is placed in the wheel on the next tick
+	 */
+	void schedule(TimedEntry entry) {
+		pending.add(entry);
+	}
+
+	private long tickAt(long millis) {
+		return (millis - startMillis) / tickMillis;
+	}
+
+	/**
+	 * Moves the wheel up to the given tick, catching up if the ticker was late
+	 */
+	private void advance(long targetTick) {
+		TimedEntry entry;
+		while ((entry = pending.poll()) != null) {
+			place(entry);
+		}
+		while (currentTick < targetTick) {
+			long tick = currentTick + 1;
+			currentTick = tick;
+			// the higher levels go down first so their entries due now reach the first level
+			for (int level = LEVELS - 1; level > 0; level--) {
+				if ((tick & ((1L << (BITS * level)) - 1)) == 0) {
+					cascade(wheel[level][(int) ((tick >>> (BITS * level)) & (SLOTS - 1))]);
+				}
+			}
+			List<TimedEntry> due = wheel[0][(int) (tick & (SLOTS - 1))];
+			for (TimedEntry dueEntry : due) {
+				if (!dueEntry.isRemoved()) {
+					dueEntry.expire();
+				}
+			}
+			due.clear();
+		}
+	}
+
+	private void cascade(List<TimedEntry> slot) {
+		if (slot.isEmpty()) {
+			return;
+		}
+		List<TimedEntry> entries = new ArrayList<>(slot);
+		slot.clear();
+		for (TimedEntry entry : entries) {
+			place(entry);
+		}
+	}
+
+	private void place(TimedEntry entry) {
+		if (entry.isRemoved()) {
+			return;
+		}
+		long tick = entry.getExpirationTick();
+		if (tick <= currentTick) {
+			entry.expire();
+			return;
+		}
+		// the lowest level where the expiration and the current tick fall in the same turn of the next level
+		int level = 0;
+		while (level < LEVELS - 1 && (tick >>> (BITS * (level + 1))) != (currentTick >>> (BITS * (level + 1)))) {
+			level++;
+		}
+		wheel[level][(int) ((tick >>> (BITS * level)) & (SLOTS - 1))].add(entry);
+	}
+
+}
@@ -0,0 +1,247 @@
+package com.dotmarketing.business.cache.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of cache invalidations that travels to the rest of the cluster as a
+ * single message. Invalidations are de-duplicated when added: keys of a group
+ * that is also flushed are dropped, and a flush of the whole cache drops
+ * everything else.
+ * <p>
+ * The wire format is a small binary message: a 2 bytes marker, a version
+ * byte, the time the batch was sent, the flush all flag, the flushed groups
+ * and, for every other group, its evicted keys. Group names are written
+ * only once no matter how many keys are evicted from them. Strings are
+ * written as their length followed by their UTF-8 bytes, so there is no
+ * limit to the length of a key.
+ * </p>
+ *
+ * This class is not thread safe, the {@link CacheInvalidationBuffer} takes
+ * care of the synchronization.
+ */
+public class CacheInvalidationBatch {
+
+	private static final byte MARKER_1 = (byte) 0xDC;
+	private static final byte MARKER_2 = (byte) 0x1B;
+	private static final byte VERSION = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private boolean flushAll = false;
+	private final Set<String> flushedGroups = new LinkedHashSet<String>();
+	private final Map<String, Set<String>> keysByGroup = new LinkedHashMap<String, Set<String>>();
+	private final long createdAt = System.currentTimeMillis();
+	private long sentAt = 0;
+	private int queued = 0;
+
+	/**
+	 * Adds the eviction of a single key.
+	 *
+	 * @param key
+	 * @param group
+	 */
+	public void addKey ( String key, String group ) {
+		queued++;
+		if ( flushAll || flushedGroups.contains(group) ) {
+			return;
+		}
+		Set<String> keys = keysByGroup.get(group);
+		if ( keys == null ) {
+			keys = new LinkedHashSet<String>();
+			keysByGroup.put(group, keys);
+		}
+		keys.add(key);
+	}
+
+	/**
+	 * Adds the flush of a whole group, the keys already added for that group
+	 * are discarded.
+	 *
+	 * @param group
+	 */
+	public void addGroupFlush ( String group ) {
+		queued++;
+		if ( flushAll ) {
+			return;
+		}
+		flushedGroups.add(group);
+		keysByGroup.remove(group);
+	}
+
+	/**
+	 * Adds the flush of the whole cache, every other invalidation is discarded.
+	 */
+	public void addFlushAll () {
+		queued++;
+		flushAll = true;
+		flushedGroups.clear();
+		keysByGroup.clear();
+	}
+
+	public boolean isFlushAll () {
+		return flushAll;
+	}
+
+	public Set<String> getFlushedGroups () {
+		return Collections.unmodifiableSet(flushedGroups);
+	}
+
+	public Map<String, Set<String>> getKeysByGroup () {
+		return Collections.unmodifiableMap(keysByGroup);
+	}
+
+	/**
+	 * @return Time in millis this batch started buffering invalidations
+	 */
+	public long getCreatedAt () {
+		return createdAt;
+	}
+
+	/**
+	 * @return Time in millis the sender serialized this batch, 0 if it was not sent yet
+	 */
+	public long getSentAt () {
+		return sentAt;
+	}
+
+	/**
+	 * @return Number of invalidations added to this batch, before de-duplication
+	 */
+	public int getQueued () {
+		return queued;
+	}
+
+	/**
+	 * @return Number of invalidations this batch will apply, after de-duplication
+	 */
+	public int size () {
+		if ( flushAll ) {
+			return 1;
+		}
+		int size = flushedGroups.size();
+		for ( Set<String> keys : keysByGroup.values() ) {
+			size += keys.size();
+		}
+		return size;
+	}
+
+	public boolean isEmpty () {
+		return !flushAll && flushedGroups.isEmpty() && keysByGroup.isEmpty();
+	}
+
+	/**
+	 * Serializes this batch into its binary representation.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] toBytes () throws IOException {
+
+		sentAt = System.currentTimeMillis();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + size() * 32);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(MARKER_1);
+		out.writeByte(MARKER_2);
+		out.writeByte(VERSION);
+		out.writeLong(sentAt);
+		out.writeBoolean(flushAll);
+		out.writeInt(flushedGroups.size());
+		for ( String group : flushedGroups ) {
+			writeString(out, group);
+		}
+		out.writeInt(keysByGroup.size());
+		for ( Map.Entry<String, Set<String>> entry : keysByGroup.entrySet() ) {
+			writeString(out, entry.getKey());
+			out.writeInt(entry.getValue().size());
+			for ( String key : entry.getValue() ) {
+				writeString(out, key);
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Verifies if the given message payload is a serialized batch.
+	 *
+	 * @param buffer
+	 * @return
+	 */
+	public static boolean isBatch ( byte[] buffer ) {
+		return buffer != null && buffer.length > 3 && buffer[0] == MARKER_1 && buffer[1] == MARKER_2;
+	}
+
+	/**
+	 * Reads a batch from its binary representation.
+	 *
+	 * @param buffer
+	 * @return
+	 * @throws IOException
+	 */
+	public static CacheInvalidationBatch fromBytes ( byte[] buffer ) throws IOException {
+
+		if ( !isBatch(buffer) ) {
+			throw new IOException("Not a cache invalidation batch");
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer));
+		in.readByte();
+		in.readByte();
+		byte version = in.readByte();
+		if ( version != VERSION ) {
+			throw new IOException("Unsupported cache invalidation batch version " + version);
+		}
+
+		CacheInvalidationBatch batch = new CacheInvalidationBatch();
+		batch.sentAt = in.readLong();
+		if ( in.readBoolean() ) {
+			batch.addFlushAll();
+		}
+		int groups = in.readInt();
+		for ( int i = 0; i < groups; i++ ) {
+			batch.addGroupFlush(readString(in));
+		}
+		groups = in.readInt();
+		for ( int i = 0; i < groups; i++ ) {
+			String group = readString(in);
+			int keys = in.readInt();
+			for ( int j = 0; j < keys; j++ ) {
+				batch.addKey(readString(in), group);
+			}
+		}
+		return batch;
+	}
+
+	private static void writeString ( DataOutputStream out, String value ) throws IOException {
+		byte[] bytes = value.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString ( DataInputStream in ) throws IOException {
+		int length = in.readInt();
+		if ( length < 0 || length > in.available() ) {
+			throw new IOException("Invalid string length " + length + " in cache invalidation batch");
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	@Override
+	public String toString () {
+		return "CacheInvalidationBatch [flushAll=" + flushAll + ", flushedGroups=" + flushedGroups + ", keysByGroup=" + keysByGroup + "]";
+	}
+
+}
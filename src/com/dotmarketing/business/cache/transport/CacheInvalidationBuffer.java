@@ -0,0 +1,125 @@
+package com.dotmarketing.business.cache.transport;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.dotmarketing.business.ChainableCacheAdministratorImpl;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Collects the cache invalidations that must be sent to the rest of the
+ * cluster and ships them as a single {@link CacheInvalidationBatch}.
+ * <p>
+ * A batch is sent {@code CACHE_INVALIDATION_BATCH_DELAY} milliseconds after
+ * its first invalidation was added, as soon as it holds
+ * {@code CACHE_INVALIDATION_BATCH_MAX_SIZE} invalidations, or when
+ * {@link #flush()} is called (e.g. when a transaction commits).
+ * </p>
+ */
+public class CacheInvalidationBuffer {
+
+	private final ChainableCacheAdministratorImpl cacheAdministrator;
+	private final long delay = Config.getIntProperty("CACHE_INVALIDATION_BATCH_DELAY", 5);
+	private final int maxSize = Config.getIntProperty("CACHE_INVALIDATION_BATCH_MAX_SIZE", 500);
+
+	private final ScheduledExecutorService scheduler;
+	private final Runnable flushTask = new Runnable() {
+		public void run () {
+			flush();
+		}
+	};
+
+	private CacheInvalidationBatch batch = new CacheInvalidationBatch();
+	private boolean flushScheduled = false;
+
+	public CacheInvalidationBuffer ( ChainableCacheAdministratorImpl cacheAdministrator ) {
+
+		this.cacheAdministrator = cacheAdministrator;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread ( Runnable r ) {
+				Thread t = new Thread(r, "CacheInvalidationBuffer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	public void addKey ( String key, String group ) {
+		synchronized (this) {
+			batch.addKey(key, group);
+		}
+		scheduleFlush();
+	}
+
+	public void addGroupFlush ( String group ) {
+		synchronized (this) {
+			batch.addGroupFlush(group);
+		}
+		scheduleFlush();
+	}
+
+	public void addFlushAll () {
+		synchronized (this) {
+			batch.addFlushAll();
+		}
+		//Nothing else matters once the whole cache is flushed, don't wait
+		flush();
+	}
+
+	private void scheduleFlush () {
+
+		boolean flushNow = false;
+		synchronized (this) {
+			if ( batch.getQueued() >= maxSize ) {
+				flushNow = true;
+			} else if ( !flushScheduled ) {
+				flushScheduled = true;
+				scheduler.schedule(flushTask, delay, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		if ( flushNow ) {
+			flush();
+		}
+	}
+
+	/**
+	 * Sends the pending invalidations to the cluster right away.
+	 */
+	public void flush () {
+
+		CacheInvalidationBatch toSend;
+		synchronized (this) {
+			flushScheduled = false;
+			if ( batch.isEmpty() ) {
+				return;
+			}
+			toSend = batch;
+			batch = new CacheInvalidationBatch();
+		}
+
+		CacheTransport transport = cacheAdministrator.getTransport();
+		if ( transport == null ) {
+			Logger.warn(CacheInvalidationBuffer.class, "No Cache transport implementation is defined, dropping " + toSend.size() + " invalidations");
+			return;
+		}
+
+		try {
+			transport.send(toSend);
+		} catch ( Exception e ) {
+			Logger.error(CacheInvalidationBuffer.class, "Unable to send invalidations to cluster : " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Sends what is pending and stops the scheduler.
+	 */
+	public void shutdown () {
+		flush();
+		scheduler.shutdown();
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.dotmarketing.business.cache.transport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the batched cache invalidations sent to and received from the
+ * cluster by a {@link CacheTransport}.
+ */
+public class CacheInvalidationStats {
+
+	private final AtomicLong batchesSent = new AtomicLong();
+	private final AtomicLong invalidationsQueued = new AtomicLong();
+	private final AtomicLong invalidationsSent = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+	private final AtomicLong maxBatchSize = new AtomicLong();
+	private final AtomicLong bufferingTime = new AtomicLong();
+	private final AtomicLong sendFailures = new AtomicLong();
+
+	private final AtomicLong batchesReceived = new AtomicLong();
+	private final AtomicLong invalidationsReceived = new AtomicLong();
+	private final AtomicLong deliveryTime = new AtomicLong();
+	private final AtomicLong applyTime = new AtomicLong();
+
+	/**
+	 * Registers a batch sent to the cluster.
+	 *
+	 * @param batch
+	 * @param bytes size of the serialized batch
+	 */
+	public void batchSent ( CacheInvalidationBatch batch, int bytes ) {
+		int size = batch.size();
+		batchesSent.incrementAndGet();
+		invalidationsQueued.addAndGet(batch.getQueued());
+		invalidationsSent.addAndGet(size);
+		bytesSent.addAndGet(bytes);
+		bufferingTime.addAndGet(batch.getSentAt() - batch.getCreatedAt());
+
+		long max = maxBatchSize.get();
+		while ( size > max && !maxBatchSize.compareAndSet(max, size) ) {
+			max = maxBatchSize.get();
+		}
+	}
+
+	public void sendFailed () {
+		sendFailures.incrementAndGet();
+	}
+
+	/**
+	 * Registers a batch received from the cluster and applied locally.
+	 *
+	 * @param batch
+	 * @param receivedAt time in millis the batch was received
+	 * @param applyMillis time it took to apply the batch to the local cache
+	 */
+	public void batchReceived ( CacheInvalidationBatch batch, long receivedAt, long applyMillis ) {
+		batchesReceived.incrementAndGet();
+		invalidationsReceived.addAndGet(batch.size());
+		// clocks across the cluster are not perfectly in sync, don't let skew produce negative numbers
+		deliveryTime.addAndGet(Math.max(0, receivedAt - batch.getSentAt()));
+		applyTime.addAndGet(applyMillis);
+	}
+
+	private static double avg ( long total, long count ) {
+		return count > 0 ? (double) total / count : 0D;
+	}
+
+	/**
+	 * @return The current values of all the counters
+	 */
+	public Map<String, Object> toMap () {
+
+		long sent = batchesSent.get();
+		long received = batchesReceived.get();
+
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("batchesSent", sent);
+		stats.put("invalidationsQueued", invalidationsQueued.get());
+		stats.put("invalidationsSent", invalidationsSent.get());
+		stats.put("bytesSent", bytesSent.get());
+		stats.put("avgBatchSize", avg(invalidationsSent.get(), sent));
+		stats.put("maxBatchSize", maxBatchSize.get());
+		stats.put("avgBufferingMillis", avg(bufferingTime.get(), sent));
+		stats.put("sendFailures", sendFailures.get());
+		stats.put("batchesReceived", received);
+		stats.put("invalidationsReceived", invalidationsReceived.get());
+		stats.put("avgDeliveryMillis", avg(deliveryTime.get(), received));
+		stats.put("avgApplyMillis", avg(applyTime.get(), received));
+		return stats;
+	}
+
+}
@@ -20,6 +20,15 @@ public interface CacheTransport {
      */
     void send ( String message ) throws CacheTransportException;
 
+    /**
+     * Sends a batch of cache invalidations to the transport channel as a single message.
+     * The receivers must apply the whole batch to their local cache.
+     *
+     * @param batch
+     * @throws CacheTransportException
+     */
+    void send ( CacheInvalidationBatch batch ) throws CacheTransportException;
+
     /**
      * Tests the cluster transport channel
      *
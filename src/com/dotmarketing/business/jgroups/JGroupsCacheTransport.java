@@ -6,6 +6,8 @@ import com.dotcms.repackage.org.apache.commons.collections.map.LRUMap;
 import com.dotcms.repackage.org.apache.struts.Globals;
 import com.dotcms.repackage.org.jgroups.*;
 import com.dotmarketing.business.*;
+import com.dotmarketing.business.cache.transport.CacheInvalidationBatch;
+import com.dotmarketing.business.cache.transport.CacheInvalidationStats;
 import com.dotmarketing.business.cache.transport.CacheTransport;
 import com.dotmarketing.business.cache.transport.CacheTransportException;
 import com.dotmarketing.exception.DotRuntimeException;
@@ -13,12 +15,12 @@ import com.dotmarketing.menubuilders.RefreshMenus;
 import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.UtilMethods;
-import com.dotmarketing.velocity.DotResourceCache;
 import com.liferay.portal.struts.MultiMessageResources;
 
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Jonathan Gamba
@@ -28,6 +30,7 @@ public class JGroupsCacheTransport extends ReceiverAdapter implements CacheTrans
 
     private Map<String, Map<String, Boolean>> cacheStatus;
     private JChannel channel;
+    private final CacheInvalidationStats invalidationStats = new CacheInvalidationStats();
 
     @Override
     public void init ( Server localServer, Map<String, String> cacheProperties ) throws CacheTransportException {
@@ -91,6 +94,20 @@ public class JGroupsCacheTransport extends ReceiverAdapter implements CacheTrans
         }
     }
 
+    @Override
+    public void send ( CacheInvalidationBatch batch ) throws CacheTransportException {
+
+        try {
+            byte[] buffer = batch.toBytes();
+            channel.send(new Message(null, null, buffer));
+            invalidationStats.batchSent(batch, buffer.length);
+        } catch ( Exception e ) {
+            invalidationStats.sendFailed();
+            Logger.error(JGroupsCacheTransport.class, "Unable to send invalidation batch: " + e.getMessage(), e);
+            throw new CacheTransportException("Unable to send invalidation batch", e);
+        }
+    }
+
     @Override
     public void testCluster () throws CacheTransportException {
 
@@ -140,6 +157,13 @@ public class JGroupsCacheTransport extends ReceiverAdapter implements CacheTrans
             return;
         }
 
+        //Batched invalidations travel as raw bytes, everything else as a serialized String
+        byte[] buffer = msg.getBuffer();
+        if ( CacheInvalidationBatch.isBatch(buffer) ) {
+            receiveBatch(buffer);
+            return;
+        }
+
         Object v = msg.getObject();
         if ( v == null ) {
             return;
@@ -213,11 +237,50 @@ public class JGroupsCacheTransport extends ReceiverAdapter implements CacheTrans
         }
     }
 
-    private void invalidateCacheFromCluster ( String k ) {
+    /**
+     * Applies a batch of invalidations sent by another node to the local cache
+     *
+     * @param buffer
+     */
+    private void receiveBatch ( byte[] buffer ) {
+
+        long receivedAt = System.currentTimeMillis();
+        CacheInvalidationBatch batch;
+        try {
+            batch = CacheInvalidationBatch.fromBytes(buffer);
+        } catch ( Exception e ) {
+            Logger.error(JGroupsCacheTransport.class, "Unable to read invalidation batch: " + e.getMessage(), e);
+            return;
+        }
 
+        String menuGroup = CacheLocator.getVeloctyResourceCache().getMenuGroup();
         boolean flushMenus = false;
-        DotResourceCache vc = CacheLocator.getVeloctyResourceCache();
-        String menuGroup = vc.getMenuGroup();
+
+        if ( batch.isFlushAll() ) {
+            flushMenus = invalidateCacheFromCluster("0", DotCacheAdministrator.ROOT_GOUP, menuGroup);
+        } else {
+            for ( String group : batch.getFlushedGroups() ) {
+                flushMenus |= invalidateCacheFromCluster("0", group, menuGroup);
+            }
+            for ( Map.Entry<String, Set<String>> entry : batch.getKeysByGroup().entrySet() ) {
+                for ( String key : entry.getValue() ) {
+                    flushMenus |= invalidateCacheFromCluster(key, entry.getKey(), menuGroup);
+                }
+            }
+        }
+
+        //The menus are flushed only once no matter how many menu entries came in the batch
+        if ( flushMenus ) {
+            RefreshMenus.deleteMenusOnFileSystemOnly();
+            CacheLocator.getCacheAdministrator().flushGroupLocalOnly(menuGroup);
+        }
+
+        invalidationStats.batchReceived(batch, receivedAt, System.currentTimeMillis() - receivedAt);
+    }
+
+    private void invalidateCacheFromCluster ( String k ) {
+
+        String menuGroup = CacheLocator.getVeloctyResourceCache().getMenuGroup();
 
         int i = k.lastIndexOf(":");
         if ( i > 0 ) {
@@ -225,38 +288,48 @@ public class JGroupsCacheTransport extends ReceiverAdapter implements CacheTrans
             String key = k.substring(0, i);
             String group = k.substring(i + 1, k.length());
 
-            key = key.toLowerCase();
-            group = group.toLowerCase();
-
-            if ( key.contains("dynamic") ) {
-                if ( group.equals(menuGroup) ) {
-                    flushMenus = true;
-                }
-            }
-            if ( !flushMenus ) {
-                if ( key.equals("0") ) {
-
-                    if ( group.equalsIgnoreCase(DotCacheAdministrator.ROOT_GOUP) ) {
-                        CacheLocator.getCacheAdministrator().flushAlLocalOnly();
-                    } else if ( group.equalsIgnoreCase(menuGroup) ) {
-                        flushMenus = true;
-                    } else {
-                        CacheLocator.getCacheAdministrator().flushGroupLocalOnly(group);
-                    }
-
-                } else {
-                    CacheLocator.getCacheAdministrator().removeLocalOnly(key, group);
-                }
+            if ( invalidateCacheFromCluster(key, group, menuGroup) ) {
+                RefreshMenus.deleteMenusOnFileSystemOnly();
+                CacheLocator.getCacheAdministrator().flushGroupLocalOnly(menuGroup);
             }
         } else {
             Logger.error(this, "The cache to locally remove key is invalid. The value was " + k);
         }
 
-        if ( flushMenus ) {
-            RefreshMenus.deleteMenusOnFileSystemOnly();
-            CacheLocator.getCacheAdministrator().flushGroupLocalOnly(menuGroup);
+    }
+
+    /**
+     * Removes a key (or a whole group when the key is "0") from the local cache
+     *
+     * @param key
+     * @param group
+     * @param menuGroup
+     * @return true if the menus must be flushed, the caller is in charge of flushing them
+     */
+    private boolean invalidateCacheFromCluster ( String key, String group, String menuGroup ) {
+
+        key = key.toLowerCase();
+        group = group.toLowerCase();
+
+        if ( key.contains("dynamic") ) {
+            if ( group.equals(menuGroup) ) {
+                return true;
+            }
         }
+        if ( key.equals("0") ) {
+
+            if ( group.equalsIgnoreCase(DotCacheAdministrator.ROOT_GOUP) ) {
+                CacheLocator.getCacheAdministrator().flushAlLocalOnly();
+            } else if ( group.equalsIgnoreCase(menuGroup) ) {
+                return true;
+            } else {
+                CacheLocator.getCacheAdministrator().flushGroupLocalOnly(group);
+            }
 
+        } else {
+            CacheLocator.getCacheAdministrator().removeLocalOnly(key, group);
+        }
+        return false;
     }
 
     public Map<String, Boolean> validateCacheInCluster ( String dateInMillis, int numberServers, int maxWaitSeconds ) throws CacheTransportException {
@@ -314,4 +387,11 @@ public class JGroupsCacheTransport extends ReceiverAdapter implements CacheTrans
         return channel;
     }
 
+    /**
+     * @return The counters of the invalidation batches sent and received by this node
+     */
+    public CacheInvalidationStats getInvalidationStats () {
+        return invalidationStats;
+    }
+
 }
\ No newline at end of file
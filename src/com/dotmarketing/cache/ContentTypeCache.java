@@ -5,6 +5,7 @@ import java.util.List;
 import com.dotmarketing.beans.ContainerStructure;
 import com.dotmarketing.business.Cachable;
 import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.cms.urlmap.URLMapResolution;
 import com.dotmarketing.portlets.structure.model.Structure;
 
 /**
@@ -44,6 +45,16 @@ public abstract class ContentTypeCache implements Cachable {
 
     public abstract void addURLMasterPattern(String pattern);
 
+    public abstract URLMapResolution getURLMapResolution(String structureInode, String key);
+
+    public abstract void addURLMapResolution(String key, URLMapResolution resolution);
+
+    public abstract void removeURLMapResolution(String structureInode, String key);
+
+    public abstract void clearURLMapResolutions(String structureInode);
+
+    public abstract void clearURLMapResolutions();
+
     public abstract void addContainerStructures(
             List<ContainerStructure> containerStructures,
             String containerIdentifier, String containerInode);
@@ -6,9 +6,11 @@ import com.dotmarketing.beans.ContainerStructure;
 import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.DotCacheAdministrator;
 import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.cms.urlmap.URLMapResolution;
 import com.dotmarketing.portlets.structure.factories.StructureFactory;
 import com.dotmarketing.portlets.structure.model.Structure;
 import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UUIDGenerator;
 import com.dotmarketing.util.UtilMethods;
 
 /**
@@ -21,8 +23,10 @@ public class ContentTypeCacheImpl extends ContentTypeCache {
     private DotCacheAdministrator cache;
     private final String primaryGroup = "StructureCache";
     private final String containerStructureGroup = "ContainerStructureCache";
+    // URL Map URLs already resolved to a contentlet
+    private final String urlMapGroup = "URLMapContentletCache";
     // region's name for the cache
-    private final String[] groups = { primaryGroup, containerStructureGroup };
+    private final String[] groups = { primaryGroup, containerStructureGroup, urlMapGroup };
 
     public ContentTypeCacheImpl() {
         cache = CacheLocator.getCacheAdministrator();
@@ -176,8 +180,13 @@ public class ContentTypeCacheImpl extends ContentTypeCache {
     public void remove(Structure st) {
         String inode = st.getInode();
         String structureName = st.getName();
+        String velocityVarName = st.getVelocityVarName();
         cache.remove(primaryGroup + inode,primaryGroup);
         cache.remove(primaryGroup + structureName,primaryGroup);
+        if (UtilMethods.isSet(velocityVarName)) {
+        	cache.remove(primaryGroup + velocityVarName,primaryGroup);
+        	cache.remove(primaryGroup + velocityVarName.toLowerCase(),primaryGroup);
+        }
         clearURLMasterPattern();
     }
 
@@ -189,12 +198,63 @@ public class ContentTypeCacheImpl extends ContentTypeCache {
     	synchronized (ContentTypeCacheImpl.MASTER_STRUCTURE) {
         	cache.remove(primaryGroup + MASTER_STRUCTURE,primaryGroup);	
 		}
+    	// the patterns or their fields changed, the resolved URLs might be wrong now
+    	clearURLMapResolutions();
     }
     
     public void addURLMasterPattern(String pattern){
         cache.put(primaryGroup + MASTER_STRUCTURE, pattern, primaryGroup);
 	}
     
+    public URLMapResolution getURLMapResolution(String structureInode, String key) {
+    	try{
+    		return (URLMapResolution) cache.get(getURLMapKey(structureInode, key), urlMapGroup);
+    	}catch (DotCacheException e) {
+			Logger.debug(ContentTypeCacheImpl.class,"Cache Entry not found", e);
+			return null;
+    	}
+    }
+
+    public void addURLMapResolution(String key, URLMapResolution resolution){
+        cache.put(getURLMapKey(resolution.getStructureInode(), key), resolution, urlMapGroup);
+    }
+
+    public void removeURLMapResolution(String structureInode, String key){
+        cache.remove(getURLMapKey(structureInode, key), urlMapGroup);
+    }
+
+    /**
+     * Forgets the URLs resolved to contentlets of the structure. They are
+     * kept under the current generation of the structure: removing it leaves
+     * them unreachable on every node, they are evicted from the region later.
+     */
+    public void clearURLMapResolutions(String structureInode){
+        cache.remove(urlMapGroup + "generation:" + structureInode, urlMapGroup);
+    }
+
+    public void clearURLMapResolutions(){
+        cache.flushGroup(urlMapGroup);
+    }
+
+    /**
+     * Returns the key of a resolution, under the current generation of its
+     * structure (a new one is started if there is none)
+     */
+    private String getURLMapKey(String structureInode, String key) {
+    	String generationKey = urlMapGroup + "generation:" + structureInode;
+    	Object generation = null;
+    	try{
+    		generation = cache.get(generationKey, urlMapGroup);
+    	}catch (DotCacheException e) {
+			Logger.debug(ContentTypeCacheImpl.class,"Cache Entry not found", e);
+    	}
+    	if(generation == null) {
+    		generation = UUIDGenerator.generateUuid();
+    		cache.put(generationKey, generation, urlMapGroup);
+    	}
+    	return urlMapGroup + generation + ":" + key;
+    }
+
     public void addContainerStructures(List<ContainerStructure> containerStructures, String containerIdentifier, String containerInode){
         cache.put(containerStructureGroup + containerIdentifier + containerInode, containerStructures, containerStructureGroup);
 	}
@@ -220,6 +280,7 @@ public class ContentTypeCacheImpl extends ContentTypeCache {
     public void clearCache(){
 	    //clear the cache
 	    cache.flushGroup(primaryGroup);
+	    cache.flushGroup(urlMapGroup);
 	}
 	public String[] getGroups() {
     	return groups;
@@ -69,6 +69,9 @@ public class FolderCacheImpl extends FolderCache {
 		
 		// Folder by Inode
 		cache.remove(getPrimaryGroup() + inode, getPrimaryGroup());
+
+		// Routes of the folder host
+		CacheLocator.getCMSRouteCache().invalidate(f.getHostId());
 		
 		try{
 			// Folder by Path
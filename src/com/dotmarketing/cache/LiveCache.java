@@ -26,6 +26,7 @@ import com.dotmarketing.portlets.contentlet.business.DotContentletStateException
 import com.dotmarketing.portlets.contentlet.business.HostAPI;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
 import com.dotmarketing.portlets.folders.model.Folder;
+import com.dotmarketing.portlets.languagesmanager.model.Language;
 import com.dotmarketing.portlets.links.model.Link;
 import com.dotmarketing.util.Config;
 import com.dotmarketing.util.InodeUtils;
@@ -341,6 +342,10 @@ public class LiveCache {
 		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
 	    //clear the cache
 	    cache.flushGroup(getPrimaryGroup() + "_" + hostId);
+	    //and the contents, cached by language
+	    for(Language language : APILocator.getLanguageAPI().getLanguages()){
+	        cache.flushGroup(getPrimaryGroup() + "_" + hostId + "_" + language.getId());
+	    }
 	}
 	public static String[] getGroups() {
     	String[] groups = {getPrimaryGroup()};
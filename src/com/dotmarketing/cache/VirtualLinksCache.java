@@ -85,6 +85,7 @@ public class VirtualLinksCache {
         {
         	Logger.info(VirtualLinksCache.class, "mapping: " + vl.getUrl() + " -> " + vl.getUri());     	
             cache.put(sanitizeKey(vl.getUrl())  , vl.getUri(), getPrimaryGroup());
+            CacheLocator.getCMSRouteCache().invalidateAll();
         }
     }
 
@@ -97,6 +98,7 @@ public class VirtualLinksCache {
     	DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
     	Logger.debug(VirtualLinksCache.class, "removePathFromCache: url = " + url);
     	cache.remove(sanitizeKey(url),getPrimaryGroup());
+    	CacheLocator.getCMSRouteCache().invalidateAll();
     } 
     
     public static void mapAllVirtualLinks() {
@@ -112,12 +114,14 @@ public class VirtualLinksCache {
                 cache.put(sanitizeKey(vl.getUrl()), vl.getUri(), getPrimaryGroup());
             }
         }
+        CacheLocator.getCMSRouteCache().invalidateAll();
     }   
 
     public static void clearCache(){
 		DotCacheAdministrator cache = CacheLocator.getCacheAdministrator();
 	    //clear the cache
 	    cache.flushGroup(getPrimaryGroup());
+	    CacheLocator.getCMSRouteCache().invalidateAll();
 	}
 	public static String[] getGroups() {
     	String[] groups = {getPrimaryGroup()};
@@ -0,0 +1,40 @@
+package com.dotmarketing.cms.urlmap;
+
+import java.io.Serializable;
+
+/**
+ * The contentlet a URL Map URL was resolved to. It is kept in the
+ * {@link com.dotmarketing.cache.ContentTypeCache} so the same URL does not
+ * need to be searched in the index again.
+ * <p>
+ * Only the identifier is kept, the inode of the version to show is read from
+ * the version info each time.
+ * </p>
+ */
+public class URLMapResolution implements Serializable {
+
+	private static final long serialVersionUID = 4467219373925640411L;
+
+	private final String structureInode;
+	private final String identifier;
+	private final long languageId;
+
+	public URLMapResolution(String structureInode, String identifier, long languageId) {
+		this.structureInode = structureInode;
+		this.identifier = identifier;
+		this.languageId = languageId;
+	}
+
+	public String getStructureInode() {
+		return structureInode;
+	}
+
+	public String getIdentifier() {
+		return identifier;
+	}
+
+	public long getLanguageId() {
+		return languageId;
+	}
+
+}
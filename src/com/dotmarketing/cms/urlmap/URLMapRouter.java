@@ -0,0 +1,250 @@
+package com.dotmarketing.cms.urlmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dotmarketing.portlets.structure.model.SimpleStructureURLMap;
+import com.dotmarketing.util.UtilMethods;
+
+/**
+ * Matches request URLs against the URL Map patterns of all the structures.
+ * The patterns are indexed by path segment in a trie, so a URL is matched by
+ * walking its segments once instead of running a regular expression per
+ * structure.
+ * <p>
+ * The matching follows the regular expressions built by
+ * {@link com.dotmarketing.portlets.structure.StructureUtil#generateRegExForURLMap(String)}:
+ * a pattern matches from the beginning of the URL, each segment starting with
+ * <code>{</code> captures one or more segments (as few as possible), and the
+ * URL may go on after the last segment of the pattern. Matches are returned in
+ * the order the patterns were given, patterns with more segments first.
+ * </p>
+ * <p>
+ * A router is immutable once built, a new one is built when the URL Maps
+ * change.
+ * </p>
+ */
+public class URLMapRouter {
+
+	private final Node root = new Node();
+	private final int size;
+
+	/**
+	 * Builds the router for the given URL Maps. Empty patterns are ignored.
+	 *
+	 * @param urlMaps
+	 *            The URL Map patterns of the structures.
+	 */
+	public URLMapRouter(List<SimpleStructureURLMap> urlMaps) {
+		List<Route> routes = new ArrayList<Route>();
+		for (SimpleStructureURLMap urlMap : urlMaps) {
+			Route route = Route.parse(urlMap.getInode(), urlMap.getURLMapPattern());
+			if (route != null) {
+				routes.add(route);
+			}
+		}
+		// Same order the regular expressions used to be tried in: more
+		// segments first, then the order of the structures
+		Collections.sort(routes, new Comparator<Route>() {
+			public int compare(Route o1, Route o2) {
+				return o2.segments.length - o1.segments.length;
+			}
+		});
+		for (int i = 0; i < routes.size(); i++) {
+			Route route = routes.get(i);
+			route.rank = i;
+			Node node = root;
+			for (String segment : route.segments) {
+				node = (segment == null) ? node.variable() : node.literal(segment);
+			}
+			node.routes.add(route);
+		}
+		this.size = routes.size();
+	}
+
+	/**
+	 * @return <code>true</code> if there are no URL Maps to match.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Finds the URL Maps matching the given URL.
+	 *
+	 * @param url
+	 *            The requested URL. The last segment is only taken into account
+	 *            if the URL ends with <code>/</code>.
+	 * @return The matches, in the order they must be tried.
+	 */
+	public List<Match> match(String url) {
+		if (size == 0 || !UtilMethods.isSet(url) || !url.startsWith("/")) {
+			return Collections.emptyList();
+		}
+		String[] parts = url.substring(1).split("/", -1);
+		// the last part is what follows the last slash, it is not a whole segment
+		int length = parts.length - 1;
+		Map<Route, Match> found = new HashMap<Route, Match>();
+		walk(root, parts, 0, length, new ArrayList<String>(), found);
+		if (found.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<Match> matches = new ArrayList<Match>(found.values());
+		Collections.sort(matches, new Comparator<Match>() {
+			public int compare(Match o1, Match o2) {
+				return o1.route.rank - o2.route.rank;
+			}
+		});
+		return matches;
+	}
+
+	private void walk(Node node, String[] parts, int index, int length, List<String> values, Map<Route, Match> found) {
+		for (Route route : node.routes) {
+			// the first match of a route is the one the regular expression would find
+			if (!found.containsKey(route)) {
+				found.put(route, new Match(route, new ArrayList<String>(values)));
+			}
+		}
+		if (index >= length) {
+			return;
+		}
+		if (node.literals != null) {
+			Node next = node.literals.get(parts[index]);
+			if (next != null) {
+				walk(next, parts, index + 1, length, values, found);
+			}
+		}
+		if (node.variable != null) {
+			StringBuilder value = new StringBuilder();
+			for (int end = index; end < length; end++) {
+				if (end > index) {
+					value.append('/');
+				}
+				value.append(parts[end]);
+				if (value.length() == 0) {
+					continue;
+				}
+				values.add(value.toString());
+				walk(node.variable, parts, end + 1, length, values, found);
+				values.remove(values.size() - 1);
+			}
+		}
+	}
+
+	/**
+	 * A URL Map pattern split in segments, <code>null</code> segments capture
+	 * a value.
+	 */
+	private static class Route {
+
+		private final String structureInode;
+		private final String[] segments;
+		private final List<String> fields;
+		private int rank;
+
+		private Route(String structureInode, String[] segments, List<String> fields) {
+			this.structureInode = structureInode;
+			this.segments = segments;
+			this.fields = fields;
+		}
+
+		static Route parse(String structureInode, String pattern) {
+			if (!UtilMethods.isSet(pattern)) {
+				return null;
+			}
+			List<String> segments = new ArrayList<String>();
+			for (String frag : pattern.split("/")) {
+				if (UtilMethods.isSet(frag)) {
+					segments.add(frag.startsWith("{") ? null : frag);
+				}
+			}
+			if (segments.isEmpty()) {
+				return null;
+			}
+			List<String> fields = new ArrayList<String>();
+			int start = pattern.indexOf('{');
+			while (start >= 0) {
+				int end = pattern.indexOf('}', start);
+				if (end < 0) {
+					break;
+				}
+				String field = pattern.substring(start + 1, end);
+				if (field.length() > 0 && field.indexOf('{') < 0) {
+					fields.add(field);
+				}
+				start = pattern.indexOf('{', end);
+			}
+			return new Route(structureInode, segments.toArray(new String[segments.size()]), fields);
+		}
+
+	}
+
+	private static class Node {
+
+		private Map<String, Node> literals;
+		private Node variable;
+		private final List<Route> routes = new ArrayList<Route>(1);
+
+		Node literal(String segment) {
+			if (literals == null) {
+				literals = new HashMap<String, Node>();
+			}
+			Node node = literals.get(segment);
+			if (node == null) {
+				node = new Node();
+				literals.put(segment, node);
+			}
+			return node;
+		}
+
+		Node variable() {
+			if (variable == null) {
+				variable = new Node();
+			}
+			return variable;
+		}
+
+	}
+
+	/**
+	 * A URL Map matching a URL, with the values captured for its fields.
+	 */
+	public static class Match {
+
+		private final Route route;
+		private final List<String> values;
+
+		private Match(Route route, List<String> values) {
+			this.route = route;
+			this.values = values;
+		}
+
+		/**
+		 * @return The Inode of the structure the URL Map belongs to.
+		 */
+		public String getStructureInode() {
+			return route.structureInode;
+		}
+
+		/**
+		 * @return The names of the fields in the URL Map pattern.
+		 */
+		public List<String> getFieldMatches() {
+			return route.fields;
+		}
+
+		/**
+		 * @return The values captured from the URL, in the same order as
+		 *         {@link #getFieldMatches()}.
+		 */
+		public List<String> getValues() {
+			return values;
+		}
+
+	}
+
+}
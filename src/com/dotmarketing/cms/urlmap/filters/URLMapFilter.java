@@ -11,9 +11,6 @@ package com.dotmarketing.cms.urlmap.filters;
 
 import java.io.IOException;
 import java.net.URLDecoder;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 import javax.servlet.Filter;
@@ -36,6 +33,8 @@ import com.dotmarketing.business.web.WebAPILocator;
 import com.dotmarketing.cache.FieldsCache;
 import com.dotmarketing.cache.ContentTypeCacheImpl;
 import com.dotmarketing.cache.VirtualLinksCache;
+import com.dotmarketing.cms.urlmap.URLMapResolution;
+import com.dotmarketing.cms.urlmap.URLMapRouter;
 import com.dotmarketing.common.model.ContentletSearch;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotRuntimeException;
@@ -44,6 +43,7 @@ import com.dotmarketing.filters.CMSFilter;
 import com.dotmarketing.filters.CmsUrlUtil;
 import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
 import com.dotmarketing.portlets.structure.StructureUtil;
 import com.dotmarketing.portlets.structure.factories.StructureFactory;
 import com.dotmarketing.portlets.structure.model.Field;
@@ -51,8 +51,6 @@ import com.dotmarketing.portlets.structure.model.SimpleStructureURLMap;
 import com.dotmarketing.portlets.structure.model.Structure;
 import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
-import com.dotmarketing.util.RegEX;
-import com.dotmarketing.util.RegExMatch;
 import com.dotmarketing.util.UtilMethods;
 import com.dotmarketing.util.WebKeys;
 import com.liferay.portal.model.User;
@@ -60,6 +58,12 @@ import com.liferay.portal.model.User;
 /**
  * This filter handles all requests regarding URL Maps. These URL maps on
  * content structures are used to create friendly URLs for SEO.
+ * <p>
+ * The URL is matched against all the URL Maps at once with a
+ * {@link URLMapRouter}. The contentlet a URL resolves to is kept in the
+ * {@link com.dotmarketing.cache.ContentTypeCache} until the index changes, so
+ * requests to the same detail page don't search the index again.
+ * </p>
  * 
  * @author root
  * @version 1.2
@@ -68,7 +72,7 @@ import com.liferay.portal.model.User;
  */
 public class URLMapFilter implements Filter {
 
-	private List<PatternCache> patternsCache = new ArrayList<>();
+	private volatile URLMapRouter router = null;
 	private ContentletAPI conAPI;
 	private UserWebAPI wuserAPI;
 	private HostWebAPI whostAPI;
@@ -136,10 +140,12 @@ public class URLMapFilter implements Filter {
 		} catch (DotCacheException e2) {
 			Logger.error(URLMapFilter.class, e2.getMessage(), e2);
 		}
-		if (mastRegEx == null || patternsCache.isEmpty()) {
+		URLMapRouter urlMapRouter = router;
+		if (mastRegEx == null || urlMapRouter == null) {
 			synchronized (ContentTypeCacheImpl.MASTER_STRUCTURE) {
 				try {
 					mastRegEx = buildCacheObjects();
+					urlMapRouter = router;
 				} catch (DotDataException e) {
 					Logger.error(URLMapFilter.class, e.getMessage(), e);
 					throw new ServletException("Unable to build URLMap patterns", e);
@@ -155,7 +161,8 @@ public class URLMapFilter implements Filter {
 			chain.doFilter(req, res);
 			return;
 		}
-		if (RegEX.contains(url, mastRegEx)) {
+		List<URLMapRouter.Match> urlMaps = urlMapRouter.match(url);
+		if (!urlMaps.isEmpty()) {
 			boolean ADMIN_MODE = (optSession!=null && optSession.getAttribute(com.dotmarketing.util.WebKeys.ADMIN_MODE_SESSION) != null);
 			boolean EDIT_MODE = ((optSession!=null && optSession.getAttribute(com.dotmarketing.util.WebKeys.EDIT_MODE_SESSION) != null) && ADMIN_MODE);
 
@@ -168,66 +175,71 @@ public class URLMapFilter implements Filter {
 			}
 	
 			List<ContentletSearch> cons = null;
-			for (PatternCache pc : patternsCache) {
-				List<RegExMatch> matches = RegEX.findForUrlMap(url, pc.getRegEx());
-				if (matches != null && matches.size() > 0) {
-					query = new StringBuilder();
-					List<RegExMatch> groups = matches.get(0).getGroups();
-					List<String> fieldMatches = pc.getFieldMatches();
-					structure = CacheLocator.getContentTypeCache().getStructureByInode(pc.getStructureInode());
-					List<Field> fields = FieldsCache.getFieldsByStructureInode(structure.getInode());
-					query.append("+structureName:").append(structure.getVelocityVarName()).append(" +deleted:false ");
-					if (EDIT_MODE || ADMIN_MODE) {
-						query.append("+working:true ");
-					} else {
-						query.append("+live:true ");
-					}
+			boolean found = false;
+			for (URLMapRouter.Match urlMap : urlMaps) {
+				structure = CacheLocator.getContentTypeCache().getStructureByInode(urlMap.getStructureInode());
+
+				String resolutionKey = getResolutionKey(request, host, languageId, user, EDIT_MODE || ADMIN_MODE, structure, url);
+				if (resolveFromCache(request, optSession, url, structure, resolutionKey, user, EDIT_MODE || ADMIN_MODE)) {
+					found = true;
+					break;
+				}
 
-					// Set Host Stuff
-					boolean hasHostField = false;
-					Boolean hostIsRequired = false;
-					for (Field field : fields) {
-						if (field.getFieldType().equals(Field.FieldType.HOST_OR_FOLDER.toString())) {
-							hasHostField = true;
-							if (field.isRequired()) {
-								hostIsRequired = true;
-							}
-							break;
+				query = new StringBuilder();
+				List<String> groups = urlMap.getValues();
+				List<String> fieldMatches = urlMap.getFieldMatches();
+				List<Field> fields = FieldsCache.getFieldsByStructureInode(structure.getInode());
+				query.append("+structureName:").append(structure.getVelocityVarName()).append(" +deleted:false ");
+				if (EDIT_MODE || ADMIN_MODE) {
+					query.append("+working:true ");
+				} else {
+					query.append("+live:true ");
+				}
+
+				// Set Host Stuff
+				boolean hasHostField = false;
+				Boolean hostIsRequired = false;
+				for (Field field : fields) {
+					if (field.getFieldType().equals(Field.FieldType.HOST_OR_FOLDER.toString())) {
+						hasHostField = true;
+						if (field.isRequired()) {
+							hostIsRequired = true;
 						}
+						break;
 					}
-					if (hasHostField) {
-						if (host != null) {
-							//if (hostIsRequired) {
-							//query.append("+conhost:" + host.getIdentifier() + " ");
-							//} else {
-							try {
-								query.append("+(conhost:").append(host.getIdentifier()).append(" ")
-								     .append("conhost:").append(whostAPI.findSystemHost(wuserAPI.getSystemUser(), true).getIdentifier()).append(") ");
-							} catch (Exception e) {
-								Logger.error(URLMapFilter.class, e.getMessage()
-										+ " : Unable to build host in query : ", e);
-							}
-							//}
+				}
+				if (hasHostField) {
+					if (host != null) {
+						//if (hostIsRequired) {
+						//query.append("+conhost:" + host.getIdentifier() + " ");
+						//} else {
+						try {
+							query.append("+(conhost:").append(host.getIdentifier()).append(" ")
+							     .append("conhost:").append(whostAPI.findSystemHost(wuserAPI.getSystemUser(), true).getIdentifier()).append(") ");
+						} catch (Exception e) {
+							Logger.error(URLMapFilter.class, e.getMessage()
+									+ " : Unable to build host in query : ", e);
 						}
+						//}
 					}
+				}
 
-					// build fields
-					int counter = 0;
-					for (RegExMatch regExMatch : groups) {
-						String value = regExMatch.getMatch();
-						if (value.endsWith("/")) {
-							value = value.substring(0, value.length() - 1);
-						}
-						query.append("+").append(structure.getVelocityVarName()).append(".").append(fieldMatches.get(counter)).append(":")
-								.append(value).append(" ");
-						counter++;
+				// build fields
+				int counter = 0;
+				for (String value : groups) {
+					if (value.endsWith("/")) {
+						value = value.substring(0, value.length() - 1);
 					}
-					
-					try {
-					    long sessionLang=WebAPILocator.getLanguageWebAPI().getLanguage(request).getId();
-					    long defaultLang=APILocator.getLanguageAPI().getDefaultLanguage().getId();
-					    boolean checkIndex=false;
-					  
+					query.append("+").append(structure.getVelocityVarName()).append(".").append(fieldMatches.get(counter)).append(":")
+							.append(value).append(" ");
+					counter++;
+				}
+				
+				try {
+				    long sessionLang=WebAPILocator.getLanguageWebAPI().getLanguage(request).getId();
+				    long defaultLang=APILocator.getLanguageAPI().getDefaultLanguage().getId();
+				    boolean checkIndex=false;
+				  
                         if(request.getParameter("language_id")==null && Config.getBooleanProperty("DEFAULT_CONTENT_TO_DEFAULT_LANGUAGE",false)) {
                             // consider default language. respecting language_id in parameters
                             query.append(" +(languageId:").append(defaultLang).append(" languageId:").append(sessionLang).append(") ");
@@ -238,40 +250,30 @@ public class URLMapFilter implements Filter {
                             // respect session language
                             query.append(" +languageId:").append(sessionLang).append(" ");
                         }
-					    
-						cons = conAPI.searchIndex(query.toString(), 2, 0, (hostIsRequired?"conhost, modDate": "modDate"), user, true);
-						int idx = 0;
-						if(checkIndex && cons.size()==2) {
-						    // prefer session setting
-						    Contentlet second=conAPI.find(cons.get(1).getInode(), user, true);
-						    if(second.getLanguageId()==sessionLang)
-						        idx=1;
-						}
-						ContentletSearch c = cons.get(idx);
-						if(optSession !=null){
-							optSession.setAttribute(com.dotmarketing.util.WebKeys.HTMLPAGE_LANGUAGE,String.valueOf(conAPI.find(c.getInode(), user, true).getLanguageId()));
-						}
-						request.setAttribute(WebKeys.WIKI_CONTENTLET, c.getIdentifier());
-						request.setAttribute(WebKeys.WIKI_CONTENTLET_INODE, c.getInode());
-						request.setAttribute(WebKeys.CLICKSTREAM_IDENTIFIER_OVERRIDE, c.getIdentifier());
-						request.setAttribute(WebKeys.WIKI_CONTENTLET_URL, url);
-						String[] x = url.split("/");
-						for(int i=0;i<x.length;i++){
-							if(UtilMethods.isSet(x[i])){
-								request.setAttribute("URL_ARG" + i, x[i]);
-							}
-						}
-						
-						break;
-					} catch (DotDataException e) {
-						Logger.warn(this, "DotDataException", e);
-					} catch (DotSecurityException e) {
-						Logger.warn(this, "DotSecurityException", e);
-					} catch(java.lang.IndexOutOfBoundsException iob){
-						Logger.warn(this, "No urlmap contentlent found uri:" + url + " query:" + query.toString());
-					}catch(Exception e){
-						Logger.warn(this, "No index?" + e.getMessage());
+				    
+					cons = conAPI.searchIndex(query.toString(), 2, 0, (hostIsRequired?"conhost, modDate": "modDate"), user, true);
+					int idx = 0;
+					if(checkIndex && cons.size()==2) {
+					    // prefer session setting
+					    Contentlet second=conAPI.find(cons.get(1).getInode(), user, true);
+					    if(second.getLanguageId()==sessionLang)
+					        idx=1;
 					}
+					ContentletSearch c = cons.get(idx);
+					Contentlet contentlet = conAPI.find(c.getInode(), user, true);
+					setURLMapAttributes(request, optSession, url, c.getIdentifier(), c.getInode(), contentlet.getLanguageId());
+					CacheLocator.getContentTypeCache().addURLMapResolution(resolutionKey,
+							new URLMapResolution(structure.getInode(), c.getIdentifier(), contentlet.getLanguageId()));
+					found = true;
+					break;
+				} catch (DotDataException e) {
+					Logger.warn(this, "DotDataException", e);
+				} catch (DotSecurityException e) {
+					Logger.warn(this, "DotSecurityException", e);
+				} catch(java.lang.IndexOutOfBoundsException iob){
+					Logger.warn(this, "No urlmap contentlent found uri:" + url + " query:" + query.toString());
+				}catch(Exception e){
+					Logger.warn(this, "No index?" + e.getMessage());
 				}
 			}
 			
@@ -285,7 +287,7 @@ public class URLMapFilter implements Filter {
 					}
 
 					
-					if((cons != null && cons.size() > 0) || !urlFallthrough){
+					if(found || (cons != null && cons.size() > 0) || !urlFallthrough){
 						
 						request.setAttribute(CMSFilter.CMS_FILTER_URI_OVERRIDE, ident.getURI());
 
@@ -312,13 +314,13 @@ public class URLMapFilter implements Filter {
 	}
 
 	/**
-	 * Builds the list of URL maps and sorts them by the number of slashes in
-	 * the URL (highest to lowest). This method is called only when a new URL 
-	 * map is added, and is marked as <code>synchronized</code> to avoid data 
-	 * inconsistency.
+	 * Builds the {@link URLMapRouter} with the URL maps of all the structures.
+	 * This method is called when the master pattern is not in cache (on
+	 * startup and whenever a URL map changes), and is marked as
+	 * <code>synchronized</code> to avoid data inconsistency.
 	 * 
-	 * @return A <code>String</code> containing a Regex, which contains all the
-	 *         URL maps in the system.
+	 * @return The master pattern, all the URL map regexes joined. It is no
+	 *         longer used to match, an empty one means there are no URL maps.
 	 * @throws DotDataException
 	 *             An error occurred when retrieving information from the
 	 *             database.
@@ -327,105 +329,89 @@ public class URLMapFilter implements Filter {
 		List<SimpleStructureURLMap> urlMaps = StructureFactory.findStructureURLMapPatterns();
 		StringBuilder masterRegEx = new StringBuilder();
 		boolean first = true;
-		patternsCache.clear();
 		for (SimpleStructureURLMap urlMap : urlMaps) {
-			PatternCache pc = new PatternCache();
 			String regEx = StructureUtil.generateRegExForURLMap(urlMap.getURLMapPattern());
 			// if we have an empty string, move on
 			if (!UtilMethods.isSet(regEx) || regEx.trim().length() < 3) {
 				continue;
 
 			}
-			pc.setRegEx(regEx);
-			pc.setStructureInode(urlMap.getInode());
-			pc.setURLpattern(urlMap.getURLMapPattern());
-			List<RegExMatch> fieldMathed = RegEX.find(urlMap.getURLMapPattern(), "{([^{}]+)}");
-			List<String> fields = new ArrayList<String>();
-			for (RegExMatch regExMatch : fieldMathed) {
-				fields.add(regExMatch.getGroups().get(0).getMatch());
-			}
-			pc.setFieldMatches(fields);
-			patternsCache.add(pc);
 			if (!first) {
 				masterRegEx.append("|");
 			}
 			masterRegEx.append(regEx);
 			first = false;
 		}
-		Collections.sort(this.patternsCache, new Comparator<PatternCache>() {
-			public int compare(PatternCache o1, PatternCache o2) {
-				String regex1 = o1.getRegEx();
-				String regex2 = o2.getRegEx();
-				if (!regex1.endsWith("/")) {
-					regex1 += "/";
-				}
-				if (!regex2.endsWith("/")) {
-					regex2 += "/";
-				}
-				int regExLength1 = getSlashCount(regex1);
-				int regExLength2 = getSlashCount(regex2);
-				if (regExLength1 < regExLength2) {
-					return 1;
-				} else if (regExLength1 > regExLength2) {
-					return -1;
-				} else {
-					return 0;
-				}
-			}
-		});
+		router = new URLMapRouter(urlMaps);
+		// The master pattern is no longer used to match, but it is removed
+		// from cache whenever the URL maps change, so it tells when the
+		// router must be built again
 		CacheLocator.getContentTypeCache().addURLMasterPattern(masterRegEx.toString());
 		return masterRegEx.toString();
 	}
 
-	private class PatternCache {
-		private String regEx;
-		private String structureInode;
-		private String URLpattern;
-		private List<String> fieldMatches;
-
-		public void setRegEx(String regEx) {
-			this.regEx = regEx;
-		}
-
-		public String getRegEx() {
-			return regEx;
-		}
-
-		public void setStructureInode(String structureInode) {
-			this.structureInode = structureInode;
-		}
-
-		public String getStructureInode() {
-			return structureInode;
-		}
-
-		public void setURLpattern(String uRLpattern) {
-			URLpattern = uRLpattern;
-		}
+	/**
+	 * Builds the key the contentlet a URL resolves to is cached with. It holds
+	 * everything the index search depends on.
+	 */
+	private String getResolutionKey(HttpServletRequest request, Host host, long languageId, User user,
+			boolean working, Structure structure, String url) {
+		StringBuilder key = new StringBuilder();
+		key.append(working ? "working" : "live").append(':')
+				.append(host != null ? host.getIdentifier() : "").append(':')
+				.append(languageId).append(':')
+				.append(request.getParameter("language_id") != null).append(':')
+				.append(user != null ? user.getUserId() : "anonymous").append(':')
+				.append(structure.getInode()).append(':')
+				.append(url);
+		return key.toString();
+	}
 
-		@SuppressWarnings("unused")
-		public String getURLpattern() {
-			return URLpattern;
+	/**
+	 * Sets the contentlet the URL was already resolved to, if it is cached and
+	 * can still be shown to the user.
+	 * 
+	 * @return <code>true</code> if the URL was resolved from cache.
+	 */
+	private boolean resolveFromCache(HttpServletRequest request, HttpSession optSession, String url,
+			Structure structure, String resolutionKey, User user, boolean working) {
+		URLMapResolution resolution = CacheLocator.getContentTypeCache().getURLMapResolution(structure.getInode(), resolutionKey);
+		if (resolution == null) {
+			return false;
 		}
-
-		public void setFieldMatches(List<String> fieldMatches) {
-			this.fieldMatches = fieldMatches;
+		try {
+			ContentletVersionInfo info = APILocator.getVersionableAPI().getContentletVersionInfo(
+					resolution.getIdentifier(), resolution.getLanguageId());
+			String inode = (info == null || info.isDeleted()) ? null : (working ? info.getWorkingInode() : info.getLiveInode());
+			if (UtilMethods.isSet(inode)) {
+				// checks the permissions, the contentlet comes from cache
+				Contentlet contentlet = conAPI.find(inode, user, true);
+				if (contentlet != null) {
+					setURLMapAttributes(request, optSession, url, resolution.getIdentifier(), inode, resolution.getLanguageId());
+					return true;
+				}
+			}
+		} catch (Exception e) {
+			Logger.debug(this, "Unable to use the cached URL Map for " + url + ": " + e.getMessage(), e);
 		}
+		CacheLocator.getContentTypeCache().removeURLMapResolution(structure.getInode(), resolutionKey);
+		return false;
+	}
 
-		public List<String> getFieldMatches() {
-			return fieldMatches;
+	private void setURLMapAttributes(HttpServletRequest request, HttpSession optSession, String url,
+			String identifier, String inode, long languageId) {
+		if(optSession !=null){
+			optSession.setAttribute(com.dotmarketing.util.WebKeys.HTMLPAGE_LANGUAGE,String.valueOf(languageId));
 		}
-	}
-	
-	private int getSlashCount(String string){
-		int ret = 0;
-		if(UtilMethods.isSet(string)){
-			for(int i=0;i<string.length();i++){
-				if(string.charAt(i)=='/'){
-					ret+=1;
-				}
+		request.setAttribute(WebKeys.WIKI_CONTENTLET, identifier);
+		request.setAttribute(WebKeys.WIKI_CONTENTLET_INODE, inode);
+		request.setAttribute(WebKeys.CLICKSTREAM_IDENTIFIER_OVERRIDE, identifier);
+		request.setAttribute(WebKeys.WIKI_CONTENTLET_URL, url);
+		String[] x = url.split("/");
+		for(int i=0;i<x.length;i++){
+			if(UtilMethods.isSet(x[i])){
+				request.setAttribute("URL_ARG" + i, x[i]);
 			}
 		}
-		return ret;
 	}
 }
@@ -55,6 +55,23 @@ public interface DistributedJournalAPI<T> {
 	 *             An error occurred when interacting with the database.
 	 */
 	public List<IndexJournal<T>> findContentReindexEntriesToReindex(boolean includeFailedRecords) throws DotDataException;
+
+	/**
+	 * Same as {@link #findContentReindexEntriesToReindex(boolean)} but claims
+	 * at most {@code recordsToFetch} records for the local server. This allows
+	 * the re-index process to claim journal records in partitions sized for
+	 * its worker pool.
+	 * 
+	 * @param includeFailedRecords
+	 *            - If {@code true}, this method will only retrieve records that
+	 *            tried to be re-indexed at least once and failed.
+	 * @param recordsToFetch
+	 *            - The maximum number of records to claim.
+	 * @return The list of records that will be re-indexed.
+	 * @throws DotDataException
+	 *             An error occurred when interacting with the database.
+	 */
+	public List<IndexJournal<T>> findContentReindexEntriesToReindex(boolean includeFailedRecords, int recordsToFetch) throws DotDataException;
 	
 	/**
 	 * Moves/process records from the dist_process table to the dist_journal table for all servers
@@ -57,6 +57,10 @@ public class DistributedJournalAPIImpl<T> implements DistributedJournalAPI<T> {
 	public List<IndexJournal<T>> findContentReindexEntriesToReindex(boolean includeFailedRecords) throws DotDataException {
 		return distFac.findContentReindexEntriesToReindex(includeFailedRecords);
 	}
+
+	public List<IndexJournal<T>> findContentReindexEntriesToReindex(boolean includeFailedRecords, int recordsToFetch) throws DotDataException {
+		return distFac.findContentReindexEntriesToReindex(includeFailedRecords, recordsToFetch);
+	}
 	
 	public void processJournalEntries() throws DotDataException {
 		distFac.processJournalEntries();
@@ -72,6 +72,21 @@ public abstract class DistributedJournalFactory<T> {
 	 *             An error occurred when interacting with the database.
 	 */
 	protected abstract List<IndexJournal<T>> findContentReindexEntriesToReindex (boolean includeFailedRecords) throws DotDataException;
+
+	/**
+	 * Same as {@link #findContentReindexEntriesToReindex(boolean)} but claims
+	 * at most {@code recordsToFetch} records for the local server.
+	 * 
+	 * @param includeFailedRecords
+	 *            - If {@code true}, only records that already failed will be
+	 *            retrieved.
+	 * @param recordsToFetch
+	 *            - The maximum number of records to claim.
+	 * @return The list of records that will be re-indexed.
+	 * @throws DotDataException
+	 *             An error occurred when interacting with the database.
+	 */
+	protected abstract List<IndexJournal<T>> findContentReindexEntriesToReindex (boolean includeFailedRecords, int recordsToFetch) throws DotDataException;
 	
 	/**
 	 * Will delete all content reindex entries for a specific serverId less then the id passed in 
@@ -5,13 +5,26 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.dotcms.content.elasticsearch.business.ContentletIndexAPI;
+import com.dotcms.content.elasticsearch.business.IndexDocumentBatch;
 import com.dotcms.content.elasticsearch.util.ESClient;
 import com.dotcms.content.elasticsearch.util.ESReindexationProcessStatus;
 import com.dotcms.notifications.bean.NotificationLevel;
@@ -19,8 +32,8 @@ import com.dotcms.repackage.org.elasticsearch.action.ActionListener;
 import com.dotcms.repackage.org.elasticsearch.action.bulk.BulkItemResponse;
 import com.dotcms.repackage.org.elasticsearch.action.bulk.BulkRequestBuilder;
 import com.dotcms.repackage.org.elasticsearch.action.bulk.BulkResponse;
-import com.dotcms.repackage.org.elasticsearch.client.Client;
 import com.dotmarketing.business.APILocator;
+import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.FactoryLocator;
 import com.dotmarketing.common.business.journal.DistributedJournalAPI;
 import com.dotmarketing.common.business.journal.DistributedJournalFactory;
@@ -100,6 +113,22 @@ public class ReindexThread extends Thread {
 	private boolean reindexSleepDuringIndex = false;
 	private int reindexSleepDuringIndexTime = 0;
 
+	// Number of workers that build the documents of the claimed records in parallel
+	private final int workers = Math.max(1, Config.getIntProperty("REINDEX_THREAD_WORKERS",
+			Math.min(4, Runtime.getRuntime().availableProcessors())));
+	// Number of journal records each worker processes (and sends) in a single bulk request
+	private final int partitionSize = Math.max(1, Math.min(500, Config.getIntProperty("REINDEX_THREAD_PARTITION_SIZE",
+			Config.getIntProperty("REINDEX_RECORDS_TO_FETCH", 50))));
+	// Max number of bulk requests waiting for an Elastic response, workers block when reached
+	private final Semaphore bulksInFlight = new Semaphore(Math.max(1, Config.getIntProperty(
+			"REINDEX_THREAD_CONCURRENT_REQUESTS", workers * 2)));
+	// most bind parameters in an IN list, Oracle does not take more than 1000
+	private static final int MAX_IN_PARAMS = 1000;
+	private final long statsLogInterval = Config.getIntProperty("REINDEX_THREAD_STATS_LOG_INTERVAL", 60) * 1000L;
+	private final ConcurrentHashMap<String, ReindexWorkerStats> workerStats = new ConcurrentHashMap<String, ReindexWorkerStats>();
+	private ExecutorService workerPool;
+	private long lastStatsLog = System.currentTimeMillis();
+
 	private void finish() {
 		work = false;
 		start = false;
@@ -249,215 +278,12 @@ public class ReindexThread extends Thread {
 					}
 					else if(!remoteQ.isEmpty()) {
 					    wait=false;
-					    Client client=new ESClient().getClient();
-						BulkRequestBuilder bulk=client.prepareBulk();
-						final ArrayList<IndexJournal<String>> recordsToDelete= new ArrayList<>();
-						while(!remoteQ.isEmpty()) {
-
-							IndexJournal<String> idx = remoteQ.removeFirst();
-
-							try {
-								writeDocumentToIndex(bulk, idx);
-							} catch ( Exception e ) {
-
-								Logger.error(this, "Unable to index record with id [" + idx.getIdentToIndex() + "]", e);
-
-								//Counts the failed attempts when indexing and handles error notifications
-								addIndexingFailedAttempt();
-
-								try {
-									/*
-									Reset to null the server id of the failed records in the reindex journal table
-									in order to make them available again for the reindex process.
-									 */
-									List<IndexJournal<String>> failedRecords = new ArrayList<>();
-									failedRecords.add(idx);
-									jAPI.resetServerForReindexEntry(failedRecords);
-								} catch ( DotDataException dataException ) {
-									Logger.error(this, "Error adding back failed records to reindex queue", dataException);
-								}
-								// The total number of re-tries minus 1 will
-								// indicate the last opportunity of a record to
-								// be re-indexed.
-								int totalAttempts = (DistributedJournalFactory.REINDEX_JOURNAL_PRIORITY_FAILED_FIRST_ATTEMPT + DistributedJournalFactory.RETRY_FAILED_INDEX_TIMES);
-								String identToIndex = idx.getIdentToIndex();
-								if (!this.notifiedFailingRecords.contains(identToIndex) && idx.getPriority() >= totalAttempts) {
-									// The record was not able to be re-indexed,
-									// so a notification will be generated and
-									// the record will not be processed anymore
-									String msg = "Could not re-index record with the Identifier '"
-											+ identToIndex
-											+ "'. The record is in a bad state or can be associated to orphaned records. You can try running the Fix Assets Inconsistencies tool and re-start the reindex.";
-									sendNotification("notification.reindexing.error.processrecord", new Object[] { identToIndex }, msg);
-									this.notifiedFailingRecords.add(identToIndex);
-								}
-
-								try {
-									Thread.sleep(delayOnError);
-								} catch ( InterruptedException ie ) {
-									Logger.error(this, ie.getMessage(), ie);
-								}
-
-								/*
-								This continue will avoid to remove this failed record from the index journal table so
-								can be grab it again in another iteration.
-								 */
-								continue;
-							}
-
-							recordsToDelete.add(idx);
-
-							//If the REINDEX_SLEEP_DURING_INDEX was set
-							if ( reindexSleepDuringIndex ) {
-								try {
-									int sleepTime = getReindexSleepDuringIndexTime();
-									Thread.sleep(sleepTime);
-								} catch ( InterruptedException e ) {
-									Logger.error(this, e.getMessage(), e);
-								}
-							}
-
-						}
-
-						HibernateUtil.closeSession();
-				        if(bulk.numberOfActions()>0) {
-				            bulk.execute(new ActionListener<BulkResponse>() {
-
-								void handleRecords (List<IndexJournal<String>> failedRecords) {
-
-									//List of records to delete from the reindex journal table
-									addRecordsToDelete(recordsToDelete);
-
-									try {
-										if ( failedRecords != null && !failedRecords.isEmpty() ) {
-											/*
-											Reset to null the server id of the failed records in the reindex journal table
-											in order to make them available again for the reindex process.
-											 */
-											jAPI.resetServerForReindexEntry(failedRecords);
-										}
-									} catch ( DotDataException e ) {
-										Logger.error(this, "Error adding back failed records to reindex queue", e);
-									}
-								}
-
-								public void onResponse ( BulkResponse resp ) {
-
-									//Handle failures on the re-index process if any
-									List<IndexJournal<String>> failedRecords = failureHandler(resp);
-
-									//Handle the processed records
-									handleRecords(failedRecords);
-								}
-
-								public void onFailure ( Throwable ex ) {
-
-									Logger.error(ReindexThread.class, "Indexing process failed", ex);
-
-									//Handle the processed records
-									handleRecords(null);
-
-									//Reset the failed attempts count as the onFailure will finish the indexing process
-									failedAttemptsCount = 0;
-								}
-
-								/**
-								 * Checks if we had failures when indexing, on failure we will retry the indexing process of the records that failed,
-								 * the process WON'T continue with failed records.
-								 *
-								 * @param resp
-								 */
-								private List<IndexJournal<String>> failureHandler ( BulkResponse resp ) {
-
-									//List of records that failed and will be added to the queue for more attempts
-									List<IndexJournal<String>> failedRecords = new ArrayList<>();
-
-									//Verify if we have failures to handle
-									if ( resp.hasFailures() && isWorking() ) {
-
-										Logger.error(this, "Error indexing content [" + resp.buildFailureMessage() + "]");
-
-										//Counts the failed attempts when indexing and handles error notifications
-										addIndexingFailedAttempt();
-
-										//Search for the failed items
-										for ( BulkItemResponse itemResponse : resp.getItems() ) {
-
-											//Check if the indexing process failed for this item
-											if ( itemResponse.isFailed() ) {
-
-												//Get the data of the failed record
-												String initialId = itemResponse.getId();
-												//Remove the language from the id in order to get just the inode/identifier
-												int languageIndex = initialId.lastIndexOf("_");
-												String failedId = initialId;
-												if ( languageIndex != -1 ) {
-													failedId = initialId.substring(0, languageIndex);
-												}
-
-												//Search the failed record into the list of records to delete
-												Iterator<IndexJournal<String>> toDeleteIterator = recordsToDelete.iterator();
-												while ( toDeleteIterator.hasNext() ) {
-
-													IndexJournal<String> indexToDelete = toDeleteIterator.next();
-													if ( indexToDelete.getInodeToIndex().equals(failedId) || indexToDelete.getIdentToIndex().equals(failedId) ) {
-
-														//Add it to the list of records that failed and needs to be added back to the reindex queue
-														if ( !exist(failedRecords, indexToDelete) ) {
-															failedRecords.add(indexToDelete);
-														}
-
-														/*
-														Remove the record from the list of contents to remove from the index journal table
-														as it indexing process failed and we want a re-try with those records.
-														 */
-														toDeleteIterator.remove();
-													}
-												}
-											}
-										}
-
-										if ( !failedRecords.isEmpty() ) {
-
-											Logger.error(this, "Reindex thread will try to re-index [" + String.valueOf(failedRecords.size()) + "] failed records.");
-
-											try {
-												Thread.sleep(delayOnError);
-											} catch ( InterruptedException e ) {
-												Logger.error(this, e.getMessage(), e);
-											}
-										}
-									}
-
-									return failedRecords;
-								}
-
-								/**
-								 * Checks if a given record already exist on a given list
-								 *
-								 * @param toRestore
-								 * @param toCompare
-								 * @return
-								 */
-								private boolean exist ( List<IndexJournal<String>> toRestore, IndexJournal<String> toCompare ) {
-
-									boolean exist = false;
-									for ( IndexJournal<String> current : toRestore ) {
-
-										if ( current.getId() == toCompare.getId() ) {
-											exist = true;
-											break;
-										}
-									}
-
-									return exist;
-								}
-
-							});
-				        }
-				        else if(recordsToDelete.size()>0) {
-				            addRecordsToDelete(recordsToDelete);
-				        }
+					    List<IndexJournal<String>> records;
+					    synchronized (remoteQ) {
+					        records = new ArrayList<IndexJournal<String>>(remoteQ);
+					        remoteQ.clear();
+					    }
+					    processPartitions(records);
 					}
 					
 				} catch (Exception ex) {
@@ -498,6 +324,7 @@ public class ReindexThread extends Thread {
 				}
 			}
 		}
+		shutdownWorkerPool();
 	}
 
 	public void unlockCluster() throws DotDataException {
@@ -619,6 +446,14 @@ public class ReindexThread extends Thread {
 		return instance;
 	}
 
+	/**
+	 * Returns the thread if it was already created, null otherwise. Unlike
+	 * {@link #getInstance()} it never starts it, for status reads.
+	 */
+	public static ReindexThread getRunningInstance() {
+		return instance;
+	}
+
 	private void fillRemoteQ() throws DotDataException {
 	    fillRemoteQ(false);
 	}
@@ -626,7 +461,11 @@ public class ReindexThread extends Thread {
 	private void fillRemoteQ (boolean includeFailedRecords) throws DotDataException {
 	    try {
 	        HibernateUtil.startTransaction();
-	        remoteQ.addAll(jAPI.findContentReindexEntriesToReindex(includeFailedRecords));
+	        // claim enough records to give every worker a full partition
+	        List<IndexJournal<String>> claimed = jAPI.findContentReindexEntriesToReindex(includeFailedRecords, workers * partitionSize);
+	        synchronized (remoteQ) {
+	            remoteQ.addAll(claimed);
+	        }
 	        HibernateUtil.commitTransaction();
 	    }
 	    catch(Exception ex) {
@@ -637,40 +476,515 @@ public class ReindexThread extends Thread {
 	    }
 	}
 
+	/**
+	 * Splits the claimed journal records in partitions of
+	 * {@code REINDEX_THREAD_PARTITION_SIZE} records and hands them to the
+	 * worker pool. This method returns once every partition has been added to
+	 * a bulk request, the bulk requests themselves may still be in flight.
+	 *
+	 * @param records
+	 *            - The records claimed from the {@code dist_reindex_journal}
+	 *            table.
+	 * @throws InterruptedException
+	 *             The thread was interrupted while waiting for the workers.
+	 */
+	private void processPartitions(List<IndexJournal<String>> records) throws InterruptedException {
+		List<Callable<Void>> partitions = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < records.size(); i += partitionSize) {
+			int end = Math.min(i + partitionSize, records.size());
+			partitions.add(new PartitionWorker(new ArrayList<IndexJournal<String>>(records.subList(i, end))));
+		}
+
+		for (Future<Void> result : getWorkerPool().invokeAll(partitions)) {
+			try {
+				result.get();
+			} catch (ExecutionException e) {
+				Logger.error(this, "Reindex worker failed processing a partition", e.getCause());
+			}
+		}
+
+		if (System.currentTimeMillis() - lastStatsLog >= statsLogInterval) {
+			lastStatsLog = System.currentTimeMillis();
+			for (ReindexWorkerStats stats : workerStats.values()) {
+				Logger.info(this, stats.toString());
+			}
+		}
+	}
+
+	private synchronized ExecutorService getWorkerPool() {
+		if (workerPool == null) {
+			workerPool = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "ReindexThread-worker-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			Logger.info(this, "Reindex worker pool started with " + workers + " workers, partitions of "
+					+ partitionSize + " records and " + bulksInFlight.availablePermits() + " concurrent bulk requests");
+		}
+		return workerPool;
+	}
+
+	private synchronized void shutdownWorkerPool() {
+		if (workerPool != null) {
+			workerPool.shutdown();
+			workerPool = null;
+		}
+	}
+
+	/**
+	 * Returns the throughput counters of every worker that has processed at
+	 * least one partition.
+	 *
+	 * @return The list of worker statistics.
+	 */
+	public List<ReindexWorkerStats> getWorkerStats() {
+		return new ArrayList<ReindexWorkerStats>(workerStats.values());
+	}
+
+	private ReindexWorkerStats getCurrentWorkerStats() {
+		String name = Thread.currentThread().getName();
+		ReindexWorkerStats stats = workerStats.get(name);
+		if (stats == null) {
+			workerStats.putIfAbsent(name, new ReindexWorkerStats(name));
+			stats = workerStats.get(name);
+		}
+		return stats;
+	}
+
+	/**
+	 * Handles a journal record that could not be added to the bulk request.
+	 * The record is made available again for the re-index process and, once
+	 * it runs out of attempts, a notification is sent to the user.
+	 *
+	 * @param idx
+	 *            - The failed record.
+	 * @param e
+	 *            - The cause of the failure.
+	 */
+	private void handleFailedRecord(IndexJournal<String> idx, Exception e) {
+
+		Logger.error(this, "Unable to index record with id [" + idx.getIdentToIndex() + "]", e);
+
+		//Counts the failed attempts when indexing and handles error notifications
+		addIndexingFailedAttempt();
+
+		try {
+			/*
+			Reset to null the server id of the failed records in the reindex journal table
+			in order to make them available again for the reindex process.
+			 */
+			List<IndexJournal<String>> failedRecords = new ArrayList<>();
+			failedRecords.add(idx);
+			jAPI.resetServerForReindexEntry(failedRecords);
+		} catch ( DotDataException dataException ) {
+			Logger.error(this, "Error adding back failed records to reindex queue", dataException);
+		}
+		// The total number of re-tries minus 1 will
+		// indicate the last opportunity of a record to
+		// be re-indexed.
+		int totalAttempts = (DistributedJournalFactory.REINDEX_JOURNAL_PRIORITY_FAILED_FIRST_ATTEMPT + DistributedJournalFactory.RETRY_FAILED_INDEX_TIMES);
+		String identToIndex = idx.getIdentToIndex();
+		if (!this.notifiedFailingRecords.contains(identToIndex) && idx.getPriority() >= totalAttempts) {
+			// The record was not able to be re-indexed,
+			// so a notification will be generated and
+			// the record will not be processed anymore
+			String msg = "Could not re-index record with the Identifier '"
+					+ identToIndex
+					+ "'. The record is in a bad state or can be associated to orphaned records. You can try running the Fix Assets Inconsistencies tool and re-start the reindex.";
+			try {
+				sendNotification("notification.reindexing.error.processrecord", new Object[] { identToIndex }, msg);
+			} catch ( DotDataException | LanguageException ne ) {
+				Logger.error(this, "Error creating a system notification for record [" + identToIndex + "]", ne);
+			}
+			this.notifiedFailingRecords.addIfAbsent(identToIndex);
+		}
+
+		try {
+			Thread.sleep(delayOnError);
+		} catch ( InterruptedException ie ) {
+			Logger.error(this, ie.getMessage(), ie);
+		}
+	}
+
+	/**
+	 * Loads the working and live inodes of every identifier in the partition
+	 * with a single query against the {@code contentlet_version_info} table.
+	 *
+	 * @param partition
+	 *            - The journal records to look up.
+	 * @return The inodes to index, grouped by identifier.
+	 * @throws DotDataException
+	 *             An error occurred when interacting with the database.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, List<String>> loadInodesToIndex(List<IndexJournal<String>> partition) throws DotDataException {
+		Set<String> identifiers = new LinkedHashSet<String>();
+		for (IndexJournal<String> idx : partition) {
+			identifiers.add(idx.getIdentToIndex());
+		}
+
+		StringBuilder sql = new StringBuilder("select identifier,working_inode,live_inode from contentlet_version_info where identifier in (");
+		DotConnect dc = new DotConnect();
+		boolean first = true;
+		for (String identifier : identifiers) {
+			if (!first) sql.append(',');
+			else first = false;
+			sql.append('?');
+			dc.addParam(identifier);
+		}
+		sql.append(')');
+		dc.setSQL(sql.toString());
+
+		Map<String, List<String>> inodesByIdentifier = new HashMap<String, List<String>>();
+		for (Map<String, String> m : (List<Map<String, String>>) dc.loadResults()) {
+			String identifier = m.get("identifier");
+			String workingInode = m.get("working_inode");
+			String liveInode = m.get("live_inode");
+			List<String> inodes = inodesByIdentifier.get(identifier);
+			if (inodes == null) {
+				inodes = new ArrayList<String>();
+				inodesByIdentifier.put(identifier, inodes);
+			}
+			inodes.add(workingInode);
+			if (UtilMethods.isSet(liveInode) && !workingInode.equals(liveInode)) {
+				inodes.add(liveInode);
+			}
+		}
+		return inodesByIdentifier;
+	}
+
+	/**
+	 * Loads all the given contentlets from the database, with one query for
+	 * every {@link #MAX_IN_PARAMS} inodes (Oracle does not take more in an IN
+	 * list). The {@code ContentletCache} is bypassed on purpose, a full
+	 * re-index must not flood it with every content in the system.
+	 *
+	 * @param inodesByIdentifier
+	 *            - The inodes to load, grouped by identifier.
+	 * @return The contentlets that were found, keyed by inode.
+	 * @throws DotDataException
+	 *             An error occurred when interacting with the database.
+	 */
 	@SuppressWarnings("unchecked")
-	private void writeDocumentToIndex(BulkRequestBuilder bulk, IndexJournal<String> idx) throws DotDataException, DotSecurityException {
+	private Map<String, Contentlet> loadContentlets(Map<String, List<String>> inodesByIdentifier) throws DotDataException {
+		List<String> inodes = new ArrayList<String>();
+		for (List<String> list : inodesByIdentifier.values()) {
+			inodes.addAll(list);
+		}
+
+		Map<String, Contentlet> contentlets = new HashMap<String, Contentlet>();
+		if (inodes.isEmpty()) {
+			return contentlets;
+		}
+
+		for (int i = 0; i < inodes.size(); i += MAX_IN_PARAMS) {
+			List<String> chunk = inodes.subList(i, Math.min(i + MAX_IN_PARAMS, inodes.size()));
+			StringBuilder sql = new StringBuilder("select {contentlet.*} from contentlet join inode contentlet_1_ "
+					+ "on contentlet_1_.inode = contentlet.inode and contentlet_1_.type = 'contentlet' where contentlet.inode in (");
+			for (int j = 0; j < chunk.size(); j++) {
+				sql.append(j == 0 ? "?" : ",?");
+			}
+			sql.append(')');
+
+			HibernateUtil hu = new HibernateUtil(com.dotmarketing.portlets.contentlet.business.Contentlet.class);
+			hu.setSQLQuery(sql.toString());
+			for (String inode : chunk) {
+				hu.setParam(inode);
+			}
+			List<com.dotmarketing.portlets.contentlet.business.Contentlet> fatties = hu.list();
+			for (com.dotmarketing.portlets.contentlet.business.Contentlet fatty : fatties) {
+				contentlets.put(fatty.getInode(), FactoryLocator.getContentletFactory().convertFatContentletToContentlet(fatty));
+			}
+			HibernateUtil.getSession().clear();
+		}
+		return contentlets;
+	}
+
+	private void writeDocumentToIndex(BulkRequestBuilder bulk, IndexJournal<String> idx, List<String> inodes,
+			Map<String, Contentlet> contentlets, IndexDocumentBatch batch, boolean inFullReindex) throws DotDataException, DotSecurityException {
 	    Logger.debug(this, "Indexing document "+idx.getIdentToIndex());
-	    System.setProperty("IN_FULL_REINDEX", "true");
-	    
-	    String sql = "select working_inode,live_inode from contentlet_version_info where identifier=?";
-	    
-        DotConnect dc = new DotConnect();
-        dc.setSQL(sql);
-        dc.addParam(idx.getIdentToIndex());
-        List<Map<String,String>> ret = dc.loadResults();
-        List<String> inodes = new ArrayList<String>(); 
-        for(Map<String,String> m : ret) {
-        	String workingInode = m.get("working_inode");
-        	String liveInode = m.get("live_inode");
-        	inodes.add(workingInode);
-        	if(UtilMethods.isSet(liveInode) && !workingInode.equals(liveInode)){
-        		inodes.add(liveInode);
-        	}
-        }
+	    if (inodes == null) {
+	        return;
+	    }
         for(String inode : inodes) {
-            Contentlet con = FactoryLocator.getContentletFactory().convertFatContentletToContentlet(
-                    (com.dotmarketing.portlets.contentlet.business.Contentlet)
-                        HibernateUtil.load(com.dotmarketing.portlets.contentlet.business.Contentlet.class, inode));
-            
+            Contentlet con = contentlets.get(inode);
+            if (con == null) {
+                // not found by the partition query, fall back to the session to get the real error
+                con = FactoryLocator.getContentletFactory().convertFatContentletToContentlet(
+                        (com.dotmarketing.portlets.contentlet.business.Contentlet)
+                            HibernateUtil.load(com.dotmarketing.portlets.contentlet.business.Contentlet.class, inode));
+            }
+
             if(idx.isDelete() && idx.getIdentToIndex().equals(con.getIdentifier()))
                 // we delete contentlets from the identifier pointed on index journal record
                 // its dependencies are reindexed in order to update its relationships fields
                 indexAPI.removeContentFromIndex(con);
             else
-                indexAPI.addContentToIndex(con,false,true,indexAPI.isInFullReindex(),bulk);
+                indexAPI.addContentToIndex(con,false,true,inFullReindex,bulk,batch);
         }
 	}
-	
+
+	/**
+	 * Builds the index documents of a partition of journal records and sends
+	 * them to Elastic in a single bulk request. The version info and the
+	 * contentlets of the whole partition are loaded with set-based queries.
+	 */
+	private class PartitionWorker implements Callable<Void> {
+
+		private final List<IndexJournal<String>> partition;
+
+		PartitionWorker(List<IndexJournal<String>> partition) {
+			this.partition = partition;
+		}
+
+		public Void call() throws Exception {
+			ReindexWorkerStats stats = getCurrentWorkerStats();
+			long start = System.currentTimeMillis();
+			BulkRequestBuilder bulk = new ESClient().getClient().prepareBulk();
+			final ArrayList<IndexJournal<String>> recordsToDelete = new ArrayList<>();
+			int failed = 0;
+
+			try {
+				System.setProperty("IN_FULL_REINDEX", "true");
+				boolean inFullReindex = indexAPI.isInFullReindex();
+				Map<String, List<String>> inodesByIdentifier = loadInodesToIndex(partition);
+				Map<String, Contentlet> contentlets;
+				try {
+					contentlets = loadContentlets(inodesByIdentifier);
+				} catch ( Exception e ) {
+					// each record will be loaded on its own so a bad one doesn't fail the whole partition
+					Logger.warn(ReindexThread.class, "Unable to load the contentlets of the partition, loading them one by one", e);
+					HibernateUtil.closeSession();
+					contentlets = new HashMap<String, Contentlet>();
+				}
+				IndexDocumentBatch batch = null;
+				if (!contentlets.isEmpty()) {
+					try {
+						batch = indexAPI.prepareBatch(contentlets.values());
+					} catch ( Exception e ) {
+						// each document will do its own lookups
+						Logger.warn(ReindexThread.class, "Unable to prepare the index documents of the partition", e);
+					}
+				}
+
+				for (IndexJournal<String> idx : partition) {
+					if (!isWorking() || die) {
+						// the records not processed are claimed by this server, give them back
+						List<IndexJournal<String>> pending = new ArrayList<IndexJournal<String>>(partition.subList(partition.indexOf(idx), partition.size()));
+						jAPI.resetServerForReindexEntry(pending);
+						break;
+					}
+
+					try {
+						writeDocumentToIndex(bulk, idx, inodesByIdentifier.get(idx.getIdentToIndex()), contentlets, batch, inFullReindex);
+					} catch ( Exception e ) {
+						failed++;
+						handleFailedRecord(idx, e);
+						/*
+						Don't remove this failed record from the index journal table so it
+						can be grabbed again in another iteration.
+						 */
+						continue;
+					}
+
+					recordsToDelete.add(idx);
+
+					//If the REINDEX_SLEEP_DURING_INDEX was set
+					if ( reindexSleepDuringIndex ) {
+						try {
+							Thread.sleep(getReindexSleepDuringIndexTime());
+						} catch ( InterruptedException e ) {
+							Logger.error(this, e.getMessage(), e);
+						}
+					}
+				}
+			} finally {
+				try {
+					HibernateUtil.closeSession();
+				} catch ( DotHibernateException e ) {
+					Logger.error(this, e.getMessage(), e);
+				} finally {
+					DbConnectionFactory.closeConnection();
+				}
+			}
+
+			int documents = bulk.numberOfActions();
+			stats.addPartition(recordsToDelete.size(), failed, documents, System.currentTimeMillis() - start);
+
+			if ( documents > 0 ) {
+				// back-pressure: wait here while too many bulk requests are waiting for Elastic
+				bulksInFlight.acquire();
+				try {
+					bulk.execute(new BulkIndexListener(recordsToDelete));
+				} catch ( RuntimeException e ) {
+					bulksInFlight.release();
+					throw e;
+				}
+			} else if ( !recordsToDelete.isEmpty() ) {
+				addRecordsToDelete(recordsToDelete);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Handles the response of the bulk request sent by a worker. Successfully
+	 * indexed records are queued to be removed from the reindex journal table,
+	 * the failed ones are made available again for the re-index process.
+	 */
+	private class BulkIndexListener implements ActionListener<BulkResponse> {
+
+		private final List<IndexJournal<String>> recordsToDelete;
+
+		BulkIndexListener(List<IndexJournal<String>> recordsToDelete) {
+			this.recordsToDelete = recordsToDelete;
+		}
+
+		void handleRecords (List<IndexJournal<String>> failedRecords) {
+
+			//List of records to delete from the reindex journal table
+			addRecordsToDelete(recordsToDelete);
+
+			try {
+				if ( failedRecords != null && !failedRecords.isEmpty() ) {
+					/*
+					Reset to null the server id of the failed records in the reindex journal table
+					in order to make them available again for the reindex process.
+					 */
+					jAPI.resetServerForReindexEntry(failedRecords);
+				}
+			} catch ( DotDataException e ) {
+				Logger.error(this, "Error adding back failed records to reindex queue", e);
+			}
+		}
+
+		public void onResponse ( BulkResponse resp ) {
+			try {
+				//The cached query results are now outdated
+				CacheLocator.getIndexQueryCache().invalidate();
+
+				//Handle failures on the re-index process if any
+				List<IndexJournal<String>> failedRecords = failureHandler(resp);
+
+				//Handle the processed records
+				handleRecords(failedRecords);
+			} finally {
+				bulksInFlight.release();
+			}
+		}
+
+		public void onFailure ( Throwable ex ) {
+			try {
+				Logger.error(ReindexThread.class, "Indexing process failed", ex);
+				CacheLocator.getIndexQueryCache().invalidate();
+
+				//Handle the processed records
+				handleRecords(null);
+
+				//Reset the failed attempts count as the onFailure will finish the indexing process
+				failedAttemptsCount = 0;
+			} finally {
+				bulksInFlight.release();
+			}
+		}
+
+		/**
+		 * Checks if we had failures when indexing, on failure we will retry the indexing process of the records that failed,
+		 * the process WON'T continue with failed records.
+		 *
+		 * @param resp
+		 */
+		private List<IndexJournal<String>> failureHandler ( BulkResponse resp ) {
+
+			//List of records that failed and will be added to the queue for more attempts
+			List<IndexJournal<String>> failedRecords = new ArrayList<>();
+
+			//Verify if we have failures to handle
+			if ( resp.hasFailures() && isWorking() ) {
+
+				Logger.error(this, "Error indexing content [" + resp.buildFailureMessage() + "]");
+
+				//Counts the failed attempts when indexing and handles error notifications
+				addIndexingFailedAttempt();
+
+				//Search for the failed items
+				for ( BulkItemResponse itemResponse : resp.getItems() ) {
+
+					//Check if the indexing process failed for this item
+					if ( itemResponse.isFailed() ) {
+
+						//Get the data of the failed record
+						String initialId = itemResponse.getId();
+						//Remove the language from the id in order to get just the inode/identifier
+						int languageIndex = initialId.lastIndexOf("_");
+						String failedId = initialId;
+						if ( languageIndex != -1 ) {
+							failedId = initialId.substring(0, languageIndex);
+						}
+
+						//Search the failed record into the list of records to delete
+						Iterator<IndexJournal<String>> toDeleteIterator = recordsToDelete.iterator();
+						while ( toDeleteIterator.hasNext() ) {
+
+							IndexJournal<String> indexToDelete = toDeleteIterator.next();
+							if ( indexToDelete.getInodeToIndex().equals(failedId) || indexToDelete.getIdentToIndex().equals(failedId) ) {
+
+								//Add it to the list of records that failed and needs to be added back to the reindex queue
+								if ( !exist(failedRecords, indexToDelete) ) {
+									failedRecords.add(indexToDelete);
+								}
+
+								/*
+								Remove the record from the list of contents to remove from the index journal table
+								as it indexing process failed and we want a re-try with those records.
+								 */
+								toDeleteIterator.remove();
+							}
+						}
+					}
+				}
+
+				if ( !failedRecords.isEmpty() ) {
+
+					Logger.error(this, "Reindex thread will try to re-index [" + String.valueOf(failedRecords.size()) + "] failed records.");
+
+					try {
+						Thread.sleep(delayOnError);
+					} catch ( InterruptedException e ) {
+						Logger.error(this, e.getMessage(), e);
+					}
+				}
+			}
+
+			return failedRecords;
+		}
+
+		/**
+		 * Checks if a given record already exist on a given list
+		 *
+		 * @param toRestore
+		 * @param toCompare
+		 * @return
+		 */
+		private boolean exist ( List<IndexJournal<String>> toRestore, IndexJournal<String> toCompare ) {
+
+			boolean exist = false;
+			for ( IndexJournal<String> current : toRestore ) {
+
+				if ( current.getId() == toCompare.getId() ) {
+					exist = true;
+					break;
+				}
+			}
+
+			return exist;
+		}
+	}
+
 	int threadsPausing = 0;
 
 	public synchronized void pause() {
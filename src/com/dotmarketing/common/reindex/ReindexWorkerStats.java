@@ -0,0 +1,100 @@
+package com.dotmarketing.common.reindex;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the throughput counters of a single worker of the
+ * {@link ReindexThread} pool. All the counters are updated by the worker
+ * itself and can be safely read from any other thread.
+ */
+public class ReindexWorkerStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String workerName;
+	private final long startTime = System.currentTimeMillis();
+	private final AtomicLong partitions = new AtomicLong();
+	private final AtomicLong recordsIndexed = new AtomicLong();
+	private final AtomicLong recordsFailed = new AtomicLong();
+	private final AtomicLong documents = new AtomicLong();
+	private final AtomicLong busyTime = new AtomicLong();
+
+	public ReindexWorkerStats(String workerName) {
+		this.workerName = workerName;
+	}
+
+	/**
+	 * Registers a processed partition.
+	 *
+	 * @param indexed
+	 *            - Number of journal records that were sent to the index.
+	 * @param failed
+	 *            - Number of journal records that could not be processed.
+	 * @param docs
+	 *            - Number of actions added to the bulk request.
+	 * @param elapsed
+	 *            - Time, in milliseconds, spent building the partition.
+	 */
+	void addPartition(int indexed, int failed, int docs, long elapsed) {
+		partitions.incrementAndGet();
+		recordsIndexed.addAndGet(indexed);
+		recordsFailed.addAndGet(failed);
+		documents.addAndGet(docs);
+		busyTime.addAndGet(elapsed);
+	}
+
+	public String getWorkerName() {
+		return workerName;
+	}
+
+	public long getPartitions() {
+		return partitions.get();
+	}
+
+	public long getRecordsIndexed() {
+		return recordsIndexed.get();
+	}
+
+	public long getRecordsFailed() {
+		return recordsFailed.get();
+	}
+
+	public long getDocuments() {
+		return documents.get();
+	}
+
+	public long getBusyTime() {
+		return busyTime.get();
+	}
+
+	/**
+	 * Returns the number of journal records this worker indexes per second of
+	 * actual work.
+	 *
+	 * @return The records per second.
+	 */
+	public double getRecordsPerSecond() {
+		long busy = busyTime.get();
+		return busy > 0 ? (recordsIndexed.get() * 1000D) / busy : 0D;
+	}
+
+	/**
+	 * Returns the number of journal records this worker indexed per second
+	 * since it was started, idle time included.
+	 *
+	 * @return The records per second.
+	 */
+	public double getOverallRecordsPerSecond() {
+		long elapsed = System.currentTimeMillis() - startTime;
+		return elapsed > 0 ? (recordsIndexed.get() * 1000D) / elapsed : 0D;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: partitions=%d, indexed=%d, failed=%d, docs=%d, busy=%dms, %.1f rec/s (%.1f rec/s overall)",
+				workerName, getPartitions(), getRecordsIndexed(), getRecordsFailed(), getDocuments(), getBusyTime(),
+				getRecordsPerSecond(), getOverallRecordsPerSecond());
+	}
+
+}
@@ -1,6 +1,4 @@
-package com.dotmarketing.db;import java.sql.Connection;import java.sql.DatabaseMetaData;import java.sql.SQLException;import java.util.ArrayList;import java.util.HashMap;import java.util.Map.Entry;import javax.naming.Binding;import javax.naming.Context;import javax.naming.InitialContext;import javax.naming.NamingEnumeration;import javax.naming.NamingException;import javax.sql.DataSource;import net.sourceforge.jtds.jdbc.ConnectionJDBC2;import com.dotmarketing.exception.DotRuntimeException;import com.dotmarketing.util.Config;import com.dotmarketing.util.Constants;import com.dotmarketing.util.Logger;import com.dotmarketing.util.UtilMethods;import com.liferay.util.JNDIUtil;public class DbConnectionFactory {	protected static final String MYSQL = "MySQL";	protected static final String POSTGRESQL = "PostgreSQL";	protected static final String ORACLE = "Oracle";	protected static final String MSSQL = "Microsoft SQL Server";	protected static final String H2 = "H2";	private static String _dbType = null;	private static final ThreadLocal<HashMap<String, Connection>> connectionsHolder = new ThreadLocal<HashMap<String, Connection>>();	public static DataSource getDataSource() {		try {			InitialContext ctx = new InitialContext();			DataSource ds = (DataSource)JNDIUtil.lookup(ctx, Constants.DATABASE_DEFAULT_DATASOURCE);			return ds;		} catch (Exception e) {			Logger.error(DbConnectionFactory.class, "---------- DBConnectionFactory: error getting dbconnection " + Constants.DATABASE_DEFAULT_DATASOURCE, e);			throw new DotRuntimeException(e.toString());		}	}	/**	 * This is used to get data source to other database != than the default dotCMS one	 * @param dataSource	 * @return	 */	public static DataSource getDataSource(String dataSource) {		try {			InitialContext ctx = new InitialContext();			DataSource ds = (DataSource)JNDIUtil.lookup(ctx, dataSource);			return ds;		} catch (Exception e) {			Logger.error(DbConnectionFactory.class, "---------- DBConnectionFactory: error getting dbconnection ---------------" +dataSource, e);			throw new DotRuntimeException(e.toString());		}	}	/**	 * This method retrieves the default connection to the dotCMS DB	 * @return	 */	public static Connection getConnection() {		try {			HashMap<String, Connection> connectionsList = (HashMap<String, Connection>) connectionsHolder.get();			Connection connection = null;			if(connectionsList == null) {				connectionsList = new HashMap<String, Connection>();				connectionsHolder.set(connectionsList);			}				connection = connectionsList.get(Constants.DATABASE_DEFAULT_DATASOURCE);				if (connection == null || connection.isClosed()) {					DataSource db = getDataSource();					connection = db.getConnection();
-					connectionsList.put(Constants.DATABASE_DEFAULT_DATASOURCE, connection);
-					Logger.debug(DbConnectionFactory.class, "Connection opened for thread " + Thread.currentThread().getId() + "-" +
+package com.dotmarketing.db;import java.sql.Connection;import java.sql.DatabaseMetaData;import java.sql.SQLException;import java.util.ArrayList;import java.util.HashMap;import java.util.Map;import java.util.Map.Entry;import java.util.concurrent.ConcurrentHashMap;import javax.naming.Binding;import javax.naming.Context;import javax.naming.InitialContext;import javax.naming.NamingEnumeration;import javax.naming.NamingException;import javax.sql.DataSource;import net.sourceforge.jtds.jdbc.ConnectionJDBC2;import com.dotmarketing.exception.DotRuntimeException;import com.dotmarketing.util.Config;import com.dotmarketing.util.Constants;import com.dotmarketing.util.Logger;import com.dotmarketing.util.UtilMethods;import com.liferay.util.JNDIUtil;public class DbConnectionFactory {	protected static final String MYSQL = "MySQL";	protected static final String POSTGRESQL = "PostgreSQL";	protected static final String ORACLE = "Oracle";	protected static final String MSSQL = "Microsoft SQL Server";	protected static final String H2 = "H2";	private static volatile String _dbType = null;	private static volatile int _dbVersion = -1;	private static final ThreadLocal<HashMap<String, Connection>> connectionsHolder = new ThreadLocal<HashMap<String, Connection>>();	// When the connections of the thread were opened, to know how long they are held	private static final ThreadLocal<HashMap<String, Long>> openedAtHolder = new ThreadLocal<HashMap<String, Long>>();	// Data sources already resolved, JNDI is only hit the first time a data source is used	private static final Map<String, DataSource> dataSources = new ConcurrentHashMap<String, DataSource>();	private static final DbConnectionStats connectionStats = new DbConnectionStats();	public static DataSource getDataSource() {		try {			return lookupDataSource(Constants.DATABASE_DEFAULT_DATASOURCE);		} catch (Exception e) {			Logger.error(DbConnectionFactory.class, "---------- DBConnectionFactory: error getting dbconnection " + Constants.DATABASE_DEFAULT_DATASOURCE, e);			throw new DotRuntimeException(e.toString());		}	}	/**	 * This is used to get data source to other database != than the default dotCMS one	 * @param dataSource	 * @return	 */	public static DataSource getDataSource(String dataSource) {		try {			return lookupDataSource(dataSource);		} catch (Exception e) {			Logger.error(DbConnectionFactory.class, "---------- DBConnectionFactory: error getting dbconnection ---------------" +dataSource, e);			throw new DotRuntimeException(e.toString());		}	}	private static DataSource lookupDataSource(String dataSource) throws NamingException {		DataSource ds = dataSources.get(dataSource);		if(ds == null) {			InitialContext ctx = new InitialContext();			ds = (DataSource)JNDIUtil.lookup(ctx, dataSource);			connectionStats.dataSourceLookedUp();			if(ds != null) {				dataSources.put(dataSource, ds);			}		}		return ds;	}	/**	 * Takes a connection from the pool of the given data source and registers	 * it as the connection of the current thread.	 */	private static Connection openConnection(String dataSource, HashMap<String, Connection> connectionsList) throws SQLException, NamingException {		long start = System.nanoTime();		Connection connection;		try {			connection = lookupDataSource(dataSource).getConnection();		} catch (SQLException e) {			// the data source may have been redeployed, look it up again next time			dataSources.remove(dataSource);			connectionStats.acquireFailed();			throw e;		}		connectionStats.connectionAcquired(System.nanoTime() - start);		connectionsList.put(dataSource, connection);		HashMap<String, Long> openedAt = openedAtHolder.get();		if(openedAt == null) {			openedAt = new HashMap<String, Long>();			openedAtHolder.set(openedAt);		}		openedAt.put(dataSource, System.nanoTime());		return connection;	}	private static void connectionReleased(String dataSource) {		HashMap<String, Long> openedAt = openedAtHolder.get();		Long start = openedAt != null ? openedAt.remove(dataSource) : null;		if(start != null) {			connectionStats.connectionReleased(System.nanoTime() - start);		}	}	/**	 * @return Acquisition, hold and leak counters of the connections handed out by this factory	 */	public static DbConnectionStats getConnectionStats() {		return connectionStats;	}	/**	 * This method retrieves the default connection to the dotCMS DB	 * @return	 */	public static Connection getConnection() {		try {			HashMap<String, Connection> connectionsList = (HashMap<String, Connection>) connectionsHolder.get();			Connection connection = null;			if(connectionsList == null) {				connectionsList = new HashMap<String, Connection>();				connectionsHolder.set(connectionsList);			}				connection = connectionsList.get(Constants.DATABASE_DEFAULT_DATASOURCE);				if (connection == null || connection.isClosed()) {					if(connection != null) {						connectionReleased(Constants.DATABASE_DEFAULT_DATASOURCE);					}					connection = openConnection(Constants.DATABASE_DEFAULT_DATASOURCE, connectionsList);					Logger.debug(DbConnectionFactory.class, "Connection opened for thread " + Thread.currentThread().getId() + "-" +
 							Constants.DATABASE_DEFAULT_DATASOURCE);
 				}
 				// _dbType would only be null until the getDbType was called, then it is static				if(_dbType != null && MSSQL.equals(getDBType())){					connection.setTransactionIsolation(ConnectionJDBC2.TRANSACTION_SNAPSHOT);				}
@@ -60,11 +58,12 @@ package com.dotmarketing.db;import java.sql.Connection;import java.sql.Databa
 				connection = connectionsList.get(dataSource);
 
 				if (connection == null || connection.isClosed()) {
-					DataSource db = getDataSource(dataSource);
+					if(connection != null) {
+						connectionReleased(dataSource);
+					}
 					Logger.debug(DbConnectionFactory.class, "Opening connection for thread " + Thread.currentThread().getId() + "-" +
 							dataSource + "\n" + UtilMethods.getDotCMSStackTrace());
-					connection = db.getConnection();
-					connectionsList.put(dataSource, connection);
+					connection = openConnection(dataSource, connectionsList);
 					Logger.debug(DbConnectionFactory.class, "Connection opened for thread " + Thread.currentThread().getId() + "-" +
 							dataSource);
 				}
@@ -102,6 +101,7 @@ package com.dotmarketing.db;import java.sql.Connection;import java.sql.Databa
 						} catch (Exception e) {
 							Logger.warn(DbConnectionFactory.class, "---------- DBConnectionFactory: error closing the db dbconnection: " + ds + " ---------------", e);
 						}
+					connectionReleased(ds);
 				}
 
 				Logger.debug(DbConnectionFactory.class, "All connections closed for " + Thread.currentThread().getId());
@@ -134,6 +134,7 @@ package com.dotmarketing.db;import java.sql.Connection;import java.sql.Databa
 							"\n" + UtilMethods.getDotCMSStackTrace());
 					cn.close();
 					connectionsList.remove(ds);
+					connectionReleased(ds);
 					Logger.debug(DbConnectionFactory.class, "Connection closed for " + Thread.currentThread().getId() + "-" + ds);
 				}
 
@@ -144,6 +145,30 @@ package com.dotmarketing.db;import java.sql.Connection;import java.sql.Databa
 
 	}
 
+	/**
+	 * Closes the connections the current thread still holds when its request
+	 * ends. Most requests leave their connection to be closed here, only the
+	 * ones still in a transaction were left behind by mistake, and only those
+	 * are counted as leaked.
+	 */
+	public static void closeLeakedConnections() {
+		HashMap<String, Connection> connectionsList = (HashMap<String, Connection>) connectionsHolder.get();
+		if(connectionsList != null) {
+			for (Entry<String, Connection> entry : connectionsList.entrySet()) {
+				try {
+					if(entry.getValue() != null && !entry.getValue().isClosed() && !entry.getValue().getAutoCommit()) {
+						String leak = entry.getKey() + " held by " + Thread.currentThread().getName();
+						connectionStats.connectionLeaked(leak);
+						Logger.debug(DbConnectionFactory.class, "Transaction not ended before the end of the request: " + leak);
+					}
+				} catch (SQLException e) {
+					Logger.debug(DbConnectionFactory.class, e.getMessage(), e);
+				}
+			}
+		}
+		closeConnection();
+	}
+
 	public static String getDBType() {
 
 		/*
@@ -151,26 +176,42 @@ package com.dotmarketing.db;import java.sql.Connection;import java.sql.Databa
 		 * Oracle
 		 */
 
-		if (_dbType != null) {
-			return _dbType;
+		if (_dbType == null) {
+			loadDatabaseInfo();
 		}
 
-		Connection conn = getConnection();
+		return _dbType;
+	}
 
-		try {
-			_dbType = conn.getMetaData().getDatabaseProductName();
+	/**
+	 * Reads the database product and version once. It uses the connection the
+	 * thread already has, if any, and leaves it open, otherwise it borrows one
+	 * from the pool just for this.
+	 */
+	private static synchronized void loadDatabaseInfo() {
 
-		} catch (Exception e) {
+		if (_dbType != null) {
+			return;
+		}
 
-		} finally {
-			try {
-				closeConnection();
-			} catch (Exception e) {
+		HashMap<String, Connection> connectionsList = (HashMap<String, Connection>) connectionsHolder.get();
+		Connection current = connectionsList != null ? connectionsList.get(Constants.DATABASE_DEFAULT_DATASOURCE) : null;
 
+		try {
+			boolean borrowed = current == null || current.isClosed();
+			Connection conn = borrowed ? getDataSource().getConnection() : current;
+			try {
+				DatabaseMetaData meta = conn.getMetaData();
+				_dbVersion = meta.getDatabaseMajorVersion();
+				_dbType = meta.getDatabaseProductName();
+			} finally {
+				if (borrowed) {
+					conn.close();
+				}
 			}
+		} catch (Exception e) {
+			Logger.error(DbConnectionFactory.class, "---------- DBConnectionFactory: Error reading the database information ---------------", e);
 		}
-
-		return _dbType;
 	}
 	public static String getDBDateTimeFunction(){		if(MSSQL.equals(getDBType())){			return "GETDATE()";		}else if(ORACLE.equals(getDBType())){			return "SYSDATE";		}else{			return "now()";		}	}	public static String getDBDateTimeType() {	    if(isOracle() || isPostgres()) {	        return "timestamp";	    }	    else {	        return "datetime";	    }	}
 	public static String getDBTrue() {
@@ -205,5 +246,5 @@ package com.dotmarketing.db;import java.sql.Connection;import java.sql.Databa
 
 	}
 
-	public static boolean isDBTrue(String value) {		String x = getDBType();		if (MYSQL.equals(x)) {			return value.trim().equals("1") || value.trim().equals("true");		} else if (POSTGRESQL.equals(x) || H2.equals(x)) {			return value.trim().equals("t") || value.trim().equals("true");		} else if (MSSQL.equals(x)) {			return value.trim().equals("1");		} else if (ORACLE.equals(x)) {			return value.trim().equals("1");		}		return false;	}	public static boolean isOracle(){		return ORACLE.equals(getDBType());	}	public static boolean isMsSql(){		return MSSQL.equals(getDBType());	}	public static boolean isPostgres(){		return POSTGRESQL.equals(getDBType());	}	public static boolean isMySql(){		return MYSQL.equals(getDBType());	}	public static boolean isH2() {	    return H2.equals(getDBType());	}	public static int getDbVersion(){	   int version = 0;	    try {	    	 Connection con = getConnection();	    	 DatabaseMetaData meta = con.getMetaData();	         version = meta.getDatabaseMajorVersion();	        } catch (Exception e) {	        	Logger.error(DbConnectionFactory.class, "---------- DBConnectionFactory: Error getting DB version " + "---------------", e);				throw new DotRuntimeException(e.toString());	        }		return version;	}	/**	 * Returns the correct MySQL system variable used to define the database	 * Storage Engine. The old {@code storage_variable} was deprecated as of	 * version 5.5.3, and deemed completely invalid as of version 5.7.5.	 * <p>	 * This method reads the {@code mysql_storage_engine_varname} property from	 * the {@code dotmarketing-config.properties} file to get the correct	 * variable name. By default, returns the most recent system variable name.	 * If your MySQL database version is old, this variable name must change.	 * </p>	 * 	 * @return The most recent system variable name for the Storage Engine	 *         definition.	 */	public static String getMySQLStorageEngine() {		return Config.getStringProperty("mysql_storage_engine_varname", "default_storage_engine");	}
+	public static boolean isDBTrue(String value) {		String x = getDBType();		if (MYSQL.equals(x)) {			return value.trim().equals("1") || value.trim().equals("true");		} else if (POSTGRESQL.equals(x) || H2.equals(x)) {			return value.trim().equals("t") || value.trim().equals("true");		} else if (MSSQL.equals(x)) {			return value.trim().equals("1");		} else if (ORACLE.equals(x)) {			return value.trim().equals("1");		}		return false;	}	public static boolean isOracle(){		return ORACLE.equals(getDBType());	}	public static boolean isMsSql(){		return MSSQL.equals(getDBType());	}	public static boolean isPostgres(){		return POSTGRESQL.equals(getDBType());	}	public static boolean isMySql(){		return MYSQL.equals(getDBType());	}	public static boolean isH2() {	    return H2.equals(getDBType());	}	public static int getDbVersion(){		if (_dbType == null) {			loadDatabaseInfo();		}		if (_dbVersion < 0) {			Logger.error(DbConnectionFactory.class, "---------- DBConnectionFactory: Error getting DB version " + "---------------");			throw new DotRuntimeException("Unable to read the database version");		}		return _dbVersion;	}	/**	 * Returns the correct MySQL system variable used to define the database	 * Storage Engine. The old {@code storage_variable} was deprecated as of	 * version 5.5.3, and deemed completely invalid as of version 5.7.5.	 * <p>	 * This method reads the {@code mysql_storage_engine_varname} property from	 * the {@code dotmarketing-config.properties} file to get the correct	 * variable name. By default, returns the most recent system variable name.	 * If your MySQL database version is old, this variable name must change.	 * </p>	 * 	 * @return The most recent system variable name for the Storage Engine	 *         definition.	 */	public static String getMySQLStorageEngine() {		return Config.getStringProperty("mysql_storage_engine_varname", "default_storage_engine");	}
 }
@@ -0,0 +1,106 @@
+package com.dotmarketing.db;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the connections handed out by {@link DbConnectionFactory}:
+ * how long threads wait for the pool, how long they hold their connections
+ * and how many connections were still open when the request ended.
+ */
+public class DbConnectionStats {
+
+	private final AtomicLong acquired = new AtomicLong();
+	private final AtomicLong acquireFailures = new AtomicLong();
+	private final AtomicLong acquireTime = new AtomicLong();
+	private final AtomicLong maxAcquireTime = new AtomicLong();
+
+	private final AtomicLong open = new AtomicLong();
+	private final AtomicLong released = new AtomicLong();
+	private final AtomicLong holdTime = new AtomicLong();
+	private final AtomicLong maxHoldTime = new AtomicLong();
+
+	private final AtomicLong leaked = new AtomicLong();
+	private final AtomicLong dataSourceLookups = new AtomicLong();
+
+	private volatile String lastLeak = null;
+
+	/**
+	 * Registers a connection taken from the pool.
+	 *
+	 * @param waitNanos time spent waiting for the pool
+	 */
+	void connectionAcquired ( long waitNanos ) {
+		acquired.incrementAndGet();
+		open.incrementAndGet();
+		acquireTime.addAndGet(waitNanos);
+		updateMax(maxAcquireTime, waitNanos);
+	}
+
+	void acquireFailed () {
+		acquireFailures.incrementAndGet();
+	}
+
+	/**
+	 * Registers a connection given back to the pool.
+	 *
+	 * @param heldNanos time the thread held the connection
+	 */
+	void connectionReleased ( long heldNanos ) {
+		released.incrementAndGet();
+		open.decrementAndGet();
+		holdTime.addAndGet(heldNanos);
+		updateMax(maxHoldTime, heldNanos);
+	}
+
+	/**
+	 * Registers a connection the request left in an open transaction.
+	 *
+	 * @param description what leaked, for the last leak report
+	 */
+	void connectionLeaked ( String description ) {
+		leaked.incrementAndGet();
+		lastLeak = description;
+	}
+
+	void dataSourceLookedUp () {
+		dataSourceLookups.incrementAndGet();
+	}
+
+	private static void updateMax ( AtomicLong max, long value ) {
+		long current = max.get();
+		while ( value > current && !max.compareAndSet(current, value) ) {
+			current = max.get();
+		}
+	}
+
+	private static double avgMillis ( long totalNanos, long count ) {
+		return count > 0 ? (double) totalNanos / count / 1000000D : 0D;
+	}
+
+	/**
+	 * @return The current values of all the counters
+	 */
+	public Map<String, Object> toMap () {
+
+		long acquiredCount = acquired.get();
+		long releasedCount = released.get();
+
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("acquired", acquiredCount);
+		stats.put("acquireFailures", acquireFailures.get());
+		stats.put("avgAcquireMillis", avgMillis(acquireTime.get(), acquiredCount));
+		stats.put("maxAcquireMillis", TimeUnit.NANOSECONDS.toMillis(maxAcquireTime.get()));
+		stats.put("open", open.get());
+		stats.put("released", releasedCount);
+		stats.put("avgHoldMillis", avgMillis(holdTime.get(), releasedCount));
+		stats.put("maxHoldMillis", TimeUnit.NANOSECONDS.toMillis(maxHoldTime.get()));
+		stats.put("leaked", leaked.get());
+		stats.put("lastLeak", lastLeak);
+		stats.put("dataSourceLookups", dataSourceLookups.get());
+		return stats;
+	}
+
+}
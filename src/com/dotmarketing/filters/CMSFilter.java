@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.net.URLDecoder;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -19,6 +20,7 @@ import org.apache.commons.logging.LogFactory;
 import com.dotmarketing.beans.Host;
 import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.business.APILocator;
+import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.web.HostWebAPI;
 import com.dotmarketing.business.web.WebAPILocator;
 import com.dotmarketing.cache.VirtualLinksCache;
@@ -71,8 +73,6 @@ public class CMSFilter implements Filter {
 		}
 		
 		
-		IAm iAm = IAm.NOTHING_IN_THE_CMS;
-		
 		LogFactory.getLog(this.getClass()).debug("CMS Filter URI = " + uri);
 		
 
@@ -102,77 +102,43 @@ public class CMSFilter implements Filter {
 		}
 
 		// get the users language
-		long languageId = WebAPILocator.getLanguageWebAPI().getLanguage(request).getId();
+		final long languageId = WebAPILocator.getLanguageWebAPI().getLanguage(request).getId();
 
+		final Host currentHost = host;
+		CMSRouteCache.Route route;
+		try {
+			route = CacheLocator.getCMSRouteCache().get(host.getIdentifier(), languageId, uri, new Callable<CMSRouteCache.Route>() {
+				public CMSRouteCache.Route call() {
+					return resolve(uri, currentHost, languageId);
+				}
+			});
+		} catch (Exception e) {
+			Logger.error(this, "Unable to resolve URI " + uri, e);
+			throw new ServletException(e.getMessage(), e);
+		}
 
+		IAm iAm = route.getIAm();
+		String rewrite = route.getRewrite();
+		String queryString = (route.getQueryString() != null) ? route.getQueryString() : request.getQueryString();
 
-		if (urlUtil.isFileAsset(uri, host, languageId)) {
-			iAm= IAm.FILE;
-		} else if (urlUtil.isVanityUrl(uri, host)) {
-			iAm = IAm.VANITY_URL;
-		} else if (urlUtil.isPageAsset(uri, host, languageId)) {
-			iAm = IAm.PAGE;
-		} else if (urlUtil.isFolder(uri, host)) {
-			iAm = IAm.FOLDER;
-		}
-		
-		String rewrite = null;
-		String queryString = request.getQueryString();
-		// if a vanity URL
-		if (iAm == IAm.VANITY_URL) {
-			
-			rewrite = VirtualLinksCache.getPathFromCache(host.getHostname() + ":" + ("/".equals(uri) ? "/cmsHomePage" : uri.endsWith("/")?uri.substring(0, uri.length() - 1):uri));
+		if (route.isRedirect()) {
+			response.sendRedirect(rewrite);
 
-			if (!UtilMethods.isSet(rewrite)) {
-				rewrite = VirtualLinksCache.getPathFromCache(("/".equals(uri) ? "/cmsHomePage" : uri.endsWith("/")?uri.substring(0, uri.length() - 1):uri));
-			}
-			if (UtilMethods.isSet(rewrite) && rewrite.contains("//")) {
-				response.sendRedirect(rewrite);
-				
-				closeDbSilently();
-				return;
-			}
-			if (UtilMethods.isSet(rewrite)) {
-				if(rewrite!=null && rewrite.contains("?")){
-					String[] arr = rewrite.split("\\?",2);
-					rewrite = arr[0];
-					if(arr.length>1){
-						queryString= arr[1];
-					}
-				}
-				if (urlUtil.isFileAsset(rewrite, host, languageId)) {
-					iAm= IAm.FILE;
-				} else if (urlUtil.isPageAsset(rewrite, host, languageId)) {
-					iAm = IAm.PAGE;
-				} else if (urlUtil.isFolder(rewrite, host)) {
-					iAm = IAm.FOLDER;
-				}
-			}
+			closeDbSilently();
+			return;
 		}
 
-		if (iAm == IAm.FOLDER) {
-			if (!uri.endsWith("/")) {
-				if(UtilMethods.isSet(queryString)){
-					response.setHeader("Location", uri + "/?" + queryString );
-				}
-				else{
-					response.setHeader("Location", uri +"/" );
-					
-				}
-				response.setStatus(301);
-				closeDbSilently();
-				return;
-			} else {
-				if(UtilMethods.isSet(rewrite)) {
+		if (iAm == IAm.FOLDER && !uri.endsWith("/")) {
+			if(UtilMethods.isSet(queryString)){
+				response.setHeader("Location", uri + "/?" + queryString );
+			}
+			else{
+				response.setHeader("Location", uri +"/" );
 
-					rewrite = rewrite + CMS_INDEX_PAGE;
-				} else {
-					rewrite = uri + CMS_INDEX_PAGE;
-				}
-				if(urlUtil.isPageAsset(rewrite, host, languageId)){
-					iAm = IAm.PAGE;
-				}
 			}
+			response.setStatus(301);
+			closeDbSilently();
+			return;
 		}
 
 		// if we are not rewriting anything, use the uri
@@ -218,6 +184,72 @@ public class CMSFilter implements Filter {
 	
 	
 	
+	/**
+	 * Decides what to serve for the uri, the result is kept in the
+	 * {@link CMSRouteCache} so it must not depend on anything else than the
+	 * host, the language and the uri.
+	 */
+	CMSRouteCache.Route resolve(String uri, Host host, long languageId) {
+
+		IAm iAm = IAm.NOTHING_IN_THE_CMS;
+
+		if (urlUtil.isFileAsset(uri, host, languageId)) {
+			iAm= IAm.FILE;
+		} else if (urlUtil.isVanityUrl(uri, host)) {
+			iAm = IAm.VANITY_URL;
+		} else if (urlUtil.isPageAsset(uri, host, languageId)) {
+			iAm = IAm.PAGE;
+		} else if (urlUtil.isFolder(uri, host)) {
+			iAm = IAm.FOLDER;
+		}
+
+		String rewrite = null;
+		String queryString = null;
+		// if a vanity URL
+		if (iAm == IAm.VANITY_URL) {
+
+			rewrite = VirtualLinksCache.getPathFromCache(host.getHostname() + ":" + ("/".equals(uri) ? "/cmsHomePage" : uri.endsWith("/")?uri.substring(0, uri.length() - 1):uri));
+
+			if (!UtilMethods.isSet(rewrite)) {
+				rewrite = VirtualLinksCache.getPathFromCache(("/".equals(uri) ? "/cmsHomePage" : uri.endsWith("/")?uri.substring(0, uri.length() - 1):uri));
+			}
+			if (UtilMethods.isSet(rewrite) && rewrite.contains("//")) {
+				return new CMSRouteCache.Route(iAm, rewrite, null, true);
+			}
+			if (UtilMethods.isSet(rewrite)) {
+				if(rewrite!=null && rewrite.contains("?")){
+					String[] arr = rewrite.split("\\?",2);
+					rewrite = arr[0];
+					if(arr.length>1){
+						queryString= arr[1];
+					}
+				}
+				if (urlUtil.isFileAsset(rewrite, host, languageId)) {
+					iAm= IAm.FILE;
+				} else if (urlUtil.isPageAsset(rewrite, host, languageId)) {
+					iAm = IAm.PAGE;
+				} else if (urlUtil.isFolder(rewrite, host)) {
+					iAm = IAm.FOLDER;
+				}
+			}
+		}
+
+		// a folder without the trailing slash is redirected by the filter
+		if (iAm == IAm.FOLDER && uri.endsWith("/")) {
+			if(UtilMethods.isSet(rewrite)) {
+
+				rewrite = rewrite + CMS_INDEX_PAGE;
+			} else {
+				rewrite = uri + CMS_INDEX_PAGE;
+			}
+			if(urlUtil.isPageAsset(rewrite, host, languageId)){
+				iAm = IAm.PAGE;
+			}
+		}
+
+		return new CMSRouteCache.Route(iAm, rewrite, queryString, false);
+	}
+
 	public void init(FilterConfig config) throws ServletException {
 		this.ASSET_PATH = APILocator.getFileAPI().getRelativeAssetsRootPath();
 
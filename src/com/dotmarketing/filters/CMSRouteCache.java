@@ -0,0 +1,103 @@
+package com.dotmarketing.filters;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.dotmarketing.business.Cachable;
+import com.dotmarketing.filters.CMSFilter.IAm;
+
+/**
+ * Keeps what the {@link CMSFilter} decided for a host, language and uri: the
+ * page, file or folder served, the vanity url rewrite, or that there is
+ * nothing in the CMS for it.
+ * <p>
+ * The routes of a host are dropped when an identifier or folder of the host
+ * changes, all of them when a virtual link changes.
+ * </p>
+ */
+public abstract class CMSRouteCache implements Cachable {
+
+	/**
+	 * Returns the route of the uri, running the given resolver if it is not
+	 * cached.
+	 *
+	 * @param hostId
+	 * @param languageId
+	 * @param uri
+	 * @param resolver
+	 * @return
+	 * @throws Exception
+	 *             The exception thrown by the resolver
+	 */
+	public abstract Route get(String hostId, long languageId, String uri, Callable<Route> resolver) throws Exception;
+
+	/**
+	 * Drops the routes of the given host, on all the nodes of the cluster.
+	 *
+	 * @param hostId
+	 */
+	public abstract void invalidate(String hostId);
+
+	/**
+	 * Drops the routes of all the hosts, on all the nodes of the cluster.
+	 */
+	public abstract void invalidateAll();
+
+	/**
+	 * Returns the hit, miss and negative hit counters of this cache.
+	 *
+	 * @return
+	 */
+	public abstract Map<String, Object> getStats();
+
+	/**
+	 * What the {@link CMSFilter} does with a request, without the parts that
+	 * depend on the request itself (the query string and the language
+	 * parameter)
+	 */
+	public static final class Route {
+
+		private final IAm iAm;
+		private final String rewrite;
+		private final String queryString;
+		private final boolean redirect;
+
+		Route(IAm iAm, String rewrite, String queryString, boolean redirect) {
+			this.iAm = iAm;
+			this.rewrite = rewrite;
+			this.queryString = queryString;
+			this.redirect = redirect;
+		}
+
+		IAm getIAm() {
+			return iAm;
+		}
+
+		/**
+		 * Path served instead of the uri, null if it is not rewritten
+		 */
+		String getRewrite() {
+			return rewrite;
+		}
+
+		/**
+		 * Query string of the vanity url, replaces the one of the request
+		 */
+		String getQueryString() {
+			return queryString;
+		}
+
+		/**
+		 * The vanity url points to an absolute url the client is redirected to
+		 */
+		boolean isRedirect() {
+			return redirect;
+		}
+
+		boolean isNotFound() {
+			return iAm == IAm.NOTHING_IN_THE_CMS;
+		}
+
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.dotmarketing.filters;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dotcms.repackage.com.google.common.cache.Cache;
+import com.dotcms.repackage.com.google.common.cache.CacheBuilder;
+import com.dotmarketing.business.CacheLocator;
+import com.dotmarketing.business.DotCacheAdministrator;
+import com.dotmarketing.business.DotCacheException;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.dotmarketing.util.UUIDGenerator;
+
+/**
+ * Keeps the routes in a local in-memory cache. Each host has a generation
+ * token kept in the {@link DotCacheAdministrator}: removing it invalidates
+ * the routes of the host on every node of the cluster, flushing the group
+ * invalidates the routes of all the hosts.
+ */
+public class CMSRouteCacheImpl extends CMSRouteCache {
+
+	private static String primaryCacheGroup = "CMSRouteCache";
+
+	private final DotCacheAdministrator cache;
+	private final boolean enabled;
+
+	private final Cache<String, CachedRoute> routes;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong negativeHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	public CMSRouteCacheImpl() {
+		this.cache = CacheLocator.getCacheAdministrator();
+		this.enabled = Config.getBooleanProperty("CMS_ROUTE_CACHE_ENABLED", true);
+		this.routes = CacheBuilder.newBuilder()
+				.maximumSize(Config.getIntProperty("CMS_ROUTE_CACHE_SIZE", 10000))
+				.expireAfterWrite(Config.getIntProperty("CMS_ROUTE_CACHE_TTL", 3600), TimeUnit.SECONDS)
+				.concurrencyLevel(Config.getIntProperty("cache.concurrencylevel", 32))
+				.build();
+	}
+
+	@Override
+	public String getPrimaryGroup() {
+		return primaryCacheGroup;
+	}
+
+	@Override
+	public String[] getGroups() {
+		String[] groupNames = { primaryCacheGroup };
+		return groupNames;
+	}
+
+	@Override
+	public void clearCache() {
+		routes.invalidateAll();
+		cache.flushGroup(primaryCacheGroup);
+	}
+
+	@Override
+	public Route get(String hostId, long languageId, String uri, Callable<Route> resolver) throws Exception {
+		if (!enabled) {
+			return resolver.call();
+		}
+
+		String key = hostId + "|" + languageId + "|" + uri;
+		// read before resolving, a change made meanwhile leaves the route stale
+		String generation = currentGeneration(hostId);
+
+		CachedRoute cached = routes.getIfPresent(key);
+		if (cached != null && cached.generation.equals(generation)) {
+			if (cached.route.isNotFound()) {
+				negativeHits.incrementAndGet();
+			} else {
+				hits.incrementAndGet();
+			}
+			return cached.route;
+		}
+
+		misses.incrementAndGet();
+		Route route = resolver.call();
+		if (route != null) {
+			routes.put(key, new CachedRoute(route, generation));
+		}
+		return route;
+	}
+
+	@Override
+	public void invalidate(String hostId) {
+		if (!enabled || hostId == null) {
+			return;
+		}
+		// the generation is started locally on each node, so the other nodes
+		// may hold one even if this one does not: the removal always goes out
+		invalidations.incrementAndGet();
+		cache.remove(hostId, primaryCacheGroup);
+	}
+
+	@Override
+	public void invalidateAll() {
+		if (!enabled) {
+			return;
+		}
+		invalidations.incrementAndGet();
+		cache.flushGroup(primaryCacheGroup);
+	}
+
+	@Override
+	public Map<String, Object> getStats() {
+		long hitCount = hits.get() + negativeHits.get();
+		long total = hitCount + misses.get();
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("enabled", enabled);
+		stats.put("entries", routes.size());
+		stats.put("hits", hits.get());
+		stats.put("negativeHits", negativeHits.get());
+		stats.put("misses", misses.get());
+		stats.put("hitRatio", total > 0 ? (double) hitCount / total : 0d);
+		stats.put("invalidations", invalidations.get());
+		return stats;
+	}
+
+	/**
+	 * Returns the current generation of the host, starting a new one if it was
+	 * bumped
+	 */
+	private String currentGeneration(String hostId) {
+		Object token = getToken(hostId);
+		if (token == null) {
+			synchronized (this) {
+				token = getToken(hostId);
+				if (token == null) {
+					token = UUIDGenerator.generateUuid();
+					cache.put(hostId, token, primaryCacheGroup);
+				}
+			}
+		}
+		return token.toString();
+	}
+
+	private Object getToken(String hostId) {
+		try {
+			return cache.get(hostId, primaryCacheGroup);
+		} catch (DotCacheException e) {
+			Logger.debug(this, "Unable to read the route generation of host " + hostId, e);
+			return null;
+		}
+	}
+
+	private static class CachedRoute {
+
+		private final Route route;
+		private final String generation;
+
+		CachedRoute(Route route, String generation) {
+			this.route = route;
+			this.generation = generation;
+		}
+
+	}
+
+}
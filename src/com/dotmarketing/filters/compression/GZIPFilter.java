@@ -1,6 +1,9 @@
 package com.dotmarketing.filters.compression;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -9,12 +12,27 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 
+import com.dotmarketing.util.Config;
 import com.dotmarketing.util.Logger;
 
+/**
+ * Compresses the responses of the content types in <code>GZIP_CONTENT_TYPES</code> bigger than
+ * <code>GZIP_MIN_SIZE</code> bytes, as they are written. Responses with an ETag are compressed
+ * once and kept in the {@link GZIPVariantCache}; their gzipped variant gets its own ETag
+ * (<code>&lt;etag&gt;-gzip</code>).
+ */
 public class GZIPFilter implements Filter {
 
+  static final String ETAG_SUFFIX = "-gzip";
+
+  private int minSize;
+  private int level;
+  private int storedLevel;
+  private Set<String> contentTypes;
+
   public void doFilter(ServletRequest req, ServletResponse res,FilterChain chain) throws IOException, ServletException {
     if (req instanceof HttpServletRequest) {
       HttpServletRequest request = (HttpServletRequest) req;
@@ -22,9 +40,11 @@ public class GZIPFilter implements Filter {
       String ae = request.getHeader("accept-encoding");
       if (ae != null && ae.indexOf("gzip") != -1) {
         Logger.debug(this, "GZIP supported, compressing.");
-        GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response);
-        chain.doFilter(req, wrappedResponse);
-        wrappedResponse.finishResponse();
+        String uri = request.getRequestURI() + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+        GZIPResponseWrapper wrappedResponse = new GZIPResponseWrapper(response, request.getServerName(), uri,
+            minSize, level, storedLevel, contentTypes);
+        chain.doFilter(new GZIPRequestWrapper(request), wrappedResponse);
+        wrappedResponse.finishResponse(request.getHeader("If-None-Match"));
         return;
       }
       chain.doFilter(req, res);
@@ -32,8 +52,38 @@ public class GZIPFilter implements Filter {
   }
 
   public void init(FilterConfig filterConfig) {
+    minSize = Math.max(0, Config.getIntProperty("GZIP_MIN_SIZE", 1024));
+    level = Config.getIntProperty("GZIP_LEVEL", Deflater.DEFAULT_COMPRESSION);
+    storedLevel = Config.getIntProperty("GZIP_CACHE_LEVEL", Deflater.BEST_COMPRESSION);
+    contentTypes = new HashSet<String>();
+    String types = Config.getStringProperty("GZIP_CONTENT_TYPES", "text/html,text/css,text/plain,text/xml,text/javascript,"
+        + "application/javascript,application/x-javascript,application/json,application/xml,image/svg+xml");
+    for (String type : types.split(",")) {
+      if (type.trim().length() > 0) {
+        contentTypes.add(type.trim().toLowerCase());
+      }
+    }
   }
 
   public void destroy() {
   }
+
+  /**
+   * Takes the suffix of the gzipped variants off the ETags sent back, so the servlets find the
+   * ones they gave
+   */
+  private static class GZIPRequestWrapper extends HttpServletRequestWrapper {
+
+    GZIPRequestWrapper(HttpServletRequest request) {
+      super(request);
+    }
+
+    public String getHeader(String name) {
+      String value = super.getHeader(name);
+      if (value != null && "If-None-Match".equalsIgnoreCase(name)) {
+        value = value.replace(ETAG_SUFFIX, "");
+      }
+      return value;
+    }
+  }
 }
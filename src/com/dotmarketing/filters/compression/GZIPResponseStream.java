@@ -2,6 +2,7 @@ package com.dotmarketing.filters.compression;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletOutputStream;
@@ -9,35 +10,105 @@ import javax.servlet.http.HttpServletResponse;
 
 import com.dotmarketing.util.Logger;
 
+/**
+ * Holds the first bytes of the body until they are more than the minimum size, then compresses
+ * the body as it is written, or sends it as it is if it is too small or of a content type not to
+ * be compressed. The body of a response whose gzipped variant was kept before is not compressed
+ * again: the variant is sent instead.
+ */
 public class GZIPResponseStream extends ServletOutputStream {
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final OutputStream DISCARD = new OutputStream() {
+    public void write(int b) {
+    }
+
+    public void write(byte b[], int off, int len) {
+    }
+  };
+
   protected ByteArrayOutputStream baos = null;
   protected GZIPOutputStream gzipstream = null;
   protected boolean closed = false;
   protected HttpServletResponse response = null;
   protected ServletOutputStream output = null;
 
-  public GZIPResponseStream(HttpServletResponse response) throws IOException {
+  private final GZIPResponseWrapper wrapper;
+  private final int minSize;
+
+  // where the body goes once it is known whether it is compressed
+  private OutputStream target = null;
+
+  // gzipped body to be kept, null if it is not
+  private ByteArrayOutputStream variant = null;
+  private String variantKey = null;
+
+  public GZIPResponseStream(GZIPResponseWrapper wrapper, HttpServletResponse response, int minSize) throws IOException {
     super();
     closed = false;
+    this.wrapper = wrapper;
     this.response = response;
+    this.minSize = minSize;
     this.output = response.getOutputStream();
-    baos = new ByteArrayOutputStream();
-    gzipstream = new GZIPOutputStream(baos);
+    baos = new ByteArrayOutputStream(Math.min(minSize, BUFFER_SIZE) + 1);
+  }
+
+  /**
+   * Sets the headers and sends what was held of the body
+   *
+   * @param complete Whether the whole body was written
+   */
+  private void start(boolean complete) throws IOException {
+    boolean compressible = wrapper.isCompressible();
+    if (compressible) {
+      response.addHeader("Vary", "Accept-Encoding");
+    }
+
+    if (compressible && (!complete || baos.size() >= minSize)) {
+      response.setHeader("Content-Encoding", "gzip");
+      String key = wrapper.getVariantKey();
+      if (key != null) {
+        response.setHeader("ETag", wrapper.getVariantETag());
+        byte[] stored = GZIPVariantCache.get(key);
+        if (stored != null) {
+          Logger.debug(this, "sending the gzipped variant kept for " + key);
+          response.setContentLength(stored.length);
+          output.write(stored);
+          target = DISCARD;
+          baos = null;
+          return;
+        }
+        variant = new ByteArrayOutputStream(BUFFER_SIZE);
+        variantKey = key;
+      }
+      gzipstream = new LeveledGZIPOutputStream(variant != null ? new VariantOutputStream() : output, wrapper.getLevel());
+      target = gzipstream;
+    } else {
+      if (complete) {
+        response.setContentLength(baos.size());
+      } else if (wrapper.getContentLength() >= 0) {
+        response.setContentLength(wrapper.getContentLength());
+      }
+      target = output;
+    }
+    baos.writeTo(target);
+    baos = null;
   }
 
   public void close() throws IOException {
     if (closed) {
       throw new IOException("This output stream has already been closed");
     }
-    gzipstream.finish();
-
-    byte[] bytes = baos.toByteArray();
-
-
-    response.addHeader("Content-Length", 
-                       Integer.toString(bytes.length)); 
-    response.addHeader("Content-Encoding", "gzip");
-    output.write(bytes);
+    if (target == null) {
+      start(true);
+    }
+    if (gzipstream != null) {
+      gzipstream.finish();
+    }
+    if (variant != null) {
+      GZIPVariantCache.put(variantKey, variant.toByteArray());
+      variant = null;
+    }
     output.flush();
     output.close();
     closed = true;
@@ -47,14 +118,24 @@ public class GZIPResponseStream extends ServletOutputStream {
     if (closed) {
       throw new IOException("Cannot flush a closed output stream");
     }
-    gzipstream.flush();
+    if (target == null) {
+      start(false);
+    }
+    target.flush();
   }
 
   public void write(int b) throws IOException {
     if (closed) {
       throw new IOException("Cannot write to a closed output stream");
     }
-    gzipstream.write((byte)b);
+    if (target == null) {
+      if (baos.size() < minSize) {
+        baos.write(b);
+        return;
+      }
+      start(false);
+    }
+    target.write(b);
   }
 
   public void write(byte b[]) throws IOException {
@@ -62,11 +143,17 @@ public class GZIPResponseStream extends ServletOutputStream {
   }
 
   public void write(byte b[], int off, int len) throws IOException {
-    Logger.debug(this, "writing bytes to gzip stream gzip");
     if (closed) {
       throw new IOException("Cannot write to a closed output stream");
     }
-    gzipstream.write(b, off, len);
+    if (target == null) {
+      if (baos.size() + len <= minSize) {
+        baos.write(b, off, len);
+        return;
+      }
+      start(false);
+    }
+    target.write(b, off, len);
   }
 
   public boolean closed() {
@@ -76,4 +163,38 @@ public class GZIPResponseStream extends ServletOutputStream {
   public void reset() {
   }
 
-}
\ No newline at end of file
+  /**
+   * Sends the gzipped body and keeps a copy of it, unless it grows over the biggest variant kept
+   */
+  private class VariantOutputStream extends OutputStream {
+
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    public void write(byte b[], int off, int len) throws IOException {
+      output.write(b, off, len);
+      if (variant != null) {
+        if (variant.size() + len > GZIPVariantCache.getMaxEntrySize()) {
+          variant = null;
+        } else {
+          variant.write(b, off, len);
+        }
+      }
+    }
+
+    public void flush() throws IOException {
+      output.flush();
+    }
+  }
+
+  private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+    LeveledGZIPOutputStream(OutputStream out, int level) throws IOException {
+      // flushing sends what was compressed so far
+      super(out, BUFFER_SIZE, true);
+      def.setLevel(level);
+    }
+  }
+
+}
@@ -3,39 +3,76 @@ package com.dotmarketing.filters.compression;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.Set;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
+/**
+ * Keeps the headers the compression depends on (there is no way to read them back from the
+ * response), and holds back the Content-Length until it is known whether the body is compressed.
+ */
 public class GZIPResponseWrapper extends HttpServletResponseWrapper {
   protected HttpServletResponse origResponse = null;
-  protected ServletOutputStream stream = null;
+  protected GZIPResponseStream stream = null;
   protected PrintWriter writer = null;
 
-  public GZIPResponseWrapper(HttpServletResponse response) {
+  private final String host;
+  private final String uri;
+  private final int minSize;
+  private final int level;
+  private final int storedLevel;
+  private final Set<String> contentTypes;
+
+  private int status = SC_OK;
+  private String contentType;
+  private String contentEncoding;
+  private String etag;
+  private int contentLength = -1;
+
+  public GZIPResponseWrapper(HttpServletResponse response, String host, String uri, int minSize, int level, int storedLevel, Set<String> contentTypes) {
     super(response);
     origResponse = response;
+    this.host = host;
+    this.uri = uri;
+    this.minSize = minSize;
+    this.level = level;
+    this.storedLevel = storedLevel;
+    this.contentTypes = contentTypes;
   }
 
-  public ServletOutputStream createOutputStream() throws IOException {
-    return (new GZIPResponseStream(origResponse));
+  public GZIPResponseStream createOutputStream() throws IOException {
+    return (new GZIPResponseStream(this, origResponse, minSize));
   }
 
-  public void finishResponse() {
+  /**
+   * Writes what is left of the body
+   *
+   * @param ifNoneMatch ETags the client sent
+   */
+  public void finishResponse(String ifNoneMatch) {
     try {
       if (writer != null) {
         writer.close();
       } else {
         if (stream != null) {
           stream.close();
+        } else if (status == SC_NOT_MODIFIED && etag != null && ifNoneMatch != null
+            && ifNoneMatch.contains(GZIPFilter.ETAG_SUFFIX) && !origResponse.isCommitted()) {
+          // the client holds the gzipped variant
+          origResponse.setHeader("ETag", getVariantETag());
         }
       }
     } catch (IOException e) {}
   }
 
   public void flushBuffer() throws IOException {
-    stream.flush();
+    if (stream != null) {
+      stream.flush();
+    } else {
+      super.flushBuffer();
+    }
   }
 
   public ServletOutputStream getOutputStream() throws IOException {
@@ -62,5 +99,121 @@ public class GZIPResponseWrapper extends HttpServletResponseWrapper {
    return (writer);
   }
 
-  public void setContentLength(int length) {}
+  public void setContentLength(int length) {
+    contentLength = length;
+  }
+
+  public void setContentType(String type) {
+    contentType = type;
+    super.setContentType(type);
+  }
+
+  public void setStatus(int sc) {
+    status = sc;
+    super.setStatus(sc);
+  }
+
+  @SuppressWarnings("deprecation")
+  public void setStatus(int sc, String sm) {
+    status = sc;
+    super.setStatus(sc, sm);
+  }
+
+  public void sendError(int sc) throws IOException {
+    status = sc;
+    super.sendError(sc);
+  }
+
+  public void sendError(int sc, String msg) throws IOException {
+    status = sc;
+    super.sendError(sc, msg);
+  }
+
+  public void sendRedirect(String location) throws IOException {
+    status = SC_MOVED_TEMPORARILY;
+    super.sendRedirect(location);
+  }
+
+  public void setHeader(String name, String value) {
+    if (keepHeader(name, value)) {
+      super.setHeader(name, value);
+    }
+  }
+
+  public void addHeader(String name, String value) {
+    if (keepHeader(name, value)) {
+      super.addHeader(name, value);
+    }
+  }
+
+  public void setIntHeader(String name, int value) {
+    if (keepHeader(name, String.valueOf(value))) {
+      super.setIntHeader(name, value);
+    }
+  }
+
+  public void addIntHeader(String name, int value) {
+    if (keepHeader(name, String.valueOf(value))) {
+      super.addIntHeader(name, value);
+    }
+  }
+
+  /**
+   * Keeps the value of the headers the compression depends on
+   *
+   * @return Whether the header is to be set on the response now
+   */
+  private boolean keepHeader(String name, String value) {
+    if ("Content-Length".equalsIgnoreCase(name)) {
+      try {
+        contentLength = Integer.parseInt(value.trim());
+      } catch (NumberFormatException e) {}
+      return false;
+    }
+    if ("Content-Type".equalsIgnoreCase(name)) {
+      contentType = value;
+    } else if ("Content-Encoding".equalsIgnoreCase(name)) {
+      contentEncoding = value;
+    } else if ("ETag".equalsIgnoreCase(name)) {
+      etag = value;
+    }
+    return true;
+  }
+
+  /**
+   * Tells whether the body is to be compressed, once it is known to be worth it
+   */
+  boolean isCompressible() {
+    if (status != SC_OK || contentEncoding != null || contentType == null) {
+      return false;
+    }
+    String type = contentType;
+    int semicolon = type.indexOf(';');
+    if (semicolon != -1) {
+      type = type.substring(0, semicolon);
+    }
+    return contentTypes.contains(type.trim().toLowerCase());
+  }
+
+  /**
+   * Returns the key the gzipped body is kept under, null if it is not to be kept
+   */
+  String getVariantKey() {
+    return etag != null ? GZIPVariantCache.getKey(host, uri, etag) : null;
+  }
+
+  String getVariantETag() {
+    if (etag.endsWith("\"")) {
+      return etag.substring(0, etag.length() - 1) + GZIPFilter.ETAG_SUFFIX + "\"";
+    }
+    return etag + GZIPFilter.ETAG_SUFFIX;
+  }
+
+  int getContentLength() {
+    return contentLength;
+  }
+
+  int getLevel() {
+    return etag != null ? storedLevel : level;
+  }
 }
@@ -0,0 +1,68 @@
+package com.dotmarketing.filters.compression;
+
+import java.util.concurrent.TimeUnit;
+
+import com.dotcms.repackage.com.google.common.cache.Cache;
+import com.dotcms.repackage.com.google.common.cache.CacheBuilder;
+import com.dotcms.repackage.com.google.common.cache.Weigher;
+import com.dotmarketing.util.Config;
+
+/**
+ * Keeps the gzipped bodies of the responses that carry an ETag (file assets, binary fields,
+ * compiled css), so they are compressed once and sent as they are afterwards. The key holds the
+ * ETag, which changes with the content, so the entries never need to be invalidated.
+ * <p>
+ * The cache is bounded by the size of the bodies (<code>GZIP_CACHE_MAX_MEMORY_MB</code>), least
+ * recently used ones are evicted first. Bodies gzipped to more than <code>GZIP_CACHE_MAX_ENTRY_KB</code>
+ * are not kept.
+ * </p>
+ */
+public class GZIPVariantCache {
+
+  private static final Cache<String, byte[]> variants = CacheBuilder.newBuilder()
+      .maximumWeight(Config.getIntProperty("GZIP_CACHE_MAX_MEMORY_MB", 32) * 1024L * 1024L)
+      .weigher(new Weigher<String, byte[]>() {
+        public int weigh(String key, byte[] value) {
+          return 2 * key.length() + value.length + 64;
+        }
+      })
+      .expireAfterAccess(Config.getIntProperty("GZIP_CACHE_TTL", 86400), TimeUnit.SECONDS)
+      .concurrencyLevel(Config.getIntProperty("cache.concurrencylevel", 32))
+      .build();
+
+  private static final int maxEntrySize = Config.getIntProperty("GZIP_CACHE_MAX_ENTRY_KB", 1024) * 1024;
+
+  private GZIPVariantCache() {
+  }
+
+  /**
+   * Returns the key of the variant of a response
+   *
+   * @param host Host the request was made to
+   * @param uri Request URI, with its query string
+   * @param etag ETag of the uncompressed response
+   */
+  public static String getKey(String host, String uri, String etag) {
+    return host + ":" + uri + ":" + etag;
+  }
+
+  /**
+   * Returns the size of the biggest body kept
+   */
+  public static int getMaxEntrySize() {
+    return maxEntrySize;
+  }
+
+  public static byte[] get(String key) {
+    return variants.getIfPresent(key);
+  }
+
+  public static void put(String key, byte[] gzipped) {
+    variants.put(key, gzipped);
+  }
+
+  public static void clear() {
+    variants.invalidateAll();
+  }
+
+}
@@ -1,13 +1,8 @@
 package com.dotmarketing.image.filter;
 
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 import java.util.Map;
 
-import javax.imageio.ImageIO;
-
-import com.dotmarketing.util.Logger;
 import com.dotcms.repackage.com.dotmarketing.jhlabs.image.HSBAdjustFilter;
 
 public class HsbImageFilter extends ImageFilter {
@@ -22,7 +17,7 @@ public class HsbImageFilter extends ImageFilter {
 		};
 	}
 
-	public File runFilter(File file,  Map<String, String[]> parameters) {
+	public BufferedImage filterImage(BufferedImage src,  Map<String, String[]> parameters) {
 
 		Double h = parameters.get(getPrefix() + "h") != null ? Double.parseDouble(parameters.get(getPrefix()
 				+ "h")[0]) : 0.0;
@@ -31,12 +26,6 @@ public class HsbImageFilter extends ImageFilter {
 		Double b = parameters.get(getPrefix() + "b") != null ? Double.parseDouble(parameters.get(getPrefix()
 				+ "b")[0]) : 0.0;
 		
-		
-		File resultFile = getResultsFile(file, parameters);
-		if (!overwrite(resultFile, parameters)) {
-			return resultFile;
-		}
-
 
 		HSBAdjustFilter filter = new HSBAdjustFilter();
 		filter.setBFactor(b.floatValue());
@@ -44,16 +33,7 @@ public class HsbImageFilter extends ImageFilter {
 		filter.setSFactor(s.floatValue());
 		
 		
-		try {
-			BufferedImage src = ImageIO.read(file);
-
-			BufferedImage dst = filter.filter(src, null);
-			ImageIO.write(dst, "png", resultFile);
-		} catch (IOException e) {
-			Logger.error(this.getClass(), e.getMessage());
-		}
-
-		return resultFile;
+		return filter.filter(src, null);
 	}
 
 }
@@ -0,0 +1,293 @@
+package com.dotmarketing.image.filter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Generates the derivatives of the images (the results of the filter chains, see
+ * {@link ImageFilterPipeline}) kept in the <code>dotGenerated</code> folder of the assets.
+ * <p>
+ * Requests for a derivative being generated wait for it instead of generating it again, and the
+ * derivatives are generated on <code>IMAGE_DERIVATIVE_THREADS</code> threads, the requests over
+ * those waiting in a queue of <code>IMAGE_DERIVATIVE_QUEUE_SIZE</code>. The folder is kept under
+ * <code>IMAGE_DERIVATIVE_MAX_SIZE_MB</code> by a background thread removing the derivatives used
+ * least recently first. The counters are exposed through JMX as
+ * <code>org.dotcms:type=ImageDerivatives</code>.
+ * </p>
+ */
+public class ImageDerivativeService implements ImageDerivativeServiceMBean {
+
+	private static final ImageDerivativeService instance = new ImageDerivativeService();
+
+	private final ThreadPoolExecutor renderers;
+	private final ScheduledExecutorService evictor;
+
+	// derivative path -> its generation
+	private final ConcurrentMap<String, FutureTask<File>> rendering = new ConcurrentHashMap<String, FutureTask<File>>();
+
+	private final long maxSize;
+	private final long touchInterval;
+
+	private final AtomicLong size = new AtomicLong();
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong joined = new AtomicLong();
+	private final AtomicLong renders = new AtomicLong();
+	private final AtomicLong renderNanos = new AtomicLong();
+	private final AtomicLong evicted = new AtomicLong();
+
+	private ImageDerivativeService() {
+		int threads = Math.max(1, Config.getIntProperty("IMAGE_DERIVATIVE_THREADS", Runtime.getRuntime().availableProcessors()));
+		int queueSize = Math.max(1, Config.getIntProperty("IMAGE_DERIVATIVE_QUEUE_SIZE", 1000));
+		this.maxSize = Config.getIntProperty("IMAGE_DERIVATIVE_MAX_SIZE_MB", 2048) * 1024L * 1024L;
+		int interval = Math.max(1, Config.getIntProperty("IMAGE_DERIVATIVE_EVICTION_MINUTES", 10));
+		this.touchInterval = TimeUnit.MINUTES.toMillis(interval);
+
+		// over the queue the requests generate their derivatives themselves
+		this.renderers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(queueSize), new DaemonThreadFactory("ImageDerivative"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		this.evictor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ImageDerivativeEvictor"));
+		if (maxSize > 0) {
+			evictor.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					evict();
+				}
+			}, 1, interval, TimeUnit.MINUTES);
+		}
+	}
+
+	public static ImageDerivativeService getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the result of running the filters on the image, generating it if it was not before
+	 *
+	 * @param file Source image
+	 * @param filters Names of the filters to run, in order
+	 * @param parameters Parameters of the filters
+	 * @return The derivative, or the source image if there is nothing to run or the filters fail
+	 */
+	public File getDerivative(final File file, String[] filters, final Map<String, String[]> parameters) {
+		final ImageFilterPipeline pipeline = new ImageFilterPipeline(filters);
+		final File resultFile = pipeline.getResultFile(file, parameters);
+		if (resultFile == null) {
+			return file;
+		}
+		if (pipeline.isGenerated(resultFile, parameters)) {
+			hits.incrementAndGet();
+			touch(resultFile);
+			return resultFile;
+		}
+
+		String key = resultFile.getPath();
+		FutureTask<File> task = rendering.get(key);
+		if (task == null) {
+			FutureTask<File> created = new FutureTask<File>(new Callable<File>() {
+				public File call() {
+					return render(pipeline, file, resultFile, parameters);
+				}
+			});
+			task = rendering.putIfAbsent(key, created);
+			if (task == null) {
+				task = created;
+				misses.incrementAndGet();
+				renderers.execute(created);
+			} else {
+				joined.incrementAndGet();
+			}
+		} else {
+			joined.incrementAndGet();
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			Logger.warn(this, "Interrupted waiting for " + resultFile.getName());
+		} catch (ExecutionException e) {
+			Logger.error(this, "Unable to generate " + resultFile.getName() + ": " + e.getCause().getMessage(), e.getCause());
+		}
+		return file;
+	}
+
+	private File render(ImageFilterPipeline pipeline, File file, File resultFile, Map<String, String[]> parameters) {
+		long start = System.nanoTime();
+		try {
+			File result = pipeline.run(file, parameters);
+			if (result.equals(resultFile)) {
+				size.addAndGet(result.length());
+			}
+			return result;
+		} finally {
+			rendering.remove(resultFile.getPath());
+			renders.incrementAndGet();
+			renderNanos.addAndGet(System.nanoTime() - start);
+			if (maxSize > 0 && size.get() > maxSize && !evicting.get()) {
+				evictor.execute(new Runnable() {
+					public void run() {
+						evict();
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Marks the derivative as used, once per eviction interval at most
+	 */
+	private void touch(File derivative) {
+		long now = System.currentTimeMillis();
+		if (now - derivative.lastModified() > touchInterval) {
+			derivative.setLastModified(now);
+		}
+	}
+
+	/**
+	 * Removes the derivatives used least recently until the folder is back to 90% of its size
+	 */
+	public void evict() {
+		if (!evicting.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			List<File> derivatives = new ArrayList<File>();
+			long total = collect(new File(APILocator.getFileAPI().getRealAssetPath() + File.separator + "dotGenerated"), derivatives, 0);
+			size.set(total);
+			if (maxSize <= 0 || total <= maxSize) {
+				return;
+			}
+
+			final long now = System.currentTimeMillis();
+			// the requests keep touching them, so the order is taken once
+			final Map<File, Long> used = new HashMap<File, Long>();
+			for (File derivative : derivatives) {
+				used.put(derivative, derivative.lastModified());
+			}
+			Collections.sort(derivatives, new Comparator<File>() {
+				public int compare(File f1, File f2) {
+					return used.get(f1).compareTo(used.get(f2));
+				}
+			});
+			long target = maxSize / 10 * 9;
+			int removed = 0;
+			for (File derivative : derivatives) {
+				if (total <= target) {
+					break;
+				}
+				// being written
+				if (derivative.getName().endsWith(".tmp") && now - used.get(derivative) < touchInterval) {
+					continue;
+				}
+				long length = derivative.length();
+				if (derivative.delete()) {
+					total -= length;
+					removed++;
+				}
+			}
+			size.set(total);
+			evicted.addAndGet(removed);
+			Logger.info(this, "Removed " + removed + " image derivatives, " + total + " bytes left in dotGenerated");
+		} catch (Exception e) {
+			Logger.error(this, "Unable to evict image derivatives: " + e.getMessage(), e);
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	private long collect(File dir, List<File> derivatives, long total) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return total;
+		}
+		for (File file : files) {
+			if (file.isDirectory()) {
+				total = collect(file, derivatives, total);
+			} else {
+				derivatives.add(file);
+				total += file.length();
+			}
+		}
+		return total;
+	}
+
+	public int getQueueDepth() {
+		return renderers.getQueue().size();
+	}
+
+	public int getActiveRenders() {
+		return renderers.getActiveCount();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getJoined() {
+		return joined.get();
+	}
+
+	public long getRenders() {
+		return renders.get();
+	}
+
+	public long getAverageRenderMillis() {
+		long count = renders.get();
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(renderNanos.get() / count);
+	}
+
+	public long getGeneratedSize() {
+		return size.get();
+	}
+
+	public long getEvicted() {
+		return evicted.get();
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+
+		private final String name;
+		private final AtomicInteger count = new AtomicInteger();
+
+		DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.dotmarketing.image.filter;
+
+public interface ImageDerivativeServiceMBean {
+
+	public abstract int getQueueDepth();
+
+	public abstract int getActiveRenders();
+
+	public abstract long getHits();
+
+	public abstract long getMisses();
+
+	public abstract long getJoined();
+
+	public abstract long getRenders();
+
+	public abstract long getAverageRenderMillis();
+
+	public abstract long getGeneratedSize();
+
+	public abstract long getEvicted();
+
+	public abstract void evict();
+
+}
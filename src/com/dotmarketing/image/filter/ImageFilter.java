@@ -1,5 +1,7 @@
 package com.dotmarketing.image.filter;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.security.MessageDigest;
@@ -10,6 +12,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.imageio.ImageIO;
+
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.DotStateException;
 import com.dotmarketing.exception.DotRuntimeException;
@@ -38,6 +42,7 @@ public abstract class ImageFilter implements ImageFilterIf {
 			StringBuilder sb = new StringBuilder();
 			Iterator<Entry<String, String[]>> it = parameters.entrySet().iterator();
 
+			// the whole chain, as the filters run in memory and only its result is kept
 			String[] filters = parameters.get("filter")[0].split(",");
 			List<String> acceptFilter = new ArrayList<String>();
 			String thisFilter="";
@@ -47,7 +52,6 @@ public abstract class ImageFilter implements ImageFilterIf {
 				sb.append(x + ":");
 				if (x.toLowerCase().equals(getFilterName())) {
 					thisFilter=getFilterName();
-					break;
 				}
 			}
 
@@ -108,6 +112,59 @@ public abstract class ImageFilter implements ImageFilterIf {
 		return buf.toString();
 	}
 
+	/**
+	 * Runs the filter on the image in memory
+	 * 
+	 * @param src
+	 * @param parameters
+	 * @return The filtered image, src itself if the parameters leave it as it is
+	 */
+	public abstract BufferedImage filterImage(BufferedImage src, Map<String, String[]> parameters);
+
+	/**
+	 * Runs the filter on the file, writing the result next to the other generated files
+	 */
+	public File runFilter(File file, Map<String, String[]> parameters) {
+		File resultFile = getResultsFile(file, parameters, getFileExtension());
+		if (!overwrite(resultFile, parameters)) {
+			return resultFile;
+		}
+		try {
+			BufferedImage src = ImageIO.read(file);
+			BufferedImage dst = filterImage(src, parameters);
+			if (dst == src) {
+				return file;
+			}
+			resultFile.delete();
+			writeImage(dst, resultFile, parameters);
+		} catch (IOException e) {
+			Logger.error(this.getClass(), e.getMessage());
+		}
+		return resultFile;
+	}
+
+	/**
+	 * Returns the size the filter turns an image of the given size into, null unless it is only
+	 * scaled. Lets a chain starting with this filter read large images subsampled
+	 */
+	public Dimension getTargetSize(int width, int height, Map<String, String[]> parameters) {
+		return null;
+	}
+
+	/**
+	 * Extension of the files written by {@link #writeImage(BufferedImage, File, Map)}
+	 */
+	public String getFileExtension() {
+		return FILE_EXT;
+	}
+
+	/**
+	 * Encodes the image in the format of the filter
+	 */
+	public void writeImage(BufferedImage image, File file, Map<String, String[]> parameters) throws IOException {
+		ImageIO.write(image, FILE_EXT, file);
+	}
+
 	protected String getFilterName() {
 		return this.getClass().getSimpleName().replaceAll("ImageFilter", "").toLowerCase();
 	}
@@ -0,0 +1,201 @@
+package com.dotmarketing.image.filter;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.dotmarketing.util.Logger;
+
+/**
+ * Runs a chain of filters on an image in memory: the image is decoded once, goes through every
+ * filter and only the result is encoded and kept, in the format of the last filter. When the chain
+ * starts by scaling the image down, the image is read subsampled, at no less than twice the size
+ * the filter needs.
+ * <p>
+ * The filters are looked up by name (<code>Resize</code>, <code>Crop</code>...) in a registry
+ * holding one instance of each, as they keep no state.
+ * </p>
+ */
+public class ImageFilterPipeline {
+
+	private static final Map<String, ImageFilter> filters = new ConcurrentHashMap<String, ImageFilter>();
+
+	static {
+		register(new CropImageFilter());
+		register(new ExposureImageFilter());
+		register(new FlipImageFilter());
+		register(new GammaImageFilter());
+		register(new GifImageFilter());
+		register(new GrayscaleImageFilter());
+		register(new HsbImageFilter());
+		register(new JpegImageFilter());
+		register(new PngImageFilter());
+		register(new ResizeImageFilter());
+		register(new RotateImageFilter());
+		register(new ScaleImageFilter());
+		register(new ThumbnailImageFilter());
+	}
+
+	private final List<ImageFilter> chain;
+
+	/**
+	 * @param names Names of the filters to run, in order. Unknown ones are left out
+	 */
+	public ImageFilterPipeline(String[] names) {
+		this.chain = new ArrayList<ImageFilter>(names.length);
+		for (String name : names) {
+			ImageFilter filter = getFilter(name.trim());
+			if (filter != null) {
+				chain.add(filter);
+			} else {
+				Logger.error(ImageFilterPipeline.class, "Unable to find the image filter : " + name);
+			}
+		}
+	}
+
+	/**
+	 * Adds a filter to the registry, under its name
+	 */
+	public static void register(ImageFilter filter) {
+		filters.put(filter.getFilterName(), filter);
+	}
+
+	/**
+	 * Returns the filter with the given name, null if there is none
+	 */
+	public static ImageFilter getFilter(String name) {
+		ImageFilter filter = filters.get(name.toLowerCase());
+		if (filter == null) {
+			// filters added to the package after the registry
+			try {
+				Class<?> clazz = Class.forName("com.dotmarketing.image.filter." + name + "ImageFilter");
+				if (ImageFilter.class.isAssignableFrom(clazz)) {
+					filter = (ImageFilter) clazz.newInstance();
+					register(filter);
+				}
+			} catch (Exception e) {
+				Logger.debug(ImageFilterPipeline.class, "No image filter " + name + ": " + e.getMessage());
+			}
+		}
+		return filter;
+	}
+
+	/**
+	 * Runs the chain on the image, unless its result was generated before
+	 *
+	 * @param file
+	 * @param parameters
+	 * @return The generated image, or the given one if there is nothing to run or the chain fails
+	 */
+	public File run(File file, Map<String, String[]> parameters) {
+		File resultFile = getResultFile(file, parameters);
+		if (resultFile == null) {
+			return file;
+		}
+		if (isGenerated(resultFile, parameters)) {
+			return resultFile;
+		}
+		ImageFilter last = chain.get(chain.size() - 1);
+
+		try {
+			BufferedImage src = read(file, chain.get(0), parameters);
+			if (src == null) {
+				Logger.error(ImageFilterPipeline.class, "Unable to read the image " + file.getName());
+				return file;
+			}
+			BufferedImage image = src;
+			for (ImageFilter filter : chain) {
+				try {
+					image = filter.filterImage(image, parameters);
+				} catch (Exception e) {
+					Logger.error(ImageFilterPipeline.class, "Exception in " + filter.getClass().getName() + " :" + e.getMessage());
+				}
+			}
+			if (image == src) {
+				// the parameters leave the image as it is
+				return file;
+			}
+
+			// written aside, so no request serves it half written
+			File temp = new File(resultFile.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+			try {
+				last.writeImage(image, temp, parameters);
+				resultFile.delete();
+				if (!temp.renameTo(resultFile)) {
+					throw new IOException("Unable to rename " + temp.getName() + " to " + resultFile.getName());
+				}
+			} finally {
+				temp.delete();
+			}
+			return resultFile;
+		} catch (IOException e) {
+			Logger.error(ImageFilterPipeline.class, "Unable to filter " + file.getName() + ": " + e.getMessage(), e);
+			return file;
+		}
+	}
+
+	/**
+	 * Returns the file the result of the chain is kept in, null if there is nothing to run
+	 */
+	public File getResultFile(File file, Map<String, String[]> parameters) {
+		if (chain.isEmpty()) {
+			return null;
+		}
+		ImageFilter last = chain.get(chain.size() - 1);
+		return last.getResultsFile(file, parameters, last.getFileExtension());
+	}
+
+	/**
+	 * Tells whether the result was generated before and can be served as it is
+	 */
+	public boolean isGenerated(File resultFile, Map<String, String[]> parameters) {
+		return !chain.get(chain.size() - 1).overwrite(resultFile, parameters);
+	}
+
+	/**
+	 * Decodes the image, subsampled if the first filter only needs it smaller
+	 */
+	private BufferedImage read(File file, ImageFilter first, Map<String, String[]> parameters) throws IOException {
+		ImageInputStream input = ImageIO.createImageInputStream(file);
+		if (input == null) {
+			return null;
+		}
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if (!readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				Dimension target = first.getTargetSize(width, height, parameters);
+				if (target != null && target.width > 0 && target.height > 0) {
+					int subsampling = Math.min(width / (target.width * 2), height / (target.height * 2));
+					if (subsampling > 1) {
+						param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+					}
+				}
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+}
@@ -1,15 +1,11 @@
 package com.dotmarketing.image.filter;
 
 import java.awt.Color;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.util.Map;
 
 import com.dotmarketing.util.ImageResizeUtils;
-import com.dotmarketing.util.Logger;
 
 public class ThumbnailImageFilter extends ImageFilter {
 	public String[] getAcceptedParameters() {
@@ -19,7 +15,7 @@ public class ThumbnailImageFilter extends ImageFilter {
 		};
 	}
 
-	public File runFilter(File file,  Map<String, String[]> parameters) {
+	public BufferedImage filterImage(BufferedImage src,  Map<String, String[]> parameters) {
 
 		int height = parameters.get(getPrefix() + "h") != null ? Integer.parseInt(parameters.get(getPrefix() + "h")[0])
 				: 0;
@@ -29,35 +25,23 @@ public class ThumbnailImageFilter extends ImageFilter {
 		Color color = new Color(Integer.parseInt(rgb.substring(0, 3)), Integer.parseInt(rgb.substring(3, 6)),
 				Integer.parseInt(rgb.substring(6)));
 
-		File resultFile = getResultsFile(file, parameters);
+		return ImageResizeUtils.generateThumbnail(src, width, height, color);
 
-		if (!overwrite(resultFile, parameters)) {
-			return resultFile;
-		}
+	}
 
-		FileOutputStream fos = null;
-		try {
-			resultFile.delete();
-			fos = new FileOutputStream(resultFile);
-			ImageResizeUtils.generateThumbnail(new FileInputStream(file), fos, FILE_EXT, width, height, color);
-		} catch (FileNotFoundException e) {
-			Logger.error(this.getClass(), e.getMessage());
-		} catch (IOException e) {
-			Logger.error(this.getClass(), e.getMessage());
-		} catch (InterruptedException e) {
-			Logger.error(this.getClass(), e.getMessage());
-		} finally {
-			if (fos != null) {
-				try {
-					fos.close();
-				} catch (IOException e) {
-					Logger.error(this.getClass(), "should not be here");
-				}
-			}
+	public Dimension getTargetSize(int width, int height, Map<String, String[]> parameters) {
+		int h = parameters.get(getPrefix() + "h") != null ? Integer.parseInt(parameters.get(getPrefix() + "h")[0]) : 0;
+		int w = parameters.get(getPrefix() + "w") != null ? Integer.parseInt(parameters.get(getPrefix() + "w")[0]) : 0;
+		if (h <= 0 && w <= 0) {
+			h = ImageResizeUtils.DEFAULT_HEIGHT;
+			w = ImageResizeUtils.DEFAULT_WIDTH;
 		}
-
-		return resultFile;
-
+		// the image fits in the thumbnail, so the side it fills is the one to keep
+		double ratio = (double) width / (double) height;
+		if (w <= 0 || (h > 0 && h * ratio < w)) {
+			return new Dimension((int) Math.ceil(h * ratio), h);
+		}
+		return new Dimension(w, (int) Math.ceil(w / ratio));
 	}
 
 }
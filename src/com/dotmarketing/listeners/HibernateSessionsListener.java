@@ -22,7 +22,7 @@ public class HibernateSessionsListener implements ServletRequestListener {
 		} catch (DotHibernateException e) {
 			Logger.debug(this, e.getMessage(),e);
 		}
-		DbConnectionFactory.closeConnection();
+		DbConnectionFactory.closeLeakedConnections();
 		if(Config.getBooleanProperty("ENABLE_SCRIPTING", false)){
 			BSFUtil.getInstance().terminateThreadLocalManager();
 		}
@@ -5,7 +5,6 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.text.ParseException;
@@ -29,7 +28,6 @@ import com.dotcms.content.elasticsearch.business.ESIndexAPI;
 import com.dotcms.content.elasticsearch.business.IndiciesAPI.IndiciesInfo;
 import com.dotcms.repackage.com.thoughtworks.xstream.XStream;
 import com.dotcms.repackage.com.thoughtworks.xstream.io.xml.DomDriver;
-import com.dotcms.repackage.com.thoughtworks.xstream.mapper.Mapper;
 import com.dotcms.repackage.javax.portlet.ActionRequest;
 import com.dotcms.repackage.javax.portlet.ActionResponse;
 import com.dotcms.repackage.javax.portlet.PortletConfig;
@@ -44,9 +42,7 @@ import com.dotcms.repackage.org.apache.struts.action.ActionMapping;
 import com.dotmarketing.beans.Clickstream;
 import com.dotmarketing.beans.Clickstream404;
 import com.dotmarketing.beans.ClickstreamRequest;
-import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.beans.Inode;
-import com.dotmarketing.beans.MultiTree;
 import com.dotmarketing.beans.PermissionReference;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.CacheLocator;
@@ -59,24 +55,18 @@ import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotSecurityException;
 import com.dotmarketing.portal.struts.DotPortletAction;
-import com.dotmarketing.portlets.calendar.model.CalendarReminder;
 import com.dotmarketing.portlets.cmsmaintenance.factories.CMSMaintenanceFactory;
 import com.dotmarketing.portlets.cmsmaintenance.struts.CmsMaintenanceForm;
 import com.dotmarketing.portlets.cmsmaintenance.util.AssetFileNameFilter;
+import com.dotmarketing.portlets.cmsmaintenance.util.BackupExporter;
 import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
 import com.dotmarketing.portlets.contentlet.business.DotReindexStateException;
-import com.dotmarketing.portlets.dashboard.model.DashboardSummary404;
-import com.dotmarketing.portlets.dashboard.model.DashboardUserPreferences;
 import com.dotmarketing.portlets.structure.factories.StructureFactory;
 import com.dotmarketing.portlets.structure.model.Structure;
 import com.dotmarketing.portlets.workflows.util.WorkflowImportExportUtil;
-import com.dotmarketing.tag.model.Tag;
-import com.dotmarketing.tag.model.TagInode;
 import com.dotmarketing.util.AdminLogger;
 import com.dotmarketing.util.Config;
 import com.dotmarketing.util.ConfigUtils;
-import com.dotmarketing.util.HibernateCollectionConverter;
-import com.dotmarketing.util.HibernateMapConverter;
 import com.dotmarketing.util.ImportExportUtil;
 import com.dotmarketing.util.InodeUtils;
 import com.dotmarketing.util.Logger;
@@ -277,13 +267,12 @@ public class ViewCMSMaintenanceAction extends DotPortletAction {
 					moveAssetsToBackupDir();
 				}
 				message = "Creating XML Files. ";
-				createXMLFiles();
 				String x = UtilMethods.dateToJDBC(new Date()).replace(':', '-').replace(' ', '_');
 				File zipFile = new File(backupFilePath + "/backup_" + x + "_.zip");
 				message +="Zipping up to file:" + zipFile.getAbsolutePath();
-				BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(zipFile));
-
-				zipTempDirectoryToStream(bout);
+				ZipOutputStream zout = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
+				createXMLFiles(zout);
+				zipTempDirectoryToStream(zout);
 				message +=". Done.";
 
 //			}else if(cmd.equals("wipeOutDotCMSDatabase")) {
@@ -306,9 +295,9 @@ public class ViewCMSMaintenanceAction extends DotPortletAction {
 					moveAssetsToBackupDir();
 				}
 
-				createXMLFiles();
-
-				zipTempDirectoryToStream(httpResponse.getOutputStream());
+				ZipOutputStream zout = new ZipOutputStream(httpResponse.getOutputStream());
+				createXMLFiles(zout);
+				zipTempDirectoryToStream(zout);
 
 			}else if(cmd.equals("upload")) {
 
@@ -543,15 +532,17 @@ public class ViewCMSMaintenanceAction extends DotPortletAction {
 
 	/**
 	 * This method will pull a list of all tables /classed being managed by
-	 * hibernate and export them, one class per file to the backupTempFilePath
-	 * as valid XML. It uses XStream to write the xml out to the files.
+	 * hibernate and export them to the backup zip, in pages of records, as
+	 * valid XML (see {@link BackupExporter}). The rest of the data is written
+	 * to the backupTempFilePath. It uses XStream to write the xml out to the files.
 	 *
+	 * @param zout The backup zip
 	 * @throws ServletException
 	 * @throws IOException
 	 * @author Will
 	 * @throws DotDataException
 	 */
-	private void createXMLFiles() throws ServletException, IOException, DotDataException {
+	private void createXMLFiles(ZipOutputStream zout) throws ServletException, IOException, DotDataException {
 
 //		deleteTempFiles();
 
@@ -566,116 +557,20 @@ public class ViewCMSMaintenanceAction extends DotPortletAction {
 			while (it.hasNext()) {
 				Map.Entry pairs = (Map.Entry) it.next();
 				Class x = (Class) pairs.getKey();
-				if (!x.equals(Inode.class) && !x.equals(Clickstream.class) && !x.equals(ClickstreamRequest.class) && !x.equals(Clickstream404.class))
+				//http://jira.dotmarketing.net/browse/DOTCMS-5031
+				if (!x.equals(Inode.class) && !x.equals(Clickstream.class) && !x.equals(ClickstreamRequest.class) && !x.equals(Clickstream404.class)
+						&& !x.equals(PermissionReference.class))
 					_tablesToDump.add(x);
 
 			}
+			/* the tables go straight into the zip */
+			new BackupExporter(zout).exportTables(_tablesToDump);
+
 			XStream _xstream = null;
-			HibernateUtil _dh = null;
 			List _list = null;
 			File _writing = null;
 			BufferedOutputStream _bout = null;
 
-			for (Class clazz : _tablesToDump) {
-				//http://jira.dotmarketing.net/browse/DOTCMS-5031
-                if(PermissionReference.class.equals(clazz)){
-                	continue;
-                }
-
-				_xstream = new XStream(new DomDriver());
-
-				//http://jira.dotmarketing.net/browse/DOTCMS-6059
-				if(clazz.equals(DashboardSummary404.class) || clazz.equals(DashboardUserPreferences.class)){
-					_xstream.addDefaultImplementation(com.dotcms.repackage.net.sf.hibernate.collection.Set.class, java.util.Set.class);
-					_xstream.addDefaultImplementation(com.dotcms.repackage.net.sf.hibernate.collection.List.class, java.util.List.class);
-					_xstream.addDefaultImplementation(com.dotcms.repackage.net.sf.hibernate.collection.Map.class, java.util.Map.class);
-					Mapper mapper = _xstream.getMapper();
-					_xstream.registerConverter(new HibernateCollectionConverter(mapper));
-					_xstream.registerConverter(new HibernateMapConverter(mapper));
-				}
-
-				/*
-				 * String _shortClassName =
-				 * clazz.getName().substring(clazz.getName().lastIndexOf("."),clazz.getName().length());
-				 * xstream.alias(_shortClassName, clazz);
-				 */
-				int i= 0;
-				int step = 1000;
-				int total =0;
-				java.text.NumberFormat formatter = new java.text.DecimalFormat("0000000000");
-				/* we will only export 10,000,000 items of any given type */
-				for(i=0;i < 10000000;i=i+step){
-
-                    _dh = new HibernateUtil(clazz);
-                    _dh.setFirstResult(i);
-                    _dh.setMaxResults(step);
-
-                    //This line was previously like;
-                    //_dh.setQuery("from " + clazz.getName() + " order by 1,2");
-                    //This caused a problem when the database is Oracle because Oracle causes problems when the results are ordered
-                    //by an NCLOB field. In the case of containers table, the second field, CODE, is an NCLOB field. Because of this,
-                    //ordering is done only on the first field for the tables, which is INODE
-                    if(com.dotmarketing.beans.Tree.class.equals(clazz)){
-                    	_dh.setQuery("from " + clazz.getName() + " order by parent, child, relation_type");
-                    }
-                    else if(MultiTree.class.equals(clazz)){
-                    	_dh.setQuery("from " + clazz.getName() + " order by parent1, parent2, child, relation_type");
-                    }
-                    else if(TagInode.class.equals(clazz)){
-                    	_dh.setQuery("from " + clazz.getName() + " order by inode, tag_id");
-                    }
-                    else if(Tag.class.equals(clazz)){
-                    	_dh.setQuery("from " + clazz.getName() + " order by tag_id, tagname");
-                    }
-                    else if(CalendarReminder.class.equals(clazz)){
-                    	_dh.setQuery("from " + clazz.getName() + " order by user_id, event_id, send_date");
-                    } 
-                    else if(Identifier.class.equals(clazz)){
-                    	_dh.setQuery("from " + clazz.getName() + " order by parent_path, id");
-                    } else {
-                    	_dh.setQuery("from " + clazz.getName() + " order by 1");
-                    }
-
-                    _list = _dh.list();
-                    if(_list.size() ==0){
-                        try {
-                        _bout.close();
-                        }
-                        catch( java.lang.NullPointerException npe){}
-                        _list = null;
-                        _dh = null;
-                        _bout = null;
-
-                        break;
-                    }
-
-                    if(_list != null && _list.size() > 0 && _list.get(0) instanceof Comparable){
-                    	java.util.Collections.sort(_list);
-                    }
-
-    				_writing = new File(backupTempFilePath + "/" + clazz.getName() + "_" + formatter.format(i) + ".xml");
-    				_bout = new BufferedOutputStream(new FileOutputStream(_writing));
-
-    				total = total + _list.size();
-
-    				try {
-                        Thread.sleep(10);
-                    } catch (InterruptedException e) {
-                    	Logger.warn(this, "An error ocurred trying to create XML files");
-                        Logger.error(this,e.getMessage(),e);
-                    }
-
-    				_xstream.toXML(_list, _bout);
-
-    				_bout.close();
-    				_list = null;
-    				_dh = null;
-    				_bout = null;
-
-				}
-				Logger.info(this, "writing : " + total + " records for " + clazz.getName());
-			}
-
 			/* Run Liferay's Tables */
 			/* Companies */
 			_list = PublicCompanyFactory.getCompanies();
@@ -913,17 +808,14 @@ public class ViewCMSMaintenanceAction extends DotPortletAction {
 	}
 
 	/**
-	 * Will zip up all files in the tmp directory and send the result to the
-	 * given OutputStream
+	 * Will zip up all files in the tmp directory to the given zip and close it
 	 *
-	 * @param out
-	 *            OutputStream to write the zip files to
+	 * @param zout
+	 *            Zip to write the files to
 	 * @throws IOException
 	 * @author Will
 	 */
-	private void zipTempDirectoryToStream(OutputStream out) throws IOException {
-		byte b[] = new byte[512];
-		ZipOutputStream zout = new ZipOutputStream(out);
+	private void zipTempDirectoryToStream(ZipOutputStream zout) throws IOException {
 		ZipUtil.zipDirectory(backupTempFilePath, zout);
 //		File f = new File(backupTempFilePath);
 //		String[] s = f.list();
@@ -948,7 +840,6 @@ public class ViewCMSMaintenanceAction extends DotPortletAction {
 //			in.close();
 //		}
 		zout.close();
-		out.close();
 	}
 
 	/**
@@ -5,7 +5,6 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -28,14 +27,11 @@ import com.dotcms.content.elasticsearch.business.ESIndexAPI;
 import com.dotcms.content.elasticsearch.util.ESReindexationProcessStatus;
 import com.dotcms.repackage.com.thoughtworks.xstream.XStream;
 import com.dotcms.repackage.com.thoughtworks.xstream.io.xml.DomDriver;
-import com.dotcms.repackage.com.thoughtworks.xstream.mapper.Mapper;
 import com.dotcms.repackage.net.sf.hibernate.HibernateException;
 import com.dotcms.repackage.org.directwebremoting.WebContextFactory;
 import com.dotmarketing.beans.Clickstream;
 import com.dotmarketing.beans.ClickstreamRequest;
-import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.beans.Inode;
-import com.dotmarketing.beans.MultiTree;
 import com.dotmarketing.beans.PermissionReference;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.CacheLocator;
@@ -50,26 +46,15 @@ import com.dotmarketing.exception.DotSecurityException;
 import com.dotmarketing.fixtask.FixTasksExecutor;
 import com.dotmarketing.plugin.model.Plugin;
 import com.dotmarketing.plugin.model.PluginProperty;
-import com.dotmarketing.portlets.calendar.model.CalendarReminder;
 import com.dotmarketing.portlets.cmsmaintenance.factories.CMSMaintenanceFactory;
 import com.dotmarketing.portlets.cmsmaintenance.util.AssetFileNameFilter;
 import com.dotmarketing.portlets.cmsmaintenance.util.CleanAssetsThread;
 import com.dotmarketing.portlets.cmsmaintenance.util.CleanAssetsThread.BasicProcessStatus;
-import com.dotmarketing.portlets.containers.model.ContainerVersionInfo;
 import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
 import com.dotmarketing.portlets.contentlet.model.Contentlet;
-import com.dotmarketing.portlets.dashboard.model.DashboardSummary404;
-import com.dotmarketing.portlets.dashboard.model.DashboardUserPreferences;
-import com.dotmarketing.portlets.files.model.FileAssetVersionInfo;
-import com.dotmarketing.portlets.htmlpages.model.HTMLPageVersionInfo;
-import com.dotmarketing.portlets.links.model.LinkVersionInfo;
 import com.dotmarketing.portlets.structure.model.Structure;
-import com.dotmarketing.portlets.templates.model.TemplateVersionInfo;
 import com.dotmarketing.portlets.workflows.util.WorkflowImportExportUtil;
-import com.dotmarketing.tag.model.TagInode;
 import com.dotmarketing.util.ConfigUtils;
-import com.dotmarketing.util.HibernateCollectionConverter;
-import com.dotmarketing.util.HibernateMapConverter;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.MaintenanceUtil;
 import com.dotmarketing.util.UtilMethods;
@@ -319,13 +304,13 @@ public class CMSMaintenanceAjax {
 					moveAssetsToBackupDir();
 				}
 				message = "Creating XML Files. ";
-				createXMLFiles();
 				String x = UtilMethods.dateToJDBC(new Date()).replace(':', '-').replace(' ', '_');
 				File zipFile = new File(backupFilePath + "/backup_" + x + "_.zip");
 				message +="Zipping up to file:" + zipFile.getAbsolutePath();
-				BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(zipFile));
+				ZipOutputStream zout = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
 				Logger.info(this, "Creating zipped backup file in "+ backupFilePath + " folder. Please wait");
-				zipTempDirectoryToStream(bout);
+				createXMLFiles(zout);
+				zipTempDirectoryToStream(zout);
 				message +=". Done.";
 				Logger.info(this, "Backup file was created in " +zipFile.getAbsolutePath());
 
@@ -399,9 +384,11 @@ public class CMSMaintenanceAjax {
 
 		/**
 		 * This method will pull a list of all tables /classed being managed by
-		 * hibernate and export them, one class per file to the backupTempFilePath
-		 * as valid XML. It uses XStream to write the xml out to the files.
+		 * hibernate and export them to the backup zip, in pages of records, as
+		 * valid XML (see {@link BackupExporter}). The rest of the data is written
+		 * to the backupTempFilePath. It uses XStream to write the xml out to the files.
 		 *
+		 * @param zout The backup zip
 		 * @throws ServletException
 		 * @throws IOException
 		 * @author Will
@@ -409,7 +396,7 @@ public class CMSMaintenanceAjax {
 		 * @throws DotCacheException
 		 */
 		@SuppressWarnings("unchecked")
-		public void createXMLFiles() throws ServletException, IOException, DotDataException {
+		public void createXMLFiles(ZipOutputStream zout) throws ServletException, IOException, DotDataException {
 			validateUser();
 	//		deleteTempFiles();
 
@@ -424,133 +411,20 @@ public class CMSMaintenanceAjax {
 				while (it.hasNext()) {
 					Map.Entry pairs = (Map.Entry) it.next();
 					Class x = (Class) pairs.getKey();
+					//http://jira.dotmarketing.net/browse/DOTCMS-5031
 					if (!x.equals(Inode.class) && !x.equals(Clickstream.class) && !x.equals(ClickstreamRequest.class)
-					        && !x.equals(Plugin.class) && !x.equals(PluginProperty.class))
+					        && !x.equals(Plugin.class) && !x.equals(PluginProperty.class) && !x.equals(PermissionReference.class))
 						_tablesToDump.add(x);
 
 				}
+				/* the tables go straight into the zip */
+				new BackupExporter(zout).exportTables(_tablesToDump);
+
 				XStream _xstream = null;
-				HibernateUtil _dh = null;
 				List _list = null;
 				File _writing = null;
 				BufferedOutputStream _bout = null;
 
-				for (Class clazz : _tablesToDump) {
-					//http://jira.dotmarketing.net/browse/DOTCMS-5031
-	                if(PermissionReference.class.equals(clazz)){
-	                	continue;
-	                }
-
-	                if(com.dotmarketing.portlets.contentlet.business.Contentlet.class.equals(clazz)){
-	                	Logger.debug(this, "Processing contentlets. This will take a little bit longer...");
-	                }
-
-					_xstream = new XStream(new DomDriver());
-
-					//http://jira.dotmarketing.net/browse/DOTCMS-6059
-					if(clazz.equals(DashboardSummary404.class) || clazz.equals(DashboardUserPreferences.class)){
-						_xstream.addDefaultImplementation(com.dotcms.repackage.net.sf.hibernate.collection.Set.class, java.util.Set.class);
-						_xstream.addDefaultImplementation(com.dotcms.repackage.net.sf.hibernate.collection.List.class, java.util.List.class);
-						_xstream.addDefaultImplementation(com.dotcms.repackage.net.sf.hibernate.collection.Map.class, java.util.Map.class);
-						Mapper mapper = _xstream.getMapper();
-						_xstream.registerConverter(new HibernateCollectionConverter(mapper));
-						_xstream.registerConverter(new HibernateMapConverter(mapper));
-					}
-
-					/*
-					 * String _shortClassName =
-					 * clazz.getName().substring(clazz.getName().lastIndexOf("."),clazz.getName().length());
-					 * xstream.alias(_shortClassName, clazz);
-					 */
-					int i= 0;
-					int step = 1000;
-					int total =0;
-					java.text.NumberFormat formatter = new java.text.DecimalFormat("0000000000");
-					/* we will only export 10,000,000 items of any given type */
-					for(i=0;i < 10000000;i=i+step){
-
-	                    _dh = new HibernateUtil(clazz);
-	                    _dh.setFirstResult(i);
-	                    _dh.setMaxResults(step);
-
-	                    //This line was previously like;
-	                    //_dh.setQuery("from " + clazz.getName() + " order by 1,2");
-	                    //This caused a problem when the database is Oracle because Oracle causes problems when the results are ordered
-	                    //by an NCLOB field. In the case of containers table, the second field, CODE, is an NCLOB field. Because of this,
-	                    //ordering is done only on the first field for the tables, which is INODE
-	                    if(com.dotmarketing.beans.Tree.class.equals(clazz)){
-	                    	_dh.setQuery("from " + clazz.getName() + " order by parent, child, relation_type");
-	                    }
-	                    else if(MultiTree.class.equals(clazz)){
-	                    	_dh.setQuery("from " + clazz.getName() + " order by parent1, parent2, child, relation_type");
-	                    }
-	                    else if(TagInode.class.equals(clazz)){
-	                    	_dh.setQuery("from " + clazz.getName() + " order by inode, tag_id");
-	                    }
-	                    else if(FileAssetVersionInfo.class.equals(clazz)){
-	                    	_dh.setSQLQuery("SELECT {fileasset_version_info.*} from fileasset_version_info fileasset_version_info, identifier where identifier.id = fileasset_version_info.identifier order by fileasset_version_info.identifier ");
-	                    }
-	                    else if(TemplateVersionInfo.class.equals(clazz)){
-	                    	_dh.setSQLQuery("SELECT {template_version_info.*} from template_version_info template_version_info, identifier where identifier.id = template_version_info.identifier order by template_version_info.identifier ");
-	                    }
-	                    else if(ContainerVersionInfo.class.equals(clazz)){
-	                    	_dh.setSQLQuery("SELECT {container_version_info.*} from container_version_info container_version_info, identifier where identifier.id = container_version_info.identifier order by container_version_info.identifier ");
-	                    }
-	                    else if(HTMLPageVersionInfo.class.equals(clazz)){
-	                    	_dh.setSQLQuery("SELECT {htmlpage_version_info.*} from htmlpage_version_info htmlpage_version_info, identifier where identifier.id = htmlpage_version_info.identifier order by htmlpage_version_info.identifier ");
-	                    }
-	                    else if(LinkVersionInfo.class.equals(clazz)){
-	                    	_dh.setSQLQuery("SELECT {link_version_info.*} from link_version_info link_version_info, identifier where identifier.id = link_version_info.identifier order by link_version_info.identifier ");
-	                    }
-	                    else if(CalendarReminder.class.equals(clazz)){
-	                    	_dh.setQuery("from " + clazz.getName() + " order by user_id, event_id, send_date");
-	                    } else if(Identifier.class.equals(clazz)){
-	                    	_dh.setQuery("from " + clazz.getName() + " order by parent_path, id");
-	                    } else {
-	                        _dh.setQuery("from " + clazz.getName() + " order by 1");
-
-	                    }
-
-	                    _list = _dh.list();
-	                    if(_list.size() ==0){
-	                        try {
-	                        _bout.close();
-	                        }
-	                        catch( java.lang.NullPointerException npe){}
-	                        _list = null;
-	                        _dh = null;
-	                        _bout = null;
-
-	                        break;
-	                    }
-
-	                    if(_list != null && _list.size() > 0 && _list.get(0) instanceof Comparable){
-	                    	java.util.Collections.sort(_list);
-	                    }
-
-	    				_writing = new File(backupTempFilePath + "/" + clazz.getName() + "_" + formatter.format(i) + ".xml");
-	    				_bout = new BufferedOutputStream(new FileOutputStream(_writing));
-
-	    				total = total + _list.size();
-
-	    				try {
-	                        Thread.sleep(10);
-	                    } catch (InterruptedException e) {
-	                    	Logger.warn(this, "An error ocurred trying to create XML files");
-	                        Logger.error(this,e.getMessage(),e);
-	                    }
-
-	    				_xstream.toXML(_list, _bout);
-
-	    				_bout.close();
-	    				_list = null;
-	    				_dh = null;
-	    				_bout = null;
-
-					}
-					Logger.info(this, "writing : " + total + " records for " + clazz.getName());
-				}
-
 				/* Run Liferay's Tables */
 				/* Companies */
 				_list = PublicCompanyFactory.getCompanies();
@@ -774,17 +648,14 @@ public class CMSMaintenanceAjax {
 		}
 
 		/**
-		 * Will zip up all files in the tmp directory and send the result to the
-		 * given OutputStream
+		 * Will zip up all files in the tmp directory to the given zip and close it
 		 *
-		 * @param out
-		 *            OutputStream to write the zip files to
+		 * @param zout
+		 *            Zip to write the files to
 		 * @throws IOException
 		 * @author Will
 		 */
-		public void zipTempDirectoryToStream(OutputStream out) throws IOException {
-			byte b[] = new byte[512];
-			ZipOutputStream zout = new ZipOutputStream(out);
+		public void zipTempDirectoryToStream(ZipOutputStream zout) throws IOException {
 			ZipUtil.zipDirectory(backupTempFilePath, zout);
 	//		File f = new File(backupTempFilePath);
 	//		String[] s = f.list();
@@ -809,7 +680,6 @@ public class CMSMaintenanceAjax {
 	//			in.close();
 	//		}
 			zout.close();
-			out.close();
 	}
 
 	    private User getUser(HttpServletRequest req) {
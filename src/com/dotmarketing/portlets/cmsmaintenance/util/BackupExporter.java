@@ -0,0 +1,257 @@
+package com.dotmarketing.portlets.cmsmaintenance.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.dotcms.repackage.com.thoughtworks.xstream.XStream;
+import com.dotcms.repackage.com.thoughtworks.xstream.io.xml.DomDriver;
+import com.dotcms.repackage.com.thoughtworks.xstream.mapper.Mapper;
+import com.dotcms.repackage.net.sf.hibernate.metadata.ClassMetadata;
+import com.dotcms.repackage.org.apache.commons.beanutils.PropertyUtils;
+import com.dotmarketing.beans.MultiTree;
+import com.dotmarketing.beans.Tree;
+import com.dotmarketing.db.HibernateUtil;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.portlets.calendar.model.CalendarReminder;
+import com.dotmarketing.portlets.containers.model.ContainerVersionInfo;
+import com.dotmarketing.portlets.dashboard.model.DashboardSummary404;
+import com.dotmarketing.portlets.dashboard.model.DashboardUserPreferences;
+import com.dotmarketing.portlets.files.model.FileAssetVersionInfo;
+import com.dotmarketing.portlets.htmlpages.model.HTMLPageVersionInfo;
+import com.dotmarketing.portlets.links.model.LinkVersionInfo;
+import com.dotmarketing.portlets.templates.model.TemplateVersionInfo;
+import com.dotmarketing.tag.model.TagInode;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.HibernateCollectionConverter;
+import com.dotmarketing.util.HibernateMapConverter;
+import com.dotmarketing.util.Logger;
+
+/**
+ * Exports the Hibernate tables of a backup straight into the backup zip, one entry per page of
+ * <code>BACKUP_EXPORT_PAGE_SIZE</code> records named <code>&lt;class&gt;_&lt;first record&gt;.xml</code>,
+ * the files {@link com.dotmarketing.util.ImportExportUtil} imports.
+ * <p>
+ * Tables with a single column key are paged by that key (<code>where key &gt; last key</code>) so
+ * every page costs the same no matter how deep in the table it is; the others are paged by offset
+ * as before. <code>BACKUP_EXPORT_THREADS</code> tables are exported at the same time, each from
+ * its own session; the pages are serialized by the thread reading them and written to the zip one
+ * at a time.
+ * </p>
+ */
+public class BackupExporter {
+
+	private static final Map<Class, String> versionInfoTables = new HashMap<Class, String>();
+
+	static {
+		versionInfoTables.put(FileAssetVersionInfo.class, "fileasset_version_info");
+		versionInfoTables.put(TemplateVersionInfo.class, "template_version_info");
+		versionInfoTables.put(ContainerVersionInfo.class, "container_version_info");
+		versionInfoTables.put(HTMLPageVersionInfo.class, "htmlpage_version_info");
+		versionInfoTables.put(LinkVersionInfo.class, "link_version_info");
+	}
+
+	private final ZipOutputStream zip;
+	private final int pageSize;
+	private final int threads;
+
+	/**
+	 * @param zip Backup zip the pages are written to
+	 */
+	public BackupExporter(ZipOutputStream zip) {
+		this.zip = zip;
+		this.pageSize = Math.max(1, Config.getIntProperty("BACKUP_EXPORT_PAGE_SIZE", 1000));
+		this.threads = Math.max(1, Config.getIntProperty("BACKUP_EXPORT_THREADS", 4));
+	}
+
+	/**
+	 * Exports the given tables
+	 *
+	 * @param tables Hibernate classes of the tables
+	 * @throws IOException If a page can't be written to the zip
+	 * @throws DotDataException If a table can't be read
+	 */
+	public void exportTables(Collection<Class> tables) throws IOException, DotDataException {
+		ExecutorService exporters = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, tables.size())),
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "BackupExporter-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			Map<Class, Future<Integer>> results = new HashMap<Class, Future<Integer>>();
+			for (final Class clazz : tables) {
+				results.put(clazz, exporters.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						return exportTable(clazz);
+					}
+				}));
+			}
+			for (Map.Entry<Class, Future<Integer>> result : results.entrySet()) {
+				try {
+					Logger.info(this, "writing : " + result.getValue().get() + " records for " + result.getKey().getName());
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					}
+					throw new DotDataException("Unable to export " + result.getKey().getName() + ": " + cause.getMessage(), cause);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new DotDataException("Export of " + result.getKey().getName() + " interrupted", e);
+				}
+			}
+		} finally {
+			exporters.shutdownNow();
+		}
+	}
+
+	/**
+	 * Exports a table from the current thread
+	 *
+	 * @return The number of records exported
+	 */
+	@SuppressWarnings("unchecked")
+	private int exportTable(Class clazz) throws Exception {
+		XStream xstream = newXStream(clazz);
+		DecimalFormat formatter = new DecimalFormat("0000000000");
+		try {
+			String key = getKeyProperty(clazz);
+			Object last = null;
+			int total = 0;
+			while (true) {
+				HibernateUtil dh = new HibernateUtil(clazz);
+				if (key != null) {
+					setKeysetQuery(dh, clazz, key, last);
+				} else {
+					dh.setFirstResult(total);
+					setOffsetQuery(dh, clazz);
+				}
+				dh.setMaxResults(pageSize);
+
+				List list = dh.list();
+				if (list.isEmpty()) {
+					break;
+				}
+				if (key != null) {
+					last = PropertyUtils.getProperty(list.get(list.size() - 1), key);
+				}
+
+				if (list.get(0) instanceof Comparable) {
+					Collections.sort(list);
+				}
+
+				ByteArrayOutputStream xml = new ByteArrayOutputStream();
+				xstream.toXML(list, xml);
+				write(clazz.getName() + "_" + formatter.format(total) + ".xml", xml);
+
+				total += list.size();
+				// the records are not needed anymore
+				HibernateUtil.getSession().clear();
+
+				if (list.size() < pageSize) {
+					break;
+				}
+			}
+			return total;
+		} finally {
+			HibernateUtil.closeSession();
+		}
+	}
+
+	private void write(String name, ByteArrayOutputStream xml) throws IOException {
+		synchronized (zip) {
+			zip.putNextEntry(new ZipEntry(name));
+			xml.writeTo(zip);
+			zip.closeEntry();
+		}
+	}
+
+	/**
+	 * Returns the property to page the table by, null if the table has no single column key
+	 */
+	private String getKeyProperty(Class clazz) throws Exception {
+		if (versionInfoTables.containsKey(clazz)) {
+			return "identifier";
+		}
+		ClassMetadata metadata = HibernateUtil.getSession().getSessionFactory().getClassMetadata(clazz);
+		if (metadata == null || metadata.getIdentifierPropertyName() == null) {
+			return null;
+		}
+		Class type = metadata.getIdentifierType().getReturnedClass();
+		if (String.class.equals(type) || Long.class.equals(type) || Integer.class.equals(type)) {
+			return metadata.getIdentifierPropertyName();
+		}
+		return null;
+	}
+
+	private void setKeysetQuery(HibernateUtil dh, Class clazz, String key, Object last) throws Exception {
+		String table = versionInfoTables.get(clazz);
+		if (table != null) {
+			// only the versions whose identifier exists
+			dh.setSQLQuery("SELECT {" + table + ".*} from " + table + " " + table + ", identifier where identifier.id = "
+					+ table + ".identifier" + (last != null ? " and " + table + ".identifier > ?" : "")
+					+ " order by " + table + ".identifier");
+		} else {
+			dh.setQuery("from " + clazz.getName() + " as x" + (last != null ? " where x." + key + " > ?" : "")
+					+ " order by x." + key);
+		}
+		if (last instanceof Long) {
+			dh.setParam((Long) last);
+		} else if (last instanceof Integer) {
+			dh.setParam((Integer) last);
+		} else if (last != null) {
+			dh.setParam(last.toString());
+		}
+	}
+
+	private void setOffsetQuery(HibernateUtil dh, Class clazz) throws Exception {
+		//Ordering is done only on the key fields as Oracle causes problems when the results are ordered
+		//by an NCLOB field
+		if (Tree.class.equals(clazz)) {
+			dh.setQuery("from " + clazz.getName() + " order by parent, child, relation_type");
+		} else if (MultiTree.class.equals(clazz)) {
+			dh.setQuery("from " + clazz.getName() + " order by parent1, parent2, child, relation_type");
+		} else if (TagInode.class.equals(clazz)) {
+			dh.setQuery("from " + clazz.getName() + " order by inode, tag_id");
+		} else if (CalendarReminder.class.equals(clazz)) {
+			dh.setQuery("from " + clazz.getName() + " order by user_id, event_id, send_date");
+		} else {
+			dh.setQuery("from " + clazz.getName() + " order by 1");
+		}
+	}
+
+	private XStream newXStream(Class clazz) {
+		XStream xstream = new XStream(new DomDriver());
+
+		//http://jira.dotmarketing.net/browse/DOTCMS-6059
+		if (clazz.equals(DashboardSummary404.class) || clazz.equals(DashboardUserPreferences.class)) {
+			xstream.addDefaultImplementation(com.dotcms.repackage.net.sf.hibernate.collection.Set.class, java.util.Set.class);
+			xstream.addDefaultImplementation(com.dotcms.repackage.net.sf.hibernate.collection.List.class, java.util.List.class);
+			xstream.addDefaultImplementation(com.dotcms.repackage.net.sf.hibernate.collection.Map.class, java.util.Map.class);
+			Mapper mapper = xstream.getMapper();
+			xstream.registerConverter(new HibernateCollectionConverter(mapper));
+			xstream.registerConverter(new HibernateMapConverter(mapper));
+		}
+		return xstream;
+	}
+
+}
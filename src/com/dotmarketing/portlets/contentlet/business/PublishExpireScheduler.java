@@ -0,0 +1,442 @@
+package com.dotmarketing.portlets.contentlet.business;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.dotcms.journal.business.ESDistributedJournalFactoryImpl.ClusterMutex;
+import com.dotmarketing.beans.Identifier;
+import com.dotmarketing.business.APILocator;
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.db.DbConnectionFactory;
+import com.dotmarketing.db.HibernateUtil;
+import com.dotmarketing.exception.DotDataException;
+import com.dotmarketing.exception.DotHibernateException;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+import com.dotmarketing.util.Config;
+import com.dotmarketing.util.Logger;
+import com.liferay.portal.model.User;
+
+/**
+ * Publishes and unpublishes contents when their publish and expire dates (the
+ * <code>syspublish_date</code> and <code>sysexpire_date</code> of their identifier) come.
+ * <p>
+ * The identifiers due in the next <code>PUBLISH_EXPIRE_WHEEL_SLOTS</code> ticks of
+ * <code>PUBLISH_EXPIRE_TICK_SECONDS</code> are kept in a timing wheel, one slot per tick. Contents
+ * saved with new dates are added to the wheel as they are saved, the rest are loaded from the
+ * identifier table every half turn of the wheel. Each tick the identifiers of its slot are
+ * published or unpublished, <code>PUBLISH_EXPIRE_BATCH_SIZE</code> at a time.
+ * </p>
+ * <p>
+ * Every server of a cluster runs its own wheel, so each batch is first claimed in the
+ * <code>publish_expire_claim</code> table while holding the cluster lock, and published once the
+ * lock is released: only one server handles each content, and the lock is not held while
+ * publishing. The claims of a server that stopped before publishing them are taken by another
+ * server after <code>PUBLISH_EXPIRE_CLAIM_SECONDS</code>.
+ * </p>
+ */
+public class PublishExpireScheduler extends Thread {
+
+	private static PublishExpireScheduler instance;
+
+	private final long tick;
+	private final int batchSize;
+	private final long claimLease;
+
+	// slot -> identifiers due in that tick
+	private final List<Set<String>> wheel;
+
+	// the ticks before this one were fired
+	private long cursor;
+	private long loadedUntil;
+
+	private boolean die = false;
+
+	private PublishExpireScheduler() {
+		super("PublishExpireScheduler");
+		setDaemon(true);
+		this.tick = Math.max(1, Config.getIntProperty("PUBLISH_EXPIRE_TICK_SECONDS", 60)) * 1000L;
+		this.batchSize = Math.max(1, Config.getIntProperty("PUBLISH_EXPIRE_BATCH_SIZE", 100));
+		this.claimLease = Math.max(1, Config.getIntProperty("PUBLISH_EXPIRE_CLAIM_SECONDS", 600)) * 1000L;
+		int slots = Math.max(2, Config.getIntProperty("PUBLISH_EXPIRE_WHEEL_SLOTS", 60));
+		this.wheel = new ArrayList<Set<String>>(slots);
+		for (int i = 0; i < slots; i++) {
+			wheel.add(new HashSet<String>());
+		}
+		this.cursor = System.currentTimeMillis() / tick;
+		this.loadedUntil = cursor;
+	}
+
+	public void run() {
+		Logger.info(PublishExpireScheduler.class, "PublishExpireScheduler Started with a tick of " + tick + " millis.");
+		while (!die) {
+			try {
+				if (isLoadNeeded()) {
+					load();
+				}
+				Set<String> due = advance();
+				if (!due.isEmpty()) {
+					fire(due);
+				}
+			} catch (Exception e) {
+				Logger.error(PublishExpireScheduler.class, "Error publishing/expiring contents " + e.getMessage(), e);
+			} finally {
+				try {
+					HibernateUtil.closeSession();
+				} catch (DotHibernateException e) {
+					Logger.warn(PublishExpireScheduler.class, e.getMessage(), e);
+				} finally {
+					DbConnectionFactory.closeConnection();
+				}
+			}
+
+			try {
+				synchronized (this) {
+					long wait = (cursor * tick) - System.currentTimeMillis();
+					if (wait > 0 && !die) {
+						wait(wait);
+					}
+				}
+			} catch (InterruptedException e) {
+				Logger.error(PublishExpireScheduler.class, e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Tells the thread to start processing. Starts the thread
+	 */
+	public synchronized static void startThread() {
+		Logger.info(PublishExpireScheduler.class, "PublishExpireScheduler ordered to start processing");
+		if (instance == null || !instance.isAlive()) {
+			instance = new PublishExpireScheduler();
+			instance.start();
+		}
+	}
+
+	/**
+	 * Tells the thread to stop processing
+	 */
+	public synchronized static void stopThread() {
+		if (instance != null) {
+			instance.finish();
+		}
+	}
+
+	/**
+	 * Returns the running scheduler, null if it was not started
+	 */
+	public static PublishExpireScheduler getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Schedules the content for its new publish and expire dates. To be called once the dates are
+	 * committed
+	 *
+	 * @param identifier
+	 */
+	public void schedule(Identifier identifier) {
+		if (identifier.getSysPublishDate() != null) {
+			add(identifier.getId(), identifier.getSysPublishDate().getTime());
+		}
+		if (identifier.getSysExpireDate() != null) {
+			add(identifier.getId(), identifier.getSysExpireDate().getTime());
+		}
+	}
+
+	/**
+	 * Loads the dates from the identifier table again, after they were changed in bulk
+	 */
+	public synchronized void reload() {
+		loadedUntil = cursor;
+		notifyAll();
+	}
+
+	private synchronized boolean isLoadNeeded() {
+		// every half turn, so the wheel never runs out of loaded slots
+		return cursor + wheel.size() / 2 >= loadedUntil;
+	}
+
+	private synchronized void finish() {
+		die = true;
+		notifyAll();
+	}
+
+	/**
+	 * Returns the tick a date is due in: the first tick starting at or after the date, since the
+	 * slot of a tick is fired when the tick starts
+	 *
+	 * @param time The date, in millis
+	 * @param tick Length of the ticks, in millis
+	 */
+	static long getSlot(long time, long tick) {
+		return (time + tick - 1) / tick;
+	}
+
+	private synchronized void add(String identifier, long time) {
+		long due = Math.max(getSlot(time, tick), cursor);
+		if (due < cursor + wheel.size()) {
+			wheel.get((int) (due % wheel.size())).add(identifier);
+			if (due == cursor) {
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Takes the identifiers of the ticks that already came
+	 */
+	private synchronized Set<String> advance() {
+		Set<String> due = new LinkedHashSet<String>();
+		long now = System.currentTimeMillis() / tick;
+		// the identifiers added for the current tick are fired with it
+		while (cursor <= now) {
+			Set<String> slot = wheel.get((int) (cursor % wheel.size()));
+			due.addAll(slot);
+			slot.clear();
+			cursor++;
+		}
+		return due;
+	}
+
+	/**
+	 * Adds to the wheel the identifiers due before its last slot that are not published or
+	 * unpublished yet
+	 */
+	private void load() throws DotDataException {
+		long until;
+		synchronized (this) {
+			until = cursor + wheel.size();
+		}
+		Date now = new Date();
+		// the last date the slots of the wheel hold
+		Date end = new Date((until - 1) * tick);
+
+		DotConnect dc = new DotConnect();
+		dc.setSQL("select i.id, i.syspublish_date, i.sysexpire_date from identifier i where "
+				+ "(i.syspublish_date <= ? and (i.sysexpire_date is null or i.sysexpire_date > ?) and exists "
+				+ "(select cvi.identifier from contentlet_version_info cvi where cvi.identifier = i.id and cvi.deleted = ? "
+				+ "and (cvi.live_inode is null or cvi.live_inode <> cvi.working_inode))) "
+				+ "or (i.sysexpire_date <= ? and exists "
+				+ "(select cvi.identifier from contentlet_version_info cvi where cvi.identifier = i.id and cvi.deleted = ? "
+				+ "and cvi.live_inode = cvi.working_inode))");
+		dc.addParam(end);
+		dc.addParam(now);
+		dc.addParam(false);
+		dc.addParam(end);
+		dc.addParam(false);
+		List<Map<String, Object>> rows = dc.loadObjectResults();
+		for (Map<String, Object> row : rows) {
+			String id = (String) row.get("id");
+			Date publish = (Date) row.get("syspublish_date");
+			Date expire = (Date) row.get("sysexpire_date");
+			if (publish != null) {
+				add(id, publish.getTime());
+			}
+			if (expire != null) {
+				add(id, expire.getTime());
+			}
+		}
+		synchronized (this) {
+			loadedUntil = until;
+		}
+		Logger.debug(PublishExpireScheduler.class, "Scheduled " + rows.size() + " contents due before " + end);
+	}
+
+	/**
+	 * Publishes and unpublishes the contents of the identifiers as their dates say, a batch at a
+	 * time
+	 */
+	private void fire(Set<String> identifiers) throws DotDataException {
+		List<String> batch = new ArrayList<String>(batchSize);
+		for (String identifier : identifiers) {
+			batch.add(identifier);
+			if (batch.size() == batchSize) {
+				fireBatch(batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			fireBatch(batch);
+		}
+	}
+
+	private void fireBatch(List<String> identifiers) throws DotDataException {
+		// identifier -> inode of the version to publish or unpublish
+		Map<String, String> toPublish;
+		Map<String, String> toExpire;
+		Set<String> claimed = new LinkedHashSet<String>();
+
+		Connection conn = null;
+		ClusterMutex mutex = null;
+		try {
+			// the lock is taken on its own connection and only held to claim the contents due
+			conn = DbConnectionFactory.getDataSource().getConnection();
+			conn.setAutoCommit(false);
+			mutex = new ClusterMutex(conn);
+			mutex.lockTable();
+
+			// a server holding the lock before already did, or is doing, what it found due
+			Date now = new Date();
+			Date claimedSince = new Date(now.getTime() - claimLease);
+			toPublish = findDue(conn, identifiers, claimedSince, "cvi.working_inode", "i.syspublish_date <= ? and (i.sysexpire_date is null or i.sysexpire_date > ?) "
+					+ "and cvi.deleted = ? and (cvi.live_inode is null or cvi.live_inode <> cvi.working_inode)", now, now, false);
+			toExpire = findDue(conn, identifiers, claimedSince, "cvi.live_inode", "i.sysexpire_date <= ? "
+					+ "and cvi.deleted = ? and cvi.live_inode = cvi.working_inode", now, false);
+			claimed.addAll(toPublish.keySet());
+			claimed.addAll(toExpire.keySet());
+			if (!claimed.isEmpty()) {
+				claim(conn, new ArrayList<String>(claimed), now);
+			}
+			conn.commit();
+		} catch (SQLException e) {
+			throw new DotDataException(e.getMessage(), e);
+		} finally {
+			if (conn != null) {
+				try {
+					// nothing left to undo once committed
+					conn.rollback();
+				} catch (Exception e) {
+					Logger.error(PublishExpireScheduler.class, e.getMessage(), e);
+				} finally {
+					try {
+						if (mutex != null) {
+							mutex.unlockTable();
+						}
+					} catch (Exception e) {
+						Logger.error(PublishExpireScheduler.class, e.getMessage(), e);
+					}
+					try {
+						conn.close();
+					} catch (Exception e) {
+						Logger.error(PublishExpireScheduler.class, e.getMessage(), e);
+					}
+				}
+			}
+		}
+
+		if (claimed.isEmpty()) {
+			return;
+		}
+
+		try {
+			ContentletAPI capi = APILocator.getContentletAPI();
+			User user = APILocator.getUserAPI().getSystemUser();
+			boolean local = HibernateUtil.startLocalTransactionIfNeeded();
+			try {
+				if (!toPublish.isEmpty()) {
+					capi.publish(load(capi, new ArrayList<String>(toPublish.values()), user), user, false);
+				}
+				if (!toExpire.isEmpty()) {
+					capi.unpublish(load(capi, new ArrayList<String>(toExpire.values()), user), user, false);
+				}
+				if (local) {
+					HibernateUtil.commitTransaction();
+				}
+			} catch (Exception e) {
+				if (local) {
+					HibernateUtil.rollbackTransaction();
+				}
+				throw new DotDataException("Unable to publish/expire " + claimed.size() + " contents: " + e.getMessage(), e);
+			}
+			Logger.info(PublishExpireScheduler.class, "Published " + toPublish.size() + " and expired " + toExpire.size() + " contents");
+		} finally {
+			unclaim(new ArrayList<String>(claimed));
+		}
+	}
+
+	/**
+	 * Returns the inodes of the versions of the given identifiers matching the condition, by
+	 * identifier, leaving out the ones claimed by a server since the given date
+	 */
+	private Map<String, String> findDue(Connection conn, List<String> identifiers, Date claimedSince, String inodeColumn,
+			String condition, Object... params) throws DotDataException {
+		StringBuilder sql = new StringBuilder("select i.id as identifier, ").append(inodeColumn).append(" as inode from identifier i, contentlet_version_info cvi ")
+				.append("where cvi.identifier = i.id and ").append(condition)
+				.append(" and not exists (select c.identifier from publish_expire_claim c where c.identifier = i.id and c.claimed_on > ?)")
+				.append(" and i.id in (").append(params(identifiers.size())).append(")");
+
+		DotConnect dc = new DotConnect();
+		dc.setSQL(sql.toString());
+		for (Object param : params) {
+			if (param instanceof Date) {
+				dc.addParam((Date) param);
+			} else {
+				dc.addParam(param);
+			}
+		}
+		dc.addParam(claimedSince);
+		for (String identifier : identifiers) {
+			dc.addParam(identifier);
+		}
+		Map<String, String> inodes = new LinkedHashMap<String, String>();
+		for (Map<String, Object> row : dc.loadObjectResults(conn)) {
+			inodes.put((String) row.get("identifier"), (String) row.get("inode"));
+		}
+		return inodes;
+	}
+
+	/**
+	 * Claims the identifiers for this server, replacing the claims that expired
+	 */
+	private void claim(Connection conn, List<String> identifiers, Date now) throws DotDataException {
+		DotConnect dc = new DotConnect();
+		dc.setSQL("delete from publish_expire_claim where identifier in (" + params(identifiers.size()) + ")");
+		for (String identifier : identifiers) {
+			dc.addParam(identifier);
+		}
+		dc.loadResult(conn);
+
+		String serverId = APILocator.getServerAPI().readServerId();
+		for (String identifier : identifiers) {
+			dc = new DotConnect();
+			dc.setSQL("insert into publish_expire_claim (identifier, server_id, claimed_on) values (?, ?, ?)");
+			dc.addParam(identifier);
+			dc.addParam(serverId);
+			dc.addParam(now);
+			dc.loadResult(conn);
+		}
+	}
+
+	/**
+	 * Drops the claims once the contents were published or unpublished. Left behind if it fails,
+	 * they expire
+	 */
+	private void unclaim(List<String> identifiers) {
+		try {
+			DotConnect dc = new DotConnect();
+			dc.setSQL("delete from publish_expire_claim where identifier in (" + params(identifiers.size()) + ")");
+			for (String identifier : identifiers) {
+				dc.addParam(identifier);
+			}
+			dc.loadResult();
+		} catch (DotDataException e) {
+			Logger.warn(PublishExpireScheduler.class, "Unable to drop the publish/expire claims: " + e.getMessage(), e);
+		}
+	}
+
+	private String params(int count) {
+		StringBuilder params = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			params.append(i == 0 ? "?" : ",?");
+		}
+		return params.toString();
+	}
+
+	private List<Contentlet> load(ContentletAPI capi, List<String> inodes, User user) throws Exception {
+		List<Contentlet> contentlets = new ArrayList<Contentlet>(inodes.size());
+		for (String inode : inodes) {
+			contentlets.add(capi.find(inode, user, false));
+		}
+		return contentlets;
+	}
+
+}
@@ -3,12 +3,9 @@ package com.dotmarketing.portlets.contentlet.business.exporter;
 import java.io.File;
 import java.util.Map;
 
-import com.dotmarketing.business.APILocator;
-import com.dotmarketing.business.UserAPI;
-import com.dotmarketing.image.filter.ImageFilter;
+import com.dotmarketing.image.filter.ImageDerivativeService;
 import com.dotmarketing.portlets.contentlet.business.BinaryContentExporter;
 import com.dotmarketing.portlets.contentlet.business.BinaryContentExporterException;
-import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
 import com.dotmarketing.util.Logger;
 
 /**
@@ -40,24 +37,8 @@ public class ImageFilterExporter implements BinaryContentExporter {
 				filter= parameters.get("filters")[0].split(","); 
 			}
 
-			for(String s : filter){
-				String clazz =null;
-				try {
-					clazz ="com.dotmarketing.image.filter." + s + "ImageFilter";
-					Class<ImageFilter> iFilter = (Class<ImageFilter>) Class.forName( clazz );
-					ImageFilter i=	iFilter.newInstance();
-					file = i.runFilter(file,   parameters);
-				} catch (ClassNotFoundException e) {
-					Logger.error(ImageFilterExporter.class, "Unable to instanciate : " +  clazz );
-				} catch (InstantiationException e) {
-					Logger.error(ImageFilterExporter.class, "InstantiationException : " +  clazz );
-				} catch (IllegalAccessException e) {
-					Logger.error(ImageFilterExporter.class, "IllegalAccessException : " +  clazz );
-				}
-				catch (Exception e) {
-					Logger.error(ImageFilterExporter.class, "Exception in " +  clazz + " :" + e.getMessage() );
-				}
-			}
+			// the whole chain runs in memory, only its result is written
+			file = ImageDerivativeService.getInstance().getDerivative(file, filter, parameters);
 
 
 			data = new BinaryContentExporterData(file);
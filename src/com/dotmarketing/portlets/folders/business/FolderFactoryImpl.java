@@ -647,49 +647,23 @@ public class FolderFactoryImpl extends FolderFactory {
 		if (contains)
 			return false;
 
-		List<Folder> subFolders = getSubFolders(folder);
-		List htmlPages = getChildrenClass(folder, HTMLPage.class);
-		List files = getChildrenClass(folder, File.class);
-		List links = getChildrenClass(folder, Link.class);
-		List<Contentlet> contentlets = APILocator.getContentletAPI().findContentletsByFolder(folder, systemUser, false);
-
+		final String oldPath = folderId.getPath();
+		final String oldHostId = folderId.getHostId();
+		final String newPath = newParentPath + folderId.getAssetName() + "/";
+		final String newHostId = newParentHostId;
 
 		folderId.setParentPath(newParentPath);
 		folderId.setHostId(newParentHostId);
 		identAPI.save(folderId);
 
-		for (Object page : htmlPages) {
-			APILocator.getHTMLPageAPI().movePage((HTMLPage) page, folder, systemUser, false);
-		}
-
-		for (Object file : files) {
-			APILocator.getFileAPI().moveFile((File) file, folder, systemUser, false);
-		}
-
-		for (Object link : links) {
-			if (((Link) link).isWorking()) {
-				LinkFactory.moveLink((Link) link, folder);
+		// everything under the folder follows it, a folder at a time instead of an asset at a time
+		moveSubtree(oldHostId, oldPath, newHostId, newPath);
+		APILocator.getContentletAPI().refreshContentUnderFolderPath(newHostId, newPath);
+		HibernateUtil.addCommitListener(new Runnable() {
+			public void run() {
+				clearSubtreeCaches(oldHostId, newHostId, newPath);
 			}
-		}
-
-		for(Contentlet cont : contentlets){
-		    if(cont.getStructure().getStructureType()==Structure.STRUCTURE_TYPE_FILEASSET) {
-		        APILocator.getFileAssetAPI().moveFile(cont, folder, systemUser, false);
-		    }
-		    else {
-    			boolean isLive = cont.isLive();
-    			cont.setFolder(folder.getInode());
-    			cont.setInode(null);
-    			Contentlet newCont = APILocator.getContentletAPI().checkin(cont, systemUser, false);
-    			if(isLive){
-    				APILocator.getContentletAPI().publish(newCont, systemUser, false);
-    			}
-		    }
-		}
-
-		for(Folder subFolder : subFolders){
-			move(subFolder, (Object)folder);
-		}
+		});
 
 		CacheLocator.getIdentifierCache().removeFromCacheByIdentifier(folderId.getId());
 
@@ -920,6 +894,75 @@ public class FolderFactoryImpl extends FolderFactory {
 		}
 	}
 
+	/**
+	 * Moves the identifiers under a folder along with it. The database checks the parent folder of
+	 * each identifier exists, so the children of each folder are moved with one update, parents
+	 * first
+	 *
+	 * @param oldHostId
+	 * @param oldPath Path of the folder before moving it
+	 * @param newHostId
+	 * @param newPath Path of the folder after moving it
+	 * @throws DotDataException
+	 */
+	private void moveSubtree(String oldHostId, String oldPath, String newHostId, String newPath) throws DotDataException {
+		DotConnect dc = new DotConnect();
+		dc.setSQL("select distinct parent_path from identifier where host_inode = ? and parent_path like ?");
+		dc.addParam(oldHostId);
+		dc.addParam(oldPath + "%");
+		List<String> paths = new ArrayList<String>();
+		for (Map<String, Object> row : dc.loadObjectResults()) {
+			String path = (String) row.get("parent_path");
+			// like also matches _ and % in the path
+			if (path.startsWith(oldPath)) {
+				paths.add(path);
+			}
+		}
+
+		// a folder path is longer than the path of its parent
+		Collections.sort(paths, new Comparator<String>() {
+			public int compare(String p1, String p2) {
+				return p1.length() - p2.length();
+			}
+		});
+		for (String path : paths) {
+			dc.setSQL("update identifier set parent_path = ?, host_inode = ? where parent_path = ? and host_inode = ?");
+			dc.addParam(newPath + path.substring(oldPath.length()));
+			dc.addParam(newHostId);
+			dc.addParam(path);
+			dc.addParam(oldHostId);
+			dc.loadResult();
+		}
+		Logger.debug(this, "Moved " + paths.size() + " folders from " + oldPath + " to " + newPath);
+	}
+
+	/**
+	 * Flushes the caches holding the paths of the assets under a folder that was moved or renamed,
+	 * by group instead of by asset
+	 *
+	 * @param oldHostId
+	 * @param newHostId
+	 * @param newPath Path of the folder now
+	 */
+	private void clearSubtreeCaches(String oldHostId, String newHostId, String newPath) {
+		CacheLocator.getIdentifierCache().clearIdentifiers();
+		fc.clearCache();
+		CacheLocator.getNavToolCache().clearCache();
+		LiveCache.clearCache(oldHostId);
+		WorkingCache.clearCache(oldHostId);
+		if (!oldHostId.equals(newHostId)) {
+			LiveCache.clearCache(newHostId);
+			WorkingCache.clearCache(newHostId);
+			// contents hold the host they are in
+			CacheLocator.getContentletCache().clearCache();
+		}
+		try {
+			PageServices.removePageFiles(newHostId, newPath);
+		} catch (DotDataException e) {
+			Logger.error(this, "Unable to remove the page files under " + newPath + " : " + e.getMessage(), e);
+		}
+	}
+
 	protected boolean move(Folder folder, Folder destination) throws DotDataException, DotSecurityException {
 		return move(folder, (Object) destination);
 	}
@@ -964,19 +1007,12 @@ public class FolderFactoryImpl extends FolderFactory {
 		CacheLocator.getIdentifierCache().removeFromCacheByVersionable(folder);
 		CacheLocator.getFolderCache().removeFolder(folder, ident);
 
-		final ArrayList<String> childIdents=new ArrayList<String>();
-		DotConnect dc=new DotConnect();
-		dc.setSQL("select id from identifier where parent_path like ? and host_inode=?");
-		dc.addParam(ident.getPath()+"%");
-		dc.addParam(ident.getHostId());
-		for(Map<String,Object> rr : (List<Map<String,Object>>)dc.loadResults()) {
-		    childIdents.add((String)rr.get("id"));
-		}
+		// the database renames the paths under the folder
+		final String hostId = ident.getHostId();
+		final String renamedPath = newPath.toString();
 		HibernateUtil.addCommitListener(new Runnable() {
             public void run() {
-                for(String id : childIdents) {
-                    CacheLocator.getIdentifierCache().removeFromCacheByIdentifier(id);
-                }
+                clearSubtreeCaches(hostId, hostId, renamedPath);
             }
 		});
 
@@ -986,6 +1022,7 @@ public class FolderFactoryImpl extends FolderFactory {
 		ff.setModDate(new Date());
 
 		save(ff);
+		APILocator.getContentletAPI().refreshContentUnderFolderPath(hostId, renamedPath);
 
 		HibernateUtil.getSession().clear();
 
@@ -3,8 +3,10 @@
  */
 package com.dotmarketing.quartz.job;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.quartz.Job;
@@ -18,19 +20,17 @@ import org.quartz.SimpleTrigger;
 
 import com.dotcms.notifications.bean.Notification;
 import com.dotcms.notifications.bean.NotificationLevel;
-import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.CacheLocator;
-import com.dotmarketing.common.model.ContentletSearch;
+import com.dotmarketing.common.db.DotConnect;
 import com.dotmarketing.db.DbConnectionFactory;
 import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotHibernateException;
 import com.dotmarketing.exception.DotRuntimeException;
-import com.dotmarketing.exception.DotSecurityException;
-import com.dotmarketing.portlets.contentlet.business.ContentletAPI;
-import com.dotmarketing.portlets.contentlet.model.ContentletVersionInfo;
-import com.dotmarketing.portlets.languagesmanager.model.Language;
+import com.dotmarketing.portlets.contentlet.business.PublishExpireScheduler;
+import com.dotmarketing.portlets.structure.factories.FieldFactory;
+import com.dotmarketing.portlets.structure.model.Field;
 import com.dotmarketing.portlets.structure.model.Structure;
 import com.dotmarketing.quartz.QuartzUtils;
 import com.dotmarketing.util.AdminLogger;
@@ -51,90 +51,76 @@ public class IdentifierDateJob implements Job {
 	 */
 	@Override
 	public void execute(JobExecutionContext jobContext) throws JobExecutionException {
-		ContentletAPI contentletAPI = APILocator.getContentletAPI();
-		
 		JobDataMap map = jobContext.getJobDetail().getJobDataMap();
 		Structure structure = (Structure) map.get("structure");
 		User user = (User) map.get("user");
 		
 		try{
-			//Lucene query to be sure that I will get all fields of the contentlet
-			String luceneQuery = "+structureName:" + structure.getVelocityVarName() +
-								" +working:true" + 
-								" +languageId:" + APILocator.getLanguageAPI().getDefaultLanguage().getId();
+			long defaultLanguage = APILocator.getLanguageAPI().getDefaultLanguage().getId();
 			
-			//Identifiers will be updated 500 at a time
-			Integer limit = 500;
-			Integer offset = 0;
+			//The identifiers take the dates of their working version in the default language
+			String publishColumn = getDateColumn(structure, structure.getPublishDateVar());
+			String expireColumn = getDateColumn(structure, structure.getExpireDateVar());
 			
-			//Get all the ContentletSearch
-			List<ContentletSearch> contenletSearchList = contentletAPI.searchIndex(luceneQuery, limit, offset, "random", user, false);
+			HibernateUtil.startTransaction();
 			
-			//If the query result is not empty
-			while(!contenletSearchList.isEmpty()){
-				//Start 500 (limit) transaction
-				HibernateUtil.startTransaction();
-				
-				//Iterates all the ContentletSearch of the query 
-				for(ContentletSearch contentletSearch : contenletSearchList){
-					//Get the identifier of each contentlet
-					Identifier identifier= APILocator.getIdentifierAPI().find(contentletSearch.getIdentifier());
-					
-					//Gets from hibernate all the Data of the Contentlet 
-					com.dotmarketing.portlets.contentlet.business.Contentlet fatty = 
-							(com.dotmarketing.portlets.contentlet.business.Contentlet)HibernateUtil
-							.load(com.dotmarketing.portlets.contentlet.business.Contentlet.class, contentletSearch.getInode());
-					
-					//Check if the new Publish Date Var is not null
-					if(UtilMethods.isSet(structure.getPublishDateVar())){
-						//Sets the identifier SysPublishDate to the new Structure/Content Publish Date Var
-						identifier.setSysPublishDate((Date)fatty.getMap().get(structure.getPublishDateVar()));
-					}else{
-						identifier.setSysPublishDate(null);
-					}
-					
-					//Check if the new Expire Date Var is not null
-					if(UtilMethods.isSet(structure.getExpireDateVar())){
-						//Sets the identifier SysExpireDate to the new Structure/Content Expire Date Var
-						identifier.setSysExpireDate((Date)fatty.getMap().get(structure.getExpireDateVar()));
-					}else{
-						identifier.setSysExpireDate(null);
-					}	
-					
-					//Saves the update
-					APILocator.getIdentifierAPI().save(identifier);
+			//Updates all the identifiers of the structure at once
+			DotConnect dc = new DotConnect();
+			dc.setSQL("update identifier set syspublish_date = " + getDateSelect(publishColumn) +
+					", sysexpire_date = " + getDateSelect(expireColumn) +
+					" where id in (select cvi.identifier from contentlet_version_info cvi, contentlet c" +
+					" where cvi.working_inode = c.inode and cvi.lang = ? and c.structure_inode = ?)");
+			if(publishColumn != null){
+				dc.addParam(defaultLanguage);
+			}
+			if(expireColumn != null){
+				dc.addParam(defaultLanguage);
+			}
+			dc.addParam(defaultLanguage);
+			dc.addParam(structure.getInode());
+			dc.loadResult();
+			
+			//Versions of the structure to remove from the Contentlet Cache
+			final List<String> inodes = new ArrayList<String>();
+			dc.setSQL("select working_inode, live_inode from contentlet_version_info" +
+					" where identifier in (select identifier from contentlet where structure_inode = ?)");
+			dc.addParam(structure.getInode());
+			for(Map<String, Object> row : dc.loadObjectResults()){
+				inodes.add((String) row.get("working_inode"));
+				if(UtilMethods.isSet((String) row.get("live_inode"))){
+					inodes.add((String) row.get("live_inode"));
+				}
+			}
+			
+			HibernateUtil.addCommitListener(new Runnable() {
+				public void run() {
 					//Clears Identifier Cache
-					CacheLocator.getIdentifierCache().removeFromCacheByIdentifier(contentletSearch.getIdentifier());
+					CacheLocator.getIdentifierCache().clearIdentifiers();
 					//Clears Contentlet Cache for each language and version
-					for(Language lan : APILocator.getLanguageAPI().getLanguages()) {
-						ContentletVersionInfo versionInfo = APILocator.getVersionableAPI().getContentletVersionInfo(identifier.getId(), lan.getId()) ;
-						if(versionInfo!=null && UtilMethods.isSet(versionInfo.getIdentifier())) {
-							CacheLocator.getContentletCache().remove(versionInfo.getWorkingInode());
-							if(UtilMethods.isSet(versionInfo.getLiveInode())) {
-								CacheLocator.getContentletCache().remove(versionInfo.getLiveInode());
-								
-							}
-						}
+					for(String inode : inodes) {
+						CacheLocator.getContentletCache().remove(inode);
+					}
+					//The contents may be due on other dates now
+					PublishExpireScheduler scheduler = PublishExpireScheduler.getInstance();
+					if(scheduler != null) {
+						scheduler.reload();
 					}
 				}
-				//Commit 500 (limit) transaction
-				HibernateUtil.commitTransaction();
-				
-				//Next 500
-				limit += limit;
-				offset += limit;
-				contenletSearchList = contentletAPI.searchIndex(luceneQuery, limit, offset, "random", user, false);
-			}
+			});
+			HibernateUtil.commitTransaction();
+			
 			//Send Notification
 			String notificationMessage = LanguageUtil.get(user.getLocale(), "notifications_structure_identifiers_updated");
 			APILocator.getNotificationAPI().generateNotification(notificationMessage, NotificationLevel.INFO, user.getUserId());
 			
 		} catch (DotDataException e) {
+			try {
+				HibernateUtil.rollbackTransaction();
+			} catch (DotHibernateException e1) {
+				Logger.warn(this, e1.getMessage(), e1);
+			}
 			Logger.error(this, e.getMessage(), e);
 			throw new DotRuntimeException(e.getMessage(), e);
-		} catch (DotSecurityException e) {
-			Logger.error(CascadePermissionsJob.class, e.getMessage(), e);
-			throw new DotRuntimeException(e.getMessage(), e);
 		} catch (LanguageException e) {
 			Logger.error(IdentifierDateJob.class, "Error creating Notification", e);
 		}
@@ -150,6 +136,32 @@ public class IdentifierDateJob implements Job {
 		}
 	}
 	
+	/**
+	 * Returns the contentlet column of the date field, null if the structure has no such field
+	 * 
+	 * @param structure
+	 * @param velocityVarName
+	 */
+	private String getDateColumn(Structure structure, String velocityVarName) {
+		if(!UtilMethods.isSet(velocityVarName)) {
+			return null;
+		}
+		Field field = FieldFactory.getFieldByVariableName(structure.getInode(), velocityVarName);
+		String column = field != null ? field.getFieldContentlet() : null;
+		return UtilMethods.isSet(column) && column.startsWith("date") ? column : null;
+	}
+	
+	/**
+	 * Returns the SQL selecting the date of the identifier being updated
+	 */
+	private String getDateSelect(String column) {
+		if(column == null) {
+			return "null";
+		}
+		return "(select dc." + column + " from contentlet dc, contentlet_version_info dcvi" +
+				" where dcvi.identifier = identifier.id and dcvi.lang = ? and dcvi.working_inode = dc.inode)";
+	}
+	
 	/**
 	 * Setup the job and trigger it immediately
 	 * 
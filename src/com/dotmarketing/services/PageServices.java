@@ -10,6 +10,7 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.velocity.runtime.resource.ResourceManager;
@@ -21,6 +22,7 @@ import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.business.APILocator;
 import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.business.DotStateException;
+import com.dotmarketing.common.db.DotConnect;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotRuntimeException;
 import com.dotmarketing.exception.DotSecurityException;
@@ -385,4 +387,49 @@ public class PageServices {
 		}
 	}
 
+	/**
+	 * Removes the live and working page files of the pages under a folder, which hold the
+	 * VTL_SERVLETURI of the page, after the folder is moved or renamed. The pages are found with
+	 * two queries instead of loading each one
+	 *
+	 * @param hostId
+	 * @param folderPath Path of the folder, ending with /
+	 * @throws DotDataException
+	 */
+	public static void removePageFiles(String hostId, String folderPath) throws DotDataException {
+		String velocityRootPath = Config.getStringProperty("VELOCITY_ROOT");
+		if (velocityRootPath.startsWith("/WEB-INF")) {
+			velocityRootPath = com.liferay.util.FileUtil.getRealPath(velocityRootPath);
+		}
+		velocityRootPath += java.io.File.separator;
+		String extension = "." + Config.getStringProperty("VELOCITY_HTMLPAGE_EXTENSION","dotpage");
+
+		List<String> files = new ArrayList<String>();
+		DotConnect dc = new DotConnect();
+		dc.setSQL("select id from identifier where asset_type='htmlpage' and host_inode=? and parent_path like ?");
+		dc.addParam(hostId);
+		dc.addParam(folderPath + "%");
+		for (Map<String, Object> row : dc.loadObjectResults()) {
+			files.add((String) row.get("id"));
+		}
+		dc.setSQL("select distinct contentlet.identifier, contentlet.language_id from contentlet "
+				+ "join identifier on contentlet.identifier=identifier.id join structure on contentlet.structure_inode=structure.inode "
+				+ "where structure.structuretype=? and identifier.host_inode=? and identifier.parent_path like ?");
+		dc.addParam(Structure.STRUCTURE_TYPE_HTMLPAGE);
+		dc.addParam(hostId);
+		dc.addParam(folderPath + "%");
+		for (Map<String, Object> row : dc.loadObjectResults()) {
+			files.add(row.get("identifier") + "_" + row.get("language_id"));
+		}
+
+		DotResourceCache vc = CacheLocator.getVeloctyResourceCache();
+		for (String file : files) {
+			for (String mode : new String[] { "live", "working" }) {
+				String filePath = mode + java.io.File.separator + file + extension;
+				new java.io.File(velocityRootPath + filePath).delete();
+				vc.remove(ResourceManager.RESOURCE_TEMPLATE + filePath);
+			}
+		}
+	}
+
 }
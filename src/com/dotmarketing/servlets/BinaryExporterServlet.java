@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
@@ -29,7 +28,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
-import com.dotcms.repackage.com.google.common.io.Files;
 import com.dotcms.repackage.org.apache.commons.collections.LRUMap;
 import com.dotcms.util.DownloadUtil;
 import com.dotmarketing.beans.Identifier;
@@ -523,47 +521,37 @@ public class BinaryExporterServlet extends HttpServlet {
 				ServletOutputStream out = null;
 				FileChannel from = null;
 				WritableByteChannel to = null;
-				RandomAccessFile input = null;
 				try {
 					out = resp.getOutputStream();
 					from = new FileInputStream(data.getDataFile()).getChannel();
 					to = Channels.newChannel(out);
-					//DOTCMS-5716
-					//32 MB at a time	
-					int maxTransferSize = (32 * 1024 * 1024) ;
 					long size = from.size();
-					long position = 0;
-					
-					boolean responseSent = false;
-					byte[] dataBytes = Files.toByteArray(data.getDataFile());
-		            //ServletOutputStream sos = resp.getOutputStream();
+
 					//extract range header
 					 resp.setHeader("Accept-Ranges", "bytes");
 					// Range header should match format "bytes=n-n,n-n,n-n...". If not, then return 416.
 					if (!rangeHeader.matches("^bytes=\\d*-\\d*(,\\d*-\\d*)*$")) {
-						resp.setHeader("Content-Range", "bytes */" + dataBytes.length); // Required in 416.
+						resp.setHeader("Content-Range", "bytes */" + size); // Required in 416.
 						resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
 						return;
 					}
 					//parse multiple range bytes
-					ArrayList<SpeedyAssetServletUtil.ByteRange> ranges = SpeedyAssetServletUtil.parseRange(rangeHeader, dataBytes.length);
+					ArrayList<SpeedyAssetServletUtil.ByteRange> ranges = SpeedyAssetServletUtil.parseRange(rangeHeader, size);
 					if (ranges != null){
-						SpeedyAssetServletUtil.ByteRange full = new SpeedyAssetServletUtil.ByteRange(0, data.getDataFile().length() - 1, data.getDataFile().length());
+						SpeedyAssetServletUtil.ByteRange full = new SpeedyAssetServletUtil.ByteRange(0, size - 1, size);
 						if (ranges.isEmpty() || ranges.get(0).equals(full)) {
 							// Return full file.
-							input = new RandomAccessFile(data.getDataFile(), "r");
 							SpeedyAssetServletUtil.ByteRange r = full;
 							resp.setContentType(fileAPI.getMimeType(data.getDataFile().getName()));
 							resp.setHeader("Content-Range", "bytes " + r.start + "-" + r.end + "/" + r.total);
 							resp.setHeader("Content-Length", String.valueOf(r.length));
 							// Copy full range.
-							SpeedyAssetServletUtil.copy(input, out, r.start, r.length);
+							SpeedyAssetServletUtil.copy(from, to, r.start, r.length);
 						} else if (ranges.size() == 1){
 							SpeedyAssetServletUtil.ByteRange range = ranges.get(0);
-							input = new RandomAccessFile(data.getDataFile(), "r");
 							// Check if Range is syntactically valid. If not, then return 416.
 							if (range.start > range.end) {
-								resp.setHeader("Content-Range", "bytes */" + dataBytes.length); // Required in 416.
+								resp.setHeader("Content-Range", "bytes */" + size); // Required in 416.
 								resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
 								return;
 							}
@@ -571,17 +559,19 @@ public class BinaryExporterServlet extends HttpServlet {
 							resp.setHeader("Content-Range", "bytes " + range.start + "-" + range.end + "/" + range.total);
 							resp.setHeader("Content-Length", String.valueOf(range.length));
 				            resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT); // 206.
-							SpeedyAssetServletUtil.copy(input, out, range.start, range.length);
+							SpeedyAssetServletUtil.copy(from, to, range.start, range.length);
 						}else{
-							resp.setContentType("multipart/byteranges; boundary=" + SpeedyAssetServletUtil.MULTIPART_BOUNDARY);
-							resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-						    input = new RandomAccessFile(data.getDataFile(), "r");
+							// Validate every range before anything is written, a 416 can't be sent once the body started
 							for (SpeedyAssetServletUtil.ByteRange r : ranges) {
 								if (r.start > r.end) {
-									resp.setHeader("Content-Range", "bytes */" + dataBytes.length); // Required in 416.
+									resp.setHeader("Content-Range", "bytes */" + size); // Required in 416.
 									resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
 									return;
 								}
+							}
+							resp.setContentType("multipart/byteranges; boundary=" + SpeedyAssetServletUtil.MULTIPART_BOUNDARY);
+							resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+							for (SpeedyAssetServletUtil.ByteRange r : ranges) {
 								// Add multipart boundary and header fields for every range.
 								out.println();
 								out.println("--" + SpeedyAssetServletUtil.MULTIPART_BOUNDARY);
@@ -590,13 +580,12 @@ public class BinaryExporterServlet extends HttpServlet {
 								out.println();
 
 								// Copy single part range of multi part range.
-								SpeedyAssetServletUtil.copy(input, out, r.start, r.length);
+								SpeedyAssetServletUtil.copy(from, to, r.start, r.length);
 							}
 							// End with multipart boundary.
 							out.println();
 							out.println("--" + SpeedyAssetServletUtil.MULTIPART_BOUNDARY + "--");
 						}
-						responseSent = true;
 					}
 				} catch (Exception e) {
 					Logger.warn(this, e + " Error for = " + req.getRequestURI() + (req.getQueryString() != null?"?"+req.getQueryString():"") );
@@ -609,18 +598,18 @@ public class BinaryExporterServlet extends HttpServlet {
 						from.close();
 					if(out != null)
 						out.close();
-					if(input !=null)
-						input.close();
 				}
 			}else{
-				FileInputStream is = new FileInputStream(data.getDataFile());
-	            int count = 0;
-	            byte[] buffer = new byte[4096];
-	            OutputStream servletOutput = resp.getOutputStream();
-	            while((count = is.read(buffer)) > 0) {
-	            	servletOutput.write(buffer, 0, count);
-	            }
-	            servletOutput.close();
+				FileChannel from = new FileInputStream(data.getDataFile()).getChannel();
+				OutputStream servletOutput = null;
+				try {
+					servletOutput = resp.getOutputStream();
+					SpeedyAssetServletUtil.copy(from, Channels.newChannel(servletOutput), 0, from.size());
+				} finally {
+					from.close();
+					if(servletOutput != null)
+						servletOutput.close();
+				}
 			}
             
 		} catch (DotContentletStateException e) {
@@ -16,6 +16,7 @@ import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotHibernateException;
 import com.dotmarketing.exception.DotSecurityException;
+import com.dotmarketing.image.filter.ImageDerivativeService;
 import com.dotmarketing.init.DotInitScheduler;
 import com.dotmarketing.loggers.mbeans.Log4jConfig;
 import com.dotmarketing.menubuilders.RefreshMenus;
@@ -261,6 +262,7 @@ public class InitServlet extends HttpServlet {
 				ObjectName name = new ObjectName("org.dotcms:type=Log4J");
 				Log4jConfig mbean = new Log4jConfig();
 				mbs.registerMBean(mbean, name);
+				mbs.registerMBean(ImageDerivativeService.getInstance(), new ObjectName("org.dotcms:type=ImageDerivatives"));
 			} catch (MalformedObjectNameException e) {
 				Logger.debug(InitServlet.class,"MalformedObjectNameException: " + e.getMessage(),e);
 			} catch (InstanceAlreadyExistsException e) {
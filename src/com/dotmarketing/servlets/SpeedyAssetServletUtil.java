@@ -3,6 +3,8 @@ package com.dotmarketing.servlets;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 
 /**
@@ -14,6 +16,9 @@ public class SpeedyAssetServletUtil {
 	
 	protected static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
 	protected static final int DEFAULT_BUFFER_SIZE = 10240; // ..bytes = 10KB.
+	//DOTCMS-5716
+	//32 MB at a time
+	protected static final long MAX_TRANSFER_SIZE = 32 * 1024 * 1024;
 	
 	/**
      * Returns a substring of the given string value from the given begin index to the given end
@@ -32,10 +37,10 @@ public class SpeedyAssetServletUtil {
 	/**
 	 * Parse the range values of the given string
 	 * @param rangeHeader String containing the range format "bytes=n-n,n-n,n-n...".
-	 * @param dataLen length of the byte range
+	 * @param length length of the file the ranges apply to
 	 * @return
 	 */
-	protected static ArrayList<ByteRange> parseRange(String rangeHeader, int length){
+	protected static ArrayList<ByteRange> parseRange(String rangeHeader, long length){
         ArrayList<ByteRange> ranges = null;
         if (rangeHeader != null && rangeHeader.startsWith("bytes")){            
             ranges = new ArrayList<ByteRange>(8);
@@ -46,7 +51,7 @@ public class SpeedyAssetServletUtil {
             long end = sublong(part, part.indexOf("-") + 1, part.length());
 
             if (start == -1) {
-                start = length - end;
+                start = Math.max(0, length - end);
                 end = length - 1;
             } else if (end == -1 || end > length - 1) {
                 end = length - 1;
@@ -92,6 +97,31 @@ public class SpeedyAssetServletUtil {
 		}
 	}
 
+	/**
+	 * Copy the given byte range of the given file to the given output without
+	 * buffering it on the heap. The bytes are handed to
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which
+	 * sends them straight from the file system cache when the output allows
+	 * it and uses a small fixed size buffer otherwise.
+	 * @param input The file to copy the given range from.
+	 * @param output The output to copy the given range to.
+	 * @param start Start of the byte range.
+	 * @param length Length of the byte range.
+	 * @throws IOException If something fails at I/O level.
+	 */
+	protected static void copy(FileChannel input, WritableByteChannel output, long start, long length) throws IOException {
+		long position = start;
+		long end = start + length;
+		while (position < end) {
+			long transferred = input.transferTo(position, Math.min(MAX_TRANSFER_SIZE, end - position), output);
+			if (transferred <= 0) {
+				// the file got shorter while we were sending it
+				break;
+			}
+			position += transferred;
+		}
+	}
+
     
    protected static class ByteRange {
 	   long start;
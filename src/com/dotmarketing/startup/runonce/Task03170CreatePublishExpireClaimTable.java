@@ -0,0 +1,84 @@
+package com.dotmarketing.startup.runonce;
+
+import java.util.List;
+
+import com.dotmarketing.common.db.DotConnect;
+import com.dotmarketing.startup.AbstractJDBCStartupTask;
+
+/**
+ * Task to create the table the servers of a cluster claim the contents to
+ * publish or expire in, so each of them is handled by one server only.
+ */
+public class Task03170CreatePublishExpireClaimTable extends AbstractJDBCStartupTask {
+
+	private final String SQL_QUERY = "create table publish_expire_claim(identifier varchar(36) NOT NULL, "
+			+ "server_id varchar(64), claimed_on TIMESTAMP NOT NULL, PRIMARY KEY (identifier));";
+
+	@Override
+	public boolean forceRun() {
+		try {
+			DotConnect dc = new DotConnect();
+			dc.setSQL("SELECT * FROM publish_expire_claim");
+			dc.loadResult();
+			return false;
+		} catch (Exception ex) {
+			return true;
+		}
+	}
+
+	/**
+	 * The SQL for Postgres
+	 *
+	 * @return
+	 */
+	@Override
+	public String getPostgresScript() {
+		return SQL_QUERY;
+	}
+
+	/**
+	 * The SQL for MySQL
+	 *
+	 * @return
+	 */
+	@Override
+	public String getMySQLScript() {
+		return SQL_QUERY.replace("TIMESTAMP", "DATETIME");
+	}
+
+	/**
+	 * The SQL for Oracle
+	 *
+	 * @return
+	 */
+	@Override
+	public String getOracleScript() {
+		return SQL_QUERY.replaceAll("varchar\\(", "varchar2\\(");
+	}
+
+	/**
+	 * The SQL for MSSQL
+	 *
+	 * @return
+	 */
+	@Override
+	public String getMSSQLScript() {
+		return SQL_QUERY.replace("TIMESTAMP", "DATETIME");
+	}
+
+	/**
+	 * The SQL for H2
+	 *
+	 * @return
+	 */
+	@Override
+	public String getH2Script() {
+		return SQL_QUERY;
+	}
+
+	@Override
+	protected List<String> getTablesToDropConstraints() {
+		return null;
+	}
+
+}
@@ -4,10 +4,12 @@
 package com.dotmarketing.util;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -16,21 +18,27 @@ import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipFile;
 
 import com.dotcms.repackage.net.sf.hibernate.HibernateException;
+import com.dotcms.repackage.net.sf.hibernate.Session;
 import com.dotcms.repackage.net.sf.hibernate.persister.AbstractEntityPersister;
 
 import com.dotcms.repackage.org.apache.commons.beanutils.BeanUtils;
@@ -115,6 +123,19 @@ public class ImportExportUtil {
     private List<File> tagFiles = new ArrayList<File>();
     private File workflowSchemaFile = null;
 
+    /**
+     * Steps of the import already done, kept outside the tmp files so an import that did not
+     * finish resumes from where it stopped when the same backup is imported again
+     */
+    private File checkpointFile = new File(ConfigUtils.getBackupPath()+File.separator+"import.checkpoint");
+    private Set<String> completedSteps = new HashSet<String>();
+    // records of each file already saved, for the files whose import did not finish
+    private Map<String, Integer> savedRecords = new HashMap<String, Integer>();
+    private static final String SAVED_RECORDS_STEP = "saved records:";
+    private static final String ROLES_STEP = "roles";
+    private static final String FOLDER_IDENTIFIERS_STEP = "folder identifiers";
+    private static final String WORKFLOW_SCHEMES_STEP = "workflow schemes";
+
     public ImportExportUtil() {
         MaintenanceUtil.flushCache();
         // Set the asset paths
@@ -216,6 +237,8 @@ public class ImportExportUtil {
      * Takes a zip file from the temp directory to restore dotCMS data. Currently it will blow away all current data
      * This method cannot currently be run in a transaction. For performance reasons with db drivers and connections it closes the
      * session every so often.
+     * If a previous import of the same files did not finish, the data is kept and the import goes on
+     * from the last step done.
      * @param out A print writer for output
      * @throws IOException
      */
@@ -225,7 +248,13 @@ public class ImportExportUtil {
         String[] _tempFiles = f.list();
         out.println("<pre>Found " + _tempFiles.length + " files to import");
         Logger.info(this, "Found " + _tempFiles.length + " files to import");
-        deleteDotCMS();
+        if(loadCheckpoint(_tempFiles)){
+            out.println("Resuming the previous import, " + completedSteps.size() + " steps were already done");
+            Logger.info(this, "Resuming the previous import, " + completedSteps.size() + " steps were already done");
+        }else{
+            deleteDotCMS();
+            startCheckpoint(_tempFiles);
+        }
 
         File assetDir = null;
         boolean hasAssetDir = false;
@@ -367,43 +396,46 @@ public class ImportExportUtil {
         }
 
         Collections.sort(roles);
-        try{
-            HibernateUtil.closeSession();
-            for (Role role : roles) {
-                HibernateUtil _dh = new HibernateUtil(Role.class);
-                String id = HibernateUtil.getSession().getSessionFactory().getClassMetadata(Role.class).getIdentifierPropertyName();
-                HibernateUtil.getSession().close();
+        if(!isStepDone(ROLES_STEP)){
+            try{
+                HibernateUtil.closeSession();
+                for (Role role : roles) {
+                    HibernateUtil _dh = new HibernateUtil(Role.class);
+                    String id = HibernateUtil.getSession().getSessionFactory().getClassMetadata(Role.class).getIdentifierPropertyName();
+                    HibernateUtil.getSession().close();
 
-                if (UtilMethods.isSet(id)) {
-                    String prop = BeanUtils.getProperty(role, id);
+                    if (UtilMethods.isSet(id)) {
+                        String prop = BeanUtils.getProperty(role, id);
 
-                    try {
-                        if(id.equalsIgnoreCase("id")){
-                            Long myId = new Long(Long.parseLong(prop));
-                            HibernateUtil.saveWithPrimaryKey(role, myId);
-                        }else{
-                            HibernateUtil.saveWithPrimaryKey(role, prop);
-                        }
-                    } catch (Exception e) {
                         try {
-                            HibernateUtil.saveWithPrimaryKey(role, prop);
-                        } catch (DotHibernateException ex) {
-                            Logger.error(this, "Unable to save role " + role.getId(), ex);
+                            if(id.equalsIgnoreCase("id")){
+                                Long myId = new Long(Long.parseLong(prop));
+                                HibernateUtil.saveWithPrimaryKey(role, myId);
+                            }else{
+                                HibernateUtil.saveWithPrimaryKey(role, prop);
+                            }
+                        } catch (Exception e) {
+                            try {
+                                HibernateUtil.saveWithPrimaryKey(role, prop);
+                            } catch (DotHibernateException ex) {
+                                Logger.error(this, "Unable to save role " + role.getId(), ex);
+                            }
                         }
-                    }
 
-                } else {
-                    HibernateUtil.save(role);
-                }
-                HibernateUtil.getSession().flush();
-                try {
-                    Thread.sleep(3);
-                } catch (InterruptedException e) {
-                    Logger.error(this,e.getMessage(),e);
+                    } else {
+                        HibernateUtil.save(role);
+                    }
+                    HibernateUtil.getSession().flush();
+                    try {
+                        Thread.sleep(3);
+                    } catch (InterruptedException e) {
+                        Logger.error(this,e.getMessage(),e);
+                    }
                 }
+                stepDone(ROLES_STEP);
+            } catch (Exception e) {
+                Logger.error(this, "Unable to load role : " + e.getMessage(), e);
             }
-        } catch (Exception e) {
-            Logger.error(this, "Unable to load role : " + e.getMessage(), e);
         }
         try{
             doXMLFileImport(userXML, out);
@@ -450,32 +482,35 @@ public class ImportExportUtil {
              * by parent_path
              */
 
-            final List<Identifier> folderIdents=new ArrayList<Identifier>();
             final XStream xstream = new XStream();
-
-            // collecting all folder identifiers
-            for(File ff : identifiersXML) {
-                List<Identifier> idents=(List<Identifier>)xstream.fromXML(new FileInputStream(ff));
-                for(Identifier ident : idents) {
-                    if(ident.getAssetType().equals("folder"))
-                        folderIdents.add(ident);
+            if(!isStepDone(FOLDER_IDENTIFIERS_STEP)){
+                final List<Identifier> folderIdents=new ArrayList<Identifier>();
+
+                // collecting all folder identifiers
+                for(File ff : identifiersXML) {
+                    List<Identifier> idents=(List<Identifier>)xstream.fromXML(new FileInputStream(ff));
+                    for(Identifier ident : idents) {
+                        if(ident.getAssetType().equals("folder"))
+                            folderIdents.add(ident);
+                    }
                 }
-            }
 
-            // sorting folder identifiers by parent path in order to pass parent check
-            Collections.sort(folderIdents, new Comparator<Identifier>() {
-                public int compare(Identifier o1, Identifier o2) {
-                    return o1.getParentPath().compareTo(o2.getParentPath());
-                }
-            });
+                // sorting folder identifiers by parent path in order to pass parent check
+                Collections.sort(folderIdents, new Comparator<Identifier>() {
+                    public int compare(Identifier o1, Identifier o2) {
+                        return o1.getParentPath().compareTo(o2.getParentPath());
+                    }
+                });
 
-            // saving folder identifiers
-            for(Identifier ident : folderIdents) {
-                Logger.info(this, "Importing folder path "+ident.getParentPath()+ident.getAssetName());
-                HibernateUtil.saveWithPrimaryKey(ident, ident.getId());
+                // saving folder identifiers
+                for(Identifier ident : folderIdents) {
+                    Logger.info(this, "Importing folder path "+ident.getParentPath()+ident.getAssetName());
+                    HibernateUtil.saveWithPrimaryKey(ident, ident.getId());
+                }
+                HibernateUtil.flush();
+                HibernateUtil.closeSession();
+                stepDone(FOLDER_IDENTIFIERS_STEP);
             }
-            HibernateUtil.flush();
-            HibernateUtil.closeSession();
 
             // now we need to save all remaining identifiers (folders already added)
             for(File ff : identifiersXML) {
@@ -494,16 +529,25 @@ public class ImportExportUtil {
 
             // we store here defaultFileType for every folder
             // because of mutual folder <--> structure dependency
+            // (read apart from the import, which is skipped for the files already imported when resuming)
             final Map<String,String> fileTypesInodes=new HashMap<String,String>();
+            for(File ff : foldersXML) {
+                FileInputStream in = new FileInputStream(ff);
+                try {
+                    for(Folder folder : (List<Folder>)xstream.fromXML(in)) {
+                        fileTypesInodes.put(folder.getInode(), folder.getDefaultFileType());
+                    }
+                } finally {
+                    in.close();
+                }
+            }
 
             // now we can import folders
             for(File ff : foldersXML) {
                 try {
                     doXMLFileImport(ff, out, new ObjectFilter() {
                         public boolean includeIt(Object obj) {
-                            Folder f=(Folder)obj;
-                            fileTypesInodes.put(f.getInode(), f.getDefaultFileType());
-                            f.setDefaultFileType(null);
+                            ((Folder)obj).setDefaultFileType(null);
                             return true;
                         }
                     });
@@ -733,9 +777,10 @@ public class ImportExportUtil {
 
 
         // workflow schemas need to come before permissions
-        if(workflowSchemaFile != null){
+        if(workflowSchemaFile != null && !isStepDone(WORKFLOW_SCHEMES_STEP)){
         	try{
         		WorkflowImportExportUtil.getInstance().importWorkflowExport(workflowSchemaFile);
+        		stepDone(WORKFLOW_SCHEMES_STEP);
 
         	}catch(Exception e){
         		 Logger.error(this, "Unable to import workflowSchemaFile" + e.getMessage(), e);
@@ -852,6 +897,7 @@ public class ImportExportUtil {
 
         out.println("Done Importing");
 
+        checkpointFile.delete();
         deleteTempFiles();
 
         try {
@@ -937,6 +983,111 @@ public class ImportExportUtil {
             }
         }
     }
+    /**
+     * Loads the steps done by a previous import of the same files
+     *
+     * @param _tempFiles Files to import
+     * @return true if the previous import of these files did not finish
+     */
+    private boolean loadCheckpoint(String[] _tempFiles) {
+        if(!checkpointFile.exists()){
+            return false;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(checkpointFile), "UTF-8"));
+            try {
+                if(!getFingerprint(_tempFiles).equals(reader.readLine())){
+                    return false;
+                }
+                String step;
+                while((step = reader.readLine()) != null){
+                    if(step.startsWith(SAVED_RECORDS_STEP)){
+                        int colon = step.lastIndexOf(':');
+                        savedRecords.put(step.substring(SAVED_RECORDS_STEP.length(), colon), Integer.valueOf(step.substring(colon + 1)));
+                    }else{
+                        completedSteps.add(step);
+                    }
+                }
+                return true;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            Logger.warn(this, "Unable to read " + checkpointFile.getPath() + ", starting the import over : " + e.getMessage());
+            completedSteps.clear();
+            savedRecords.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Starts the checkpoint of an import of the given files
+     */
+    private void startCheckpoint(String[] _tempFiles) {
+        try {
+            FileWriter writer = new FileWriter(checkpointFile);
+            try {
+                writer.write(getFingerprint(_tempFiles) + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            Logger.warn(this, "Unable to write " + checkpointFile.getPath() + ", the import won't be resumable : " + e.getMessage());
+        }
+    }
+
+    private boolean isStepDone(String step) {
+        return completedSteps.contains(step);
+    }
+
+    /**
+     * Returns how many records of the file a previous import already saved
+     */
+    private int getSavedRecords(String fileName) {
+        Integer saved = savedRecords.get(fileName);
+        return saved != null ? saved : 0;
+    }
+
+    /**
+     * Records the step as done, once it is in the database
+     */
+    private void stepDone(String step) {
+        completedSteps.add(step);
+        try {
+            FileWriter writer = new FileWriter(checkpointFile, true);
+            try {
+                writer.write(step + "\n");
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            Logger.warn(this, "Unable to write " + checkpointFile.getPath() + " : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Identifies a set of files to import by their names and sizes
+     */
+    private String getFingerprint(String[] _tempFiles) {
+        String[] names = _tempFiles.clone();
+        Arrays.sort(names);
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            for (String name : names) {
+                md.update((name + ":" + new File(getBackupTempFilePath(), name).length() + "\n").getBytes("UTF-8"));
+            }
+            StringBuilder fingerprint = new StringBuilder();
+            for (byte b : md.digest()) {
+                fingerprint.append(String.format("%02x", b));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Does what it says - deletes all files from the backupTempFilePath
      * @author Will
@@ -1078,6 +1229,10 @@ public class ImportExportUtil {
         if( f ==null){
             return;
         }
+        if(isStepDone(f.getName())){
+            Logger.info(this, "Already imported:\t" + f.getName());
+            return;
+        }
 
         BufferedInputStream _bin = null;
         Reader charStream = null;
@@ -1388,87 +1543,29 @@ public class ImportExportUtil {
 					DotConnect dc = new DotConnect();
 					dc.executeStatement("set IDENTITY_INSERT inode on;");
 				}*/
-                for (int j = 0; j < l.size(); j++) {
-                    Object obj = l.get(j);
-                    if(l.get(j) instanceof com.dotmarketing.portlets.contentlet.business.Contentlet && DbConnectionFactory.isMsSql()){
-                        com.dotmarketing.portlets.contentlet.business.Contentlet contentlet = (com.dotmarketing.portlets.contentlet.business.Contentlet)l.get(j);
-                        changeDateForSQLServer(contentlet, out);
-                    }
-
-                    if (UtilMethods.isSet(id)) {
-                        String prop = BeanUtils.getProperty(obj, id);
-
-                        try {
-                            HibernateUtil.startTransaction();
-                            if(id.substring(id.length()-2,id.length()).equalsIgnoreCase("id")){
-                                if(obj instanceof Identifier){
-                                    HibernateUtil.saveWithPrimaryKey(obj, prop);
-                                }else{
-                                    Long myId = new Long(Long.parseLong(prop));
-                                    HibernateUtil.saveWithPrimaryKey(obj, myId);
-                                }
-                                HibernateUtil.commitTransaction();
-                            }else{
-                                HibernateUtil.saveWithPrimaryKey(obj, prop);
-                                HibernateUtil.commitTransaction();
-                            }
-                        } catch (Exception e) {
-                            try{
-                                HibernateUtil.saveWithPrimaryKey(obj, prop);
-                                HibernateUtil.commitTransaction();
-                            }catch (Exception ex) {
-                                Logger.debug(this, "Usually not a problem can be that duplicate data or many times a row of data that is created by the system and is trying to be imported again : " + ex.getMessage(), ex);
-                                Logger.warn(this, "Usually not a problem can be that duplicate data or many times a row of data that is created by the system and is trying to be imported again : " + ex.getMessage());
-                                Logger.info(this, "Problematic object: "+obj+" prop:"+prop);
-                                Logger.info(this, _xstream.toXML(obj));
-
-                                try{
-                                    HibernateUtil.rollbackTransaction();
-                                    HibernateUtil.closeSession();
-                                }catch (Exception e1) {}
-                                continue;
-                            }
-                        }
-
-                    } else {
-                        if(obj instanceof Tree){
-                            Tree t = (Tree) obj;
-                            DotConnect dc = new DotConnect();
-                            List<String> inodeList = new ArrayList<String>();
-                            dc.setSQL("select inode from inode where inode = ? or inode = ?");
-                            dc.addParam(t.getParent());
-                            dc.addParam(t.getChild());
-                            inodeList = dc.getResults();
-                            dc.setSQL("select id from identifier where id = ? or id = ?");
-                            dc.addParam(t.getParent());
-                            dc.addParam(t.getChild());
-                            inodeList.addAll(dc.getResults());
-                            if(inodeList.size() > 1){
-                                HibernateUtil.save(obj);
-                            }
-                            else{
-                                Logger.warn(this.getClass(), "Can't import tree- no matching inodes: {parent=" + t.getParent() + ", child=" + t.getChild() +"}");
-
-                            }
-                        }
-                        else{
-                            try {
-                                HibernateUtil.save(obj);
-                            } catch (DotHibernateException e) {
-                                Logger.error(this,e.getMessage(),e);
-                            }
+                if(DbConnectionFactory.isMsSql()){
+                    for (Object obj : l) {
+                        if(obj instanceof com.dotmarketing.portlets.contentlet.business.Contentlet){
+                            changeDateForSQLServer((com.dotmarketing.portlets.contentlet.business.Contentlet)obj, out);
                         }
                     }
-                    HibernateUtil.getSession().flush();
-                    HibernateUtil.closeSession();
-                    try {
-
-
-                        Thread.sleep(3);
-                    } catch (InterruptedException e) {
-                        // TODO Auto-generated catch block
-                        Logger.error(this,e.getMessage(),e);
+                }
+                /* the records are saved in batches, each in one transaction. When a batch fails
+                 * its records are saved again one by one so only the problematic ones are left out.
+                 * The records saved are kept in the checkpoint, so a resumed import skips them */
+                int batchSize = Math.max(1, Config.getIntProperty("BACKUP_IMPORT_BATCH_SIZE", 500));
+                int saved = Math.min(getSavedRecords(f.getName()), l.size());
+                if(saved > 0){
+                    Logger.info(this, "Skipping the " + saved + " records of " + f.getName() + " already imported");
+                }
+                for (int j = saved; j < l.size(); j += batchSize) {
+                    List batch = l.subList(j, Math.min(j + batchSize, l.size()));
+                    if(!saveBatch(batch, id)){
+                        for (Object obj : batch) {
+                            saveObject(obj, id, _xstream);
+                        }
                     }
+                    stepDone(SAVED_RECORDS_STEP + f.getName() + ":" + (j + batch.size()));
                 }
                 if(identityOn){
                     turnIdentityOffMSSQL(tableName);
@@ -1476,6 +1573,7 @@ public class ImportExportUtil {
 					turnIdentityOffMSSQL("inode");
 				}*/
             }
+            stepDone(f.getName());
         } catch (FileNotFoundException e) {
             Logger.error(this,e.getMessage(),e);
         } catch (IllegalAccessException e) {
@@ -1501,6 +1599,132 @@ public class ImportExportUtil {
         }
     }
 
+    /**
+     * Saves the records in one transaction
+     *
+     * @param batch
+     * @param id Identifier property of the records
+     * @return false if any of them could not be saved, none of them is saved then
+     */
+    private boolean saveBatch(List batch, String id) {
+        try {
+            HibernateUtil.startTransaction();
+            Session session = HibernateUtil.getSession();
+            for (Object obj : batch) {
+                if (UtilMethods.isSet(id)) {
+                    String prop = BeanUtils.getProperty(obj, id);
+                    if(id.substring(id.length()-2,id.length()).equalsIgnoreCase("id") && !(obj instanceof Identifier)){
+                        session.save(obj, new Long(Long.parseLong(prop)));
+                    }else{
+                        session.save(obj, prop);
+                    }
+                } else if(!(obj instanceof Tree) || isTreeImportable((Tree) obj)){
+                    session.save(obj);
+                }
+            }
+            session.flush();
+            HibernateUtil.commitTransaction();
+            return true;
+        } catch (Exception e) {
+            Logger.debug(this, "Unable to save " + batch.size() + " records at once, saving them one by one : " + e.getMessage(), e);
+            try {
+                HibernateUtil.rollbackTransaction();
+            } catch (DotHibernateException e1) {
+                Logger.debug(this, e1.getMessage(), e1);
+            }
+            return false;
+        } finally {
+            try {
+                HibernateUtil.closeSession();
+            } catch (DotHibernateException e) {
+                Logger.error(this, "Unable to close Session : " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Saves a record on its own, logging it if it can't be saved
+     *
+     * @param obj
+     * @param id Identifier property of the record
+     * @param _xstream To log the record
+     */
+    private void saveObject(Object obj, String id, XStream _xstream) throws IllegalAccessException, InvocationTargetException,
+            NoSuchMethodException, DotDataException, HibernateException {
+        if (UtilMethods.isSet(id)) {
+            String prop = BeanUtils.getProperty(obj, id);
+
+            try {
+                HibernateUtil.startTransaction();
+                if(id.substring(id.length()-2,id.length()).equalsIgnoreCase("id")){
+                    if(obj instanceof Identifier){
+                        HibernateUtil.saveWithPrimaryKey(obj, prop);
+                    }else{
+                        Long myId = new Long(Long.parseLong(prop));
+                        HibernateUtil.saveWithPrimaryKey(obj, myId);
+                    }
+                    HibernateUtil.commitTransaction();
+                }else{
+                    HibernateUtil.saveWithPrimaryKey(obj, prop);
+                    HibernateUtil.commitTransaction();
+                }
+            } catch (Exception e) {
+                try{
+                    HibernateUtil.saveWithPrimaryKey(obj, prop);
+                    HibernateUtil.commitTransaction();
+                }catch (Exception ex) {
+                    Logger.debug(this, "Usually not a problem can be that duplicate data or many times a row of data that is created by the system and is trying to be imported again : " + ex.getMessage(), ex);
+                    Logger.warn(this, "Usually not a problem can be that duplicate data or many times a row of data that is created by the system and is trying to be imported again : " + ex.getMessage());
+                    Logger.info(this, "Problematic object: "+obj+" prop:"+prop);
+                    Logger.info(this, _xstream.toXML(obj));
+
+                    try{
+                        HibernateUtil.rollbackTransaction();
+                        HibernateUtil.closeSession();
+                    }catch (Exception e1) {}
+                    return;
+                }
+            }
+
+        } else {
+            if(obj instanceof Tree){
+                if(isTreeImportable((Tree) obj)){
+                    HibernateUtil.save(obj);
+                }
+            }
+            else{
+                try {
+                    HibernateUtil.save(obj);
+                } catch (DotHibernateException e) {
+                    Logger.error(this,e.getMessage(),e);
+                }
+            }
+        }
+        HibernateUtil.getSession().flush();
+        HibernateUtil.closeSession();
+    }
+
+    /**
+     * @return true if both the parent and the child of the tree were imported
+     */
+    private boolean isTreeImportable(Tree t) {
+        DotConnect dc = new DotConnect();
+        List<String> inodeList = new ArrayList<String>();
+        dc.setSQL("select inode from inode where inode = ? or inode = ?");
+        dc.addParam(t.getParent());
+        dc.addParam(t.getChild());
+        inodeList = dc.getResults();
+        dc.setSQL("select id from identifier where id = ? or id = ?");
+        dc.addParam(t.getParent());
+        dc.addParam(t.getChild());
+        inodeList.addAll(dc.getResults());
+        if(inodeList.size() > 1){
+            return true;
+        }
+        Logger.warn(this.getClass(), "Can't import tree- no matching inodes: {parent=" + t.getParent() + ", child=" + t.getChild() +"}");
+        return false;
+    }
+
     /**
      * Simple FileNameFilter for XML files
      *
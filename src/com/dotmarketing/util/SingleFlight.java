@@ -0,0 +1,113 @@
+package com.dotmarketing.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes sure a given piece of work runs only once at a time for a given key.
+ * The first thread asking for a key runs the work, the threads asking for the
+ * same key while it is running wait for it and get the same result instead of
+ * doing the work again.
+ * <p>
+ * Followers wait at most the given timeout. If the work takes longer, or if it
+ * fails, each follower runs the work itself so a stuck or failing leader never
+ * blocks other requests.
+ * </p>
+ *
+ * @param <K> Type of the keys identifying the work
+ * @param <V> Type of the result of the work
+ */
+public class SingleFlight<K, V> {
+
+	private final ConcurrentHashMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+	private final long timeoutMillis;
+	private final AtomicLong executed = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * @param timeoutMillis Max time a follower waits for the result of the leader
+	 */
+	public SingleFlight ( long timeoutMillis ) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Runs the given work unless it is already running for the same key, in
+	 * which case the result of the running one is returned.
+	 *
+	 * @param key
+	 * @param work
+	 * @return
+	 * @throws Exception The exception thrown by the work
+	 */
+	public V execute ( K key, Callable<V> work ) throws Exception {
+
+		FutureTask<V> task = new FutureTask<V>(work);
+		FutureTask<V> running = inFlight.putIfAbsent(key, task);
+
+		if ( running == null ) {
+			//We are the leader
+			executed.incrementAndGet();
+			try {
+				task.run();
+				return getResult(task);
+			} finally {
+				inFlight.remove(key, task);
+			}
+		}
+
+		try {
+			V result = running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+			coalesced.incrementAndGet();
+			return result;
+		} catch ( TimeoutException e ) {
+			Logger.warn(SingleFlight.class, "Timed out waiting for the in-flight work of [" + key + "], running it again");
+		} catch ( ExecutionException e ) {
+			Logger.debug(SingleFlight.class, "The in-flight work of [" + key + "] failed, running it again", e.getCause());
+		}
+		executed.incrementAndGet();
+		return work.call();
+	}
+
+	private V getResult ( FutureTask<V> task ) throws Exception {
+		try {
+			return task.get();
+		} catch ( ExecutionException e ) {
+			Throwable cause = e.getCause();
+			if ( cause instanceof Exception ) {
+				throw (Exception) cause;
+			}
+			if ( cause instanceof Error ) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return Number of keys currently being worked on
+	 */
+	public int getInFlight () {
+		return inFlight.size();
+	}
+
+	/**
+	 * @return Number of times the work was actually run
+	 */
+	public long getExecuted () {
+		return executed.get();
+	}
+
+	/**
+	 * @return Number of callers that got the result of a work already in flight
+	 */
+	public long getCoalesced () {
+		return coalesced.get();
+	}
+
+}
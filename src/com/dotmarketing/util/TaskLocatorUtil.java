@@ -137,6 +137,7 @@ public class TaskLocatorUtil {
 		ret.add(Task03150LoweCaseURLOnVirtualLinksTable.class);
 		ret.add(Task03160PublishingPushedAssetsTable.class);
 		ret.add(Task03165ModifyLoadRecordsToIndex.class);
+		ret.add(Task03170CreatePublishExpireClaimTable.class);
 
         return ret;
     }
@@ -0,0 +1,51 @@
+package com.dotmarketing.velocity;
+
+import java.util.Map;
+
+import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+import com.dotmarketing.business.Cachable;
+
+/**
+ * Keeps the parsed trees of the VTL strings rendered on the fly (#evaluate,
+ * $render.eval, VelocityUtil.eval, widget code), so the same snippet rendered
+ * over and over is only parsed once.
+ * <p>
+ * The trees are returned already initialized and, like the ones of a
+ * {@link org.apache.velocity.Template}, can be rendered by several threads at
+ * the same time. They must not be initialized again.
+ * </p>
+ */
+public abstract class VelocityASTCache implements Cachable {
+
+	/**
+	 * Returns the initialized tree of the given VTL, parsing it if it is not
+	 * cached.
+	 *
+	 * @param rsvc
+	 *            Runtime the tree is parsed and initialized with
+	 * @param templateName
+	 *            Name of the template the VTL is rendered from
+	 * @param source
+	 *            The VTL
+	 * @param dumpNamespace
+	 *            Whether to dump the velocimacro namespace of the template
+	 *            when the VTL is parsed
+	 * @return
+	 * @throws ParseException
+	 * @throws TemplateInitException
+	 */
+	public abstract SimpleNode get(RuntimeServices rsvc, String templateName, String source, boolean dumpNamespace)
+			throws ParseException, TemplateInitException;
+
+	/**
+	 * Returns the hit, miss and eviction counters of this cache.
+	 *
+	 * @return
+	 */
+	public abstract Map<String, Object> getStats();
+
+}
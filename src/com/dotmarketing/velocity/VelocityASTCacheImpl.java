@@ -0,0 +1,165 @@
+package com.dotmarketing.velocity;
+
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.InternalContextAdapterImpl;
+import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+import com.dotcms.repackage.com.google.common.cache.Cache;
+import com.dotcms.repackage.com.google.common.cache.CacheBuilder;
+import com.dotcms.repackage.com.google.common.cache.CacheStats;
+import com.dotcms.repackage.com.google.common.cache.Weigher;
+import com.dotmarketing.util.Config;
+
+/**
+ * Keeps the trees in a local in-memory cache, keyed by the runtime, the
+ * template name and the VTL itself. As the key is the content there is
+ * nothing to invalidate: a changed widget is a new entry and the old one is
+ * evicted once it is no longer used.
+ * <p>
+ * The cache is bounded by the length of the VTL kept (the trees grow with it),
+ * <code>VELOCITY_AST_CACHE_MAX_CHARS</code> characters in all, least recently
+ * used entries are evicted first.
+ * </p>
+ * <p>
+ * VTL defining macros (<code>#macro</code> or <code>#{macro}</code>) is not
+ * cached, the macros are registered while parsing and rendering it again must
+ * register them again.
+ * </p>
+ */
+public class VelocityASTCacheImpl extends VelocityASTCache {
+
+	private static String primaryCacheGroup = "VelocityASTCache";
+
+	private final boolean enabled;
+	private final int maxSourceLength;
+
+	private final Cache<Key, SimpleNode> trees;
+
+	private final AtomicLong bypassed = new AtomicLong();
+
+	public VelocityASTCacheImpl() {
+		this.enabled = Config.getBooleanProperty("VELOCITY_AST_CACHE_ENABLED", true);
+		this.maxSourceLength = Config.getIntProperty("VELOCITY_AST_CACHE_MAX_SOURCE_LENGTH", 65536);
+		this.trees = CacheBuilder.newBuilder()
+				.maximumWeight(Config.getIntProperty("VELOCITY_AST_CACHE_MAX_CHARS", 16 * 1024 * 1024))
+				.weigher(new Weigher<Key, SimpleNode>() {
+					public int weigh(Key key, SimpleNode tree) {
+						return key.source.length() + (key.templateName == null ? 0 : key.templateName.length());
+					}
+				})
+				.concurrencyLevel(Config.getIntProperty("cache.concurrencylevel", 32))
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public String getPrimaryGroup() {
+		return primaryCacheGroup;
+	}
+
+	@Override
+	public String[] getGroups() {
+		String[] groupNames = { primaryCacheGroup };
+		return groupNames;
+	}
+
+	@Override
+	public void clearCache() {
+		trees.invalidateAll();
+	}
+
+	@Override
+	public SimpleNode get(RuntimeServices rsvc, String templateName, String source, boolean dumpNamespace)
+			throws ParseException, TemplateInitException {
+		if (!enabled || source.length() > maxSourceLength || source.contains("#macro") || source.contains("#{macro}")) {
+			bypassed.incrementAndGet();
+			return parse(rsvc, templateName, source, dumpNamespace);
+		}
+
+		Key key = new Key(rsvc, templateName, source);
+		SimpleNode tree = trees.getIfPresent(key);
+		if (tree == null) {
+			tree = parse(rsvc, templateName, source, dumpNamespace);
+			if (tree != null) {
+				trees.put(key, tree);
+			}
+		}
+		return tree;
+	}
+
+	@Override
+	public Map<String, Object> getStats() {
+		CacheStats cacheStats = trees.stats();
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("enabled", enabled);
+		stats.put("entries", trees.size());
+		stats.put("hits", cacheStats.hitCount());
+		stats.put("misses", cacheStats.missCount());
+		stats.put("hitRatio", cacheStats.hitRate());
+		stats.put("evictions", cacheStats.evictionCount());
+		stats.put("bypassed", bypassed.get());
+		return stats;
+	}
+
+	/**
+	 * Parses the VTL and initializes the tree the way a
+	 * {@link org.apache.velocity.Template} does, with an empty context
+	 */
+	private SimpleNode parse(RuntimeServices rsvc, String templateName, String source, boolean dumpNamespace)
+			throws ParseException, TemplateInitException {
+		SimpleNode tree = rsvc.parse(new StringReader(source), templateName, dumpNamespace);
+		if (tree != null) {
+			InternalContextAdapterImpl ica = new InternalContextAdapterImpl(new VelocityContext());
+			ica.pushCurrentTemplateName(templateName);
+			try {
+				tree.init(ica, rsvc);
+			} finally {
+				ica.popCurrentTemplateName();
+			}
+		}
+		return tree;
+	}
+
+	private static class Key {
+
+		private final RuntimeServices rsvc;
+		private final String templateName;
+		private final String source;
+
+		Key(RuntimeServices rsvc, String templateName, String source) {
+			this.rsvc = rsvc;
+			this.templateName = templateName;
+			this.source = source;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = System.identityHashCode(rsvc);
+			result = 31 * result + (templateName == null ? 0 : templateName.hashCode());
+			return 31 * result + source.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return rsvc == other.rsvc && source.equals(other.source)
+					&& (templateName == null ? other.templateName == null : templateName.equals(other.templateName));
+		}
+
+	}
+
+}
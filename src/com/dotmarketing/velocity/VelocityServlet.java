@@ -19,6 +19,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -514,53 +515,36 @@ public abstract class VelocityServlet extends HttpServlet {
     		String queryString = request.getQueryString();
 			PageCacheParameters cacheParameters = new BlockPageCache.PageCacheParameters(userId, language, urlMap, queryString);
 
-    		boolean buildCache = false;
     		String key = VelocityUtil.getPageCacheKey(request, response);
     		if (key != null) {
-    			String cachedPage = CacheLocator.getBlockPageCache().get(page, cacheParameters);
-    			if (cachedPage == null || "refresh".equals(request.getParameter("dotcache"))
+    			if ("refresh".equals(request.getParameter("dotcache"))
     					|| "refresh".equals(request.getAttribute("dotcache"))
     					|| (request.getSession(false) !=null && "refresh".equals(request.getSession(true).getAttribute("dotcache")))) {
-    				// build cached response
-    				buildCache = true;
+    				// rebuild the cached response
+    				String trimmedPage = renderLivePage(request, response, ident, page);
+    				CacheLocator.getBlockPageCache().add(page, trimmedPage, cacheParameters);
+    				response.getWriter().write(trimmedPage);
+    				response.getWriter().close();
     			} else {
-    				// have cached response and are not refreshing, send it
+    				// send the cached response, concurrent misses on the same page render it only once
+    				final HttpServletRequest renderRequest = request;
+    				final HttpServletResponse renderResponse = response;
+    				final Identifier renderIdent = ident;
+    				final IHTMLPage renderPage = page;
+    				String cachedPage = CacheLocator.getBlockPageCache().getOrRender(page, cacheParameters, new Callable<String>() {
+    					public String call() throws Exception {
+    						return renderLivePage(renderRequest, renderResponse, renderIdent, renderPage);
+    					}
+    				});
     				response.getWriter().write(cachedPage);
-    				return;
+    				response.getWriter().close();
     			}
+    			return;
     		}
-    
-    		Writer out = (buildCache) ? new StringWriter(4096) : new VelocityFilterWriter(response.getWriter());
-    		//get the context from the requst if possible
-    		Context context = VelocityUtil.getWebContext(request, response);
-    		request.setAttribute("velocityContext", context);
-    		Logger.debug(VelocityServlet.class, "HTMLPage Identifier:" + ident.getInode());
-
-    		try {
-
-				if ( page.isContent() ) {
-					VelocityUtil.getEngine().getTemplate("/live/" + ident.getInode() + "_" + page.getLanguageId()
-							+ "." + VELOCITY_HTMLPAGE_EXTENSION).merge(context, out);
-				} else {
-					VelocityUtil.getEngine().getTemplate("/live/" + ident.getInode()
-							+ "." + VELOCITY_HTMLPAGE_EXTENSION).merge(context, out);
-				}
 
-			} catch (Throwable e) {
-    			Logger.warn(this, "can't do live mode merge", e);
-    		}
-    		session = request.getSession(false);
-    		if (buildCache) {
-    			String trimmedPage = out.toString().trim();
-    			response.getWriter().write(trimmedPage);
-    			response.getWriter().close();
-    			synchronized (key) {
-    				//CacheLocator.getHTMLPageCache().remove(page);
-    				CacheLocator.getBlockPageCache().add(page, trimmedPage, cacheParameters);
-    			}
-    		} else {
-    			out.close();
-    		}
+    		Writer out = new VelocityFilterWriter(response.getWriter());
+    		mergeLivePage(request, response, ident, page, out);
+    		out.close();
 	    }
 	    finally {
 	        LicenseUtil.stopLiveMode();
@@ -568,6 +552,37 @@ public abstract class VelocityServlet extends HttpServlet {
 
 	}
 
+	/**
+	 * Renders the live version of a page and returns it trimmed, ready to be
+	 * sent and cached.
+	 */
+	private String renderLivePage(HttpServletRequest request, HttpServletResponse response, Identifier ident, IHTMLPage page) {
+		StringWriter out = new StringWriter(4096);
+		mergeLivePage(request, response, ident, page, out);
+		return out.toString().trim();
+	}
+
+	private void mergeLivePage(HttpServletRequest request, HttpServletResponse response, Identifier ident, IHTMLPage page, Writer out) {
+		//get the context from the requst if possible
+		Context context = VelocityUtil.getWebContext(request, response);
+		request.setAttribute("velocityContext", context);
+		Logger.debug(VelocityServlet.class, "HTMLPage Identifier:" + ident.getInode());
+
+		try {
+
+			if ( page.isContent() ) {
+				VelocityUtil.getEngine().getTemplate("/live/" + ident.getInode() + "_" + page.getLanguageId()
+						+ "." + VELOCITY_HTMLPAGE_EXTENSION).merge(context, out);
+			} else {
+				VelocityUtil.getEngine().getTemplate("/live/" + ident.getInode()
+						+ "." + VELOCITY_HTMLPAGE_EXTENSION).merge(context, out);
+			}
+
+		} catch (Throwable e) {
+			Logger.warn(this, "can't do live mode merge", e);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public void doPreviewMode(HttpServletRequest request, HttpServletResponse response) throws Exception {
 
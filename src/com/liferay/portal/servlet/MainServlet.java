@@ -55,6 +55,7 @@ import com.dotmarketing.business.APILocator;
 import com.dotmarketing.common.reindex.ReindexThread;
 import com.dotmarketing.exception.DotDataException;
 import com.dotmarketing.exception.DotRuntimeException;
+import com.dotmarketing.portlets.contentlet.business.PublishExpireScheduler;
 import com.dotmarketing.servlets.InitServlet;
 import com.dotmarketing.startup.StartupTasksExecutor;
 import com.dotmarketing.util.Config;
@@ -131,6 +132,11 @@ public class MainServlet extends ActionServlet {
 			//Start Cluster Server Action Thread.
 			ClusterServerActionThread.startThread(Config.getIntProperty("CLUSTER_SERVER_THREAD_SLEEP", 2000));
 
+			//Start the thread publishing/expiring contents on their dates
+			if (Config.getBooleanProperty("PUBLISH_EXPIRE_SCHEDULER_ENABLED", true)) {
+				PublishExpireScheduler.startThread();
+			}
+
 			try {
 				EventsProcessor.process(new String[] { StartupAction.class.getName() }, true);
 			} catch (Exception e) {
@@ -538,6 +544,8 @@ public class MainServlet extends ActionServlet {
 
 		JobScheduler.shutdown();
 
+		PublishExpireScheduler.stopThread();
+
 		// Parent
 
 		super.destroy();
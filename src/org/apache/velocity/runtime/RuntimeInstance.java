@@ -66,6 +66,7 @@ import org.apache.velocity.util.introspection.LinkingUberspector;
 import org.apache.velocity.util.introspection.Uberspect;
 import com.dotcms.repackage.org.github.jamm.MemoryMeter;
 
+import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.util.Logger;
 
 /**
@@ -1247,7 +1248,36 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
     public boolean evaluate(Context context,  Writer out,
                             String logTag, String instring)
     {
-        return evaluate(context, out, logTag, new StringReader(instring));
+        if (logTag == null)
+        {
+            throw new NullPointerException("logTag (i.e. template name) cannot be null, you must provide an identifier for the content being evaluated");
+        }
+
+        /*
+         * the tree of a string comes already initialized from the cache
+         */
+        SimpleNode nodeTree = null;
+        try
+        {
+            nodeTree = CacheLocator.getVelocityASTCache().get(this, logTag, instring, true);
+        }
+        catch (ParseException pex)
+        {
+            throw new ParseErrorException(pex, null);
+        }
+        catch (TemplateInitException pex)
+        {
+            throw new ParseErrorException(pex, null);
+        }
+
+        if (nodeTree == null)
+        {
+            return false;
+        }
+        else
+        {
+            return render(context, out, logTag, nodeTree, false);
+        }
     }
 
     /**
@@ -1320,6 +1350,12 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
      */
     public boolean render(Context context, Writer writer,
                           String logTag, SimpleNode nodeTree)
+    {
+        return render(context, writer, logTag, nodeTree, true);
+    }
+
+    private boolean render(Context context, Writer writer,
+                           String logTag, SimpleNode nodeTree, boolean init)
     {
         /*
          * we want to init then render
@@ -1333,7 +1369,10 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
         {
             try
             {
-                nodeTree.init(ica, this);
+                if (init)
+                {
+                    nodeTree.init(ica, this);
+                }
             }
             catch (TemplateInitException pex)
             {
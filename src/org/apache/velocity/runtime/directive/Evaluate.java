@@ -20,7 +20,6 @@ package org.apache.velocity.runtime.directive;
  */
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.io.Writer;
 
 import org.apache.velocity.context.EvaluateContext;
@@ -36,6 +35,7 @@ import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.apache.velocity.util.introspection.Info;
 
+import com.dotmarketing.business.CacheLocator;
 import com.dotmarketing.util.Logger;
 import com.dotmarketing.util.VelocityUtil;
 
@@ -154,13 +154,14 @@ public class Evaluate extends Directive
         
         /*
          * The new string needs to be parsed since the text has been dynamically generated.
+         * The parsed tree comes already initialized from the cache.
          */
         String templateName = context.getCurrentTemplateName();
         SimpleNode nodeTree = null;
         RuntimeServices rsvc=VelocityUtil.getEngine().getRuntimeServices();
         try
         {
-            nodeTree = rsvc.parse(new StringReader(sourceText), templateName, false);
+            nodeTree = CacheLocator.getVelocityASTCache().get(rsvc, templateName, sourceText, false);
         }
         catch (ParseException pex)
         {
@@ -187,16 +188,6 @@ public class Evaluate extends Directive
 
             try
             {
-                try
-                {
-                    nodeTree.init( ica, rsvc );
-                }
-                catch (TemplateInitException pex)
-                {
-                    Info info = new Info( templateName, node.getLine(), node.getColumn() );
-                    throw  new ParseErrorException( pex.getMessage(), info );
-                }
-
                 try 
                 {
                     preRender(ica);
@@ -66,6 +66,11 @@ public class ASTIdentifier extends SimpleNode
      */
     protected boolean strictRef = false;
 
+    /**
+     * Getters resolved by this node, shared by all the renders of the template
+     */
+    private transient volatile InlineCache inlineCache;
+
     /**
      * @param id
      */
@@ -114,6 +119,21 @@ public class ASTIdentifier extends SimpleNode
         return data;
     }
 
+    /**
+     * The inline cache is not serialized with the template, it is created
+     * again when first needed.
+     */
+    private InlineCache getInlineCache()
+    {
+        InlineCache cache = inlineCache;
+        if (cache == null)
+        {
+            cache = new InlineCache();
+            inlineCache = cache;
+        }
+        return cache;
+    }
+
     /**
      * @see org.apache.velocity.runtime.parser.node.SimpleNode#execute(java.lang.Object, org.apache.velocity.context.InternalContextAdapter)
      */
@@ -126,10 +146,14 @@ public class ASTIdentifier extends SimpleNode
         try
         {
             /*
-             *  first, see if we have this information cached.
+             *  first, see if this node already resolved it for the class,
+             *  then if we have this information cached in the context.
              */
 
-            IntrospectionCacheData icd = context.icacheGet(this);
+            InlineCache inline = getInlineCache();
+            Object cached = (o != null) ? inline.get(o.getClass(), null) : null;
+
+            IntrospectionCacheData icd = (cached != null) ? null : context.icacheGet(this);
 
             /*
              * if we have the cache data and the class of the object we are
@@ -138,7 +162,11 @@ public class ASTIdentifier extends SimpleNode
              * that is fixed in the template :)
              */
 
-            if ( icd != null && (o != null) && (icd.contextData == o.getClass()) )
+            if (cached != null)
+            {
+                vg = (VelPropertyGet) cached;
+            }
+            else if ( icd != null && (o != null) && (icd.contextData == o.getClass()) )
             {
                 vg = (VelPropertyGet) icd.thingy;
             }
@@ -157,6 +185,7 @@ public class ASTIdentifier extends SimpleNode
                     icd.contextData = o.getClass();
                     icd.thingy = vg;
                     context.icachePut(this,icd);
+                    inline.put(o.getClass(), null, vg);
                 }
             }
         }
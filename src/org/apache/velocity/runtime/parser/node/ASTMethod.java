@@ -67,6 +67,11 @@ public class ASTMethod extends SimpleNode
      */
     protected boolean strictRef = false;
 
+    /**
+     * Methods resolved by this node, shared by all the renders of the template
+     */
+    private transient volatile InlineCache inlineCache;
+
     /**
      * @param id
      */
@@ -139,8 +144,8 @@ public class ASTMethod extends SimpleNode
         /*
          *  new strategy (strategery!) for introspection. Since we want
          *  to be thread- as well as context-safe, we *must* do it now,
-         *  at execution time.  There can be no in-node caching,
-         *  but if we are careful, we can do it in the context.
+         *  at execution time.  The in-node cache below is keyed by the
+         *  classes involved, anything else is done in the context.
          */
         Object [] params = new Object[paramCount];
 
@@ -160,9 +165,30 @@ public class ASTMethod extends SimpleNode
             }
         }
             
-        VelMethod method = ClassUtils.getMethod(methodName, params, paramClasses, 
-            o, context, this, strictRef);
-        if (method == null) return null;
+        /*
+         * the inline cache keeps what this node resolved for the class of
+         * the object and of the arguments. The methods of a Class object
+         * depend on the Class itself, those are left to the context cache.
+         */
+        VelMethod method = null;
+        InlineCache inline = null;
+        if (o != null && !(o instanceof Class))
+        {
+            inline = getInlineCache();
+            method = (VelMethod) inline.get(o.getClass(), paramClasses);
+        }
+
+        if (method == null)
+        {
+            method = ClassUtils.getMethod(methodName, params, paramClasses, 
+                o, context, this, strictRef);
+            if (method == null) return null;
+
+            if (inline != null && method.isCacheable())
+            {
+                inline.put(o.getClass(), paramClasses, method);
+            }
+        }
 
         try
         {
@@ -214,6 +240,21 @@ public class ASTMethod extends SimpleNode
         }
     }
 
+    /**
+     * The inline cache is not serialized with the template, it is created
+     * again when first needed.
+     */
+    private InlineCache getInlineCache()
+    {
+        InlineCache cache = inlineCache;
+        if (cache == null)
+        {
+            cache = new InlineCache();
+            inlineCache = cache;
+        }
+        return cache;
+    }
+
     private Object handleInvocationException(Object o, InternalContextAdapter context, Throwable t)
     {
         /*
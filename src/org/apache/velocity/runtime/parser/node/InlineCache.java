@@ -0,0 +1,118 @@
+package org.apache.velocity.runtime.parser.node;
+
+import java.util.Arrays;
+
+import com.dotmarketing.util.Config;
+
+/**
+ * Remembers, for a method call or property reference of a template, what the
+ * uberspector resolved for the classes of the objects it was rendered with.
+ * Unlike the introspection cache of the context it lives as long as the
+ * parsed template, so the lookup is done once and not on every render.
+ * <p>
+ * Most references always see the same class (monomorphic), some a few
+ * (polymorphic). Once a reference sees more than
+ * <code>VELOCITY_INLINE_CACHE_ENTRIES</code> classes it is megamorphic: the
+ * cache is dropped and the node goes back to the context cache.
+ * </p>
+ * <p>
+ * Reads are lock free, the entries are replaced as a whole on a write.
+ * </p>
+ */
+final class InlineCache
+{
+
+    private static final int MAX_ENTRIES = Config.getIntProperty("VELOCITY_INLINE_CACHE_ENTRIES", 4);
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    private volatile Entry[] entries = EMPTY;
+
+    private volatile boolean megamorphic = MAX_ENTRIES <= 0;
+
+    /**
+     * @return the cached target for the receiver class and the classes of
+     *         the arguments, null if not cached
+     */
+    Object get(Class receiver, Class[] params)
+    {
+        Entry[] current = entries;
+        for (int i = 0; i < current.length; i++)
+        {
+            if (current[i].matches(receiver, params))
+            {
+                return current[i].target;
+            }
+        }
+        return null;
+    }
+
+    boolean isMegamorphic()
+    {
+        return megamorphic;
+    }
+
+    synchronized void put(Class receiver, Class[] params, Object target)
+    {
+        if (megamorphic)
+        {
+            return;
+        }
+        Entry[] current = entries;
+        for (int i = 0; i < current.length; i++)
+        {
+            if (current[i].matches(receiver, params))
+            {
+                return;
+            }
+        }
+        if (current.length >= MAX_ENTRIES)
+        {
+            megamorphic = true;
+            entries = EMPTY;
+            return;
+        }
+        Entry[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = new Entry(receiver, params, target);
+        entries = grown;
+    }
+
+    private static final class Entry
+    {
+        private final Class receiver;
+        private final Class[] params;
+        private final Object target;
+
+        Entry(Class receiver, Class[] params, Object target)
+        {
+            this.receiver = receiver;
+            this.params = params;
+            this.target = target;
+        }
+
+        boolean matches(Class receiver, Class[] params)
+        {
+            if (this.receiver != receiver)
+            {
+                return false;
+            }
+            if (this.params == params)
+            {
+                return true;
+            }
+            if (this.params == null || params == null || this.params.length != params.length)
+            {
+                return false;
+            }
+            for (int i = 0; i < params.length; i++)
+            {
+                if (this.params[i] != params[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
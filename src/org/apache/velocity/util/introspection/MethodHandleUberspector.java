@@ -0,0 +1,327 @@
+package org.apache.velocity.util.introspection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.velocity.runtime.parser.node.AbstractExecutor;
+import org.apache.velocity.runtime.parser.node.GetExecutor;
+import org.apache.velocity.runtime.parser.node.PropertyExecutor;
+
+import com.dotmarketing.util.Logger;
+
+/**
+ * Chainable uberspector that invokes the methods and property getters found
+ * by the wrapped uberspector through {@link MethodHandle}s instead of
+ * {@link Method#invoke(Object, Object...)}. The lookup itself, and so the
+ * security checks of the {@link SecureUberspector}, is left to the wrapped
+ * uberspector.
+ * <p>
+ * To be listed after the uberspector it wraps:
+ * <code>runtime.introspector.uberspect=org.apache.velocity.util.introspection.SecureUberspector,org.apache.velocity.util.introspection.MethodHandleUberspector</code>
+ * </p>
+ * <p>
+ * The handles behave like the reflective calls: wrong arguments throw an
+ * {@link IllegalArgumentException} and the exceptions of the invoked method
+ * come wrapped in an {@link InvocationTargetException}.
+ * </p>
+ */
+public class MethodHandleUberspector extends AbstractChainableUberspector
+{
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final MethodType GETTER_TYPE = MethodType.genericMethodType(1);
+
+    /**
+     * Primitive types in widening order, see JLS 5.1.2
+     */
+    private static final List<Class<?>> NUMERIC = Arrays.<Class<?>>asList(Byte.TYPE, Short.TYPE, Integer.TYPE,
+            Long.TYPE, Float.TYPE, Double.TYPE);
+
+    private static final Map<Class<?>, Class<?>> PRIMITIVES = new HashMap<Class<?>, Class<?>>();
+
+    static
+    {
+        PRIMITIVES.put(Boolean.class, Boolean.TYPE);
+        PRIMITIVES.put(Character.class, Character.TYPE);
+        PRIMITIVES.put(Byte.class, Byte.TYPE);
+        PRIMITIVES.put(Short.class, Short.TYPE);
+        PRIMITIVES.put(Integer.class, Integer.TYPE);
+        PRIMITIVES.put(Long.class, Long.TYPE);
+        PRIMITIVES.put(Float.class, Float.TYPE);
+        PRIMITIVES.put(Double.class, Double.TYPE);
+    }
+
+    /**
+     * @see org.apache.velocity.util.introspection.Uberspect#getMethod(java.lang.Object, java.lang.String, java.lang.Object[], org.apache.velocity.util.introspection.Info)
+     */
+    public VelMethod getMethod(Object obj, String methodName, Object[] args, Info i)
+        throws Exception
+    {
+        VelMethod method = super.getMethod(obj, methodName, args, i);
+        if (method != null && method.getClass() == VelMethodImpl.class)
+        {
+            VelMethodImpl impl = (VelMethodImpl) method;
+            MethodHandle handle = spreadHandle(impl.method);
+            if (handle != null)
+            {
+                return new VelMethodHandle(impl.method, impl.wrapArray, handle);
+            }
+        }
+        return method;
+    }
+
+    /**
+     * @see org.apache.velocity.util.introspection.Uberspect#getPropertyGet(java.lang.Object, java.lang.String, org.apache.velocity.util.introspection.Info)
+     */
+    public VelPropertyGet getPropertyGet(Object obj, String identifier, Info i)
+        throws Exception
+    {
+        VelPropertyGet getter = super.getPropertyGet(obj, identifier, i);
+        if (getter != null && getter.getClass() == VelGetterImpl.class)
+        {
+            AbstractExecutor executor = ((VelGetterImpl) getter).getExecutor;
+            MethodHandle handle = null;
+            // getFoo() and isFoo()
+            if (executor instanceof PropertyExecutor)
+            {
+                handle = getterHandle(executor.getMethod(), null);
+            }
+            // get("foo")
+            else if (executor instanceof GetExecutor)
+            {
+                handle = getterHandle(executor.getMethod(), identifier);
+            }
+            if (handle != null)
+            {
+                return new VelGetterHandle(executor.getMethod(), handle);
+            }
+        }
+        return getter;
+    }
+
+    /**
+     * Handle of type (Object, Object[])Object, primitive arguments are
+     * expected in their exact wrapper type. Varargs methods get their
+     * arguments already packed in their array, as for Method.invoke
+     */
+    private MethodHandle spreadHandle(Method method)
+    {
+        try
+        {
+            MethodHandle handle = LOOKUP.unreflect(method).asFixedArity();
+            int params = method.getParameterTypes().length;
+            if (Modifier.isStatic(method.getModifiers()))
+            {
+                // invoked on the Class object, which is ignored like Method.invoke does
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            return handle.asType(MethodType.genericMethodType(params + 1))
+                    .asSpreader(Object[].class, params);
+        }
+        catch (IllegalAccessException e)
+        {
+            Logger.debug(this, "Unable to get a handle of " + method + ", invoking it by reflection", e);
+            return null;
+        }
+    }
+
+    /**
+     * Handle of type (Object)Object, with the property bound when it is a
+     * get("foo") method
+     */
+    private MethodHandle getterHandle(Method method, String property)
+    {
+        if (method == null || Modifier.isStatic(method.getModifiers()))
+        {
+            return null;
+        }
+        try
+        {
+            MethodHandle handle = LOOKUP.unreflect(method).asFixedArity();
+            if (property == null)
+            {
+                return handle.asType(GETTER_TYPE);
+            }
+            handle = handle.asType(MethodType.genericMethodType(2));
+            return MethodHandles.insertArguments(handle, 1, property);
+        }
+        catch (IllegalAccessException e)
+        {
+            Logger.debug(this, "Unable to get a handle of " + method + ", invoking it by reflection", e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks the arguments the way {@link Method#invoke(Object, Object...)}
+     * does and widens the primitive ones to the wrapper of the declared type
+     */
+    static Object[] checkArguments(Method method, Class<?>[] formal, Object o, Object[] actual)
+    {
+        if (!Modifier.isStatic(method.getModifiers()) && !method.getDeclaringClass().isInstance(o))
+        {
+            throw new IllegalArgumentException("object is not an instance of declaring class");
+        }
+        int length = (actual == null) ? 0 : actual.length;
+        if (length != formal.length)
+        {
+            throw new IllegalArgumentException("wrong number of arguments");
+        }
+        for (int j = 0; j < length; j++)
+        {
+            Class<?> type = formal[j];
+            Object arg = actual[j];
+            if (type.isPrimitive())
+            {
+                actual[j] = widen(type, arg);
+            }
+            else if (arg != null && !type.isInstance(arg))
+            {
+                throw new IllegalArgumentException("argument type mismatch");
+            }
+        }
+        return (actual == null) ? new Object[0] : actual;
+    }
+
+    private static Object widen(Class<?> type, Object arg)
+    {
+        Class<?> from = (arg == null) ? null : PRIMITIVES.get(arg.getClass());
+        if (from == type)
+        {
+            return arg;
+        }
+        if (from == null)
+        {
+            throw new IllegalArgumentException("argument type mismatch");
+        }
+        int to = NUMERIC.indexOf(type);
+        Number value;
+        if (from == Character.TYPE)
+        {
+            // char widens to int and above
+            if (to < NUMERIC.indexOf(Integer.TYPE))
+            {
+                throw new IllegalArgumentException("argument type mismatch");
+            }
+            value = Integer.valueOf(((Character) arg).charValue());
+        }
+        else
+        {
+            int index = NUMERIC.indexOf(from);
+            if (index < 0 || to <= index)
+            {
+                throw new IllegalArgumentException("argument type mismatch");
+            }
+            value = (Number) arg;
+        }
+        if (type == Short.TYPE)
+        {
+            return Short.valueOf(value.shortValue());
+        }
+        else if (type == Integer.TYPE)
+        {
+            return Integer.valueOf(value.intValue());
+        }
+        else if (type == Long.TYPE)
+        {
+            return Long.valueOf(value.longValue());
+        }
+        else if (type == Float.TYPE)
+        {
+            return Float.valueOf(value.floatValue());
+        }
+        return Double.valueOf(value.doubleValue());
+    }
+
+    /**
+     * {@link VelMethod} invoking its method through a {@link MethodHandle}
+     */
+    public static class VelMethodHandle extends VelMethodImpl
+    {
+        private final MethodHandle handle;
+        private final Class<?>[] formal;
+
+        VelMethodHandle(Method method, boolean wrapArray, MethodHandle handle)
+        {
+            super(method, wrapArray);
+            this.handle = handle;
+            this.formal = method.getParameterTypes();
+        }
+
+        /**
+         * @see org.apache.velocity.util.introspection.UberspectImpl.VelMethodImpl#doInvoke(java.lang.Object, java.lang.Object[])
+         */
+        protected Object doInvoke(Object o, Object[] actual) throws Exception
+        {
+            Object[] args = checkArguments(method, formal, o, actual);
+            try
+            {
+                return (Object) handle.invokeExact(o, args);
+            }
+            catch (Throwable t)
+            {
+                throw new InvocationTargetException(t);
+            }
+        }
+    }
+
+    /**
+     * {@link VelPropertyGet} invoking its getter through a {@link MethodHandle}
+     */
+    public static class VelGetterHandle implements VelPropertyGet
+    {
+        private final Method method;
+        private final MethodHandle handle;
+
+        VelGetterHandle(Method method, MethodHandle handle)
+        {
+            this.method = method;
+            this.handle = handle;
+        }
+
+        /**
+         * @see org.apache.velocity.util.introspection.VelPropertyGet#invoke(java.lang.Object)
+         */
+        public Object invoke(Object o) throws Exception
+        {
+            if (!method.getDeclaringClass().isInstance(o))
+            {
+                throw new IllegalArgumentException("object is not an instance of declaring class");
+            }
+            try
+            {
+                return (Object) handle.invokeExact(o);
+            }
+            catch (Throwable t)
+            {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        /**
+         * @see org.apache.velocity.util.introspection.VelPropertyGet#isCacheable()
+         */
+        public boolean isCacheable()
+        {
+            return true;
+        }
+
+        /**
+         * @see org.apache.velocity.util.introspection.VelPropertyGet#getMethodName()
+         */
+        public String getMethodName()
+        {
+            return method.getName();
+        }
+    }
+
+}
@@ -2,9 +2,11 @@ package com;
 
 
 import org.apache.velocity.runtime.parser.node.SimpleNodeTest;
+import org.apache.velocity.util.introspection.MethodHandleUberspectorTest;
 
 import com.dotcms.cmis.DotCMSCMISTest;
 import com.dotcms.content.elasticsearch.business.ESContentFactoryImplTest;
+import com.dotcms.content.elasticsearch.business.IndexedContentletPageTest;
 import com.dotcms.content.elasticsearch.business.ESContentletIndexAPITest;
 import com.dotcms.content.elasticsearch.business.ESIndexSpeedTest;
 import com.dotcms.csspreproc.CSSPreProcessServletTest;
@@ -22,6 +24,8 @@ import com.dotmarketing.business.IdentifierAPITest;
 import com.dotmarketing.business.LanguageAPITest;
 import com.dotmarketing.business.PermissionAPITest;
 import com.dotmarketing.business.RoleAPITest;
+import com.dotmarketing.business.cache.provider.mapped.MappedRegionTest;
+import com.dotmarketing.business.cache.transport.CacheInvalidationBatchTest;
 import com.dotmarketing.db.DbConnectionFactoryUtilTest;
 import com.dotmarketing.db.HibernateUtilTest;
 import com.dotmarketing.plugin.PluginMergerTest;
@@ -31,6 +35,7 @@ import com.dotmarketing.portlets.contentlet.ajax.ContentletAjaxTest;
 import com.dotmarketing.portlets.contentlet.business.ContentletAPITest;
 import com.dotmarketing.portlets.contentlet.business.ContentletFactoryTest;
 import com.dotmarketing.portlets.contentlet.business.HostAPITest;
+import com.dotmarketing.portlets.contentlet.business.PublishExpireSchedulerTest;
 import com.dotmarketing.portlets.folder.business.FolderAPITest;
 import com.dotmarketing.portlets.htmlpages.business.HTMLPageAPITest;
 import com.dotmarketing.portlets.linkchecker.business.LinkCheckerAPITest;
@@ -60,6 +65,7 @@ import com.dotmarketing.webdav.WebDavTest;
     MenuLinkAPITest.class,
     ContentletFactoryTest.class,
     ContentletAPITest.class,
+    PublishExpireSchedulerTest.class,
     ContainerAPITest.class,
     FieldFactoryTest.class,
     StructureFactoryTest.class,
@@ -87,10 +93,14 @@ import com.dotmarketing.webdav.WebDavTest;
     SiteSearchAjaxActionTest.class,
     CSSPreProcessServletTest.class, //Needs Enterprise License
     ESContentFactoryImplTest.class,
+    IndexedContentletPageTest.class,
     HibernateUtilTest.class,
     WorkflowAPITest.class,
     ContentletAjaxTest.class,
     SimpleNodeTest.class,
+    MethodHandleUberspectorTest.class,
+    MappedRegionTest.class,
+    CacheInvalidationBatchTest.class,
     DbConnectionFactoryUtilTest.class,
     RemotePublishAjaxActionTest.class //Needs Enterprise License
 })
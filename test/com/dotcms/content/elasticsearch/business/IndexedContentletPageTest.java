@@ -0,0 +1,77 @@
+package com.dotcms.content.elasticsearch.business;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dotcms.repackage.org.junit.Assert;
+import com.dotcms.repackage.org.junit.Test;
+import com.dotmarketing.portlets.contentlet.model.Contentlet;
+
+public class IndexedContentletPageTest {
+
+    /**
+     * Counts the loads, and finds every contentlet but the ones named missing
+     */
+    static class CountingPage extends IndexedContentletPage {
+
+        final List<List<String>> loads = new ArrayList<List<String>>();
+
+        @Override
+        protected List<Contentlet> findContentlets(List<String> inodes) {
+            loads.add(new ArrayList<String>(inodes));
+            List<Contentlet> found = new ArrayList<Contentlet>();
+            for (String inode : inodes) {
+                if (!inode.startsWith("missing")) {
+                    Contentlet con = new Contentlet();
+                    con.setInode(inode);
+                    con.setStringProperty("title", "title of " + inode);
+                    found.add(con);
+                }
+            }
+            return found;
+        }
+    }
+
+    @Test
+    public void onePageOneLoad() throws Exception {
+        CountingPage page = new CountingPage();
+        List<IndexedContentletMap> maps = new ArrayList<IndexedContentletMap>();
+        for (int i = 0; i < 20; i++) {
+            IndexedContentletMap map = new IndexedContentletMap("inode" + i, page);
+            map.putHydrated(Contentlet.INODE_KEY, "inode" + i);
+            maps.add(map);
+        }
+
+        // hydrated properties don't load anything
+        for (int i = 0; i < maps.size(); i++) {
+            Assert.assertEquals("inode" + i, maps.get(i).get(Contentlet.INODE_KEY));
+        }
+        Assert.assertEquals(0, page.loads.size());
+
+        // the first property not in the index loads the whole page
+        Assert.assertEquals("title of inode3", maps.get(3).get("title"));
+        Assert.assertEquals(1, page.loads.size());
+        Assert.assertEquals(20, page.loads.get(0).size());
+        for (int i = 0; i < maps.size(); i++) {
+            Assert.assertTrue(maps.get(i).isLoaded());
+            Assert.assertEquals("title of inode" + i, maps.get(i).get("title"));
+        }
+        Assert.assertEquals(1, page.loads.size());
+    }
+
+    @Test
+    public void missingContentlets() throws Exception {
+        CountingPage page = new CountingPage();
+        IndexedContentletMap found = new IndexedContentletMap("inode1", page);
+        IndexedContentletMap missing = new IndexedContentletMap("missing1", page);
+
+        Assert.assertNull(missing.get("title"));
+        Assert.assertTrue(missing.isLoaded());
+        Assert.assertEquals("title of inode1", found.get("title"));
+
+        // not looked up again
+        Assert.assertNull(missing.get("body"));
+        Assert.assertEquals(1, page.loads.size());
+    }
+
+}
@@ -57,4 +57,69 @@ public class CSSPreProcessServletTest {
                 "/DOTLESS/" + folder.getName() + "/hello.txt";
         Assert.assertEquals("hello there!", IOUtils.toString(new URL(uri).openStream()));
     }
+
+    /**
+     * Publishing a file imported by a stylesheet compiles the stylesheet again in the
+     * background, without a request for it
+     */
+    @Test
+    public void recompileDependents() throws Exception {
+        User user = APILocator.getUserAPI().getSystemUser();
+        Host demo = APILocator.getHostAPI().findByName("demo.dotcms.com", user, false);
+        String runId = UUIDGenerator.generateUuid();
+        Folder folder = APILocator.getFolderAPI().createFolders("/"+runId, demo, user, false);
+        File tmpDir = new File(APILocator.getFileAPI().getRealAssetPathTmpBinary() + File.separator + runId);
+        tmpDir.mkdirs();
+
+        File vars = new File(tmpDir, "_vars.scss");
+        FileUtils.writeStringToFile(vars, "$color: green;");
+        Contentlet varsAsset = newFile(vars, folder, demo);
+        File main = new File(tmpDir, "main.scss");
+        FileUtils.writeStringToFile(main, "@import \"vars\"; .main { color: $color; }");
+        newFile(main, folder, demo);
+
+        HttpServletRequest req = ServletTestRunner.localRequest.get();
+        URL cssURL = new URL("http://" + req.getServerName() + ":" + req.getServerPort() +
+                "/DOTSASS/" + runId + "/main.css");
+        String response = IOUtils.toString(cssURL.openStream(), "UTF-8");
+        Assert.assertEquals(".main{color:green}", response.substring(0, response.lastIndexOf("}")+1).trim());
+
+        // publish a change to the imported file, main.css is not requested again
+        File modVars = new File(tmpDir, "mod" + File.separator + "_vars.scss");
+        modVars.getParentFile().mkdirs();
+        FileUtils.writeStringToFile(modVars, "$color: red;");
+        varsAsset = APILocator.getContentletAPI().checkout(varsAsset.getInode(), user, false);
+        varsAsset.setBinary(FileAssetAPI.BINARY_FIELD, modVars);
+        varsAsset = APILocator.getContentletAPI().checkin(varsAsset, user, false);
+        APILocator.getContentletAPI().publish(varsAsset, user, false);
+
+        // wait for the background compilation
+        String compiled = null;
+        for(int x=0; x<60 && (compiled==null || !compiled.contains("red")); x++) {
+            Thread.sleep(500);
+            CachedCSS cc = CacheLocator.getCSSCache().get(demo.getIdentifier(), "/"+runId+"/main.scss", true, user);
+            compiled = cc!=null && cc.data!=null ? new String(cc.data, "UTF-8") : null;
+        }
+        Assert.assertNotNull(compiled);
+        Assert.assertEquals(".main{color:red}", compiled.substring(0, compiled.lastIndexOf("}")+1).trim());
+
+        response = IOUtils.toString(cssURL.openStream(), "UTF-8");
+        Assert.assertEquals(".main{color:red}", response.substring(0, response.lastIndexOf("}")+1).trim());
+    }
+
+    protected Contentlet newFile(File file, Folder folder, Host host) throws Exception {
+        User user = APILocator.getUserAPI().getSystemUser();
+        Contentlet asset = new Contentlet();
+        asset.setHost(host.getIdentifier());
+        asset.setFolder(folder.getInode());
+        asset.setStructureInode(CacheLocator.getContentTypeCache().getStructureByVelocityVarName(FileAssetAPI.DEFAULT_FILE_ASSET_STRUCTURE_VELOCITY_VAR_NAME).getInode());
+        asset.setLanguageId(APILocator.getLanguageAPI().getDefaultLanguage().getId());
+        asset.setStringProperty(FileAssetAPI.TITLE_FIELD, file.getName());
+        asset.setStringProperty(FileAssetAPI.FILE_NAME_FIELD, file.getName());
+        asset.setBinary(FileAssetAPI.BINARY_FIELD, file);
+        asset = APILocator.getContentletAPI().checkin(asset, user, false);
+        APILocator.getContentletAPI().publish(asset, user, false);
+        APILocator.getContentletAPI().isInodeIndexed(asset.getInode(), true);
+        return asset;
+    }
 }
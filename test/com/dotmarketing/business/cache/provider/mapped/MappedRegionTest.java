@@ -0,0 +1,108 @@
+package com.dotmarketing.business.cache.provider.mapped;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.dotcms.repackage.org.junit.After;
+import com.dotcms.repackage.org.junit.Assert;
+import com.dotcms.repackage.org.junit.Before;
+import com.dotcms.repackage.org.junit.Test;
+
+public class MappedRegionTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    private File directory;
+
+    @Before
+    public void prepare () throws Exception {
+        directory = File.createTempFile("mappedregion", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void cleanUp () {
+        File[] files = directory.listFiles();
+        if ( files != null ) {
+            for ( File file : files ) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void evictionKeepsTheRegionSize () throws Exception {
+
+        MappedRegion region = new MappedRegion("test", directory, SEGMENT_SIZE, 4 * SEGMENT_SIZE);
+
+        //Ten times what the region can hold
+        byte[] data = new byte[1000];
+        for ( int i = 0; i < 40 * SEGMENT_SIZE / data.length; i++ ) {
+            Assert.assertTrue(region.put("key" + i, data));
+        }
+
+        Assert.assertTrue(region.getEvictions() > 0);
+        Assert.assertEquals(4L * SEGMENT_SIZE, region.getDiskSize());
+        Assert.assertEquals(4L * SEGMENT_SIZE, diskUsage());
+        Assert.assertNull(region.get("key0"));
+        Assert.assertNotNull(region.get("key" + (40 * SEGMENT_SIZE / data.length - 1)));
+
+        region.clear();
+        Assert.assertEquals(0L, region.getDiskSize());
+        Assert.assertEquals(0L, diskUsage());
+    }
+
+    @Test
+    public void compactionDeletesSegments () throws Exception {
+
+        MappedRegion region = new MappedRegion("test", directory, SEGMENT_SIZE, 8 * SEGMENT_SIZE);
+
+        byte[] data = new byte[1000];
+        int count = 3 * SEGMENT_SIZE / data.length;
+        for ( int i = 0; i < count; i++ ) {
+            region.put("key" + i, data);
+        }
+        //Everything but the segment being written to is left empty
+        for ( int i = 0; i < count - 10; i++ ) {
+            region.remove("key" + i);
+        }
+        long before = diskUsage();
+        region.compact(0.5);
+
+        Assert.assertTrue(diskUsage() < before);
+        Assert.assertEquals(region.getDiskSize(), diskUsage());
+        Assert.assertNotNull(region.get("key" + (count - 1)));
+        region.clear();
+    }
+
+    @Test
+    public void unmap () throws Exception {
+
+        File file = new File(directory, "unmap.seg");
+        MappedByteBuffer buffer;
+        try ( RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel() ) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+        Assert.assertTrue(MappedRegion.unmap(buffer));
+        Assert.assertTrue(file.delete());
+    }
+
+    /**
+     * Bytes taken by the segment files of the region
+     */
+    private long diskUsage () {
+        long size = 0;
+        File[] files = directory.listFiles();
+        if ( files != null ) {
+            for ( File file : files ) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.dotmarketing.business.cache.transport;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.dotcms.repackage.org.junit.Assert;
+import com.dotcms.repackage.org.junit.Test;
+
+public class CacheInvalidationBatchTest {
+
+    @Test
+    public void roundTrip () throws Exception {
+
+        CacheInvalidationBatch batch = new CacheInvalidationBatch();
+        batch.addKey("key1", "group1");
+        batch.addKey("key2", "group1");
+        batch.addKey("cl\u00e9/\u043a\u043b\u044e\u0447/\u952e", "group2");
+        batch.addGroupFlush("group3");
+
+        CacheInvalidationBatch read = CacheInvalidationBatch.fromBytes(batch.toBytes());
+
+        Assert.assertFalse(read.isFlushAll());
+        Assert.assertEquals(batch.getFlushedGroups(), read.getFlushedGroups());
+        Assert.assertEquals(batch.getKeysByGroup(), read.getKeysByGroup());
+        Assert.assertEquals(batch.getSentAt(), read.getSentAt());
+        Assert.assertEquals(4, read.size());
+    }
+
+    @Test
+    public void keysOver64KB () throws Exception {
+
+        StringBuilder key = new StringBuilder();
+        while ( key.length() < 100000 ) {
+            key.append("/some/long/path/\u00e9");
+        }
+
+        CacheInvalidationBatch batch = new CacheInvalidationBatch();
+        batch.addKey(key.toString(), "group1");
+        batch.addKey("key2", "group1");
+
+        CacheInvalidationBatch read = CacheInvalidationBatch.fromBytes(batch.toBytes());
+
+        Set<String> expected = new LinkedHashSet<String>(Arrays.asList(key.toString(), "key2"));
+        Assert.assertEquals(expected, read.getKeysByGroup().get("group1"));
+    }
+
+    @Test
+    public void flushAll () throws Exception {
+
+        CacheInvalidationBatch batch = new CacheInvalidationBatch();
+        batch.addKey("key1", "group1");
+        batch.addFlushAll();
+
+        CacheInvalidationBatch read = CacheInvalidationBatch.fromBytes(batch.toBytes());
+
+        Assert.assertTrue(read.isFlushAll());
+        Assert.assertTrue(read.getKeysByGroup().isEmpty());
+    }
+
+}
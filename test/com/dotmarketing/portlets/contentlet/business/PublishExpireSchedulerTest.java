@@ -0,0 +1,41 @@
+package com.dotmarketing.portlets.contentlet.business;
+
+import com.dotcms.repackage.org.junit.Assert;
+import com.dotcms.repackage.org.junit.Test;
+
+public class PublishExpireSchedulerTest {
+
+    private static final long TICK = 60 * 1000L;
+
+    @Test
+    public void slotOfTickStart() {
+        // a date at the start of a tick is fired with it
+        Assert.assertEquals(0, PublishExpireScheduler.getSlot(0, TICK));
+        Assert.assertEquals(1, PublishExpireScheduler.getSlot(TICK, TICK));
+        Assert.assertEquals(25, PublishExpireScheduler.getSlot(25 * TICK, TICK));
+    }
+
+    @Test
+    public void slotOfDateMidTick() {
+        // the slot of a tick is fired when the tick starts, so a date inside a tick goes to the next one
+        long time = 25 * TICK + 30 * 1000L;
+        long slot = PublishExpireScheduler.getSlot(time, TICK);
+        Assert.assertEquals(26, slot);
+        Assert.assertTrue(slot * TICK >= time);
+        Assert.assertTrue((slot - 1) * TICK < time);
+
+        // one milli in, or one milli before the end
+        Assert.assertEquals(26, PublishExpireScheduler.getSlot(25 * TICK + 1, TICK));
+        Assert.assertEquals(26, PublishExpireScheduler.getSlot(26 * TICK - 1, TICK));
+    }
+
+    @Test
+    public void slotOfLongTicks() {
+        long tick = 300 * 1000L;
+        long time = 1444000000123L;
+        long slot = PublishExpireScheduler.getSlot(time, tick);
+        Assert.assertTrue(slot * tick >= time);
+        Assert.assertTrue(slot * tick - time < tick);
+    }
+
+}
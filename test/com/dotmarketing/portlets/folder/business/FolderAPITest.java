@@ -12,6 +12,7 @@ import com.dotmarketing.beans.Host;
 import com.dotmarketing.beans.Identifier;
 import com.dotmarketing.beans.MultiTree;
 import com.dotmarketing.business.APILocator;
+import com.dotmarketing.db.HibernateUtil;
 import com.dotmarketing.factories.MultiTreeFactory;
 import com.dotmarketing.factories.WebAssetFactory;
 import com.dotmarketing.portlets.containers.model.Container;
@@ -26,6 +27,7 @@ import com.dotmarketing.portlets.structure.factories.StructureFactory;
 import com.dotmarketing.portlets.structure.model.Structure;
 import com.dotmarketing.portlets.templates.model.Template;
 import com.dotmarketing.util.InodeUtils;
+import com.dotmarketing.util.Logger;
 import com.liferay.portal.model.User;
 
 public class FolderAPITest {
@@ -559,6 +561,129 @@ public class FolderAPITest {
 		
 	}
 
+	/**
+	 * Test moving a folder with subfolders and a page to another folder of the same host.
+	 * The identifiers under it must follow it and resolve by their new paths only
+	 * @throws Exception
+	 */
+	@Test
+	public void moveSubtreeWithinHost() throws Exception {
+		User user = APILocator.getUserAPI().getSystemUser();
+		Host demo = APILocator.getHostAPI().findByName("demo.dotcms.com", user, false);
+		long langId = APILocator.getLanguageAPI().getDefaultLanguage().getId();
+		long time = System.currentTimeMillis();
+
+		Folder source = APILocator.getFolderAPI().createFolders("/folderMoveSubtreeSource"+time, demo, user, false);
+		Folder fa = APILocator.getFolderAPI().createFolders(source.getPath()+"/fa", demo, user, false);
+		Folder fb = APILocator.getFolderAPI().createFolders(source.getPath()+"/fa/fb", demo, user, false);
+		Contentlet page = createPage("subtreepage", demo, fb, langId, user);
+		Folder target = APILocator.getFolderAPI().createFolders("/folderMoveSubtreeTarget"+time, demo, user, false);
+
+		String oldPagePath = source.getPath()+"/fa/fb/subtreepage";
+		Assert.assertTrue(APILocator.getFolderAPI().move(fa, target, user, false));
+
+		Identifier identTarget=APILocator.getIdentifierAPI().find(target.getIdentifier()),
+				identA=APILocator.getIdentifierAPI().find(fa.getIdentifier()),
+				identB=APILocator.getIdentifierAPI().find(fb.getIdentifier()),
+				identPage=APILocator.getIdentifierAPI().find(page.getIdentifier());
+		Assert.assertEquals(identTarget.getPath(), identA.getParentPath());
+		Assert.assertEquals(identA.getPath(), identB.getParentPath());
+		Assert.assertEquals(identB.getPath(), identPage.getParentPath());
+		Assert.assertEquals(demo.getIdentifier(), identA.getHostId());
+		Assert.assertEquals(demo.getIdentifier(), identB.getHostId());
+		Assert.assertEquals(demo.getIdentifier(), identPage.getHostId());
+
+		// the new paths resolve, the old ones don't
+		String newPagePath = target.getPath()+"/fa/fb/subtreepage";
+		Assert.assertEquals(fb.getInode(), APILocator.getFolderAPI().findFolderByPath(target.getPath()+"/fa/fb", demo, user, false).getInode());
+		Assert.assertEquals(page.getIdentifier(), APILocator.getIdentifierAPI().find(demo, newPagePath).getId());
+		Assert.assertEquals(page.getIdentifier(), APILocator.getHTMLPageAssetAPI().getPageByPath(newPagePath, demo, langId, true).getIdentifier());
+		Assert.assertFalse(InodeUtils.isSet(APILocator.getFolderAPI().findFolderByPath(source.getPath()+"/fa/fb", demo, user, false).getInode()));
+		Assert.assertFalse(InodeUtils.isSet(APILocator.getIdentifierAPI().find(demo, oldPagePath).getId()));
+	}
+
+	/**
+	 * Test moving a folder with subfolders and a page to the root of another host.
+	 * The identifiers under it must belong to the new host and resolve there only
+	 * @throws Exception
+	 */
+	@Test
+	public void moveSubtreeToAnotherHost() throws Exception {
+		User user = APILocator.getUserAPI().getSystemUser();
+		Host demo = APILocator.getHostAPI().findByName("demo.dotcms.com", user, false);
+		long langId = APILocator.getLanguageAPI().getDefaultLanguage().getId();
+		long time = System.currentTimeMillis();
+
+		Host host = new Host();
+		host.setHostname("folderMoveSubtree"+time+".demo.dotcms.com");
+		host.setDefault(false);
+		try{
+			HibernateUtil.startTransaction();
+			host = APILocator.getHostAPI().save(host, user, false);
+			HibernateUtil.commitTransaction();
+		}catch(Exception e){
+			HibernateUtil.rollbackTransaction();
+			Logger.error(FolderAPITest.class, e.getMessage());
+		}
+		APILocator.getHostAPI().publish(host, user, false);
+		APILocator.getContentletAPI().isInodeIndexed(host.getInode(), true);
+
+		String sourcePath = "/folderMoveSubtreeHost"+time;
+		Folder fa = APILocator.getFolderAPI().createFolders(sourcePath, demo, user, false);
+		Folder fb = APILocator.getFolderAPI().createFolders(sourcePath+"/fb", demo, user, false);
+		Folder fc = APILocator.getFolderAPI().createFolders(sourcePath+"/fb/fc", demo, user, false);
+		Contentlet page = createPage("subtreepage", demo, fc, langId, user);
+
+		Assert.assertTrue(APILocator.getFolderAPI().move(fa, host, user, false));
+
+		Identifier identA=APILocator.getIdentifierAPI().find(fa.getIdentifier()),
+				identB=APILocator.getIdentifierAPI().find(fb.getIdentifier()),
+				identC=APILocator.getIdentifierAPI().find(fc.getIdentifier()),
+				identPage=APILocator.getIdentifierAPI().find(page.getIdentifier());
+		Assert.assertEquals("/", identA.getParentPath());
+		Assert.assertEquals(identA.getPath(), identB.getParentPath());
+		Assert.assertEquals(identB.getPath(), identC.getParentPath());
+		Assert.assertEquals(identC.getPath(), identPage.getParentPath());
+		Assert.assertEquals(host.getIdentifier(), identA.getHostId());
+		Assert.assertEquals(host.getIdentifier(), identB.getHostId());
+		Assert.assertEquals(host.getIdentifier(), identC.getHostId());
+		Assert.assertEquals(host.getIdentifier(), identPage.getHostId());
+
+		// the paths resolve in the new host, not in the old one
+		String pagePath = sourcePath+"/fb/fc/subtreepage";
+		Assert.assertEquals(fc.getInode(), APILocator.getFolderAPI().findFolderByPath(sourcePath+"/fb/fc", host, user, false).getInode());
+		Assert.assertEquals(page.getIdentifier(), APILocator.getIdentifierAPI().find(host, pagePath).getId());
+		Assert.assertEquals(page.getIdentifier(), APILocator.getHTMLPageAssetAPI().getPageByPath(pagePath, host, langId, true).getIdentifier());
+		Assert.assertFalse(InodeUtils.isSet(APILocator.getFolderAPI().findFolderByPath(sourcePath+"/fb/fc", demo, user, false).getInode()));
+		Assert.assertFalse(InodeUtils.isSet(APILocator.getIdentifierAPI().find(demo, pagePath).getId()));
+	}
+
+	/**
+	 * Creates and publishes a page in the folder, with the Quest - 1 Column template
+	 */
+	private Contentlet createPage(String name, Host host, Folder folder, long langId, User user) throws Exception {
+		Template template = null;
+		for(Template temp: APILocator.getTemplateAPI().findTemplatesAssignedTo(host)){
+			if(temp.getTitle().equals("Quest - 1 Column")){
+				template=temp;
+				break;
+			}
+		}
+		Contentlet contentAsset=new Contentlet();
+		contentAsset.setStructureInode(HTMLPageAssetAPIImpl.DEFAULT_HTMLPAGE_ASSET_STRUCTURE_INODE);
+		contentAsset.setHost(host.getIdentifier());
+		contentAsset.setProperty(HTMLPageAssetAPIImpl.FRIENDLY_NAME_FIELD, name);
+		contentAsset.setProperty(HTMLPageAssetAPIImpl.URL_FIELD, name);
+		contentAsset.setProperty(HTMLPageAssetAPIImpl.TITLE_FIELD, name);
+		contentAsset.setProperty(HTMLPageAssetAPIImpl.CACHE_TTL_FIELD, "0");
+		contentAsset.setProperty(HTMLPageAssetAPIImpl.TEMPLATE_FIELD, template.getIdentifier());
+		contentAsset.setLanguageId(langId);
+		contentAsset.setFolder(folder.getInode());
+		contentAsset=APILocator.getContentletAPI().checkin(contentAsset, user, false);
+		APILocator.getContentletAPI().publish(contentAsset, user, false);
+		return contentAsset;
+	}
+
 	/**
 	 * Test delete folders with multilingua pages 
 	 * @throws Exception
@@ -0,0 +1,114 @@
+package org.apache.velocity.util.introspection;
+
+import org.apache.velocity.util.introspection.MethodHandleUberspector.VelGetterHandle;
+import org.apache.velocity.util.introspection.MethodHandleUberspector.VelMethodHandle;
+
+import com.dotcms.repackage.org.junit.Assert;
+import com.dotcms.repackage.org.junit.Before;
+import com.dotcms.repackage.org.junit.Test;
+
+public class MethodHandleUberspectorTest {
+
+    protected MethodHandleUberspector uberspect;
+    protected Info info = new Info("test.vtl", 1, 1);
+
+    public static class Sample {
+
+        public String join(String separator, String... parts) {
+            StringBuilder sb = new StringBuilder();
+            for (String part : parts) {
+                if (sb.length() > 0) {
+                    sb.append(separator);
+                }
+                sb.append(part);
+            }
+            return sb.toString();
+        }
+
+        public long twice(long value) {
+            return value * 2;
+        }
+
+        public double half(double value) {
+            return value / 2;
+        }
+
+        public static String upper(String value) {
+            return value.toUpperCase();
+        }
+
+        public String getName() {
+            return "sample";
+        }
+    }
+
+    @Before
+    public void prepare() {
+        uberspect = new MethodHandleUberspector();
+        uberspect.wrap(new UberspectImpl());
+        uberspect.init();
+    }
+
+    @Test
+    public void varargs() throws Exception {
+        Sample sample = new Sample();
+
+        VelMethod method = uberspect.getMethod(sample, "join", new Object[] { "-", "a", "b", "c" }, info);
+        Assert.assertTrue(method instanceof VelMethodHandle);
+        Assert.assertEquals("a-b-c", method.invoke(sample, new Object[] { "-", "a", "b", "c" }));
+
+        // a single one and none at all
+        method = uberspect.getMethod(sample, "join", new Object[] { "-", "a" }, info);
+        Assert.assertEquals("a", method.invoke(sample, new Object[] { "-", "a" }));
+        method = uberspect.getMethod(sample, "join", new Object[] { "-" }, info);
+        Assert.assertEquals("", method.invoke(sample, new Object[] { "-" }));
+    }
+
+    @Test
+    public void primitives() throws Exception {
+        Sample sample = new Sample();
+
+        // exact type
+        VelMethod method = uberspect.getMethod(sample, "twice", new Object[] { Long.valueOf(21) }, info);
+        Assert.assertTrue(method instanceof VelMethodHandle);
+        Assert.assertEquals(Long.valueOf(42), method.invoke(sample, new Object[] { Long.valueOf(21) }));
+
+        // widened, as templates pass Integers
+        method = uberspect.getMethod(sample, "twice", new Object[] { Integer.valueOf(21) }, info);
+        Assert.assertEquals(Long.valueOf(42), method.invoke(sample, new Object[] { Integer.valueOf(21) }));
+        method = uberspect.getMethod(sample, "half", new Object[] { Integer.valueOf(3) }, info);
+        Assert.assertEquals(Double.valueOf(1.5), method.invoke(sample, new Object[] { Integer.valueOf(3) }));
+    }
+
+    @Test
+    public void staticMethods() throws Exception {
+        Sample sample = new Sample();
+
+        // on an instance
+        VelMethod method = uberspect.getMethod(sample, "upper", new Object[] { "abc" }, info);
+        Assert.assertTrue(method instanceof VelMethodHandle);
+        Assert.assertEquals("ABC", method.invoke(sample, new Object[] { "abc" }));
+
+        // on the class
+        method = uberspect.getMethod(Sample.class, "upper", new Object[] { "abc" }, info);
+        Assert.assertEquals("ABC", method.invoke(Sample.class, new Object[] { "abc" }));
+    }
+
+    @Test
+    public void getters() throws Exception {
+        Sample sample = new Sample();
+
+        VelPropertyGet getter = uberspect.getPropertyGet(sample, "name", info);
+        Assert.assertTrue(getter instanceof VelGetterHandle);
+        Assert.assertEquals("sample", getter.invoke(sample));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongArguments() throws Exception {
+        Sample sample = new Sample();
+
+        VelMethod method = uberspect.getMethod(sample, "twice", new Object[] { Long.valueOf(21) }, info);
+        method.invoke(sample, new Object[] { "21" });
+    }
+
+}